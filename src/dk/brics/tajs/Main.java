@@ -18,20 +18,31 @@ package dk.brics.tajs;
 
 import dk.brics.tajs.analysis.Analysis;
 import dk.brics.tajs.analysis.InitialStateBuilder;
+import dk.brics.tajs.analysis.InitialStateSnapshot;
+import dk.brics.tajs.analysis.NativeFunctionRegistry;
+import dk.brics.tajs.analysis.PrimitiveOperationCache;
 import dk.brics.tajs.analysis.Transfer;
 import dk.brics.tajs.analysis.nativeobjects.NodeJSRequire;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ECMAScriptRegExp;
+import dk.brics.tajs.analysis.nativeobjects.concrete.TAJSConcreteSemantics;
 import dk.brics.tajs.blendedanalysis.BlendedAnalysisOptions;
 import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.HTMLSummary;
 import dk.brics.tajs.flowgraph.HostEnvSources;
 import dk.brics.tajs.flowgraph.JavaScriptSource;
 import dk.brics.tajs.flowgraph.JavaScriptSource.Kind;
 import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
 import dk.brics.tajs.js2flowgraph.FlowGraphBuilder;
+import dk.brics.tajs.js2flowgraph.FlowGraphFile;
+import dk.brics.tajs.js2flowgraph.FlowGraphOptimizer;
 import dk.brics.tajs.js2flowgraph.HTMLParser;
+import dk.brics.tajs.js2flowgraph.HostEnvFunctionCache;
 import dk.brics.tajs.lattice.Context;
 import dk.brics.tajs.lattice.Obj;
 import dk.brics.tajs.lattice.ObjectLabel;
 import dk.brics.tajs.lattice.PKey;
+import dk.brics.tajs.lattice.PartitionedValue;
 import dk.brics.tajs.lattice.ScopeChain;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.Value;
@@ -65,7 +76,6 @@ import dk.brics.tajs.util.PathAndURLUtils;
 import dk.brics.tajs.util.Strings;
 import forwards_backwards_api.Formula;
 import forwards_backwards_api.Refiner;
-import net.htmlparser.jericho.Source;
 import org.apache.log4j.Logger;
 import org.apache.log4j.PropertyConfigurator;
 import org.kohsuke.args4j.CmdLineException;
@@ -124,10 +134,17 @@ public class Main {
      */
     public static void reset() {
         Canonicalizer.reset();
+        Context.reset(); // context IDs are assigned by the canonicalizer
+        SourceLocation.reset();
         ExperimentalOptions.ExperimentalOptionsManager.reset();
         Options.reset();
         State.reset();
         Value.reset();
+        PartitionedValue.reset();
+        PrimitiveOperationCache.reset();
+        NativeFunctionRegistry.reset();
+        TAJSConcreteSemantics.getCache().resetStatistics();
+        ECMAScriptRegExp.reset();
         Obj.reset();
         Strings.reset();
         ScopeChain.reset();
@@ -136,7 +153,12 @@ public class Main {
         PKey.StringPKey.reset();
         ObjectLabel.reset();
         InitialStateBuilder.reset();
+        InitialStateSnapshot.reset();
+        HostEnvFunctionCache.reset();
+        FlowGraphFile.reset();
+        FlowGraphOptimizer.reset();
         BlendedAnalysisOptions.reset();
+        Babel.reset();
     }
 
     /**
@@ -167,6 +189,8 @@ public class Main {
         checkValidOptions(options);
         Options.set(options);
         TAJSEnvironmentConfig.init();
+        if (Options.get().getConcreteCacheFile() != null)
+            TAJSConcreteSemantics.getCache().load(Options.get().getConcreteCacheFile());
 
         if (monitoring == null)
             monitoring = new AnalysisMonitor();
@@ -186,7 +210,7 @@ public class Main {
             Options.dump();
 
         enterPhase(AnalysisPhase.INITIALIZATION, analysis.getMonitoring());
-        Source document = null;
+        HTMLSummary document = null;
         FlowGraph fg;
         try {
             // split into JS files and HTML files
@@ -202,42 +226,56 @@ public class Main {
                     js_files.add(fn);
             }
 
-            FlowGraphBuilder builder = FlowGraphBuilder.makeForMain(new SourceLocation.StaticLocationMaker(Lists.getLast(resolvedFiles)));
-            builder.addLoadersForHostFunctionSources(HostEnvSources.getAccordingToOptions());
+            List<Pair<JavaScriptSource, SourceLocationMaker>> sources = newList();
             if (Options.get().isNodeJS()) {
-                NodeJSRequire.init();
                 if (resolvedFiles.size() != 1 || htmlFile != null) {
                     throw new AnalysisException("A single JavaScript file is expected for NodeJS analysis");
                 }
-                // noop, the bootstrapping has been done by addLoadersForHostFunctionSources above
+                NodeJSRequire.init(resolvedFiles.get(0));
+                // noop, the bootstrapping is done by addLoadersForHostFunctionSources
             }
             else if (!js_files.isEmpty()) {
                 if (htmlFile != null)
                     throw new AnalysisException("Cannot analyze an HTML file and JavaScript files at the same time");
-                // build flowgraph for JS files
+                // load JS files
                 for (URL js_file : js_files) {
                     if (!Options.get().isQuietEnabled())
                         log.info("Loading " + js_file);
-                    builder.transformStandAloneCode(Loader.getString(js_file, Charset.forName("UTF-8")), new SourceLocation.StaticLocationMaker(js_file));
+                    sources.add(Pair.make(JavaScriptSource.makeFileCode(Loader.getString(js_file, Charset.forName("UTF-8"))), new SourceLocation.StaticLocationMaker(js_file)));
                 }
             } else {
-                // build flowgraph for JavaScript code in or referenced from HTML file
+                // load JavaScript code in or referenced from HTML file
                 Options.get().enableIncludeDom(); // always enable DOM if any HTML files are involved
                 if (!Options.get().isQuietEnabled())
                     log.info("Loading " + htmlFile);
                 HTMLParser p = new HTMLParser(htmlFile);
-                document = p.getHTML();
+                document = p.getSummary();
                 for (Pair<URL, JavaScriptSource> js : p.getJavaScript()) {
                     if (!Options.get().isQuietEnabled() && js.getSecond().getKind() == Kind.FILE)
                         log.info("Loading " + PathAndURLUtils.getRelativeToWorkingDirectory(PathAndURLUtils.toPath(js.getFirst(), false)));
-                    builder.transformWebAppCode(js.getSecond(), new SourceLocation.StaticLocationMaker(js.getFirst()));
+                    sources.add(Pair.make(js.getSecond(), new SourceLocation.StaticLocationMaker(js.getFirst())));
                 }
             }
-            fg = builder.close();
+
+            Path flowGraphFile = Options.get().getFlowGraphFile();
+            String flowGraphKey = flowGraphFile != null ? FlowGraphFile.makeKey(resolvedFiles, sources) : null;
+            fg = flowGraphFile != null ? FlowGraphFile.read(flowGraphFile, flowGraphKey) : null;
+            if (fg == null) {
+                // build flowgraph
+                FlowGraphBuilder builder = FlowGraphBuilder.makeForMain(new SourceLocation.StaticLocationMaker(Lists.getLast(resolvedFiles)));
+                builder.addLoadersForHostFunctionSources(HostEnvSources.getAccordingToOptions());
+                builder.transformWebAppCode(sources);
+                fg = builder.close();
+                if (Options.get().isFlowGraphOptimizationEnabled())
+                    FlowGraphOptimizer.optimize(fg);
+                if (flowGraphFile != null)
+                    FlowGraphFile.write(fg, flowGraphFile, flowGraphKey);
+            }
         } catch (IOException e) {
             log.error("Error: Unable to load and parse " + e.getMessage());
             return null;
         }
+        addTranslationStatistics(fg);
         if (sync != null)
             sync.setFlowGraph(fg);
         if (Options.get().isFlowGraphEnabled())
@@ -253,6 +291,21 @@ public class Main {
         return analysis;
     }
 
+    /**
+     * Adds the statistics of the flow graph builder components to the statistics of the given flow graph.
+     */
+    private static void addTranslationStatistics(FlowGraph fg) {
+        if (Options.get().isFlowGraphOptimizationEnabled())
+            fg.addStatistics(() -> "Flow graph optimization: nodes " + FlowGraphOptimizer.getNumberOfNodesBefore() + " -> " + FlowGraphOptimizer.getNumberOfNodesAfter()
+                    + ", blocks " + FlowGraphOptimizer.getNumberOfBlocksBefore() + " -> " + FlowGraphOptimizer.getNumberOfBlocksAfter()
+                    + ", edges " + FlowGraphOptimizer.getNumberOfEdgesBefore() + " -> " + FlowGraphOptimizer.getNumberOfEdgesAfter()
+                    + ", registers " + FlowGraphOptimizer.getNumberOfRegistersBefore() + " -> " + FlowGraphOptimizer.getNumberOfRegistersAfter());
+        if (Options.get().getFlowGraphFile() != null)
+            fg.addStatistics(() -> "Flow graph file: loads=" + FlowGraphFile.getNumberOfLoads() + ", saves=" + FlowGraphFile.getNumberOfSaves());
+        fg.addStatistics(() -> "Host-environment function cache: hits=" + HostEnvFunctionCache.getNumberOfHits() + ", misses=" + HostEnvFunctionCache.getNumberOfMisses()
+                + ", loads=" + HostEnvFunctionCache.getNumberOfLoads() + ", saves=" + HostEnvFunctionCache.getNumberOfSaves());
+    }
+
     /**
      * Reads the input and prepares an analysis object, using the default monitoring and transfer functions.
      */
@@ -397,6 +450,11 @@ public class Main {
         enterPhase(AnalysisPhase.SCAN, monitoring);
         analysis.getSolver().scan();
         leavePhase(AnalysisPhase.SCAN, monitoring);
+
+        if (Options.get().getConcreteCacheFile() != null)
+            TAJSConcreteSemantics.getCache().save(Options.get().getConcreteCacheFile());
+        if (Options.get().isNodeJS())
+            NodeJSRequire.get().save();
     }
 
     /**
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.BeginForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.lattice.CallEdge;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.solver.CallGraph;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Context sensitivity strategy that bounds the number of call contexts per function.
+ * Wraps another context sensitivity strategy. When a function has been entered in as many contexts as the budget allows,
+ * further calls of the function that would create a new context are instead analyzed in a single widened context
+ * that has no parameter, receiver or closure variable sensitivity.
+ * The heap contexts of activation objects and constructed objects of such calls are widened accordingly.
+ * Whether a call exceeds the budget is decided from the context the wrapped strategy gives it,
+ * before 'this' is specialized to the individual receiver objects.
+ */
+public class AdaptiveContextSensitivityStrategy implements IContextSensitivityStrategy {
+
+    private static Logger log = Logger.getLogger(AdaptiveContextSensitivityStrategy.class);
+
+    private final IContextSensitivityStrategy defaultContextSensitivity;
+
+    private final int budget;
+
+    /**
+     * Map from degraded function to number of calls that have been redirected to the widened context.
+     */
+    private final Map<Function, Integer> degraded = newMap();
+
+    /**
+     * Creates a new strategy that wraps the given strategy.
+     *
+     * @param budget maximum number of contexts per function
+     */
+    public AdaptiveContextSensitivityStrategy(IContextSensitivityStrategy defaultContextSensitivity, int budget) {
+        this.defaultContextSensitivity = defaultContextSensitivity;
+        this.budget = budget;
+    }
+
+    /**
+     * Checks whether a call of the given function in the given context exceeds the budget.
+     */
+    private boolean exceedsBudget(Function f, Context context, Solver.SolverInterface c) {
+        CallGraph<State, Context, CallEdge> cg = c.getAnalysisLatticeElement().getCallGraph();
+        return cg.getNumberOfContexts(f) >= budget && !cg.hasContext(f, context);
+    }
+
+    private static Context makeWidenedContext(ObjectLabel function) {
+        return Context.make(null, null, null, null, null, null, null, null, null, null, function.getPropertyReadSpecialization());
+    }
+
+    private static Context widenHeapContext(Context heapContext) {
+        return heapContext != null ? Context.makeEmpty() : null;
+    }
+
+    @Override
+    public Context makeFunctionEntryContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        Context context = defaultContextSensitivity.makeFunctionEntryContext(state, function, callInfo, c);
+        Function f = function.getFunction();
+        if (!exceedsBudget(f, context, c))
+            return context;
+        Integer count = degraded.get(f);
+        if (count == null)
+            log.info("Context budget of " + budget + " exceeded for " + f + ", merging further contexts");
+        degraded.put(f, count == null ? 1 : count + 1);
+        return makeWidenedContext(function);
+    }
+
+    /**
+     * Checks whether a call of the given function in the given state is analyzed in the widened context.
+     */
+    private boolean isMerged(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        Function f = function.getFunction();
+        return degraded.containsKey(f) && exceedsBudget(f, defaultContextSensitivity.makeFunctionEntryContext(state, function, callInfo, c), c);
+    }
+
+    @Override
+    public Context makeActivationAndArgumentsHeapContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        Context heapContext = defaultContextSensitivity.makeActivationAndArgumentsHeapContext(state, function, callInfo, c);
+        return isMerged(state, function, callInfo, c) ? widenHeapContext(heapContext) : heapContext;
+    }
+
+    @Override
+    public Context makeConstructorHeapContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        Context heapContext = defaultContextSensitivity.makeConstructorHeapContext(state, function, callInfo, c);
+        if (!degraded.containsKey(function.getFunction()))
+            return heapContext;
+        // 'this' is not set yet, so decide as if the constructed object gets the unwidened heap context
+        State s = state.clone();
+        ObjectLabel obj = ObjectLabel.make(callInfo.getSourceNode(), ObjectLabel.Kind.OBJECT, heapContext);
+        s.setExecutionContext(s.getExecutionContext().copyWithThis(Value.makeObject(obj)));
+        return isMerged(s, function, callInfo, c) ? widenHeapContext(heapContext) : heapContext;
+    }
+
+    @Override
+    public Context makeFunctionHeapContext(Function fun, Solver.SolverInterface c) {
+        return defaultContextSensitivity.makeFunctionHeapContext(fun, c);
+    }
+
+    @Override
+    public Context makeObjectLiteralHeapContext(AbstractNode node, State state, Solver.SolverInterface c) {
+        return defaultContextSensitivity.makeObjectLiteralHeapContext(node, state, c);
+    }
+
+    @Override
+    public Context makeInitialContext() {
+        return defaultContextSensitivity.makeInitialContext();
+    }
+
+    @Override
+    public Context makeForInEntryContext(Context currentContext, BeginForInNode n, Value v) {
+        return defaultContextSensitivity.makeForInEntryContext(currentContext, n, v);
+    }
+
+    @Override
+    public Context makeNextLoopUnrollingContext(Context currentContext, BeginLoopNode node) {
+        return defaultContextSensitivity.makeNextLoopUnrollingContext(currentContext, node);
+    }
+
+    @Override
+    public Context makeLoopExitContext(Context currentContext, EndLoopNode node) {
+        return defaultContextSensitivity.makeLoopExitContext(currentContext, node);
+    }
+
+    @Override
+    public void requestContextSensitiveParameter(Function function, String parameter) {
+        defaultContextSensitivity.requestContextSensitiveParameter(function, parameter);
+    }
+
+    /**
+     * Returns the functions whose contexts have been merged, with the number of merged calls.
+     */
+    public Map<Function, Integer> getDegradedFunctions() {
+        return degraded;
+    }
+
+    /**
+     * Returns a description of the functions whose contexts have been merged.
+     */
+    public String getDegradationStatistics() {
+        StringBuilder b = new StringBuilder();
+        b.append("\nContext budget ").append(budget).append(" exceeded for ").append(degraded.size()).append(" function(s)");
+        degraded.forEach((f, count) -> b.append("\n  ").append(f).append(": ").append(count).append(" call(s) merged"));
+        return b.toString();
+    }
+}
@@ -16,6 +16,7 @@
 
 package dk.brics.tajs.analysis;
 
+import dk.brics.tajs.analysis.js.PartitioningBudget;
 import dk.brics.tajs.blendedanalysis.solver.BlendedAnalysisManager;
 import dk.brics.tajs.flowgraph.FlowGraph;
 import dk.brics.tajs.refinement.instantiations.forwards_backwards.TAJSForwardsAPI;
@@ -51,6 +52,12 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
 
     private CustomContextSensitivityStrategy context_sensitivity_strategy;
 
+    private AdaptiveContextSensitivityStrategy adaptive_context_sensitivity_strategy;
+
+    private LoopUnrollingController loop_unrolling_controller;
+
+    private PartitioningBudget partitioning_budget;
+
     private final PropVarOperations state_util;
 
     private BlendedAnalysisManager blended_analysis_manager;
@@ -93,6 +100,7 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
      * If a type-tester is available, then that is used;
      * otherwise, if determinacy is enabled then {@link StaticDeterminacyContextSensitivityStrategy} is used;
      * otherwise {@link BasicContextSensitivityStrategy} is used.
+     * If a context budget is set, the chosen strategy is wrapped by {@link AdaptiveContextSensitivityStrategy}.
      */
     @Override
     public void initContextSensitivity(FlowGraph fg) {
@@ -104,6 +112,14 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
         } else {
             s = new BasicContextSensitivityStrategy();
         }
+        if (Options.get().getContextBudget() > 0) {
+            adaptive_context_sensitivity_strategy = new AdaptiveContextSensitivityStrategy(s, Options.get().getContextBudget());
+            s = adaptive_context_sensitivity_strategy;
+        }
+        if (Options.get().isAdaptiveLoopUnrollingEnabled())
+            loop_unrolling_controller = new LoopUnrollingController();
+        if (Options.get().isPropNamePartitioning())
+            partitioning_budget = new PartitioningBudget(Options.get().getPartitionLimit(), Options.get().getPartitionStateLimit(), Options.get().isPartitionCostAccountingEnabled());
         context_sensitivity_strategy = new CustomContextSensitivityStrategy(s);
     }
 
@@ -174,6 +190,27 @@ public final class Analysis implements IAnalysis<State, Context, CallEdge, IAnal
         return context_sensitivity_strategy;
     }
 
+    /**
+     * Returns the strategy that bounds the number of contexts per function, or null if no context budget is set.
+     */
+    public AdaptiveContextSensitivityStrategy getAdaptiveContextSensitivityStrategy() {
+        return adaptive_context_sensitivity_strategy;
+    }
+
+    /**
+     * Returns the loop unrolling controller, or null if adaptive loop unrolling is disabled.
+     */
+    public LoopUnrollingController getLoopUnrollingController() {
+        return loop_unrolling_controller;
+    }
+
+    /**
+     * Returns the value partitioning budget, or null if property name partitioning is disabled.
+     */
+    public PartitioningBudget getPartitioningBudget() {
+        return partitioning_budget;
+    }
+
     /**
      * Returns the properties/variables operations object.
      */
@@ -16,6 +16,7 @@
 
 package dk.brics.tajs.analysis;
 
+import dk.brics.tajs.analysis.PrimitiveOperationCache.ConversionOp;
 import dk.brics.tajs.analysis.js.UserFunctionCalls;
 import dk.brics.tajs.analysis.nativeobjects.ECMAScriptFunctions;
 import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
@@ -405,6 +406,19 @@ public class Conversion {
      * 9.3 ToNumber.
      */
     public static Value toNumber(Value v, Solver.SolverInterface c) {
+        boolean memoize = PrimitiveOperationCache.isMemoizable(v, c);
+        if (memoize) {
+            Value result = PrimitiveOperationCache.get(ConversionOp.TO_NUMBER, v, null);
+            if (result == null) {
+                result = evaluateToNumber(v, c);
+                PrimitiveOperationCache.put(ConversionOp.TO_NUMBER, v, null, result);
+            }
+            return result;
+        }
+        return evaluateToNumber(v, c);
+    }
+
+    private static Value evaluateToNumber(Value v, Solver.SolverInterface c) {
         if (v.isMaybeObject()) {
             // Call ToPrimitive(input argument, hint Number).
             v = toPrimitive(v, Hint.NUM, c);
@@ -556,6 +570,19 @@ public class Conversion {
      */
     public static Value toString(Value v, Solver.SolverInterface c) {
         v = UnknownValueResolver.getRealValue(v, c.getState());
+        boolean memoize = PrimitiveOperationCache.isMemoizable(v, c);
+        if (memoize) {
+            Value result = PrimitiveOperationCache.get(ConversionOp.TO_STRING, v, null);
+            if (result == null) {
+                result = evaluateToString(v, c);
+                PrimitiveOperationCache.put(ConversionOp.TO_STRING, v, null, result);
+            }
+            return result;
+        }
+        return evaluateToString(v, c);
+    }
+
+    private static Value evaluateToString(Value v, Solver.SolverInterface c) {
         if (v.isMaybeSymbol()) {
             Exceptions.throwTypeError(c);
             v = v.restrictToNotSymbol();
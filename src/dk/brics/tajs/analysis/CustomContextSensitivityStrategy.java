@@ -51,73 +51,145 @@ public class CustomContextSensitivityStrategy implements IContextSensitivityStra
 
     private IContextSensitivityStrategy defaultContextSensitivity;
 
+    /**
+     * Map from strategy name to number of contexts returned by that strategy that were new and that already existed.
+     */
+    private Map<String, int[]> contextStatistics;
+
     /**
      * Creates a new <code>CustomContextSensitivityWrapper</code> by wrapping the given context sensitivity strategy.
      */
     public CustomContextSensitivityStrategy(IContextSensitivityStrategy defaultContextSensitivity) {
         sensitiveFunctions = newMap();
+        contextStatistics = newMap();
         this.defaultContextSensitivity = defaultContextSensitivity;
     }
 
     @Override
     public Context makeFunctionHeapContext(Function fun, Solver.SolverInterface c) {
+        int created = Context.getNumberOfContextsCreated();
         Context context = makeClosureVariableContext(fun, c);
         if (context != null) {
-            return context;
+            return recordCustom(created, context);
         }
-        return defaultContextSensitivity.makeFunctionHeapContext(fun, c);
+        return recordDefault(created, defaultContextSensitivity.makeFunctionHeapContext(fun, c));
     }
 
     @Override
     public Context makeActivationAndArgumentsHeapContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        int created = Context.getNumberOfContextsCreated();
         Context functionContext = makeContextArguments(state, function, state.getExecutionContext().getThis(), callInfo);
         if (functionContext != null) {
-            return functionContext;
+            return recordCustom(created, functionContext);
         }
-        return defaultContextSensitivity.makeActivationAndArgumentsHeapContext(state, function, callInfo, c);
+        return recordDefault(created, defaultContextSensitivity.makeActivationAndArgumentsHeapContext(state, function, callInfo, c));
     }
 
     @Override
     public Context makeConstructorHeapContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        int created = Context.getNumberOfContextsCreated();
         Context functionContext = makeContextArguments(state, function, Value.makeNone(), callInfo); // not using state.getExecutionContext().getThis() here
         if (functionContext != null) {
-            return functionContext;
+            return recordCustom(created, functionContext);
         }
-        return defaultContextSensitivity.makeConstructorHeapContext(state, function, callInfo, c);
+        return recordDefault(created, defaultContextSensitivity.makeConstructorHeapContext(state, function, callInfo, c));
     }
 
     @Override
     public Context makeObjectLiteralHeapContext(AbstractNode node, State state, Solver.SolverInterface c) {
-        return defaultContextSensitivity.makeObjectLiteralHeapContext(node, state, c);
+        int created = Context.getNumberOfContextsCreated();
+        return recordDefault(created, defaultContextSensitivity.makeObjectLiteralHeapContext(node, state, c));
     }
 
     @Override
     public Context makeInitialContext() {
-        return defaultContextSensitivity.makeInitialContext();
+        int created = Context.getNumberOfContextsCreated();
+        return recordDefault(created, defaultContextSensitivity.makeInitialContext());
     }
 
     @Override
     public Context makeFunctionEntryContext(State state, ObjectLabel function, FunctionCalls.CallInfo callInfo, Solver.SolverInterface c) {
+        int created = Context.getNumberOfContextsCreated();
         Context functionContext = makeContextArguments(state, function, state.getExecutionContext().getThis(), callInfo);
         if (functionContext != null) {
-            return Context.make(functionContext.getThisVal(), functionContext.getSpecialRegisters(), null, functionContext.getExtraAllocationContexts(), functionContext.getLoopUnrolling(), functionContext.getUnknownArg(), functionContext.getParameterNames(), functionContext.getArguments(), functionContext.getFreeVariables(), functionContext.getFreeVariablePartitioning(), function.getPropertyReadSpecialization());
+            return recordCustom(created, Context.make(functionContext.getThisVal(), functionContext.getSpecialRegisters(), null, functionContext.getExtraAllocationContexts(), functionContext.getLoopUnrolling(), functionContext.getUnknownArg(), functionContext.getParameterNames(), functionContext.getArguments(), functionContext.getFreeVariables(), functionContext.getFreeVariablePartitioning(), function.getPropertyReadSpecialization()));
         }
-        return defaultContextSensitivity.makeFunctionEntryContext(state, function, callInfo, c);
+        return recordDefault(created, defaultContextSensitivity.makeFunctionEntryContext(state, function, callInfo, c));
     }
 
     @Override
     public Context makeForInEntryContext(Context currentContext, BeginForInNode n, Value v) {
-        return defaultContextSensitivity.makeForInEntryContext(currentContext, n, v);
+        int created = Context.getNumberOfContextsCreated();
+        return recordDefault(created, defaultContextSensitivity.makeForInEntryContext(currentContext, n, v));
     }
 
     @Override
     public Context makeNextLoopUnrollingContext(Context currentContext, BeginLoopNode node) {
-        return defaultContextSensitivity.makeNextLoopUnrollingContext(currentContext, node);
+        int created = Context.getNumberOfContextsCreated();
+        return recordDefault(created, defaultContextSensitivity.makeNextLoopUnrollingContext(currentContext, node));
     }
 
     @Override
     public Context makeLoopExitContext(Context currentContext, EndLoopNode node) {
-        return defaultContextSensitivity.makeLoopExitContext(currentContext, node);
+        int created = Context.getNumberOfContextsCreated();
+        return recordDefault(created, defaultContextSensitivity.makeLoopExitContext(currentContext, node));
+    }
+
+    /**
+     * Records a context returned by the custom context sensitivity.
+     * @param created number of contexts created before the context was constructed
+     */
+    private Context recordCustom(int created, Context context) {
+        return record(getClass().getSimpleName(), created, context);
+    }
+
+    /**
+     * Records a context returned by the default context sensitivity.
+     * @param created number of contexts created before the context was constructed
+     */
+    private Context recordDefault(int created, Context context) {
+        return record(defaultContextSensitivity.getClass().getSimpleName(), created, context);
+    }
+
+    private Context record(String strategy, int created, Context context) {
+        if (context != null) {
+            int[] counts = contextStatistics.computeIfAbsent(strategy, k -> new int[2]);
+            counts[context.getId() >= created ? 0 : 1]++;
+        }
+        return context;
+    }
+
+    /**
+     * Returns the number of contexts returned by the given strategy that did not exist before.
+     *
+     * @param strategy simple class name of the strategy
+     */
+    public int getNumberOfNewContexts(String strategy) {
+        int[] counts = contextStatistics.get(strategy);
+        return counts != null ? counts[0] : 0;
+    }
+
+    /**
+     * Returns the number of contexts returned by the given strategy that already existed.
+     *
+     * @param strategy simple class name of the strategy
+     */
+    public int getNumberOfReusedContexts(String strategy) {
+        int[] counts = contextStatistics.get(strategy);
+        return counts != null ? counts[1] : 0;
+    }
+
+    /**
+     * Returns a description of the number of new and reused contexts per strategy.
+     */
+    public String getContextStatistics() {
+        StringBuilder b = new StringBuilder();
+        contextStatistics.forEach((strategy, counts) -> {
+            int total = counts[0] + counts[1];
+            b.append("\nContexts from ").append(strategy).append(": new=").append(counts[0]).append(", reused=").append(counts[1])
+                    .append(", dedupe rate=").append(total > 0 ? (counts[1] * 1000 / total) / 10f + "%" : "-");
+        });
+        return b.toString();
     }
 
     @Override
@@ -19,6 +19,7 @@ package dk.brics.tajs.analysis;
 import dk.brics.tajs.analysis.dom.DOMBuilder;
 import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
 import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.HTMLSummary;
 import dk.brics.tajs.lattice.CallEdge;
 import dk.brics.tajs.lattice.Context;
 import dk.brics.tajs.lattice.ExecutionContext;
@@ -33,7 +34,6 @@ import dk.brics.tajs.monitoring.IAnalysisMonitoring;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.solver.IInitialStateBuilder;
 import dk.brics.tajs.util.Collections;
-import net.htmlparser.jericho.Source;
 
 import java.util.Set;
 
@@ -205,7 +205,7 @@ public class InitialStateBuilder implements IInitialStateBuilder<State, Context,
      * Sets up the initial state.
      */
     @Override
-    public State build(BasicBlock global_entry_block, Solver.SolverInterface c, Source document) {
+    public State build(BasicBlock global_entry_block, Solver.SolverInterface c, HTMLSummary document) {
         // make empty state
         State initialState = new State(c, global_entry_block);
         initialState.setContext(c.getAnalysis().getContextSensitivityStrategy().makeInitialContext());
@@ -216,15 +216,25 @@ public class InitialStateBuilder implements IInitialStateBuilder<State, Context,
 //        initialState.setStacked(null, fs);
 
         // add to the state
+        Set<ObjectLabel> domObjects = newSet();
         c.withState(initialState, () -> {
-            buildECMAInitialState(c);
+            if (!InitialStateSnapshot.isEnabled()) {
+                buildECMAInitialState(c);
+            } else if (!InitialStateSnapshot.restore(c)) {
+                buildECMAInitialState(c);
+                InitialStateSnapshot.save(c);
+            }
             if (Options.get().isDOMEnabled()) {
+                Set<ObjectLabel> ecmaObjects = newSet(initialState.getStore().keySet());
                 DOMBuilder.build(document, c);
+                domObjects.addAll(initialState.getStore().keySet());
+                domObjects.removeAll(ecmaObjects);
             }
         });
 
         // cleanup
         initialState.clearEffects();
+        initialState.moveToHostStore(domObjects); // DOM objects are copied into the states that write them
         initialState.freezeBasisStore();
         return initialState;
     }
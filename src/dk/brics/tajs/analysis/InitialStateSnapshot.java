@@ -0,0 +1,188 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.StateImage;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.BuildIdentifier;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Snapshots of the ECMAScript part of the initial state.
+ * <p>
+ * The snapshot for a given option fingerprint is built on first use and kept in memory and as a binary image in the snapshot directory,
+ * such that later analyses, also in other JVMs, can restore the state instead of rebuilding it.
+ * The DOM part of the initial state is not included, as the DOM builders also bind static object labels and register the elements of the document.
+ */
+public class InitialStateSnapshot {
+
+    private static Logger log = Logger.getLogger(InitialStateSnapshot.class);
+
+    /**
+     * Identifies the snapshot file format.
+     */
+    private static final int FILE_MAGIC = 0x54495353;
+
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * Images by option fingerprint, kept across analyses.
+     */
+    private static final Map<String, StateImage> images = newMap();
+
+    private static int restores;
+
+    private static int loads;
+
+    private static int saves;
+
+    private InitialStateSnapshot() {
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public static void reset() {
+        restores = 0;
+        loads = 0;
+        saves = 0;
+    }
+
+    /**
+     * Discards the images kept in memory.
+     */
+    public static void clear() {
+        images.clear();
+    }
+
+    /**
+     * Checks whether initial state snapshots are enabled.
+     */
+    static boolean isEnabled() {
+        return Options.get().getInitialStateSnapshotDirectory() != null;
+    }
+
+    /**
+     * Returns the fingerprint of the current options and TAJS build.
+     * Snapshots are only reused for identical fingerprints.
+     */
+    static String getFingerprint() {
+        Map<String, Object> options = Options.get().getOptionValues();
+        options.remove("-initial-state-snapshot");
+        return FILE_VERSION + ":" + BuildIdentifier.get() + ":" + ECMAScriptObjects.values().length + ":" + options + ":" + Options.get().getUnsoundness();
+    }
+
+    private static Path getFile(String fingerprint) {
+        return Options.get().getInitialStateSnapshotDirectory().resolve("tajs-initial-state-" + Integer.toHexString(fingerprint.hashCode()) + ".bin");
+    }
+
+    /**
+     * Restores the ECMAScript part of the initial state into the current state, if a snapshot is available.
+     *
+     * @return true if restored, false if the state must be built
+     */
+    static boolean restore(Solver.SolverInterface c) {
+        String fingerprint = getFingerprint();
+        StateImage image = images.get(fingerprint);
+        if (image == null) {
+            image = load(getFile(fingerprint), fingerprint);
+            if (image == null)
+                return false;
+            images.put(fingerprint, image);
+            loads++;
+        }
+        State s = c.getState();
+        image.restore(s);
+        for (ObjectLabel objlabel : s.getStore().keySet())
+            if (objlabel.isSingleton())
+                c.getMonitoring().visitNewObject(c.getNode(), objlabel, s);
+        restores++;
+        return true;
+    }
+
+    /**
+     * Makes a snapshot of the current state, which must contain exactly the ECMAScript part of the initial state.
+     */
+    static void save(Solver.SolverInterface c) {
+        StateImage image = StateImage.make(c.getState());
+        if (image == null) {
+            log.warn("Unable to make initial state snapshot");
+            return;
+        }
+        String fingerprint = getFingerprint();
+        images.put(fingerprint, image);
+        Path file = getFile(fingerprint);
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "tajs-initial-state-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(fingerprint);
+                image.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write initial state snapshot " + file + ": " + e);
+            return;
+        }
+        saves++;
+        log.debug("Saved initial state snapshot " + file + " (" + image.size() + " bytes)");
+    }
+
+    private static StateImage load(Path file, String fingerprint) {
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || !in.readUTF().equals(fingerprint)) {
+                log.warn("Ignoring initial state snapshot in unknown format or for other options: " + file);
+                return null;
+            }
+            return StateImage.read(in);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read initial state snapshot " + file + ": " + e);
+            return null;
+        }
+    }
+
+    public static int getNumberOfRestores() {
+        return restores;
+    }
+
+    public static int getNumberOfLoads() {
+        return loads;
+    }
+
+    public static int getNumberOfSaves() {
+        return saves;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.lattice.Context;
+import org.apache.log4j.Logger;
+
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Decides per loop whether loop unrolling is worthwhile.
+ * <p>
+ * Unrolling pays off when the loop condition stays determinate until the loop exits, so that the
+ * exit is reached in an unrolled context. A loop that repeatedly reaches the unrolling limit in different
+ * contexts without ever exiting while unrolled gains nothing from the extra contexts, as all its iterations
+ * beyond the limit are merged anyway. Such loops are no longer unrolled; their iterations are analyzed in the
+ * context of the loop entry, where the back edge joins (with widening) into a single loop head state.
+ */
+public class LoopUnrollingController {
+
+    private static Logger log = Logger.getLogger(LoopUnrollingController.class);
+
+    /**
+     * Number of distinct contexts in which a loop may reach the unrolling limit before unrolling is stopped for that loop.
+     */
+    private static final int EXHAUSTION_LIMIT = 1;
+
+    private static final class LoopInfo {
+
+        /**
+         * Contexts where the unrolling limit was reached.
+         */
+        final Set<Context> exhausted = newSet();
+
+        /**
+         * Contexts where the loop was exited while unrolled.
+         */
+        final Set<Context> exited = newSet();
+
+        int unrollings;
+
+        int skipped;
+
+        boolean disabled;
+    }
+
+    private final Map<BeginLoopNode, LoopInfo> loops = newMap();
+
+    /**
+     * Checks whether the given loop may be unrolled.
+     */
+    public boolean shouldUnroll(BeginLoopNode n) {
+        LoopInfo info = loops.get(n);
+        if (info == null || !info.disabled)
+            return true;
+        info.skipped++;
+        return false;
+    }
+
+    /**
+     * Records an unrolling step of the given loop where the loop condition is determinately true.
+     *
+     * @param current     context at the loop entry
+     * @param specialized context returned by the context sensitivity strategy for the next iteration
+     */
+    public void recordUnrolling(BeginLoopNode n, Context current, Context specialized) {
+        LoopInfo info = loops.computeIfAbsent(n, k -> new LoopInfo());
+        if (specialized.equals(current)) {
+            info.exhausted.add(current);
+            info.exited.remove(current); // exits from this context are not due to unrolling
+            if (!info.disabled && info.exited.isEmpty() && info.exhausted.size() >= EXHAUSTION_LIMIT) {
+                info.disabled = true;
+                log.debug("Stopping unrolling of loop at " + n.getSourceLocation());
+            }
+        } else
+            info.unrollings++;
+    }
+
+    /**
+     * Records that the loop of the given end node is exited in the given context.
+     */
+    public void recordExit(EndLoopNode n, Context context) {
+        if (context.getLoopUnrolling() == null || !context.getLoopUnrolling().containsKey(n.getBeginNode()))
+            return;
+        LoopInfo info = loops.computeIfAbsent(n.getBeginNode(), k -> new LoopInfo());
+        if (!info.exhausted.contains(context))
+            info.exited.add(context);
+    }
+
+    /**
+     * Returns the number of loops where unrolling has been stopped.
+     */
+    public int getNumberOfLoopsNotUnrolled() {
+        return (int) loops.values().stream().filter(info -> info.disabled).count();
+    }
+
+    /**
+     * Returns the number of times unrolling of a loop has been skipped because it was stopped for that loop.
+     */
+    public int getNumberOfSkippedUnrollings() {
+        return loops.values().stream().mapToInt(info -> info.skipped).sum();
+    }
+
+    /**
+     * Returns a description of the unrolling decisions.
+     */
+    public String getStatistics() {
+        int unrollings = 0, skipped = 0, disabled = 0, disabledAfterExit = 0;
+        for (LoopInfo info : loops.values()) {
+            unrollings += info.unrollings;
+            skipped += info.skipped;
+            if (info.disabled) {
+                disabled++;
+                if (!info.exited.isEmpty())
+                    disabledAfterExit++;
+            }
+        }
+        return "Adaptive loop unrolling: loops=" + loops.size() + ", unrollings=" + unrollings + ", skipped=" + skipped
+                + ", loops not unrolled=" + disabled + " (of which exited while unrolled=" + disabledAfterExit + ")";
+    }
+}
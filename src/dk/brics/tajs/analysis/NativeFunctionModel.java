@@ -0,0 +1,35 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.analysis.FunctionCalls.CallInfo;
+import dk.brics.tajs.lattice.HostObject;
+import dk.brics.tajs.lattice.Value;
+
+/**
+ * Transfer function for calls to native functions.
+ *
+ * @param <T> type of the host objects handled by the model
+ */
+@FunctionalInterface
+public interface NativeFunctionModel<T extends HostObject> {
+
+    /**
+     * Evaluates a call to the given native function.
+     */
+    Value evaluate(T nativeobject, CallInfo call, Solver.SolverInterface c);
+}
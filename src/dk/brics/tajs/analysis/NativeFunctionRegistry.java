@@ -0,0 +1,165 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.analysis.FunctionCalls.CallInfo;
+import dk.brics.tajs.analysis.dom.DOMFunctions;
+import dk.brics.tajs.analysis.dom.DOMObjects;
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptFunctions;
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
+import dk.brics.tajs.lattice.HostObject;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.options.Options;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static dk.brics.tajs.util.Collections.newList;
+
+/**
+ * Dispatch tables for native ECMAScript and DOM functions.
+ * <p>
+ * Each native function is bound to its model once, when the tables are built,
+ * so a call is dispatched by indexing with the ordinal of the host object.
+ * The number of calls and (if statistics are enabled) the time spent are recorded per native function.
+ */
+public final class NativeFunctionRegistry {
+
+    /**
+     * Dispatch table for an enum of host objects.
+     */
+    private static final class Table<T extends Enum<T> & HostObject> {
+
+        private final T[] nativeobjects;
+
+        private final NativeFunctionModel<T>[] models;
+
+        private final int[] calls;
+
+        private final long[] nanos;
+
+        Table(Class<T> c, Function<T, NativeFunctionModel<T>> resolver) {
+            nativeobjects = c.getEnumConstants();
+            @SuppressWarnings({"unchecked", "rawtypes"}) // generic array creation, only models for T are stored
+            NativeFunctionModel<T>[] ms = new NativeFunctionModel[nativeobjects.length];
+            for (T nativeobject : nativeobjects)
+                ms[nativeobject.ordinal()] = resolver.apply(nativeobject);
+            models = ms;
+            calls = new int[nativeobjects.length];
+            nanos = new long[nativeobjects.length];
+        }
+
+        Value evaluate(T nativeobject, CallInfo call, Solver.SolverInterface c) {
+            int i = nativeobject.ordinal();
+            calls[i]++;
+            if (!Options.get().isStatisticsEnabled())
+                return models[i].evaluate(nativeobject, call, c);
+            long start = System.nanoTime();
+            try {
+                return models[i].evaluate(nativeobject, call, c);
+            } finally {
+                nanos[i] += System.nanoTime() - start;
+            }
+        }
+
+        void addStatistics(List<Stat> stats) {
+            for (int i = 0; i < nativeobjects.length; i++)
+                if (calls[i] > 0)
+                    stats.add(new Stat(nativeobjects[i], calls[i], nanos[i]));
+        }
+
+        void reset() {
+            for (int i = 0; i < nativeobjects.length; i++) {
+                calls[i] = 0;
+                nanos[i] = 0;
+            }
+        }
+    }
+
+    /**
+     * Call statistics for a native function.
+     */
+    private static final class Stat {
+
+        private final HostObject nativeobject;
+
+        private final int calls;
+
+        private final long nanos;
+
+        Stat(HostObject nativeobject, int calls, long nanos) {
+            this.nativeobject = nativeobject;
+            this.calls = calls;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final Table<ECMAScriptObjects> ecmascript = new Table<>(ECMAScriptObjects.class, ECMAScriptFunctions::resolve);
+
+    private static final Table<DOMObjects> dom = new Table<>(DOMObjects.class, DOMFunctions::resolve);
+
+    private NativeFunctionRegistry() {
+    }
+
+    /**
+     * Evaluates a call to the given native ECMAScript function.
+     */
+    public static Value evaluate(ECMAScriptObjects nativeobject, CallInfo call, Solver.SolverInterface c) {
+        return ecmascript.evaluate(nativeobject, call, c);
+    }
+
+    /**
+     * Evaluates a call to the given native DOM function.
+     */
+    public static Value evaluate(DOMObjects nativeobject, CallInfo call, Solver.SolverInterface c) {
+        return dom.evaluate(nativeobject, call, c);
+    }
+
+    /**
+     * Returns the number of calls to the given native function.
+     */
+    public static int getNumberOfCalls(HostObject nativeobject) {
+        if (nativeobject instanceof ECMAScriptObjects)
+            return ecmascript.calls[((ECMAScriptObjects) nativeobject).ordinal()];
+        if (nativeobject instanceof DOMObjects)
+            return dom.calls[((DOMObjects) nativeobject).ordinal()];
+        return 0;
+    }
+
+    /**
+     * Returns a description of the most frequently called native functions.
+     */
+    public static String getStatistics() {
+        List<Stat> stats = newList();
+        ecmascript.addStatistics(stats);
+        dom.addStatistics(stats);
+        stats.sort((s1, s2) -> s1.nanos != s2.nanos ? Long.compare(s2.nanos, s1.nanos) : Integer.compare(s2.calls, s1.calls));
+        int total = stats.stream().mapToInt(s -> s.calls).sum();
+        StringBuilder b = new StringBuilder("Native function calls: ").append(total).append(" (").append(stats.size()).append(" distinct functions)");
+        for (Stat s : stats.subList(0, Math.min(15, stats.size())))
+            b.append("\n  ").append(s.nativeobject).append(": calls=").append(s.calls).append(", time=").append(s.nanos / 1000000).append("ms");
+        return b.toString();
+    }
+
+    /**
+     * Resets the call statistics.
+     */
+    public static void reset() {
+        ecmascript.reset();
+        dom.reset();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.lattice.Value;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global memo table for operators and type conversions applied to primitive values.
+ * <p>
+ * Operators and conversions are pure functions of their operands when these contain no object labels or symbols
+ * (apart from warning messages, which are only produced in the scan phase, and unsoundness messages, which disable the table).
+ * Since values are canonicalized, operands are compared by identity.
+ * The table is bounded and evicts the least recently used entries.
+ */
+public final class PrimitiveOperationCache {
+
+    /**
+     * Maximum number of entries.
+     */
+    private static final int LIMIT = 10000;
+
+    /**
+     * Conversions that are memoized (operators use {@link dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode.Op}
+     * and {@link dk.brics.tajs.flowgraph.jsnodes.UnaryOperatorNode.Op}).
+     */
+    public enum ConversionOp {
+        TO_NUMBER, TO_STRING
+    }
+
+    private static final class Key {
+
+        private final Object op;
+
+        private final Value v1;
+
+        private final Value v2;
+
+        private final int hashcode;
+
+        Key(Object op, Value v1, Value v2) {
+            this.op = op;
+            this.v1 = v1;
+            this.v2 = v2;
+            hashcode = (op.hashCode() * 31 + v1.hashCode()) * 31 + (v2 != null ? v2.hashCode() : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return op == k.op && v1 == k.v1 && v2 == k.v2;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+    }
+
+    private static Map<Key, Value> memo;
+
+    private static int hits;
+
+    private static int misses;
+
+    private static int evictions;
+
+    static {
+        reset();
+    }
+
+    private PrimitiveOperationCache() {
+    }
+
+    /**
+     * Checks whether an operation on the given operand may be memoized in the current solver phase.
+     * Operations are not memoized if their unsound choices are node specific, see {@link Unsoundness#mayShareResultsOfPrimitiveOperations()}.
+     */
+    public static boolean isMemoizable(Value v, Solver.SolverInterface c) {
+        return !v.isPolymorphicOrUnknown() && !v.isMaybeObjectOrSymbol() && !c.isScanning()
+                && c.getAnalysis().getUnsoundness().mayShareResultsOfPrimitiveOperations();
+    }
+
+    /**
+     * Looks up the result of the given operation.
+     *
+     * @param v2 second operand, or null for unary operations
+     * @return the memoized result, or null if not found
+     */
+    public static Value get(Object op, Value v1, Value v2) {
+        Value res = memo.get(new Key(op, v1, v2));
+        if (res != null)
+            hits++;
+        else
+            misses++;
+        return res;
+    }
+
+    /**
+     * Records the result of the given operation.
+     *
+     * @param v2 second operand, or null for unary operations
+     */
+    public static void put(Object op, Value v1, Value v2, Value res) {
+        memo.put(new Key(op, v1, v2), res);
+    }
+
+    /**
+     * Returns the number of memo hits.
+     */
+    public static int getNumberOfHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of memo misses.
+     */
+    public static int getNumberOfMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of evicted entries.
+     */
+    public static int getNumberOfEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the current number of entries.
+     */
+    public static int getSize() {
+        return memo.size();
+    }
+
+    /**
+     * Clears the memo table and the statistics.
+     */
+    public static void reset() {
+        memo = new LinkedHashMap<Key, Value>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+                if (size() > LIMIT) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        hits = misses = evictions = 0;
+    }
+}
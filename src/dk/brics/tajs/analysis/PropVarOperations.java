@@ -69,6 +69,8 @@ public class PropVarOperations {
 
     private Solver.SolverInterface c;
 
+    private final PropertyReadCache read_cache = new PropertyReadCache();
+
     /**
      * Constructs a new PropVarOperations object.
      */
@@ -76,6 +78,13 @@ public class PropVarOperations {
         this.unsoundness = unsoundness;
     }
 
+    /**
+     * Returns the inline caches for property reads.
+     */
+    public PropertyReadCache getPropertyReadCache() {
+        return read_cache;
+    }
+
     /**
      * Initializes the connection to the solver.
      */
@@ -201,6 +210,17 @@ public class PropVarOperations {
      * @param collect if non-null, collect the objects where the property may be found
      */
     private Value readPropertyRaw(Collection<ObjectLabel> objlabels, PKeys propertystr, boolean only_attributes, boolean no_call_getters, Set<ObjectLabel> collect) {
+        AbstractNode n = c.hasNode() ? c.getNode() : null;
+        boolean use_cache = PropertyReadCache.isApplicable(n) && !c.isScanning(); // scanning must see all messages
+        if (use_cache) {
+            Value cached = read_cache.lookup(n, objlabels, propertystr, only_attributes, no_call_getters, collect, c.getState());
+            if (cached != null)
+                return cached;
+        }
+        int latest_version = Obj.getLatestVersion();
+        int entry_state_lookups = UnknownValueResolver.getNumberOfEntryStateLookups();
+        boolean maybe_getters = false;
+        Set<ObjectLabel> found = collect != null ? newSet() : null;
         Collection<Value> values = newList();
         Set<ObjectLabel> visited = newSet();
         BasicBlock implicitAfterCall = null;
@@ -218,11 +238,13 @@ public class PropVarOperations {
                         } else {
                             v = readPropertyDirect(l, propertystr);
                         }
-                        if (collect != null && v.isMaybePresent())
-                            collect.add(l);
+                        if (found != null && v.isMaybePresent())
+                            found.add(l);
                         if (!no_call_getters) {
-                            if (v.isMaybePresentAccessor())
+                            if (v.isMaybePresentAccessor()) {
+                                maybe_getters = true;
                                 v = UnknownValueResolver.getRealValue(v, c.getState());
+                            }
                             implicitAfterCall = callGetters(values, singleton(base), v, implicitAfterCall);
                         }
                         // add data values
@@ -254,7 +276,18 @@ public class PropVarOperations {
                 ol = ol2;
             }
         }
-        return UserFunctionCalls.implicitUserFunctionReturn(values, !values.isEmpty() || no_call_getters, implicitAfterCall, c);
+        Value res = UserFunctionCalls.implicitUserFunctionReturn(values, !values.isEmpty() || no_call_getters, implicitAfterCall, c);
+        if (found != null)
+            collect.addAll(found);
+        if (use_cache) {
+            // only cache if the result depends on nothing but the contents of the visited objects
+            if (!maybe_getters && latest_version == Obj.getLatestVersion() && entry_state_lookups == UnknownValueResolver.getNumberOfEntryStateLookups()
+                    && !res.isPolymorphicOrUnknown())
+                read_cache.record(n, objlabels, propertystr, only_attributes, no_call_getters, visited, res, found, c.getState());
+            else
+                read_cache.recordUncacheable(n);
+        }
+        return res;
     }
 
     /**
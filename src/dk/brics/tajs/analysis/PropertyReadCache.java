@@ -0,0 +1,269 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.WritePropertyNode;
+import dk.brics.tajs.lattice.Obj;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.PKeys;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.Value;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Inline caches for property reads at {@link ReadPropertyNode} and {@link WritePropertyNode} nodes.
+ * <p>
+ * Each node has a small cache, indexed by the node index, from the base object labels and the property name
+ * to the result of the read together with the version stamps of the abstract objects that were consulted
+ * (see {@link Obj#getVersion()}). An entry is only used if all those objects have the same versions in the current state.
+ */
+public final class PropertyReadCache {
+
+    /**
+     * Maximum number of entries per node. A node that exceeds this is considered megamorphic and its cache is cleared.
+     */
+    private static final int NODE_LIMIT = 16;
+
+    private final Map<Integer, NodeCache> caches = newMap();
+
+    private int hits;
+
+    private int misses;
+
+    private int uncacheable;
+
+    /**
+     * Cache key: base object labels, property name and read mode.
+     */
+    private static final class Key {
+
+        private final Set<ObjectLabel> objlabels;
+
+        private final PKeys propertystr;
+
+        private final boolean only_attributes;
+
+        private final boolean no_call_getters;
+
+        private final boolean collect;
+
+        private final int hashcode;
+
+        Key(Collection<ObjectLabel> objlabels, PKeys propertystr, boolean only_attributes, boolean no_call_getters, boolean collect) {
+            this.objlabels = newSet(objlabels);
+            this.propertystr = propertystr instanceof Value ? Value.canonicalize((Value) propertystr) : propertystr; // temporary values only have identity equality
+            this.only_attributes = only_attributes;
+            this.no_call_getters = no_call_getters;
+            this.collect = collect;
+            hashcode = Objects.hash(this.objlabels, propertystr, only_attributes, no_call_getters, collect);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return hashcode == k.hashcode && only_attributes == k.only_attributes && no_call_getters == k.no_call_getters &&
+                    collect == k.collect && objlabels.equals(k.objlabels) && propertystr.equals(k.propertystr);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+    }
+
+    /**
+     * Cached result of a read.
+     */
+    private static final class Entry {
+
+        private final Value result;
+
+        private final Set<ObjectLabel> collected;
+
+        private final ObjectLabel[] consulted;
+
+        private final int[] versions;
+
+        Entry(Value result, Set<ObjectLabel> collected, ObjectLabel[] consulted, int[] versions) {
+            this.result = result;
+            this.collected = collected;
+            this.consulted = consulted;
+            this.versions = versions;
+        }
+
+        /**
+         * Checks whether all the consulted objects are unchanged in the given state.
+         */
+        boolean isValid(State state) {
+            for (int i = 0; i < consulted.length; i++)
+                if (state.getObject(consulted[i], false).getVersion() != versions[i])
+                    return false;
+            return true;
+        }
+    }
+
+    /**
+     * Cache for a single node.
+     */
+    private static final class NodeCache {
+
+        private final AbstractNode node;
+
+        private final Map<Key, Entry> entries = newMap();
+
+        private int hits;
+
+        private int misses;
+
+        private int uncacheable;
+
+        NodeCache(AbstractNode node) {
+            this.node = node;
+        }
+    }
+
+    /**
+     * Constructs a new empty cache.
+     */
+    public PropertyReadCache() {
+    }
+
+    /**
+     * Checks whether reads at the given node are cached.
+     */
+    public static boolean isApplicable(AbstractNode n) {
+        return n instanceof ReadPropertyNode || n instanceof WritePropertyNode;
+    }
+
+    private NodeCache getNodeCache(AbstractNode n) {
+        return caches.computeIfAbsent(n.getIndex(), k -> new NodeCache(n));
+    }
+
+    /**
+     * Looks up the result of a read at the given node.
+     * On a hit, the objects where the property was found are added to 'collect'.
+     *
+     * @return the cached result, or null if not available or no longer valid
+     */
+    public Value lookup(AbstractNode n, Collection<ObjectLabel> objlabels, PKeys propertystr, boolean only_attributes, boolean no_call_getters,
+                        Set<ObjectLabel> collect, State state) {
+        NodeCache nc = getNodeCache(n);
+        Entry e = nc.entries.get(new Key(objlabels, propertystr, only_attributes, no_call_getters, collect != null));
+        if (e == null || !e.isValid(state)) {
+            nc.misses++;
+            misses++;
+            return null;
+        }
+        nc.hits++;
+        hits++;
+        if (collect != null)
+            collect.addAll(e.collected);
+        return e.result;
+    }
+
+    /**
+     * Records the result of a read at the given node.
+     *
+     * @param consulted the objects that were consulted during the read
+     * @param collected the objects where the property may be found, or null if not collected
+     */
+    public void record(AbstractNode n, Collection<ObjectLabel> objlabels, PKeys propertystr, boolean only_attributes, boolean no_call_getters,
+                       Set<ObjectLabel> consulted, Value result, Set<ObjectLabel> collected, State state) {
+        NodeCache nc = getNodeCache(n);
+        if (nc.entries.size() >= NODE_LIMIT)
+            nc.entries.clear();
+        ObjectLabel[] labels = consulted.toArray(new ObjectLabel[0]);
+        int[] versions = new int[labels.length];
+        for (int i = 0; i < labels.length; i++)
+            versions[i] = state.getObject(labels[i], false).getVersion();
+        nc.entries.put(new Key(objlabels, propertystr, only_attributes, no_call_getters, collected != null), new Entry(result, collected, labels, versions));
+    }
+
+    /**
+     * Records that a read at the given node could not be cached.
+     */
+    public void recordUncacheable(AbstractNode n) {
+        getNodeCache(n).uncacheable++;
+        uncacheable++;
+    }
+
+    /**
+     * Returns the total number of cache hits.
+     */
+    public int getNumberOfHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the total number of cache misses.
+     */
+    public int getNumberOfMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of cache hits at the given node.
+     */
+    public int getNumberOfHits(AbstractNode n) {
+        NodeCache nc = caches.get(n.getIndex());
+        return nc != null ? nc.hits : 0;
+    }
+
+    /**
+     * Returns the number of cache misses at the given node.
+     */
+    public int getNumberOfMisses(AbstractNode n) {
+        NodeCache nc = caches.get(n.getIndex());
+        return nc != null ? nc.misses : 0;
+    }
+
+    /**
+     * Returns a description of the cache hit rates, including the nodes with the most lookups.
+     */
+    public String getStatistics() {
+        StringBuilder b = new StringBuilder();
+        b.append("Property read inline caches: hits=").append(hits).append(", misses=").append(misses)
+                .append(", hit rate=").append(rate(hits, misses)).append(", uncacheable=").append(uncacheable);
+        List<NodeCache> ncs = newList(caches.values());
+        ncs.sort((nc1, nc2) -> Integer.compare(nc2.hits + nc2.misses, nc1.hits + nc1.misses));
+        for (NodeCache nc : ncs.subList(0, Math.min(10, ncs.size())))
+            b.append("\n  node ").append(nc.node.getIndex()).append(" at ").append(nc.node.getSourceLocation())
+                    .append(": hits=").append(nc.hits).append(", misses=").append(nc.misses)
+                    .append(", hit rate=").append(rate(nc.hits, nc.misses)).append(", uncacheable=").append(nc.uncacheable);
+        return b.toString();
+    }
+
+    private static String rate(int hits, int misses) {
+        int total = hits + misses;
+        return total > 0 ? (hits * 1000L / total) / 10f + "%" : "-";
+    }
+}
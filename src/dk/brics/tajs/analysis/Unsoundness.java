@@ -274,6 +274,14 @@ public class Unsoundness {
                 "Skipping write to property '__proto__'");
     }
 
+    /**
+     * Decides if results of operators and conversions on primitive values may be shared between nodes,
+     * which is not the case if the unsound choices they make are enabled by options or reported per node.
+     */
+    public boolean mayShareResultsOfPrimitiveOperations() {
+        return !options.isShowUnsoundnessUsage() && !options.isIgnoreUnlikelyUndefinedAsFirstArgumentToAddition();
+    }
+
     /**
      * Decides if undefined should be ignored as the first argument to addition.
      */
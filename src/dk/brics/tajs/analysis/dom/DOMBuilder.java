@@ -68,14 +68,13 @@ import dk.brics.tajs.analysis.dom.style.StyleBuilder;
 import dk.brics.tajs.analysis.dom.view.ViewBuilder;
 import dk.brics.tajs.analysis.dom.xpath.XPathResult;
 import dk.brics.tajs.flowgraph.EventType;
+import dk.brics.tajs.flowgraph.HTMLSummary;
 import dk.brics.tajs.lattice.ObjectLabel;
 import dk.brics.tajs.lattice.State;
 import dk.brics.tajs.lattice.Value;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Collections;
-import net.htmlparser.jericho.Element;
-import net.htmlparser.jericho.Source;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -121,7 +120,7 @@ public class DOMBuilder {
      * Its assumed that WINDOW is added to the state somewhere else before this function is invoked since its the
      * global objects when running in DOM mode.
      */
-    public static void build(Source document, Solver.SolverInterface c) {
+    public static void build(HTMLSummary document, Solver.SolverInterface c) {
         isDoneBuildingHTMLObjectLabels = false;
         // Reset DOM Registry
         DOMRegistry.reset();
@@ -303,20 +302,20 @@ public class DOMBuilder {
     /**
      * Build model of the HTML page, as it looks when loaded, before scripts are invoked.
      */
-    public static void registerHTML(Source document, Solver.SolverInterface c) { // TODO: (#118) more precise models of the HTML DOM?
+    public static void registerHTML(HTMLSummary document, Solver.SolverInterface c) { // TODO: (#118) more precise models of the HTML DOM?
         State s = c.getState();
         // Ignore HTML content?
         if (Options.get().isIgnoreHTMLContent()) {
             return;
         }
 
-        for (Element element : document.getAllElements()) {
+        for (HTMLSummary.Element element : document.getElements()) {
 
             // Pick up special properties
-            ObjectLabel label = DOMFunctions.getHTMLObjectLabel(element.getName());
+            ObjectLabel label = DOMFunctions.getHTMLObjectLabel(element.getTagName());
             if (label != null) {
                 // Special Property: id
-                String id = element.getAttributeValue("id");
+                String id = element.getId();
                 if (id != null) {
                     s.getExtras().addToMayMap(DOMRegistry.MayMaps.ELEMENTS_BY_ID.name(), id, Collections.singleton(label));
 
@@ -325,13 +324,13 @@ public class DOMBuilder {
                 }
 
                 // Special Property: name
-                String name = element.getAttributeValue("name");
+                String name = element.getName();
                 if (name != null) {
                     s.getExtras().addToMayMap(DOMRegistry.MayMaps.ELEMENTS_BY_NAME.name(), name, dk.brics.tajs.util.Collections.singleton(label));
                 }
 
                 // Special Property: tagName
-                String tagname = element.getName();
+                String tagname = element.getTagName();
                 if (tagname != null) {
                     s.getExtras().addToMayMap(DOMRegistry.MayMaps.ELEMENTS_BY_TAGNAME.name(), tagname, Collections.singleton(label));
                 }
@@ -17,6 +17,8 @@
 package dk.brics.tajs.analysis.dom;
 
 import dk.brics.tajs.analysis.FunctionCalls.CallInfo;
+import dk.brics.tajs.analysis.NativeFunctionModel;
+import dk.brics.tajs.analysis.NativeFunctionRegistry;
 import dk.brics.tajs.analysis.Solver;
 import dk.brics.tajs.analysis.dom.ajax.ActiveXObject;
 import dk.brics.tajs.analysis.dom.ajax.XmlHttpRequest;
@@ -325,6 +327,14 @@ public class DOMFunctions {
          * Evaluate the native function
      */
     public static Value evaluate(DOMObjects nativeObject, CallInfo call, Solver.SolverInterface c) {
+        return NativeFunctionRegistry.evaluate(nativeObject, call, c);
+    }
+
+    /**
+     * Finds the model for the given native DOM function.
+     * Called once per native function when the dispatch table is built, see {@link NativeFunctionRegistry}.
+     */
+    public static NativeFunctionModel<DOMObjects> resolve(DOMObjects nativeObject) {
         switch (nativeObject) {
             case WINDOW_ALERT:
             case WINDOW_ATOB:
@@ -374,9 +384,9 @@ public class DOMFunctions {
             case WINDOW_REQUEST_ANIMATION_FRAME:
             case WINDOW_WEBKIT_REQUEST_ANIMATION_FRAME:
             case WINDOW_MATCH_MEDIA:
-                return DOMWindow.evaluate(nativeObject, call, c);
+                return DOMWindow::evaluate;
             case CSSSTYLEDECLARATION_GETPROPERTYVALUE:
-                return CSSStyleDeclaration.evaluate(nativeObject, call, c);
+                return CSSStyleDeclaration::evaluate;
             case DOCUMENT_ADOPT_NODE:
             case DOCUMENT_CREATE_ATTRIBUTE:
             case DOCUMENT_CREATE_ATTRIBUTE_NS:
@@ -397,16 +407,16 @@ public class DOMFunctions {
             case DOCUMENT_IMPORT_NODE:
             case DOCUMENT_NORMALIZEDOCUMENT:
             case DOCUMENT_RENAME_NODE:
-                return DOMDocument.evaluate(nativeObject, call, c, DOMBuilder.getAllHtmlObjectLabels());
+                return (n, call, c) -> DOMDocument.evaluate(n, call, c, DOMBuilder.getAllHtmlObjectLabels());
             case DOCUMENTTYPE_CONSTRUCTOR:
-                return DOMDocumentType.evaluate(nativeObject, call, c);
+                return DOMDocumentType::evaluate;
             case DOMIMPLEMENTATION_HASFEATURE:
             case DOMIMPLEMENTATION_CREATEDOCUMENTTYPE:
             case DOMIMPLEMENTATION_CREATEDOCUMENT:
             case DOMIMPLEMENTATION_CREATEHTMLDOCUMENT:
-                return DOMImplementation.evaluate(nativeObject, call, c);
+                return DOMImplementation::evaluate;
             case NODELIST_ITEM:
-                return DOMNodeList.evaluate(nativeObject, call, c);
+                return DOMNodeList::evaluate;
             case TOKENLIST_CONSTRUCTOR:
             case TOKENLIST_PROTOTYPE:
             case TOKENLIST_INSTANCES:
@@ -421,7 +431,7 @@ public class DOMFunctions {
             case TOKENLIST_FOREACH:
             case TOKENLIST_KEYS:
             case TOKENLIST_VALUES:
-                return DOMTokenList.evaluate(nativeObject, call, c);
+                return DOMTokenList::evaluate;
             case ELEMENT_GET_ATTRIBUTE:
             case ELEMENT_GET_ATTRIBUTE_NS:
             case ELEMENT_GET_ATTRIBUTE_NODE:
@@ -446,13 +456,13 @@ public class DOMFunctions {
             case ELEMENT_SET_ID_ATTRIBUTE_NODE:
             case ELEMENT_MATCHES:
             case ELEMENT_MATCHES_SELECTOR:
-                return DOMElement.evaluate(nativeObject, call, c);
+                return DOMElement::evaluate;
             case CHARACTERDATA_SUBSTRINGDATA:
             case CHARACTERDATA_APPENDDATA:
             case CHARACTERDATA_INSERTDATA:
             case CHARACTERDATA_DELETEDATA:
             case CHARACTERDATA_REPLACEDATA:
-                return DOMCharacterData.evaluate(nativeObject, call, c);
+                return DOMCharacterData::evaluate;
             case NAMEDNODEMAP_PROTOTYPE_GETNAMEDITEM:
             case NAMEDNODEMAP_PROTOTYPE_SETNAMEDITEM:
             case NAMEDNODEMAP_PROTOTYPE_REMOVENAMEDITEM:
@@ -460,7 +470,7 @@ public class DOMFunctions {
             case NAMEDNODEMAP_PROTOTYPE_GETNAMEDITEMNS:
             case NAMEDNODEMAP_PROTOTYPE_SETNAMEDITEMNS:
             case NAMEDNODEMAP_PROTOTYPE_REMOVEDNAMEDITEMNS:
-                return DOMNamedNodeMap.evaluate(nativeObject, call, c);
+                return DOMNamedNodeMap::evaluate;
             case NODE_APPEND_CHILD:
             case NODE_CLONE_NODE:
             case NODE_HAS_CHILD_NODES:
@@ -472,51 +482,51 @@ public class DOMFunctions {
             case NODE_NORMALIZE:
             case NODE_COMPARE_DOCUMENT_POSITION:
             case NODE_CONTAINS:
-                return DOMNode.evaluate(nativeObject, call, c);
+                return DOMNode::evaluate;
             case TEXT_SPLIT_TEXT:
             case TEXT_REPLACE_WHOLE_TEXT:
-                return DOMText.evaluate(nativeObject, call, c);
+                return DOMText::evaluate;
             // HTML
             case HTMLANCHORELEMENT_BLUR:
             case HTMLANCHORELEMENT_FOCUS:
-                return HTMLAnchorElement.evaluate(nativeObject, call, c);
+                return HTMLAnchorElement::evaluate;
             case HTMLCOLLECTION_ITEM:
             case HTMLCOLLECTION_NAMEDITEM:
-                return HTMLCollection.evaluate(nativeObject, call, c);
+                return HTMLCollection::evaluate;
             case HTMLDOCUMENT_OPEN:
             case HTMLDOCUMENT_CLOSE:
             case HTMLDOCUMENT_WRITE:
             case HTMLDOCUMENT_WRITELN:
             case HTMLDOCUMENT_GET_ELEMENTS_BY_NAME:
             case HTMLDOCUMENT_GET_ELEMENTS_BY_CLASS_NAME:
-                return HTMLDocument.evaluate(nativeObject, call, c);
+                return HTMLDocument::evaluate;
             case HTMLELEMENT_GET_ELEMENTS_BY_CLASS_NAME:
             case HTMLELEMENT_BLUR:
             case HTMLELEMENT_FOCUS:
             case HTMLELEMENT_MATCHES:
             case HTMLELEMENT_MATCHES_SELECTOR:
-                return HTMLElement.evaluate(nativeObject, call, c);
+                return HTMLElement::evaluate;
             case HTMLIMAGEELEMENT_CONSTRUCTOR:
-                return HTMLImageElement.evaluate(nativeObject, call, c);
+                return HTMLImageElement::evaluate;
             case HTMLOPTIONSCOLLECTION_ITEM:
             case HTMLOPTIONSCOLLECTION_NAMEDITEM:
-                return HTMLOptionsCollection.evaluate(nativeObject, call, c);
+                return HTMLOptionsCollection::evaluate;
             case HTMLFORMELEMENT_SUBMIT:
             case HTMLFORMELEMENT_RESET:
-                return HTMLFormElement.evaluate(nativeObject, call, c);
+                return HTMLFormElement::evaluate;
             case HTMLINPUTELEMENT_CLICK:
             case HTMLINPUTELEMENT_BLUR:
             case HTMLINPUTELEMENT_FOCUS:
             case HTMLINPUTELEMENT_SELECT:
-                return HTMLInputElement.evaluate(nativeObject, call, c);
+                return HTMLInputElement::evaluate;
             case HTMLSELECTELEMENT_ADD:
             case HTMLSELECTELEMENT_REMOVE:
             case HTMLSELECTELEMENT_FOCUS:
             case HTMLSELECTELEMENT_BLUR:
-                return HTMLSelectElement.evaluate(nativeObject, call, c);
+                return HTMLSelectElement::evaluate;
             case HTMLTABLESECTIONELEMENT_DELETEROW:
             case HTMLTABLESECTIONELEMENT_INSERTROW:
-                return HTMLTableSectionElement.evaluate(nativeObject, call, c);
+                return HTMLTableSectionElement::evaluate;
             case HTMLTABLEELEMENT_CREATECAPTION:
             case HTMLTABLEELEMENT_CREATETFOOT:
             case HTMLTABLEELEMENT_CREATETHEAD:
@@ -525,56 +535,56 @@ public class DOMFunctions {
             case HTMLTABLEELEMENT_DELETETHEAD:
             case HTMLTABLEELEMENT_INSERTROW:
             case HTMLTABLEELEMENT_DELETEROW:
-                return HTMLTableElement.evaluate(nativeObject, call, c);
+                return HTMLTableElement::evaluate;
             case HTMLTABLEROWELEMENT_INSERTCELL:
             case HTMLTABLEROWELEMENT_DELETECELL:
-                return HTMLTableRowElement.evaluate(nativeObject, call, c);
+                return HTMLTableRowElement::evaluate;
             case HTMLMEDIAELEMENT_CONSTRUCTOR:
             case HTMLMEDIAELEMENT_CAN_PLAY_TYPE:
             case HTMLMEDIAELEMENT_FAST_SEEK:
             case HTMLMEDIAELEMENT_LOAD:
             case HTMLMEDIAELEMENT_PAUSE:
             case HTMLMEDIAELEMENT_PLAY:
-                return HTMLMediaElement.evaluate(nativeObject, call, c);
+                return HTMLMediaElement::evaluate;
             case HTMLTEXTAREAELEMENT_BLUR:
             case HTMLTEXTAREAELEMENT_FOCUS:
             case HTMLTEXTAREAELEMENT_SELECT:
-                return HTMLTextAreaElement.evaluate(nativeObject, call, c);
+                return HTMLTextAreaElement::evaluate;
             case HTMLAUDIOELEMENT_CONSTRUCTOR:
-                return HTMLAudioElement.evaluate(nativeObject, call, c);
+                return HTMLAudioElement::evaluate;
             case TIMERANGES_CONSTRUCTOR:
             case TIMERANGES_END:
             case TIMERANGES_START:
-                return TimeRanges.evaluate(nativeObject, call, c);
+                return TimeRanges::evaluate;
             case WEBGLRENDERINGCONTEXT_CONSTRCUTOR:
             case WEBGLRENDERINGCONTEXT_TAJS_UNSUPPORTED_FUNCTION:
-                return WebGLRenderingContext.evaluate(nativeObject, call, c);
+                return WebGLRenderingContext::evaluate;
             case AUDIOCONTEXT_CONSTRUCTOR:
             case AUDIOCONTEXT_CREATE_ANALYSER:
             case AUDIOCONTEXT_CREATE_OSCILLATOR:
             case AUDIOCONTEXT_CREATE_SCRIPT_PROCESSOR:
             case AUDIOCONTEXT_TAJS_UNSUPPORTED_FUNCTION:
-                return AudioContext.evaluate(nativeObject, call, c);
+                return AudioContext::evaluate;
             case AUDIOPARAM_CONSTRUCTOR:
             case AUDIOPARAM_TAJS_UNSUPPORTED_FUNCTION:
-                return AudioParam.evaluate(nativeObject, call, c);
+                return AudioParam::evaluate;
             case AUDIONODE_CONSTRUCTOR:
             case AUDIONODE_CONNECT:
             case AUDIONODE_DISCONNECT:
-                return AudioNode.evaluate(nativeObject, call, c);
+                return AudioNode::evaluate;
             case AUDIODESTINATIONNODE_CONSTRUCTOR:
-                return AudioDestinationNode.evaluate(nativeObject, call, c);
+                return AudioDestinationNode::evaluate;
             case SCRIPTPROCESSORNODE_CONSTRUCTOR:
-                return ScriptProcessorNode.evaluate(nativeObject, call, c);
+                return ScriptProcessorNode::evaluate;
             case OSCILLATORNODE_CONSTRUCTOR:
             case OSCILLATORNODE_SET_PERIODIC_WAVE:
             case OSCILLATORNODE_START:
             case OSCILLATORNODE_STOP:
-                return OscillatorNode.evaluate(nativeObject, call, c);
+                return OscillatorNode::evaluate;
             case HTMLCANVASELEMENT_GET_CONTEXT:
             case HTMLCANVASELEMENT_TO_DATA_URL:
             case HTMLCANVASELEMENT_CONSTRUCTOR:
-                return HTMLCanvasElement.evaluate(nativeObject, call, c);
+                return HTMLCanvasElement::evaluate;
             case CANVASRENDERINGCONTEXT2D_BEGIN_PATH:
             case CANVASRENDERINGCONTEXT2D_CLOSE_PATH:
             case CANVASRENDERINGCONTEXT2D_MOVE_TO:
@@ -610,54 +620,54 @@ public class DOMFunctions {
             case CANVASRENDERINGCONTEXT2D_GET_IMAGE_DATA:
             case CANVASRENDERINGCONTEXT2D_PUT_IMAGE_DATA:
             case CANVASGRADIENT_ADD_COLOR_STOP:
-                return CanvasRenderingContext2D.evaluate(nativeObject, call, c);
+                return CanvasRenderingContext2D::evaluate;
             case STORAGE_GET_ITEM:
             case STORAGE_KEY:
             case STORAGE_SET_ITEM:
             case STORAGE_REMOVE_ITEM:
-                return StorageElement.evaluate(nativeObject, call, c);
+                return StorageElement::evaluate;
             case STRINGLIST_CONTAINS:
             case STRINGLIST_CONSTRUCTOR:
             case STRINGLIST_ITEM:
-                return DOMStringList.evaluate(nativeObject, call, c);
+                return DOMStringList::evaluate;
             case CONFIGURATION_CAN_SET_PARAMETER:
             case CONFIGURATION_SET_PARAMETER:
             case CONFIGURATION_GET_PARAMETER:
             case CONFIGURATION_CONSTRUCTOR:
             case CONFIGURATION_INSTANCES:
             case CONFIGURATION_PROTOTYPE:
-                return DOMConfiguration.evaluate(nativeObject, call, c);
+                return DOMConfiguration::evaluate;
             case EVENT_CONSTRUCTOR:
             case EVENT_INIT_EVENT:
             case EVENT_PREVENT_DEFAULT:
             case EVENT_STOP_IMMEDIATE_PROPAGATION:
             case EVENT_STOP_PROPAGATION:
-                return Event.evaluate(nativeObject, call, c);
+                return Event::evaluate;
             case CUSTOM_EVENT_CONSTRUCTOR:
             case CUSTOM_EVENT_INIT_CUSTOM_EVENT:
-                return CustomEvent.evaluate(nativeObject, call, c);
+                return CustomEvent::evaluate;
             case EVENT_TARGET_ADD_EVENT_LISTENER:
             case WINDOW_ADD_EVENT_LISTENER:
             case EVENT_TARGET_REMOVE_EVENT_LISTENER:
             case WINDOW_REMOVE_EVENT_LISTENER:
             case EVENT_TARGET_DISPATCH_EVENT:
-                return EventTarget.evaluate(nativeObject, call, c);
+                return EventTarget::evaluate;
             case EVENT_LISTENER_HANDLE_EVENT:
-                return EventListener.evaluate(nativeObject, call, c);
+                return EventListener::evaluate;
             case DOCUMENT_EVENT_CREATE_EVENT:
-                return DocumentEvent.evaluate(nativeObject, call, c);
+                return DocumentEvent::evaluate;
             case MUTATION_EVENT_INIT_MUTATION_EVENT:
-                return MutationEvent.evaluate(nativeObject, call, c);
+                return MutationEvent::evaluate;
             case UI_EVENT_INIT_UI_EVENT:
-                return UIEvent.evaluate(nativeObject, call, c);
+                return UIEvent::evaluate;
             case MOUSE_EVENT_INIT_MOUSE_EVENT:
-                return MouseEvent.evaluate(nativeObject, call, c);
+                return MouseEvent::evaluate;
             case KEYBOARD_EVENT_GET_MODIFIER_STATE:
             case KEYBOARD_EVENT_INIT_KEYBOARD_EVENT:
-                return KeyboardEvent.evaluate(nativeObject, call, c);
+                return KeyboardEvent::evaluate;
             case WHEEL_EVENT_INIT_WHEEL_EVENT:
             case WHEEL_EVENT_INIT_WHEEL_EVENT_NS:
-                return WheelEvent.evaluate(nativeObject, call, c);
+                return WheelEvent::evaluate;
             case XML_HTTP_REQUEST_OPEN:
             case XML_HTTP_REQUEST_SEND:
             case XML_HTTP_REQUEST_ABORT:
@@ -665,7 +675,7 @@ public class DOMFunctions {
             case XML_HTTP_REQUEST_GET_RESPONSE_HEADER:
             case XML_HTTP_REQUEST_GET_ALL_RESPONSE_HEADERS:
             case XML_HTTP_REQUEST_CONSTRUCTOR:
-                return XmlHttpRequest.evaluate(nativeObject, call, c);
+                return XmlHttpRequest::evaluate;
             case ACTIVE_X_OBJECT_OPEN:
             case ACTIVE_X_OBJECT_SEND:
             case ACTIVE_X_OBJECT_ABORT:
@@ -673,19 +683,22 @@ public class DOMFunctions {
             case ACTIVE_X_OBJECT_GET_RESPONSE_HEADER:
             case ACTIVE_X_OBJECT_GET_ALL_RESPONSE_HEADERS:
             case ACTIVE_X_OBJECT_CONSTRUCTOR:
-                return ActiveXObject.evaluate(nativeObject, call, c);
+                return ActiveXObject::evaluate;
             case CSSSTYLEDECLARATION_CONSTRUCTOR:
-                return CSSStyleDeclaration.evaluate(nativeObject, call, c);
+                return CSSStyleDeclaration::evaluate;
             case MUTATIONOBSERVER_CONSTRUCTOR:
             case MUTATIONOBSERVER_OBSERVE:
-                return MutationObserver.evaluate(nativeObject, call, c);
-            default: {
-                c.getMonitoring().addMessage(call.getSourceNode(), Severity.HIGH, "TypeError, call to non-function (DOM): " + nativeObject);
-                return Value.makeNone();
-            }
+                return MutationObserver::evaluate;
+            default:
+                return DOMFunctions::evaluateNonFunction;
         }
     }
 
+    private static Value evaluateNonFunction(DOMObjects nativeObject, CallInfo call, Solver.SolverInterface c) {
+        c.getMonitoring().addMessage(call.getSourceNode(), Severity.HIGH, "TypeError, call to non-function (DOM): " + nativeObject);
+        return Value.makeNone();
+    }
+
     static boolean canRegisterElementIdentifiersForSetter(Str prop) {
         // TODO Unsoundly ignoring unknown property name registrations GitHub #296
         return prop.isMaybeSingleStr() && (prop.getStr().equals("id") || prop.getStr().equals("name"));
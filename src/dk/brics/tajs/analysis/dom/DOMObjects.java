@@ -912,7 +912,7 @@ public enum DOMObjects implements HostObject {
                     }
                     // extract event handlers from the new HTML code
                     HTMLParser parser = new HTMLParser(innerHTMLText.getStr(), loaderLocation.getLocation(), new DynamicLocationMaker(loaderLocation));
-                    DOMBuilder.registerHTML(parser.getHTML(), c);
+                    DOMBuilder.registerHTML(parser.getSummary(), c);
                     parser.getJavaScript().stream()
                             .map(Pair::getSecond)
                             .filter(e -> e.getKind() == Kind.EVENTHANDLER)
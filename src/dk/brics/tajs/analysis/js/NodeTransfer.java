@@ -22,6 +22,7 @@ import dk.brics.tajs.analysis.Exceptions;
 import dk.brics.tajs.analysis.FunctionCalls;
 import dk.brics.tajs.analysis.FunctionCalls.OrdinaryCallInfo;
 import dk.brics.tajs.analysis.InitialStateBuilder;
+import dk.brics.tajs.analysis.LoopUnrollingController;
 import dk.brics.tajs.analysis.ParallelTransfer;
 import dk.brics.tajs.analysis.PropVarOperations;
 import dk.brics.tajs.analysis.Solver;
@@ -261,7 +262,7 @@ public class NodeTransfer implements NodeVisitor {
     public void visit(BinaryOperatorNode n) {
         Value arg1 = UnknownValueResolver.getRealValue(c.getState().readRegister(n.getArg1Register()), c.getState());
         Value arg2 = UnknownValueResolver.getRealValue(c.getState().readRegister(n.getArg2Register()), c.getState());
-        Map<AbstractNode, Set<PartitioningQualifier>> partitioningQualifiers = Partitioning.getPartitionQualifiersForBinop(n, arg1, arg2);
+        Map<AbstractNode, Set<PartitioningQualifier>> partitioningQualifiers = Partitioning.getPartitionQualifiersForBinop(n, arg1, arg2, c);
         Value v = partitioningQualifiers.isEmpty() ?
                 Operators.binop(arg1, n.getOperator(), arg2, c) :
                 PartitionedValue.make(partitioningQualifiers.entrySet().stream().collect(
@@ -565,7 +566,7 @@ public class NodeTransfer implements NodeVisitor {
                     !RefinerOptions.get().isWritePropertyRefineEnabled() || !propertystr.isMaybeStrIdentifier();
             if (doNotUseRefinementAtWrite && !RefinerOptions.get().isSpecializeImpreciseClosureVariablesWithOnlyOneWrite()) {
                 // no refinement or specialization
-                if (!Partitioning.usePartitionedWriteProperty(propertystr, v)) { // not using value partitioning
+                if (!Partitioning.usePartitionedWriteProperty(propertystr, v, c)) { // not using value partitioning
                     if (!RefinerOptions.get().isSpecializeImpreciseClosureVariablesWithOnlyOneWrite()) {
                         // write the object property value, and separately for "undefined"/"null"/"NaN"
                         if (!propertystr.isNone())
@@ -1252,9 +1253,12 @@ public class NodeTransfer implements NodeVisitor {
 
         Value v = c.getState().readRegister(n.getIfNode().getConditionRegister());
         v = Conversion.toBoolean(UnknownValueResolver.getRealValue(v, c.getState()));
-        if (v.isMaybeTrueButNotFalse() || v.isMaybeFalseButNotTrue()) {
+        LoopUnrollingController controller = c.getAnalysis().getLoopUnrollingController();
+        if ((v.isMaybeTrueButNotFalse() || v.isMaybeFalseButNotTrue()) && (controller == null || c.isScanning() || controller.shouldUnroll(n))) {
             // branch condition is determinate, switch context and propagate only to specialized successor
             Context specializedContext = c.getAnalysis().getContextSensitivityStrategy().makeNextLoopUnrollingContext(c.getState().getContext(), n);
+            if (controller != null && !c.isScanning() && v.isMaybeTrueButNotFalse())
+                controller.recordUnrolling(n, c.getState().getContext(), specializedContext);
             c.propagateToBasicBlock(c.getState().clone(), c.getState().getBasicBlock().getSingleSuccessor(), specializedContext);
             c.getState().setToBottom();
         } // otherwise, just ordinary propagation like no-op
@@ -1268,6 +1272,9 @@ public class NodeTransfer implements NodeVisitor {
         // TODO: do nothing if loop unrolling is disabled or in scanning mode
 
         // branch condition is determinate, switch context and propagate only to generalized successor
+        LoopUnrollingController controller = c.getAnalysis().getLoopUnrollingController();
+        if (controller != null && !c.isScanning())
+            controller.recordExit(n, c.getState().getContext());
         Context generalizedContext = c.getAnalysis().getContextSensitivityStrategy().makeLoopExitContext(c.getState().getContext(), n);
         c.propagateToBasicBlock(c.getState().clone(), c.getState().getBasicBlock().getSingleSuccessor(), generalizedContext);
         c.getState().setToBottom();
@@ -19,6 +19,7 @@ package dk.brics.tajs.analysis.js;
 import dk.brics.tajs.analysis.Conversion;
 import dk.brics.tajs.analysis.Conversion.Hint;
 import dk.brics.tajs.analysis.Exceptions;
+import dk.brics.tajs.analysis.PrimitiveOperationCache;
 import dk.brics.tajs.analysis.Solver;
 import dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode;
 import dk.brics.tajs.flowgraph.jsnodes.UnaryOperatorNode;
@@ -1071,7 +1072,25 @@ public class Operators {
         return bitwise(BitwiseOp.XOR, arg1, arg2, c);
     }
 
+    /**
+     * Evaluates a binary operator.
+     * Results for primitive operands are memoized, see {@link PrimitiveOperationCache}.
+     */
     public static Value binop(Value v1, BinaryOperatorNode.Op op, Value v2, Solver.SolverInterface c) {
+        boolean memoize = op != BinaryOperatorNode.Op.IN && op != BinaryOperatorNode.Op.INSTANCEOF // may throw exceptions on primitive values
+                && PrimitiveOperationCache.isMemoizable(v1, c) && PrimitiveOperationCache.isMemoizable(v2, c);
+        if (memoize) {
+            Value v = PrimitiveOperationCache.get(op, v1, v2);
+            if (v != null)
+                return v;
+        }
+        Value v = evaluateBinop(v1, op, v2, c);
+        if (memoize)
+            PrimitiveOperationCache.put(op, v1, v2, v);
+        return v;
+    }
+
+    private static Value evaluateBinop(Value v1, BinaryOperatorNode.Op op, Value v2, Solver.SolverInterface c) {
         Value v;
         switch (op) {
             case ADD:
@@ -1143,7 +1162,24 @@ public class Operators {
         return v;
     }
 
+    /**
+     * Evaluates a unary operator.
+     * Results for primitive operands are memoized, see {@link PrimitiveOperationCache}.
+     */
     public static Value unop(UnaryOperatorNode.Op op, Value arg, Solver.SolverInterface c) {
+        boolean memoize = PrimitiveOperationCache.isMemoizable(arg, c);
+        if (memoize) {
+            Value v = PrimitiveOperationCache.get(op, arg, null);
+            if (v != null)
+                return v;
+        }
+        Value v = evaluateUnop(op, arg, c);
+        if (memoize)
+            PrimitiveOperationCache.put(op, arg, null, v);
+        return v;
+    }
+
+    private static Value evaluateUnop(UnaryOperatorNode.Op op, Value arg, Solver.SolverInterface c) {
         Value v;
         switch (op) {
             case COMPLEMENT:
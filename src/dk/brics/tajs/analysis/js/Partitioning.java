@@ -70,25 +70,34 @@ public class Partitioning {
     /**
      * Chooses the partitioning for a binop.
      */
-    static Map<AbstractNode, Set<PartitioningQualifier>> getPartitionQualifiersForBinop(BinaryOperatorNode n, Value arg1, Value arg2) {
+    static Map<AbstractNode, Set<PartitioningQualifier>> getPartitionQualifiersForBinop(BinaryOperatorNode n, Value arg1, Value arg2, Solver.SolverInterface c) {
         if (n.getOperator() != BinaryOperatorNode.Op.ADD || !(arg1 instanceof PartitionedValue || arg2 instanceof PartitionedValue)) {
             // only partition at '+' and if one or both are already partitioned
             return Collections.emptyMap();
         }
         // at least one argument is partitioned
+        Map<AbstractNode, Set<PartitioningQualifier>> res;
         if (arg1 instanceof PartitionedValue && arg2 instanceof PartitionedValue) {
             // both arguments are partitioned, use intersection of the partition nodes (using union would also be sound)
             PartitionedValue v1 = (PartitionedValue) arg1;
             PartitionedValue v2 = (PartitionedValue) arg2;
-            return v1.getPartitionNodes().stream()
+            res = v1.getPartitionNodes().stream()
                     .filter(pn -> v2.getPartitionNodes().contains(pn))
                     .collect(Collectors.toMap(pn -> pn, v1::getPartitionQualifiers));
         } else {
             // exactly one of the arguments is partitioned (the common case), use its partitions
-            return arg1 instanceof PartitionedValue ?
+            res = arg1 instanceof PartitionedValue ?
                     ((PartitionedValue) arg1).getPartitionQualifiers() :
                     ((PartitionedValue) arg2).getPartitionQualifiers();
         }
+        PartitioningBudget budget = c.getAnalysis().getPartitioningBudget();
+        if (budget != null) {
+            res = res.entrySet().stream()
+                    .filter(e -> !budget.isDisabled(e.getKey()))
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            res.forEach((pn, qs) -> budget.recordCost(pn, qs.size(), c));
+        }
+        return res;
     }
 
     /**
@@ -103,15 +112,21 @@ public class Partitioning {
         if (freeVariablePartitioning != null && freeVariablePartitioning.hasInfoForVariable(varname)) {
             Set<PartitioningQualifier> partitioningQualifiers = freeVariablePartitioning.getInfoForVariable(varname);
             v = UnknownValueResolver.getRealValue(v, c.getState());
-            Optional<AbstractNode> partitionNode = ((PartitionedValue) v).getPartitionNodes().stream().filter(n -> partitioningQualifiers.stream().anyMatch(p -> p.getNode().equals(n))).findAny(); // TODO: currently picking partition node arbitrarily - could compare precision if different partitions are available and pick the best
+            PartitioningBudget budget = c.getAnalysis().getPartitioningBudget();
+            Optional<AbstractNode> partitionNode = ((PartitionedValue) v).getPartitionNodes().stream().filter(n -> budget == null || !budget.isDisabled(n)).filter(n -> partitioningQualifiers.stream().anyMatch(p -> p.getNode().equals(n))).findAny(); // TODO: currently picking partition node arbitrarily - could compare precision if different partitions are available and pick the best
             if (partitionNode.isPresent()) {
                 Value finalV = v;
                 v = Value.join(partitioningQualifiers.stream()
                         .filter(p -> p.getNode().equals(partitionNode.get()))
                         .map(q -> PartitionedValue.getPartition(finalV, partitionNode.get(), q))
                         .collect(Collectors.toSet()));
+                Value vi = PartitionedValue.ignorePartitions(finalV);
+                if (budget != null) {
+                    budget.recordCost(partitionNode.get(), 1, c);
+                    if (!v.equals(vi))
+                        budget.recordBenefit(partitionNode.get(), c);
+                }
                 if (REPORT_USAGE) { // TODO: move to monitoring?
-                    Value vi = PartitionedValue.ignorePartitions(finalV);
                     if (!v.equals(vi)) {
                         if (!log.isDebugEnabled() && log.isInfoEnabled())
                             System.out.print("\r");
@@ -137,11 +152,12 @@ public class Partitioning {
      */
     static Value partitionPropValue(ReadPropertyNode n, Set<ObjectLabel> objlabels, Value propertyval, Value propertystr, Set<ObjectLabel> base_objs, Solver.SolverInterface c, Filtering filtering, PropVarOperations pv) {
         // choose partitioning node
+        PartitioningBudget budget = c.getAnalysis().getPartitioningBudget();
         ReadPropertyNode partitionNode;
         if (propertyval instanceof PartitionedValue) { // If the value is already partitioned and the property register must equals the property register of this node, they can use the same partition node.
             MustEquals mustEquals = c.getState().getMustEquals();
             Set<Integer> mustEqualsRegisters = mustEquals.getMustEquals(n.getPropertyRegister()).stream().flatMap(objProp -> mustEquals.getMustEquals(objProp.getObjectLabel(), objProp.getPropertyName()).stream()).collect(Collectors.toSet());
-            partitionNode = (ReadPropertyNode) ((PartitionedValue) propertyval).getPartitionNodes().stream().filter(pn -> !pn.equals(n)).filter(pn -> pn instanceof ReadPropertyNode).filter(pn -> mustEqualsRegisters.contains(((ReadPropertyNode) pn).getPropertyRegister())).findAny().orElse(n);
+            partitionNode = (ReadPropertyNode) ((PartitionedValue) propertyval).getPartitionNodes().stream().filter(pn -> !pn.equals(n)).filter(pn -> pn instanceof ReadPropertyNode).filter(pn -> budget == null || !budget.isDisabled(pn)).filter(pn -> mustEqualsRegisters.contains(((ReadPropertyNode) pn).getPropertyRegister())).findAny().orElse(n);
         } else {
             partitionNode = n;
         }
@@ -161,6 +177,8 @@ public class Partitioning {
             addPartitionQualifierForProperty.accept(Property.makeDefaultNumericProperty());
         if (other.isMaybeStrSomeNonNumeric())
             addPartitionQualifierForProperty.accept(Property.makeDefaultOtherProperty());
+        if (budget != null && !budget.mayPartition(partitionNode, partitioningQualifiers, c)) // partitioning stopped or too many partitions, read without partitioning
+            return pv.readPropertyValue(objlabels, propertystr, base_objs);
         if (REPORT_USAGE) { // TODO: move to monitoring?
             if (!log.isDebugEnabled() && log.isInfoEnabled())
                 System.out.print("\r");
@@ -284,10 +302,20 @@ public class Partitioning {
      * Decides whether or not to use value partitioning at property write operation.
      * Returns true if both the property name value and the value to be written are partitioned values and their partitions have non-disjoint partitioning nodes.
      */
-    static boolean usePartitionedWriteProperty(Value propName, Value valueToWrite) {
+    static boolean usePartitionedWriteProperty(Value propName, Value valueToWrite, Solver.SolverInterface c) {
         if (!Options.get().isPropNamePartitioning() || !(propName instanceof PartitionedValue) || !(valueToWrite instanceof PartitionedValue))
             return false;
-         return ((PartitionedValue) propName).getPartitionNodes().stream().anyMatch(pn -> ((PartitionedValue) valueToWrite).getPartitionNodes().contains(pn));
+         return getWritePartitionNodes(propName, valueToWrite, c).findAny().isPresent();
+    }
+
+    /**
+     * Returns the enabled partitioning nodes that are common to the property name and the value to be written.
+     */
+    private static Stream<AbstractNode> getWritePartitionNodes(Value propName, Value valueToWrite, Solver.SolverInterface c) {
+        PartitioningBudget budget = c.getAnalysis().getPartitioningBudget();
+        return ((PartitionedValue) propName).getPartitionNodes().stream()
+                .filter(pn -> ((PartitionedValue) valueToWrite).getPartitionNodes().contains(pn))
+                .filter(pn -> budget == null || !budget.isDisabled(pn));
     }
 
     /**
@@ -296,7 +324,7 @@ public class Partitioning {
      */
     static void writePropertyWithPartitioning(ParallelTransfer pt, Set<ObjectLabel> objlabels, Value propName, Value valueToWrite, WritePropertyNode n, Solver.SolverInterface c, PropVarOperations pv) {
         // pick the partition node with the highest number of single-string partition values for the property name
-        Stream<AbstractNode> partitionNodes = ((PartitionedValue) propName).getPartitionNodes().stream().filter(pn -> ((PartitionedValue) valueToWrite).getPartitionNodes().contains(pn));
+        Stream<AbstractNode> partitionNodes = getWritePartitionNodes(propName, valueToWrite, c);
         AbstractNode partitionNode = partitionNodes.max((pn1, pn2) -> {
             java.util.function.Function<AbstractNode, Long> precisePartitionCounter = pn -> ((PartitionedValue) propName).getPartitionQualifiers(pn).stream().filter(q -> ((PartitionedValue) propName).getPartition(pn, q).isMaybeSingleStr()).count();
             long c1 = precisePartitionCounter.apply(pn1);
@@ -304,6 +332,7 @@ public class Partitioning {
             return (c1 > c2) ? 1 : (c1 < c2) ? -1 : (pn2.getIndex() - pn1.getIndex());
         }).orElseGet(() -> {throw new AnalysisException("Empty partitionNodes!?");});
         // perform the write for each partition
+        PartitioningBudget budget = c.getAnalysis().getPartitioningBudget();
         Value resolvedValueToWrite = UnknownValueResolver.getRealValue(valueToWrite, c.getState());
         for (PartitioningQualifier q : ((PartitionedValue)propName).getPartitionQualifiers(partitionNode)) {
             Value partitionedPropName = ((PartitionedValue)propName).getPartition(q.getNode(), q);
@@ -311,8 +340,14 @@ public class Partitioning {
             if (c.getAnalysis().getUnsoundness().mayIgnorePartition(n, partitionedValueToWrite)) {
                 continue;
             }
-            if (!partitionedPropName.isNone() && !partitionedValueToWrite.isNone())
+            if (!partitionedPropName.isNone() && !partitionedValueToWrite.isNone()) {
                 pt.add(() -> pv.writeProperty(objlabels, partitionedPropName, partitionedValueToWrite, true, n.isDecl()));
+                if (budget != null) {
+                    budget.recordCost(partitionNode, 1, c);
+                    if (partitionedPropName.isMaybeSingleStr())
+                        budget.recordBenefit(partitionNode, c);
+                }
+            }
         }
         if (REPORT_USAGE) { // TODO: move to monitoring?
             if (!log.isDebugEnabled() && log.isInfoEnabled())
@@ -345,6 +380,9 @@ public class Partitioning {
                     .collect(Collectors.toMap(Pair::getFirst, p -> (PartitionedValue) p.getSecond()));
             // find partitioning nodes that are common to the partitioned free variables
             Set<AbstractNode> pns = getIntersectedPartitionNodes(partitionedValuesForVarNames.values());
+            PartitioningBudget budget = c.getAnalysis().getPartitioningBudget();
+            if (pns != null && budget != null)
+                pns.removeIf(budget::isDisabled);
             if (pns != null && !pns.isEmpty()) { // if pns is not null and empty, it means incomparable partition values
                 // build partitioned function value
                 Map<AbstractNode, Map<PartitioningQualifier, Value>> res =
@@ -356,6 +394,8 @@ public class Partitioning {
                                         .collect(Collectors.toMap(
                                                 q -> q,
                                                 q -> Value.makeObject(fn).setFreeVariablePartitioning(FreeVariablePartitioning.make(partitionedValuesForVarNames.keySet(), q).join(inheritingFreeVariablePartitioning))))));
+                if (budget != null)
+                    res.forEach((pn, qs) -> budget.recordCost(pn, qs.size(), c));
                 if (REPORT_USAGE) { // TODO: move to monitoring?
                     if (!log.isDebugEnabled() && log.isInfoEnabled())
                         System.out.print("\r");
@@ -369,8 +409,9 @@ public class Partitioning {
                             .map(v -> Pair.make(v, c.getState().readVariableDirect(v)))
                             .filter(p -> p.getSecond().getFreeVariablePartitioning() == null && !(p.getSecond() instanceof PartitionedValue) && p.getSecond().getObjectLabels() != null && p.getSecond().getObjectLabels().stream().anyMatch(obj -> obj.getKind() == ObjectLabel.Kind.FUNCTION))
                             .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond));
-            if (!unpartitionedFreeVariables.isEmpty()) {
-                PartitioningQualifier q = PartitioningQualifier.make(n, Property.makeOrdinaryProperty(PKey.make(Value.makeStr(unpartitionedFreeVariables.values().toString())))); // FIXME: hacky partition qualifier
+            PartitioningQualifier q = unpartitionedFreeVariables.isEmpty() ? null :
+                    PartitioningQualifier.make(n, Property.makeOrdinaryProperty(PKey.make(Value.makeStr(unpartitionedFreeVariables.values().toString())))); // FIXME: hacky partition qualifier
+            if (q != null && (budget == null || budget.mayPartition(n, Collections.singleton(q), c))) {
                 unpartitionedFreeVariables.forEach((key, value) -> c.getAnalysis().getPropVarOperations().writePropertyWithAttributes(c.getState().getExecutionContext().getVariableObject(),
                         StringPKey.make(key),
                         PartitionedValue.make(n, mapOf(q, value))));
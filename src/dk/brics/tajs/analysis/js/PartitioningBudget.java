@@ -0,0 +1,181 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis.js;
+
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.lattice.PartitioningQualifier;
+import dk.brics.tajs.util.Collectors;
+import org.apache.log4j.Logger;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Bounds value partitioning and accounts for its cost per partitioning node.
+ * <p>
+ * The cost of a partitioning node is the number of per-partition operations performed on values partitioned at that node
+ * (property reads, binary operations, property writes and closure instantiations).
+ * The benefit is the number of those operations whose result is more precise than without partitioning
+ * (property writes with a single property name and variable reads refined by the context).
+ * Partitioning at a node is stopped when the node has created more partitions than the per-node limit, or, if cost accounting is enabled,
+ * when its cost exceeds its benefit by more than a fixed ratio.
+ * A partitioning that would create more partitions than the per-state limit is skipped, but the node remains enabled.
+ * Stopping partitioning is sound, as the unpartitioned value is always available.
+ */
+public class PartitioningBudget {
+
+    private static Logger log = Logger.getLogger(PartitioningBudget.class);
+
+    /**
+     * Cost a partitioning node may reach before cost accounting can stop it.
+     */
+    private static final int COST_THRESHOLD = 100;
+
+    /**
+     * Maximal ratio between cost and benefit for a partitioning node.
+     */
+    private static final int COST_BENEFIT_RATIO = 10;
+
+    private static final class NodeInfo {
+
+        final Set<PartitioningQualifier> qualifiers = newSet();
+
+        long cost;
+
+        long benefit;
+
+        int skipped;
+
+        String disabled; // reason, null if enabled
+    }
+
+    private final int node_limit;
+
+    private final int state_limit;
+
+    private final boolean cost_accounting;
+
+    private final Map<AbstractNode, NodeInfo> nodes = newMap();
+
+    /**
+     * Creates a new partitioning budget.
+     *
+     * @param node_limit      maximum number of partitions per partitioning node, -1 if unlimited
+     * @param state_limit     maximum number of partitions of a single partitioning, -1 if unlimited
+     * @param cost_accounting if set, stop partitioning at nodes where the cost exceeds the benefit
+     */
+    public PartitioningBudget(int node_limit, int state_limit, boolean cost_accounting) {
+        this.node_limit = node_limit;
+        this.state_limit = state_limit;
+        this.cost_accounting = cost_accounting;
+    }
+
+    /**
+     * Checks whether partitioning at the given node has been stopped.
+     */
+    public boolean isDisabled(AbstractNode pn) {
+        NodeInfo info = nodes.get(pn);
+        return info != null && info.disabled != null;
+    }
+
+    /**
+     * Checks whether a value may be partitioned at the given node with the given partitions,
+     * and accounts for the partitions if so.
+     */
+    boolean mayPartition(AbstractNode pn, Collection<PartitioningQualifier> qualifiers, Solver.SolverInterface c) {
+        NodeInfo info = nodes.computeIfAbsent(pn, k -> new NodeInfo());
+        if (info.disabled != null)
+            return false;
+        if (state_limit >= 0 && qualifiers.size() > state_limit) {
+            if (!c.isScanning())
+                info.skipped++;
+            return false;
+        }
+        if (c.isScanning())
+            return true;
+        info.qualifiers.addAll(qualifiers);
+        if (node_limit >= 0 && info.qualifiers.size() > node_limit) {
+            disable(pn, info, "partition limit " + node_limit + " exceeded");
+            return false;
+        }
+        recordCost(pn, qualifiers.size(), c);
+        return true;
+    }
+
+    /**
+     * Records the given number of per-partition operations on values partitioned at the given node.
+     */
+    void recordCost(AbstractNode pn, int operations, Solver.SolverInterface c) {
+        if (c.isScanning())
+            return;
+        NodeInfo info = nodes.computeIfAbsent(pn, k -> new NodeInfo());
+        info.cost += operations;
+        if (cost_accounting && info.disabled == null && info.cost > COST_THRESHOLD && info.cost > COST_BENEFIT_RATIO * info.benefit)
+            disable(pn, info, "cost " + info.cost + " exceeds benefit " + info.benefit);
+    }
+
+    /**
+     * Records a per-partition operation on a value partitioned at the given node that is more precise than without partitioning.
+     */
+    void recordBenefit(AbstractNode pn, Solver.SolverInterface c) {
+        if (c.isScanning())
+            return;
+        nodes.computeIfAbsent(pn, k -> new NodeInfo()).benefit++;
+    }
+
+    private static void disable(AbstractNode pn, NodeInfo info, String reason) {
+        info.disabled = reason;
+        log.debug("Stopping value partitioning at " + pn.getSourceLocation() + ": " + reason);
+    }
+
+    /**
+     * Returns the partitioning nodes where partitioning has been stopped.
+     */
+    public Set<AbstractNode> getStoppedNodes() {
+        return nodes.entrySet().stream().filter(e -> e.getValue().disabled != null).map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+
+    /**
+     * Returns a description of the partitioning decisions.
+     */
+    public String getStatistics() {
+        StringBuilder b = new StringBuilder();
+        int partitions = 0, skipped = 0, disabled = 0;
+        long cost = 0, benefit = 0;
+        for (NodeInfo info : nodes.values()) {
+            partitions += info.qualifiers.size();
+            skipped += info.skipped;
+            cost += info.cost;
+            benefit += info.benefit;
+            if (info.disabled != null)
+                disabled++;
+        }
+        b.append("Value partitioning: nodes=").append(nodes.size()).append(", partitions=").append(partitions)
+                .append(", cost=").append(cost).append(", benefit=").append(benefit)
+                .append(", skipped=").append(skipped).append(", nodes stopped=").append(disabled);
+        nodes.forEach((pn, info) -> {
+            if (info.disabled != null)
+                b.append("\n  ").append(pn.getSourceLocation()).append(": ").append(info.disabled);
+        });
+        return b.toString();
+    }
+}
@@ -191,6 +191,7 @@ public class UserFunctionCalls {
 
         Function f = obj_f.getFunction();
         AbstractNode n = call.getSourceNode();
+        c.getFlowGraph().translatePendingBody(f); // the context sensitivity strategy and the activation object need the function body
 
         if (log.isDebugEnabled())
             log.debug("enterUserFunction " + (implicit ? "(implicit)" : "") + "from node " + n.getIndex() + " at " + n.getSourceLocation()
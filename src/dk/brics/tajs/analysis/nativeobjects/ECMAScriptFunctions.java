@@ -18,6 +18,8 @@ package dk.brics.tajs.analysis.nativeobjects;
 
 import dk.brics.tajs.analysis.Exceptions;
 import dk.brics.tajs.analysis.FunctionCalls.CallInfo;
+import dk.brics.tajs.analysis.NativeFunctionModel;
+import dk.brics.tajs.analysis.NativeFunctionRegistry;
 import dk.brics.tajs.analysis.Solver;
 import dk.brics.tajs.lattice.ObjectLabel;
 import dk.brics.tajs.lattice.ObjectLabel.Kind;
@@ -43,7 +45,14 @@ public class ECMAScriptFunctions {
     public static Value evaluate(ECMAScriptObjects nativeobject, CallInfo call, Solver.SolverInterface c) {
         if (log.isDebugEnabled())
             log.debug("native function: " + nativeobject);
-        Value res;
+        return NativeFunctionRegistry.evaluate(nativeobject, call, c);
+    }
+
+    /**
+     * Finds the model for the given native ECMAScript function.
+     * Called once per native function when the dispatch table is built, see {@link NativeFunctionRegistry}.
+     */
+    public static NativeFunctionModel<ECMAScriptObjects> resolve(ECMAScriptObjects nativeobject) {
         switch (nativeobject) {
 
             case OBJECT:
@@ -71,21 +80,18 @@ public class ECMAScriptFunctions {
             case OBJECT_PREVENTEXTENSIONS:
             case OBJECT_SEAL:
             case OBJECT_VALUES:
-                res = JSObject.evaluate(nativeobject, call, c);
-                break;
+                return JSObject::evaluate;
 
             case FUNCTION:
             case FUNCTION_TOSTRING:
             case FUNCTION_APPLY:
             case FUNCTION_CALL:
             case FUNCTION_PROTOTYPE:
-                res = JSFunction.evaluate(nativeobject, call, c);
-                break;
+                return JSFunction::evaluate;
 
             case JSON_PARSE:
             case JSON_STRINGIFY:
-                res = JSJson.evaluate(nativeobject, call, c);
-                break;
+                return JSJson::evaluate;
 
             case ARRAY:
             case ARRAY_JOIN:
@@ -102,8 +108,7 @@ public class ECMAScriptFunctions {
             case ARRAY_UNSHIFT:
             case ARRAY_INDEXOF:
             case ARRAY_ISARRAY:
-                res = JSArray.evaluate(nativeobject, call, c);
-                break;
+                return JSArray::evaluate;
 
             case NUMBER:
             case NUMBER_TOEXPONENTIAL:
@@ -116,8 +121,7 @@ public class ECMAScriptFunctions {
             case NUMBER_ISSAFEINTEGER:
             case NUMBER_ISINTEGER:
             case NUMBER_ISNAN:
-                res = JSNumber.evaluate(nativeobject, call, c);
-                break;
+                return JSNumber::evaluate;
 
             case EVAL_ERROR:
             case RANGE_ERROR:
@@ -128,16 +132,14 @@ public class ECMAScriptFunctions {
             case ERROR:
             case ERROR_CAPTURESTACKTRACE:
             case ERROR_TOSTRING:
-                res = JSError.evaluate(nativeobject, call, c);
-                break;
+                return JSError::evaluate;
 
             case REGEXP:
             case REGEXP_COMPILE:
             case REGEXP_EXEC:
             case REGEXP_TEST:
             case REGEXP_TOSTRING:
-                res = JSRegExp.evaluate(nativeobject, call, c);
-                break;
+                return JSRegExp::evaluate;
 
             case SYMBOL:
             case SYMBOL_TOSTRING:
@@ -145,8 +147,7 @@ public class ECMAScriptFunctions {
             case SYMBOL_KEYFOR:
             case SYMBOL_TOSOURCE:
             case SYMBOL_VALUEOF:
-                res = JSSymbol.evaluate(nativeobject, call, c);
-                break;
+                return JSSymbol::evaluate;
 
             case DATE:
             case DATE_GETDATE:
@@ -196,8 +197,7 @@ public class ECMAScriptFunctions {
             case DATE_SETYEAR:
             case DATE_TOGMTSTRING:
             case DATE_NOW:
-                res = JSDate.evaluate(nativeobject, call, c);
-                break;
+                return JSDate::evaluate;
 
             case STRING:
             case STRING_VALUEOF:
@@ -227,14 +227,12 @@ public class ECMAScriptFunctions {
             case STRING_STARTSWITH:
             case STRING_INCLUDES:
             case STRING_CODEPOINTAT:
-                res = JSString.evaluate(nativeobject, call, c);
-                break;
+                return JSString::evaluate;
 
             case BOOLEAN:
             case BOOLEAN_TOSTRING:
             case BOOLEAN_VALUEOF:
-                res = JSBoolean.evaluate(nativeobject, call, c);
-                break;
+                return JSBoolean::evaluate;
 
             case MATH_ABS:
             case MATH_SIN:
@@ -271,8 +269,7 @@ public class ECMAScriptFunctions {
             case MATH_LOG2:
             case MATH_LOG1P:
             case MATH_EXPM1:
-                res = JSMath.evaluate(nativeobject, call, c);
-                break;
+                return JSMath::evaluate;
 
             case EVAL:
             case PARSEINT:
@@ -287,13 +284,11 @@ public class ECMAScriptFunctions {
             case ALERT:
             case ESCAPE:
             case UNESCAPE:
-                res = JSGlobal.evaluate(nativeobject, call, c);
-                break;
+                return JSGlobal::evaluate;
 
             case PROXY:
             case PROXY_TOSTRING:
-                res = JSProxy.evaluate(nativeobject, call, c);
-                break;
+                return JSProxy::evaluate;
 
             case ARRAY_PROTOTYPE:
             case BOOLEAN_PROTOTYPE:
@@ -311,16 +306,23 @@ public class ECMAScriptFunctions {
             case SYNTAX_ERROR_PROTOTYPE:
             case TYPE_ERROR_PROTOTYPE:
             case URI_ERROR_PROTOTYPE:
-                throw new AnalysisException("Native object is not a function: " + nativeobject);
+                return ECMAScriptFunctions::evaluateNonFunction;
 
             default:
-                String msg = call.getSourceNode().getSourceLocation() + ": No transfer function for native function " + nativeobject;
-                if (c.getAnalysis().getUnsoundness().maySkipMissingModelOfNativeFunction(c.getNode(), nativeobject)) {
-                    return Value.makeUndef();
-                }
-                throw new AnalysisLimitationException.AnalysisModelLimitationException(msg);
+                return ECMAScriptFunctions::evaluateMissingModel;
+        }
+    }
+
+    private static Value evaluateNonFunction(ECMAScriptObjects nativeobject, CallInfo call, Solver.SolverInterface c) {
+        throw new AnalysisException("Native object is not a function: " + nativeobject);
+    }
+
+    private static Value evaluateMissingModel(ECMAScriptObjects nativeobject, CallInfo call, Solver.SolverInterface c) {
+        String msg = call.getSourceNode().getSourceLocation() + ": No transfer function for native function " + nativeobject;
+        if (c.getAnalysis().getUnsoundness().maySkipMissingModelOfNativeFunction(c.getNode(), nativeobject)) {
+            return Value.makeUndef();
         }
-        return res;
+        throw new AnalysisLimitationException.AnalysisModelLimitationException(msg);
     }
 
     /**
@@ -62,6 +62,8 @@ import static dk.brics.tajs.util.Collections.singleton;
  */
 public class JSString {
 
+    private static final Pattern LTRIM = Pattern.compile("^[\\s\\uFEFF\\xA0]+");
+
     private JSString() {
     }
 
@@ -208,8 +210,7 @@ public class JSString {
                         || thisString.isMaybeStrOtherIdentifierParts()) {
                     trimmedString = thisString;
                 } else if (thisString.isMaybeStrPrefix() && (nativeobject == STRING_TRIM || nativeobject == STRING_TRIMLEFT)) {
-                    Pattern LTRIM = Pattern.compile("^[\\s\\uFEFF\\xA0]+");
-                    String trimmedPrefixString = thisString.getPrefix().replaceAll(LTRIM.toString(), "");
+                    String trimmedPrefixString = LTRIM.matcher(thisString.getPrefix()).replaceAll("");
                     trimmedString = !trimmedPrefixString.isEmpty() ? Value.makeNone().joinPrefix(trimmedPrefixString) : Value.makeAnyStr();
                 } else {
                     trimmedString = Value.makeAnyStr();
@@ -0,0 +1,304 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis.nativeobjects;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import dk.brics.tajs.util.AnalysisLimitationException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Resolves module names like the NodeJS 'require.resolve' function.
+ * <p>
+ * Supports relative and absolute paths, 'node_modules' directories, the 'main' and 'exports' fields of package.json files,
+ * index files, and the '.js', '.json' and '.node' extensions.
+ * Only the 'require', 'node' and 'default' conditions of 'exports' fields are used.
+ * Core modules are not resolved.
+ * <p>
+ * The paths that have been checked and the package.json files that have been read are recorded, so that cached results can be validated.
+ * Changes of symbolic links are not tracked.
+ */
+public class NodeJSModuleResolver {
+
+    private static final List<String> EXTENSIONS = Arrays.asList(".js", ".json", ".node");
+
+    private static final Set<String> CONDITIONS = newSet(Arrays.asList("require", "node", "default"));
+
+    private static final Set<String> CORE_MODULES = newSet(Arrays.asList(
+            "assert", "async_hooks", "buffer", "child_process", "cluster", "console", "constants", "crypto", "dgram",
+            "dns", "domain", "events", "fs", "http", "http2", "https", "inspector", "module", "net", "os", "path",
+            "perf_hooks", "process", "punycode", "querystring", "readline", "repl", "stream", "string_decoder", "sys",
+            "timers", "tls", "trace_events", "tty", "url", "util", "v8", "vm", "worker_threads", "zlib"));
+
+    /**
+     * Paths that have been checked for files or directories.
+     */
+    private final Set<Path> probed = newSet();
+
+    /**
+     * package.json files that have been read.
+     */
+    private final Set<Path> packageFiles = newSet();
+
+    private final Map<Path, JsonObject> packages = newMap();
+
+    private NodeJSModuleResolver() {
+    }
+
+    /**
+     * Checks whether the given module name denotes a NodeJS core module.
+     */
+    public static boolean isCoreModule(String request) {
+        return request.startsWith("node:") || CORE_MODULES.contains(request);
+    }
+
+    /**
+     * Resolves the given module name from the given directory.
+     *
+     * @throws AnalysisLimitationException.NodeJSRequireException if a package.json file is invalid or does not export the module
+     */
+    public static Resolution resolve(String request, Path dir) {
+        NodeJSModuleResolver r = new NodeJSModuleResolver();
+        Path file = r.resolveRequest(request, dir.toAbsolutePath().normalize());
+        if (file != null) {
+            try {
+                file = file.toRealPath();
+            } catch (IOException e) {
+                file = null;
+            }
+        }
+        return new Resolution(file, r.probed, r.packageFiles);
+    }
+
+    private Path resolveRequest(String request, Path dir) {
+        if (request.startsWith("/") || request.startsWith("./") || request.startsWith("../") || request.equals(".") || request.equals("..")) {
+            Path path = dir.resolve(request).normalize();
+            Path file = request.endsWith("/") ? null : loadAsFile(path);
+            return file != null ? file : loadAsDirectory(path);
+        }
+        return loadNodeModules(request, dir);
+    }
+
+    private Path loadAsFile(Path path) {
+        if (path.getFileName() == null)
+            return null;
+        if (isFile(path))
+            return path;
+        for (String extension : EXTENSIONS) {
+            Path file = path.resolveSibling(path.getFileName() + extension);
+            if (isFile(file))
+                return file;
+        }
+        return null;
+    }
+
+    private Path loadIndex(Path dir) {
+        for (String extension : EXTENSIONS) {
+            Path file = dir.resolve("index" + extension);
+            if (isFile(file))
+                return file;
+        }
+        return null;
+    }
+
+    private Path loadAsDirectory(Path dir) {
+        JsonObject pkg = readPackage(dir);
+        if (pkg != null && pkg.has("main") && pkg.get("main").isJsonPrimitive()) {
+            Path main = dir.resolve(pkg.get("main").getAsString()).normalize();
+            Path file = loadAsFile(main);
+            if (file == null)
+                file = loadIndex(main);
+            if (file != null)
+                return file;
+        }
+        return loadIndex(dir);
+    }
+
+    private Path loadNodeModules(String request, Path start) {
+        String[] segments = request.split("/", request.startsWith("@") ? 3 : 2);
+        int nameSegments = request.startsWith("@") && segments.length > 1 ? 2 : 1;
+        String name = String.join("/", Arrays.asList(segments).subList(0, nameSegments));
+        String subpath = segments.length > nameSegments ? "./" + segments[nameSegments] : ".";
+        for (Path dir = start; dir != null; dir = dir.getParent()) {
+            if (dir.getFileName() != null && dir.getFileName().toString().equals("node_modules"))
+                continue;
+            Path modules = dir.resolve("node_modules");
+            if (!isDirectory(modules))
+                continue;
+            Path pkgDir = modules.resolve(name).normalize();
+            JsonObject pkg = isDirectory(pkgDir) ? readPackage(pkgDir) : null;
+            if (pkg != null && pkg.has("exports"))
+                return resolveExports(pkgDir, subpath, pkg.get("exports"));
+            Path path = modules.resolve(request).normalize();
+            Path file = loadAsFile(path);
+            if (file == null)
+                file = loadAsDirectory(path);
+            if (file != null)
+                return file;
+        }
+        return null;
+    }
+
+    private Path resolveExports(Path pkgDir, String subpath, JsonElement exports) {
+        JsonElement target = null;
+        String match = null;
+        if (!exports.isJsonObject() || exports.getAsJsonObject().entrySet().stream().noneMatch(me -> me.getKey().startsWith("."))) {
+            if (subpath.equals("."))
+                target = exports;
+        } else {
+            JsonObject map = exports.getAsJsonObject();
+            if (map.has(subpath)) {
+                target = map.get(subpath);
+            } else {
+                String bestKey = null;
+                for (Map.Entry<String, JsonElement> me : map.entrySet()) {
+                    String key = me.getKey();
+                    int star = key.indexOf('*');
+                    if (star == -1)
+                        continue;
+                    String prefix = key.substring(0, star);
+                    String suffix = key.substring(star + 1);
+                    if (subpath.startsWith(prefix) && subpath.endsWith(suffix) && subpath.length() >= key.length() - 1
+                            && (bestKey == null || prefix.length() > bestKey.indexOf('*'))) {
+                        bestKey = key;
+                        match = subpath.substring(prefix.length(), subpath.length() - suffix.length());
+                    }
+                }
+                if (bestKey != null)
+                    target = map.get(bestKey);
+            }
+        }
+        Path file = target != null ? resolveTarget(pkgDir, target, match) : null;
+        if (file == null)
+            throw new AnalysisLimitationException.NodeJSRequireException("Package subpath '" + subpath + "' is not exported from " + pkgDir);
+        return isFile(file) ? file : null;
+    }
+
+    private Path resolveTarget(Path pkgDir, JsonElement target, String match) {
+        if (target.isJsonPrimitive()) {
+            String s = target.getAsString();
+            if (!s.startsWith("./"))
+                return null;
+            Path file = pkgDir.resolve(match != null ? s.replace("*", match) : s).normalize();
+            return file.startsWith(pkgDir) ? file : null;
+        }
+        if (target.isJsonArray()) {
+            for (JsonElement t : target.getAsJsonArray()) {
+                Path file = resolveTarget(pkgDir, t, match);
+                if (file != null)
+                    return file;
+            }
+        } else if (target.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> me : target.getAsJsonObject().entrySet()) {
+                if (CONDITIONS.contains(me.getKey())) {
+                    Path file = resolveTarget(pkgDir, me.getValue(), match);
+                    if (file != null)
+                        return file;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads the package.json file in the given directory.
+     *
+     * @return the contents, or null if the file does not exist
+     */
+    private JsonObject readPackage(Path dir) {
+        if (packages.containsKey(dir))
+            return packages.get(dir);
+        Path file = dir.resolve("package.json");
+        JsonObject pkg = null;
+        if (isFile(file)) {
+            packageFiles.add(file);
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                JsonElement e = new JsonParser().parse(r);
+                if (e.isJsonObject())
+                    pkg = e.getAsJsonObject();
+            } catch (IOException | JsonParseException e) {
+                throw new AnalysisLimitationException.NodeJSRequireException("Invalid package.json file " + file + ": " + e.getMessage());
+            }
+        }
+        packages.put(dir, pkg);
+        return pkg;
+    }
+
+    private boolean isFile(Path path) {
+        probed.add(path);
+        return Files.isRegularFile(path);
+    }
+
+    private boolean isDirectory(Path path) {
+        probed.add(path);
+        return Files.isDirectory(path);
+    }
+
+    /**
+     * Result of resolving a module name.
+     */
+    public static class Resolution {
+
+        private final Path file;
+
+        private final Set<Path> probed;
+
+        private final Set<Path> packageFiles;
+
+        private Resolution(Path file, Set<Path> probed, Set<Path> packageFiles) {
+            this.file = file;
+            this.probed = probed;
+            this.packageFiles = packageFiles;
+        }
+
+        /**
+         * Returns the resolved file, or null if the module could not be found.
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         * Returns the paths where the result depends on whether there is a file, a directory, or nothing.
+         */
+        public Set<Path> getProbedPaths() {
+            return Collections.unmodifiableSet(probed);
+        }
+
+        /**
+         * Returns the package.json files where the result depends on the contents.
+         */
+        public Set<Path> getPackageFiles() {
+            return Collections.unmodifiableSet(packageFiles);
+        }
+    }
+}
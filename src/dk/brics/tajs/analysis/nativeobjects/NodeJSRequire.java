@@ -1,36 +1,71 @@
 package dk.brics.tajs.analysis.nativeobjects;
 
 import dk.brics.tajs.flowgraph.HostEnvSources;
-import dk.brics.tajs.options.TAJSEnvironmentConfig;
+import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.AnalysisLimitationException;
-import dk.brics.tajs.util.Collectors;
+import dk.brics.tajs.util.BuildIdentifier;
 import dk.brics.tajs.util.Pair;
 import dk.brics.tajs.util.PathAndURLUtils;
+import org.apache.log4j.Logger;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
 
 import static dk.brics.tajs.util.Collections.newMap;
 
 /**
- * Models the NodeJS 'require.resolve' mechanism by running 'node'.
+ * Models the NodeJS 'require.resolve' mechanism using {@link NodeJSModuleResolver}.
+ * <p>
+ * If a cache directory is set with {@link Options#get()}, the resolution results are loaded and saved in a file per project root,
+ * where the project root is the nearest directory containing a package.json file, starting from the directory of the main file.
+ * A saved result is only reused if the paths it has checked still contain the same kind of file system entry (a file, a directory, or nothing),
+ * and the package.json files it has read have not been modified since.
  */
 public class NodeJSRequire {
 
+    private static Logger log = Logger.getLogger(NodeJSRequire.class);
+
+    /**
+     * Identifies the cache file format.
+     */
+    private static final int FILE_MAGIC = 0x544e5252;
+
+    private static final int FILE_VERSION = 1;
+
     private static NodeJSRequire instance;
 
     private Map<Pair<String, URL>, URL> resolveCache;
 
-    public NodeJSRequire() {
+    /**
+     * Resolution results by module name and directory, for the persistent cache.
+     */
+    private Map<Pair<String, Path>, Entry> entries;
+
+    private Path root;
+
+    private boolean modified;
+
+    private int resolutions;
+
+    private int cacheHits;
+
+    public NodeJSRequire(Path root) {
         this.resolveCache = newMap();
+        this.entries = newMap();
+        this.root = root;
+        Path file = getCacheFile();
+        if (file != null)
+            load(file);
     }
 
     public static NodeJSRequire get() {
@@ -44,11 +79,25 @@ public class NodeJSRequire {
         instance = null;
     }
 
-    public static void init() {
+    /**
+     * Initializes for analyzing the given main file.
+     */
+    public static void init(URL main) {
         if (instance != null) {
             throw new AnalysisException("NodeJSRequire is already initialized!");
         }
-        instance = new NodeJSRequire();
+        instance = new NodeJSRequire("file".equals(main.getProtocol()) ? findProjectRoot(PathAndURLUtils.toPath(main, false)) : null);
+    }
+
+    /**
+     * Returns the nearest directory containing a package.json file, or the directory of the given file if there is none.
+     */
+    private static Path findProjectRoot(Path main) {
+        Path dir = main.toAbsolutePath().normalize().getParent();
+        for (Path d = dir; d != null; d = d.getParent())
+            if (Files.isRegularFile(d.resolve("package.json")))
+                return d;
+        return dir;
     }
 
     /**
@@ -64,52 +113,172 @@ public class NodeJSRequire {
         if (resolveCache.containsKey(cacheKey)) {
             return resolveCache.get(cacheKey);
         }
-        // Whitelist-security: only accept paths with alphanumerics, periods, dashes, slashes and underscores
-        // Example accepted path: ../foo-42.js
-        if (!arg.matches("^[a-zA-Z0-9./:_-]+$")) {
-            throw new AnalysisException("Unsupported (insecure) argument for require.resolve: " + arg);
+        // Whitelist: only accept paths with alphanumerics, periods, dashes, slashes, underscores, colons and at-signs
+        // Example accepted paths: ../foo-42.js, @scope/bar
+        if (!arg.matches("^[a-zA-Z0-9./:_@-]+$")) {
+            throw new AnalysisException("Unsupported argument for require.resolve: " + arg);
         }
 
         URL resolved = null;
         if (!arg.startsWith(".") && !arg.startsWith("/")) {
             try {
-                resolved = HostEnvSources.resolve(Paths.get("nodejs/modules").resolve(arg + ".js").toString());
+                resolved = HostEnvSources.resolve(Paths.get("nodejs/modules").resolve(arg.replaceFirst("^node:", "") + ".js").toString());
             } catch (AnalysisException e) {
                 // ignore
             }
+            if (resolved == null && NodeJSModuleResolver.isCoreModule(arg)) {
+                throw new AnalysisLimitationException.NodeJSRequireException("NodeJS core module is not modeled: " + arg);
+            }
         }
         if (resolved == null) {
             if (!"file".equals(location.getProtocol())) {
-                // TODO: if we implement NodeJS's 'require.resolve' manually, we could support other protocols
-                throw new AnalysisLimitationException.NodeJSRequireException(String.format("NodeJS process cannot 'resolve' inside %s-protocol file systems", location.getProtocol()));
+                throw new AnalysisLimitationException.NodeJSRequireException(String.format("Cannot 'resolve' inside %s-protocol file systems", location.getProtocol()));
             }
-            String expression = "console.log(require.resolve('" + arg + "'))"; // <-- FIXME: malicious injection possible here
-            String[] cmd = {TAJSEnvironmentConfig.get().getNode().toString(), "-e", expression};
-            final ProcessBuilder pb = new ProcessBuilder(cmd);
             Path resolveLocation = PathAndURLUtils.toPath(location, false);
-            pb.directory((Files.isDirectory(resolveLocation) ? resolveLocation : resolveLocation.getParent()).toFile());
-            try {
-                Process process = pb.start();
-                BufferedReader brStd = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                BufferedReader brErr = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-                List<String> lineStds = brStd.lines().collect(Collectors.toList());
-                List<String> lineErrs = brErr.lines().collect(Collectors.toList());
-                process.waitFor();
-                if (process.exitValue() != 0) {
-                    if (lineErrs.contains("Error: Cannot find module '" + arg + "'")) {
-                        return null;
-                    }
-                    throw new AnalysisLimitationException.NodeJSRequireException("NodeJS process exited with exit code: " + process.exitValue());
-                }
-                if (lineStds.size() != 1) {
-                    throw new AnalysisLimitationException.NodeJSRequireException("Unexpected output from NodeJS process: " + lineStds);
-                }
-                resolved = PathAndURLUtils.toURL(Paths.get(lineStds.get(0)));
-            } catch (IOException | InterruptedException e) {
-                throw new RuntimeException(e);
+            Path dir = (Files.isDirectory(resolveLocation) ? resolveLocation : resolveLocation.getParent()).toAbsolutePath().normalize();
+            Pair<String, Path> entryKey = Pair.make(arg, dir);
+            Entry entry = entries.get(entryKey);
+            if (entry != null && entry.isValid()) {
+                cacheHits++;
+            } else {
+                NodeJSModuleResolver.Resolution resolution = NodeJSModuleResolver.resolve(arg, dir);
+                entry = new Entry(resolution.getFile(), newMap());
+                for (Path p : resolution.getProbedPaths())
+                    entry.stamps.put(p, getStamp(p, false));
+                for (Path p : resolution.getPackageFiles())
+                    entry.stamps.put(p, getStamp(p, true));
+                entries.put(entryKey, entry);
+                modified = true;
+                resolutions++;
             }
+            resolved = entry.file != null ? PathAndURLUtils.toURL(entry.file) : null;
         }
         resolveCache.put(cacheKey, resolved);
         return resolved;
     }
+
+    /**
+     * Returns -1 if there is nothing at the given path, -2 for a directory, and for a file
+     * either -3 or, if the contents matter, the modification time.
+     */
+    private static long getStamp(Path p, boolean contents) {
+        if (Files.isDirectory(p))
+            return -2;
+        if (!Files.isRegularFile(p))
+            return -1;
+        if (!contents)
+            return -3;
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private Path getCacheFile() {
+        Path dir = Options.get().getNodeJSResolveCacheDirectory();
+        if (dir == null || root == null)
+            return null;
+        return dir.resolve("tajs-nodejs-resolve-" + Integer.toHexString(root.toString().hashCode()) + ".bin");
+    }
+
+    private void load(Path file) {
+        if (!Files.exists(file))
+            return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || !in.readUTF().equals(root.toString())) {
+                log.warn("Ignoring NodeJS resolution cache in unknown format or for another project: " + file);
+                return;
+            }
+            if (!in.readUTF().equals(BuildIdentifier.get())) {
+                log.debug("Ignoring NodeJS resolution cache from another TAJS build: " + file);
+                return;
+            }
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String arg = in.readUTF();
+                Path dir = Paths.get(in.readUTF());
+                Path resolved = in.readBoolean() ? Paths.get(in.readUTF()) : null;
+                Map<Path, Long> stamps = newMap();
+                int m = in.readInt();
+                for (int j = 0; j < m; j++)
+                    stamps.put(Paths.get(in.readUTF()), in.readLong());
+                entries.put(Pair.make(arg, dir), new Entry(resolved, stamps));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read NodeJS resolution cache " + file + ": " + e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Saves the resolution results, if a cache directory is set and new results have been found.
+     */
+    public void save() {
+        Path file = getCacheFile();
+        if (file == null || !modified)
+            return;
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "tajs-nodejs-resolve-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(root.toString());
+                out.writeUTF(BuildIdentifier.get());
+                out.writeInt(entries.size());
+                for (Map.Entry<Pair<String, Path>, Entry> me : entries.entrySet()) {
+                    out.writeUTF(me.getKey().getFirst());
+                    out.writeUTF(me.getKey().getSecond().toString());
+                    Entry entry = me.getValue();
+                    out.writeBoolean(entry.file != null);
+                    if (entry.file != null)
+                        out.writeUTF(entry.file.toString());
+                    out.writeInt(entry.stamps.size());
+                    for (Map.Entry<Path, Long> stamp : entry.stamps.entrySet()) {
+                        out.writeUTF(stamp.getKey().toString());
+                        out.writeLong(stamp.getValue());
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write NodeJS resolution cache " + file + ": " + e);
+            return;
+        }
+        modified = false;
+    }
+
+    /**
+     * Returns the number of module names resolved with {@link NodeJSModuleResolver}.
+     */
+    public int getNumberOfResolutions() {
+        return resolutions;
+    }
+
+    /**
+     * Returns the number of module names resolved using results loaded from the cache file.
+     */
+    public int getNumberOfCacheHits() {
+        return cacheHits;
+    }
+
+    /**
+     * Resolution result with the modification times of its dependencies.
+     */
+    private static class Entry {
+
+        private final Path file;
+
+        private final Map<Path, Long> stamps;
+
+        private Entry(Path file, Map<Path, Long> stamps) {
+            this.file = file;
+            this.stamps = stamps;
+        }
+
+        private boolean isValid() {
+            return stamps.entrySet().stream().allMatch(me -> getStamp(me.getKey(), me.getValue() >= 0) == me.getValue());
+        }
+    }
 }
@@ -16,46 +16,397 @@
 
 package dk.brics.tajs.analysis.nativeobjects.concrete;
 
+import dk.brics.tajs.lattice.PKey;
+import dk.brics.tajs.lattice.PKey.StringPKey;
+import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.BuildIdentifier;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.WeakHashMap;
+import java.util.Optional;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
 
 /**
  * Decorator that caches the results of its delegate.
+ * <p>
+ * The caches are bounded and evict the least recently used entries.
+ * The cached results can be saved to a file and loaded in a later run.
  */
 public class CachingNativeConcreteSemantics implements NativeConcreteSemantics {
 
+    private static final Logger log = Logger.getLogger(CachingNativeConcreteSemantics.class);
+
+    /**
+     * Default maximum number of entries in each cache.
+     */
+    public static final int DEFAULT_LIMIT = 50000;
+
+    /**
+     * Identifies the cache file format.
+     */
+    private static final int FILE_MAGIC = 0x54434E43;
+
+    private static final int FILE_VERSION = 1;
+
     private final NativeConcreteSemantics delegate;
 
+    private final int limit;
+
     private final Map<Signature, MappedNativeResult<ConcreteValue>> signatureCache;
 
     private final Map<String, NativeResult<ConcreteValue>> evalCache;
 
+    private int hits;
+
+    private int misses;
+
+    private int evictions;
+
     public CachingNativeConcreteSemantics(NativeConcreteSemantics delegate) {
+        this(delegate, DEFAULT_LIMIT);
+    }
+
+    /**
+     * Constructs a new cache with the given maximum number of entries per cache.
+     */
+    public CachingNativeConcreteSemantics(NativeConcreteSemantics delegate, int limit) {
         this.delegate = delegate;
-        signatureCache = new WeakHashMap<>();
-        evalCache = new WeakHashMap<>();
+        this.limit = limit;
+        signatureCache = makeLRUMap();
+        evalCache = makeLRUMap();
+    }
+
+    private <K, V> Map<K, V> makeLRUMap() {
+        return new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > limit) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
     }
 
     @Override
     public MappedNativeResult<ConcreteValue> apply(String functionName, ConcreteValue base, List<ConcreteValue> arguments) {
         Signature key = new Signature(functionName, base, arguments);
-        if (!signatureCache.containsKey(key)) {
-            signatureCache.put(key, delegate.apply(functionName, base, arguments));
+        MappedNativeResult<ConcreteValue> result = signatureCache.get(key);
+        if (result != null) {
+            hits++;
+            return result;
         }
-        return signatureCache.get(key);
+        misses++;
+        result = delegate.apply(functionName, base, arguments);
+        signatureCache.put(key, result);
+        return result;
     }
 
     @Override
     public NativeResult<ConcreteValue> eval(String script) {
-        if (!evalCache.containsKey(script)) {
-            evalCache.put(script, delegate.eval(script));
+        NativeResult<ConcreteValue> result = evalCache.get(script);
+        if (result != null) {
+            hits++;
+            return result;
+        }
+        misses++;
+        result = delegate.eval(script);
+        evalCache.put(script, result);
+        return result;
+    }
+
+    /**
+     * Returns the number of cache hits.
+     */
+    public int getNumberOfHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     */
+    public int getNumberOfMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of evicted entries.
+     */
+    public int getNumberOfEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the current number of entries.
+     */
+    public int getSize() {
+        return signatureCache.size() + evalCache.size();
+    }
+
+    /**
+     * Resets the statistics (but keeps the cached results).
+     */
+    public void resetStatistics() {
+        hits = misses = evictions = 0;
+    }
+
+    /**
+     * Returns a description of the cache statistics.
+     */
+    public String getStatistics() {
+        return "Concrete native evaluation cache: hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", size=" + getSize();
+    }
+
+    /**
+     * Loads cached results from the given file, if it exists.
+     * Results already in the cache are kept. A file in an unknown format or written by another TAJS build is ignored.
+     */
+    public void load(Path file) {
+        if (!Files.exists(file))
+            return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("Ignoring concrete evaluation cache file in unknown format: " + file);
+                return;
+            }
+            if (!in.readUTF().equals(BuildIdentifier.get())) {
+                log.debug("Ignoring concrete evaluation cache file from another TAJS build: " + file);
+                return;
+            }
+            int applies = in.readInt();
+            for (int i = 0; i < applies; i++) {
+                String functionName = readString(in);
+                ConcreteValue base = readValue(in);
+                List<ConcreteValue> arguments = readValues(in);
+                NativeResult<ConcreteValue> result = readResult(in);
+                Optional<ConcreteApplyMapping> mapping = Optional.empty();
+                if (in.readBoolean())
+                    mapping = Optional.of(new ConcreteApplyMapping(readValue(in), (ConcreteArray) readValue(in), readValue(in)));
+                signatureCache.putIfAbsent(new Signature(functionName, base, arguments), new MappedNativeResult<>(mapping, result));
+            }
+            int evals = in.readInt();
+            for (int i = 0; i < evals; i++) {
+                String script = readString(in);
+                evalCache.putIfAbsent(script, readResult(in));
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read concrete evaluation cache file " + file + ": " + e);
+        }
+    }
+
+    /**
+     * Saves the cached results to the given file.
+     * Results that depend on the availability of the delegate (non-concrete results) are not saved.
+     */
+    public void save(Path file) {
+        Map<Signature, MappedNativeResult<ConcreteValue>> applies = newMap();
+        signatureCache.forEach((k, v) -> {
+            if (isPersistable(v.getResult()) && isPersistable(k.base) && k.arguments.stream().allMatch(CachingNativeConcreteSemantics::isPersistable)
+                    && (!v.getMapped().isPresent() || isPersistable(v.getMapped().get())))
+                applies.put(k, v);
+        });
+        Map<String, NativeResult<ConcreteValue>> evals = newMap();
+        evalCache.forEach((k, v) -> {
+            if (isPersistable(v))
+                evals.put(k, v);
+        });
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeUTF(BuildIdentifier.get());
+            out.writeInt(applies.size());
+            for (Map.Entry<Signature, MappedNativeResult<ConcreteValue>> me : applies.entrySet()) {
+                writeString(out, me.getKey().functionName);
+                writeValue(out, me.getKey().base);
+                writeValues(out, me.getKey().arguments);
+                writeResult(out, me.getValue().getResult());
+                Optional<ConcreteApplyMapping> mapping = me.getValue().getMapped();
+                out.writeBoolean(mapping.isPresent());
+                if (mapping.isPresent()) {
+                    writeValue(out, mapping.get().getBase());
+                    writeValue(out, mapping.get().getArguments());
+                    writeValue(out, mapping.get().getResult());
+                }
+            }
+            out.writeInt(evals.size());
+            for (Map.Entry<String, NativeResult<ConcreteValue>> me : evals.entrySet()) {
+                writeString(out, me.getKey());
+                writeResult(out, me.getValue());
+            }
+        } catch (IOException e) {
+            log.warn("Unable to write concrete evaluation cache file " + file + ": " + e);
+        }
+    }
+
+    /*
+     * Cache file encoding.
+     */
+
+    private enum Tag {
+        NUMBER, STRING, BOOLEAN, UNDEFINED, NULL, NULL_OR_UNDEFINED, ARRAY, REGEXP
+    }
+
+    private static boolean isPersistable(NativeResult<ConcreteValue> r) {
+        return r.kind == NativeResult.Kind.EXCEPTION || r.kind == NativeResult.Kind.BOTTOM || (r.kind == NativeResult.Kind.VALUE && isPersistable(r.getValue()));
+    }
+
+    private static boolean isPersistable(ConcreteApplyMapping m) {
+        return isPersistable(m.getBase()) && isPersistable(m.getArguments()) && isPersistable(m.getResult());
+    }
+
+    /**
+     * Checks that the value can be encoded (arrays may only have string-named extra properties).
+     */
+    private static boolean isPersistable(ConcreteValue v) {
+        if (v instanceof ConcreteArray) {
+            ConcreteArray a = (ConcreteArray) v;
+            for (int i = 0; i < a.getLength(); i++)
+                if (!isPersistable(a.get(i)))
+                    return false;
+            for (Map.Entry<PKey, ConcreteValue> me : a.getExtraProperties().entrySet())
+                if (!(me.getKey() instanceof StringPKey) || !isPersistable(me.getValue()))
+                    return false;
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeResult(DataOutputStream out, NativeResult<ConcreteValue> r) throws IOException {
+        out.writeByte(r.kind.ordinal());
+        if (r.kind == NativeResult.Kind.VALUE)
+            writeValue(out, r.getValue());
+    }
+
+    private static NativeResult<ConcreteValue> readResult(DataInputStream in) throws IOException {
+        NativeResult.Kind kind = NativeResult.Kind.values()[in.readByte()];
+        switch (kind) {
+            case VALUE:
+                return NativeResult.makeValue(readValue(in));
+            case EXCEPTION:
+                return NativeResult.makeException();
+            case BOTTOM:
+                return NativeResult.makeBottom();
+            default:
+                throw new IOException("Unexpected result kind " + kind);
+        }
+    }
+
+    private static void writeValues(DataOutputStream out, List<ConcreteValue> vs) throws IOException {
+        out.writeInt(vs.size());
+        for (ConcreteValue v : vs)
+            writeValue(out, v);
+    }
+
+    private static List<ConcreteValue> readValues(DataInputStream in) throws IOException {
+        int n = in.readInt();
+        List<ConcreteValue> vs = newList();
+        for (int i = 0; i < n; i++)
+            vs.add(readValue(in));
+        return vs;
+    }
+
+    private static void writeValue(DataOutputStream out, ConcreteValue v) throws IOException {
+        if (v instanceof ConcreteNumber) {
+            out.writeByte(Tag.NUMBER.ordinal());
+            out.writeDouble(((ConcreteNumber) v).getNumber());
+        } else if (v instanceof ConcreteString) {
+            out.writeByte(Tag.STRING.ordinal());
+            writeString(out, ((ConcreteString) v).getString());
+        } else if (v instanceof ConcreteBoolean) {
+            out.writeByte(Tag.BOOLEAN.ordinal());
+            out.writeBoolean(((ConcreteBoolean) v).getBooleanValue());
+        } else if (v instanceof ConcreteUndefined) {
+            out.writeByte(Tag.UNDEFINED.ordinal());
+        } else if (v instanceof ConcreteNull) {
+            out.writeByte(Tag.NULL.ordinal());
+        } else if (v instanceof ConcreteNullOrUndefined) {
+            out.writeByte(Tag.NULL_OR_UNDEFINED.ordinal());
+        } else if (v instanceof ConcreteArray) {
+            ConcreteArray a = (ConcreteArray) v;
+            out.writeByte(Tag.ARRAY.ordinal());
+            out.writeInt(a.getLength());
+            for (int i = 0; i < a.getLength(); i++)
+                writeValue(out, a.get(i));
+            out.writeInt(a.getExtraProperties().size());
+            for (Map.Entry<PKey, ConcreteValue> me : a.getExtraProperties().entrySet()) {
+                writeString(out, ((StringPKey) me.getKey()).getStr());
+                writeValue(out, me.getValue());
+            }
+        } else if (v instanceof ConcreteRegularExpression) {
+            ConcreteRegularExpression r = (ConcreteRegularExpression) v;
+            out.writeByte(Tag.REGEXP.ordinal());
+            writeString(out, r.getSource().getString());
+            out.writeBoolean(r.getGlobal().getBooleanValue());
+            out.writeBoolean(r.getIgnoreCase().getBooleanValue());
+            out.writeBoolean(r.getMultiline().getBooleanValue());
+            out.writeDouble(r.getLastIndex().getNumber());
+        } else
+            throw new AnalysisException("Unexpected concrete value " + v);
+    }
+
+    private static ConcreteValue readValue(DataInputStream in) throws IOException {
+        Tag tag = Tag.values()[in.readByte()];
+        switch (tag) {
+            case NUMBER:
+                return new ConcreteNumber(in.readDouble());
+            case STRING:
+                return new ConcreteString(readString(in));
+            case BOOLEAN:
+                return new ConcreteBoolean(in.readBoolean());
+            case UNDEFINED:
+                return new ConcreteUndefined();
+            case NULL:
+                return new ConcreteNull();
+            case NULL_OR_UNDEFINED:
+                return new ConcreteNullOrUndefined();
+            case ARRAY: {
+                List<ConcreteValue> elements = readValues(in);
+                int n = in.readInt();
+                Map<PKey, ConcreteValue> extra = newMap();
+                for (int i = 0; i < n; i++) {
+                    String name = readString(in);
+                    extra.put(StringPKey.make(name), readValue(in));
+                }
+                return new ConcreteArray(elements, extra);
+            }
+            case REGEXP: {
+                ConcreteString source = new ConcreteString(readString(in));
+                ConcreteBoolean global = new ConcreteBoolean(in.readBoolean());
+                ConcreteBoolean ignoreCase = new ConcreteBoolean(in.readBoolean());
+                ConcreteBoolean multiline = new ConcreteBoolean(in.readBoolean());
+                return new ConcreteRegularExpression(source, global, ignoreCase, multiline, new ConcreteNumber(in.readDouble()));
+            }
+            default:
+                throw new IOException("Unexpected tag " + tag);
         }
-        return evalCache.get(script);
     }
 
-    private class Signature {
+    private static class Signature {
 
         private final String functionName;
 
@@ -0,0 +1,581 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis.nativeobjects.concrete;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * ECMAScript regular expression, translated to a {@link Pattern}.
+ * <p>
+ * The translation follows the ECMAScript 5 pattern syntax including the Annex B extensions
+ * (octal escapes, literal braces and brackets, identity escapes of letters).
+ * Character classes, anchors and word boundaries are expanded to their ECMAScript meaning,
+ * and backreferences to groups that have not participated in the match succeed with the empty string.
+ * Patterns that cannot be translated faithfully (lookbehind, named groups, backreferences to enclosing or later groups)
+ * are reported as unsupported.
+ * <p>
+ * Translated patterns are kept in a bounded global cache that evicts the least recently used entries.
+ */
+public final class ECMAScriptRegExp {
+
+    /**
+     * Maximum number of cached patterns.
+     */
+    private static final int LIMIT = 1000;
+
+    /**
+     * WhiteSpace and LineTerminator characters, for use inside a character class.
+     */
+    private static final String WHITESPACE = "\\t\\x0B\\f \\xA0\\uFEFF\\n\\r\\u2028\\u2029\\p{Zs}";
+
+    private static final String LINE_TERMINATORS = "\\n\\r\\u2028\\u2029";
+
+    private static final String WORD_BOUNDARY = "(?:(?<=\\w)(?!\\w)|(?<!\\w)(?=\\w))";
+
+    private static final String NOT_WORD_BOUNDARY = "(?:(?<=\\w)(?=\\w)|(?<!\\w)(?!\\w))";
+
+    private static final ECMAScriptRegExp UNSUPPORTED = new ECMAScriptRegExp(null, 0, false);
+
+    private static final class Key {
+
+        private final String source;
+
+        private final boolean ignoreCase;
+
+        private final boolean multiline;
+
+        Key(String source, boolean ignoreCase, boolean multiline) {
+            this.source = source;
+            this.ignoreCase = ignoreCase;
+            this.multiline = multiline;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key k = (Key) o;
+            return source.equals(k.source) && ignoreCase == k.ignoreCase && multiline == k.multiline;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(source, ignoreCase, multiline);
+        }
+    }
+
+    private static Map<Key, ECMAScriptRegExp> cache;
+
+    private static int hits;
+
+    private static int misses;
+
+    private static int evictions;
+
+    static {
+        reset();
+    }
+
+    private final Pattern pattern;
+
+    private final int groups;
+
+    private final boolean markers;
+
+    private ECMAScriptRegExp(Pattern pattern, int groups, boolean markers) {
+        this.pattern = pattern;
+        this.groups = groups;
+        this.markers = markers;
+    }
+
+    /**
+     * Returns the translation of the given regular expression.
+     *
+     * @return the translated regular expression, or null if the pattern is not supported
+     */
+    public static ECMAScriptRegExp get(String source, boolean ignoreCase, boolean multiline) {
+        Key key = new Key(source, ignoreCase, multiline);
+        ECMAScriptRegExp r = cache.get(key);
+        if (r != null) {
+            hits++;
+        } else {
+            misses++;
+            r = translate(source, ignoreCase, multiline);
+            cache.put(key, r);
+        }
+        return r != UNSUPPORTED ? r : null;
+    }
+
+    private static ECMAScriptRegExp translate(String source, boolean ignoreCase, boolean multiline) {
+        try {
+            Translator t = new Translator(source, multiline);
+            String translated = t.translate();
+            int flags = ignoreCase ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            return new ECMAScriptRegExp(Pattern.compile(translated, flags), t.totalGroups, t.markers);
+        } catch (Unsupported | PatternSyntaxException e) {
+            return UNSUPPORTED;
+        }
+    }
+
+    /**
+     * Returns the number of capture groups.
+     */
+    public int getGroupCount() {
+        return groups;
+    }
+
+    /**
+     * Returns the translated pattern.
+     */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Creates a matcher for the given string.
+     */
+    public Matcher matcher(String s) {
+        Matcher m = pattern.matcher(s);
+        m.useTransparentBounds(true);
+        m.useAnchoringBounds(false);
+        return m;
+    }
+
+    /**
+     * Finds the first match at or after the given index.
+     */
+    public boolean find(Matcher m, String s, int from) {
+        m.region(from, s.length());
+        return m.find();
+    }
+
+    /**
+     * Matches at exactly the given index.
+     */
+    public boolean matchAt(Matcher m, String s, int at) {
+        m.region(at, s.length());
+        return m.lookingAt();
+    }
+
+    /**
+     * Returns the string captured by the given group of the last match, or null if the group did not participate.
+     */
+    public String group(MatchResult m, int i) {
+        return i == 0 ? m.group() : m.group(markers ? 2 * i - 1 : i);
+    }
+
+    /**
+     * Returns the number of cache hits.
+     */
+    public static int getNumberOfHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of cache misses.
+     */
+    public static int getNumberOfMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of evicted entries.
+     */
+    public static int getNumberOfEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the current number of entries.
+     */
+    public static int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Clears the cache and the statistics.
+     */
+    public static void reset() {
+        cache = new LinkedHashMap<Key, ECMAScriptRegExp>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, ECMAScriptRegExp> eldest) {
+                if (size() > LIMIT) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        hits = misses = evictions = 0;
+    }
+
+    /**
+     * Signals a pattern that cannot be translated.
+     */
+    private static final class Unsupported extends RuntimeException {
+
+        Unsupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Translation of a single pattern.
+     */
+    private static final class Translator {
+
+        private final String src;
+
+        private final boolean multiline;
+
+        private final StringBuilder out = new StringBuilder();
+
+        private final int totalGroups;
+
+        /**
+         * If set, each capture group n is followed by an empty marker group, so that backreferences can test whether group n has participated.
+         * Group n then has number 2n-1 in the translated pattern, and its marker has number 2n.
+         */
+        private final boolean markers;
+
+        private final BitSet closed = new BitSet();
+
+        private final Deque<Integer> open = new ArrayDeque<>();
+
+        private int opened;
+
+        private int pos;
+
+        Translator(String src, boolean multiline) {
+            this.src = src;
+            this.multiline = multiline;
+            int groups = 0;
+            boolean backreferences = false;
+            boolean inClass = false;
+            for (int i = 0; i < src.length(); i++) {
+                char c = src.charAt(i);
+                if (c == '\\') {
+                    if (!inClass && i + 1 < src.length() && src.charAt(i + 1) >= '1' && src.charAt(i + 1) <= '9')
+                        backreferences = true;
+                    i++;
+                } else if (c == '[')
+                    inClass = true;
+                else if (c == ']')
+                    inClass = false;
+                else if (c == '(' && !inClass && (i + 1 == src.length() || src.charAt(i + 1) != '?'))
+                    groups++;
+            }
+            totalGroups = groups;
+            markers = backreferences && groups > 0;
+        }
+
+        String translate() {
+            while (pos < src.length()) {
+                char c = src.charAt(pos++);
+                switch (c) {
+                    case '\\':
+                        escape();
+                        break;
+                    case '[':
+                        characterClass();
+                        break;
+                    case '.':
+                        out.append("[^").append(LINE_TERMINATORS).append("]");
+                        break;
+                    case '^':
+                        out.append(multiline ? "(?<![^" + LINE_TERMINATORS + "])" : "(?<![\\s\\S])");
+                        break;
+                    case '$':
+                        out.append(multiline ? "(?![^" + LINE_TERMINATORS + "])" : "(?![\\s\\S])");
+                        break;
+                    case '(':
+                        if (src.startsWith("?:", pos) || src.startsWith("?=", pos) || src.startsWith("?!", pos)) {
+                            out.append('(').append(src, pos, pos + 2);
+                            pos += 2;
+                            open.push(0);
+                        } else if (pos < src.length() && src.charAt(pos) == '?') {
+                            throw new Unsupported(); // lookbehind and named groups
+                        } else {
+                            open.push(++opened);
+                            out.append(markers ? "(()" : "(");
+                        }
+                        break;
+                    case ')':
+                        if (open.isEmpty())
+                            throw new Unsupported(); // syntax error
+                        int n = open.pop();
+                        if (n > 0)
+                            closed.set(n);
+                        out.append(')');
+                        break;
+                    case '*':
+                    case '+':
+                    case '?':
+                        out.append(c);
+                        quantifierSuffix();
+                        break;
+                    case '{': {
+                        int end = quantifierEnd(pos);
+                        if (end != -1) {
+                            out.append(src, pos - 1, end);
+                            pos = end;
+                            quantifierSuffix();
+                        } else
+                            out.append("\\{");
+                        break;
+                    }
+                    case '}':
+                    case ']':
+                        out.append('\\').append(c);
+                        break;
+                    default:
+                        out.append(c);
+                }
+            }
+            if (!open.isEmpty())
+                throw new Unsupported(); // syntax error
+            return out.toString();
+        }
+
+        /**
+         * Returns the index after the quantifier {n}, {n,} or {n,m} starting after the brace at the given index, or -1 if none.
+         */
+        private int quantifierEnd(int i) {
+            int digits = 0;
+            while (i < src.length() && Character.isDigit(src.charAt(i))) {
+                i++;
+                digits++;
+            }
+            if (digits == 0)
+                return -1;
+            if (i < src.length() && src.charAt(i) == ',') {
+                i++;
+                while (i < src.length() && Character.isDigit(src.charAt(i)))
+                    i++;
+            }
+            if (i < src.length() && src.charAt(i) == '}')
+                return i + 1;
+            return -1;
+        }
+
+        private void quantifierSuffix() {
+            if (pos < src.length() && src.charAt(pos) == '?')
+                out.append(src.charAt(pos++));
+            if (pos < src.length() && (src.charAt(pos) == '+' || src.charAt(pos) == '*' || src.charAt(pos) == '?' || (src.charAt(pos) == '{' && quantifierEnd(pos + 1) != -1)))
+                throw new Unsupported(); // nothing to repeat (and possessive in Java)
+        }
+
+        private void literal(int ch) {
+            out.append(String.format("\\u%04X", ch));
+        }
+
+        private static boolean isAsciiLetter(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+        }
+
+        private static boolean isOctal(char c) {
+            return c >= '0' && c <= '7';
+        }
+
+        private int hex(int digits) {
+            if (pos + digits > src.length())
+                return -1;
+            int v = 0;
+            for (int i = pos; i < pos + digits; i++) {
+                int d = Character.digit(src.charAt(i), 16);
+                if (d == -1 || src.charAt(i) >= 128)
+                    return -1;
+                v = v * 16 + d;
+            }
+            pos += digits;
+            return v;
+        }
+
+        /**
+         * Parses a legacy octal escape starting at the current position.
+         */
+        private int octal() {
+            char d0 = src.charAt(pos++);
+            int v = d0 - '0';
+            if (pos < src.length() && isOctal(src.charAt(pos))) {
+                v = v * 8 + (src.charAt(pos++) - '0');
+                if (d0 <= '3' && pos < src.length() && isOctal(src.charAt(pos)))
+                    v = v * 8 + (src.charAt(pos++) - '0');
+            }
+            return v;
+        }
+
+        /**
+         * Translates the escapes that have the same meaning inside and outside character classes.
+         *
+         * @return true if the escape was translated
+         */
+        private boolean commonEscape(char c) {
+            switch (c) {
+                case 'd':
+                case 'D':
+                case 'w':
+                case 'W':
+                case 'f':
+                case 'n':
+                case 'r':
+                case 't':
+                    out.append('\\').append(c);
+                    return true;
+                case 'v':
+                    literal(0x0B);
+                    return true;
+                case 'x': {
+                    int v = hex(2);
+                    literal(v != -1 ? v : 'x');
+                    return true;
+                }
+                case 'u': {
+                    int v = hex(4);
+                    literal(v != -1 ? v : 'u');
+                    return true;
+                }
+                default:
+                    return false;
+            }
+        }
+
+        private void escape() {
+            if (pos >= src.length())
+                throw new Unsupported(); // syntax error
+            char c = src.charAt(pos++);
+            if (commonEscape(c))
+                return;
+            switch (c) {
+                case 's':
+                    out.append("[").append(WHITESPACE).append("]");
+                    break;
+                case 'S':
+                    out.append("[^").append(WHITESPACE).append("]");
+                    break;
+                case 'b':
+                    out.append(WORD_BOUNDARY);
+                    break;
+                case 'B':
+                    out.append(NOT_WORD_BOUNDARY);
+                    break;
+                case 'c':
+                    if (pos < src.length() && isAsciiLetter(src.charAt(pos)))
+                        literal(src.charAt(pos++) % 32);
+                    else {
+                        literal('\\');
+                        pos--;
+                    }
+                    break;
+                case '0':
+                    if (pos < src.length() && Character.isDigit(src.charAt(pos))) {
+                        pos--;
+                        literal(octal());
+                    } else
+                        literal(0);
+                    break;
+                default:
+                    if (c >= '1' && c <= '9') {
+                        int start = pos - 1;
+                        while (pos < src.length() && Character.isDigit(src.charAt(pos)))
+                            pos++;
+                        int n = Integer.parseInt(src.substring(start, pos));
+                        if (n <= totalGroups) {
+                            if (!closed.get(n))
+                                throw new Unsupported(); // reference to an enclosing or later group
+                            out.append("(?:\\").append(2 * n).append("\\").append(2 * n - 1).append("|(?!\\").append(2 * n).append("))");
+                        } else {
+                            pos = start;
+                            if (isOctal(c))
+                                literal(octal());
+                            else
+                                literal(src.charAt(pos++));
+                        }
+                    } else
+                        literal(c); // identity escape
+            }
+        }
+
+        private void characterClass() {
+            boolean negated = pos < src.length() && src.charAt(pos) == '^';
+            if (negated)
+                pos++;
+            if (pos < src.length() && src.charAt(pos) == ']') {
+                pos++;
+                out.append(negated ? "[\\s\\S]" : "(?!)");
+                return;
+            }
+            out.append(negated ? "[^" : "[");
+            while (true) {
+                if (pos >= src.length())
+                    throw new Unsupported(); // syntax error
+                char c = src.charAt(pos++);
+                if (c == ']')
+                    break;
+                if (c == '\\')
+                    classEscape();
+                else if (c == '[' || c == '&' || c == '^')
+                    out.append('\\').append(c);
+                else
+                    out.append(c);
+            }
+            out.append(']');
+        }
+
+        private void classEscape() {
+            if (pos >= src.length())
+                throw new Unsupported(); // syntax error
+            char c = src.charAt(pos++);
+            if (commonEscape(c))
+                return;
+            switch (c) {
+                case 's':
+                    out.append(WHITESPACE);
+                    break;
+                case 'S':
+                    out.append("[^").append(WHITESPACE).append("]");
+                    break;
+                case 'b':
+                    literal(0x08);
+                    break;
+                case 'c':
+                    if (pos < src.length() && (isAsciiLetter(src.charAt(pos)) || Character.isDigit(src.charAt(pos)) || src.charAt(pos) == '_'))
+                        literal(src.charAt(pos++) % 32);
+                    else {
+                        literal('\\');
+                        pos--;
+                    }
+                    break;
+                default:
+                    if (isOctal(c)) {
+                        pos--;
+                        literal(octal());
+                    } else
+                        literal(c); // identity escape
+            }
+        }
+    }
+}
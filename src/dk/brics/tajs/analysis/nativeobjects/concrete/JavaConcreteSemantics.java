@@ -0,0 +1,1084 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis.nativeobjects.concrete;
+
+import dk.brics.tajs.lattice.PKey;
+import dk.brics.tajs.lattice.PKey.StringPKey;
+import org.apache.log4j.Logger;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Concrete semantics implementation.
+ * Performs concrete evaluation of the native String, Number, RegExp and global functions directly in Java, following the ECMAScript specification.
+ * Regular expressions are evaluated with {@link ECMAScriptRegExp}.
+ * Calls that are not supported are delegated to a fallback implementation (typically {@link NashornConcreteSemantics}), if available.
+ */
+public class JavaConcreteSemantics implements NativeConcreteSemantics {
+
+    private static final Logger log = Logger.getLogger(JavaConcreteSemantics.class);
+
+    private static final Pattern DECIMAL_LITERAL = Pattern.compile("[+-]?(Infinity|([0-9]+\\.?[0-9]*|\\.[0-9]+)([eE][+-]?[0-9]+)?)");
+
+    private static final String URI_RESERVED = ";/?:@&=+$,";
+
+    private static final String URI_UNESCAPED_MARKS = "-_.!~*'()";
+
+    private static final String ESCAPE_UNESCAPED = "@*_+-./";
+
+    /**
+     * Implementation of a native function on concrete values.
+     */
+    @FunctionalInterface
+    private interface ConcreteFunction {
+
+        /**
+         * Applies the function.
+         *
+         * @throws ConcreteException if the function throws an ECMAScript exception
+         * @throws NotSupported      if the call must be delegated to the fallback
+         */
+        ConcreteValue apply(ConcreteValue base, List<ConcreteValue> args);
+    }
+
+    /**
+     * Implementation of a native function that may modify the base or the arguments (the lastIndex property of regular expressions).
+     */
+    @FunctionalInterface
+    private interface MappingFunction {
+
+        /**
+         * Applies the function.
+         *
+         * @return the result together with the base and arguments after the call
+         * @throws ConcreteException if the function throws an ECMAScript exception
+         * @throws NotSupported      if the call must be delegated to the fallback
+         */
+        ConcreteApplyMapping apply(ConcreteValue base, List<ConcreteValue> args);
+    }
+
+    /**
+     * Signals that an ECMAScript exception (TypeError, RangeError or URIError) is thrown.
+     */
+    private static final class ConcreteException extends RuntimeException {
+
+        ConcreteException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /**
+     * Signals that a call is not supported by this implementation.
+     */
+    private static final class NotSupported extends RuntimeException {
+
+        NotSupported() {
+            super(null, null, false, false);
+        }
+    }
+
+    private final NativeConcreteSemantics fallback;
+
+    private final Map<String, ConcreteFunction> functions = newMap();
+
+    private final Map<String, MappingFunction> mappingFunctions = newMap();
+
+    /**
+     * Constructs a new concrete semantics.
+     *
+     * @param fallback implementation for unsupported calls, or null if none
+     */
+    public JavaConcreteSemantics(NativeConcreteSemantics fallback) {
+        this.fallback = fallback;
+        // String
+        functions.put("String.fromCharCode", JavaConcreteSemantics::fromCharCode);
+        functions.put("String.fromCodePoint", JavaConcreteSemantics::fromCodePoint);
+        functions.put("String.prototype.charAt", JavaConcreteSemantics::charAt);
+        functions.put("String.prototype.charCodeAt", JavaConcreteSemantics::charCodeAt);
+        functions.put("String.prototype.concat", JavaConcreteSemantics::concat);
+        functions.put("String.prototype.endsWith", JavaConcreteSemantics::endsWith);
+        functions.put("String.prototype.startsWith", JavaConcreteSemantics::startsWith);
+        functions.put("String.prototype.indexOf", JavaConcreteSemantics::indexOf);
+        functions.put("String.prototype.lastIndexOf", JavaConcreteSemantics::lastIndexOf);
+        mappingFunctions.put("String.prototype.match", JavaConcreteSemantics::match);
+        mappingFunctions.put("String.prototype.replace", JavaConcreteSemantics::replace);
+        functions.put("String.prototype.search", JavaConcreteSemantics::search);
+        functions.put("String.prototype.slice", JavaConcreteSemantics::slice);
+        functions.put("String.prototype.split", JavaConcreteSemantics::split);
+        functions.put("String.prototype.substr", JavaConcreteSemantics::substr);
+        functions.put("String.prototype.substring", JavaConcreteSemantics::substring);
+        functions.put("String.prototype.toLowerCase", (base, args) -> new ConcreteString(thisString(base).toLowerCase(Locale.ROOT)));
+        functions.put("String.prototype.toLocaleLowerCase", (base, args) -> new ConcreteString(thisString(base).toLowerCase(Locale.ROOT)));
+        functions.put("String.prototype.toUpperCase", (base, args) -> new ConcreteString(thisString(base).toUpperCase(Locale.ROOT)));
+        functions.put("String.prototype.toLocaleUpperCase", (base, args) -> new ConcreteString(thisString(base).toUpperCase(Locale.ROOT)));
+        functions.put("String.prototype.trim", (base, args) -> new ConcreteString(trim(thisString(base), true, true)));
+        functions.put("String.prototype.trimLeft", (base, args) -> new ConcreteString(trim(thisString(base), true, false)));
+        functions.put("String.prototype.trimRight", (base, args) -> new ConcreteString(trim(thisString(base), false, true)));
+        // RegExp
+        functions.put("RegExp", JavaConcreteSemantics::regExp);
+        mappingFunctions.put("RegExp.prototype.exec", JavaConcreteSemantics::exec);
+        mappingFunctions.put("RegExp.prototype.test", JavaConcreteSemantics::test);
+        functions.put("RegExp.prototype.toString", JavaConcreteSemantics::regExpToString);
+        // Number
+        functions.put("Number.prototype.toString", JavaConcreteSemantics::numberToString);
+        functions.put("Number.prototype.toFixed", JavaConcreteSemantics::toFixed);
+        functions.put("Number.prototype.toExponential", JavaConcreteSemantics::toExponential);
+        functions.put("Number.prototype.toPrecision", JavaConcreteSemantics::toPrecision);
+        // global
+        functions.put("parseInt", JavaConcreteSemantics::parseInt);
+        functions.put("parseFloat", JavaConcreteSemantics::parseFloat);
+        functions.put("encodeURI", (base, args) -> new ConcreteString(encode(toStr(arg(args, 0)), URI_RESERVED + URI_UNESCAPED_MARKS + "#")));
+        functions.put("encodeURIComponent", (base, args) -> new ConcreteString(encode(toStr(arg(args, 0)), URI_UNESCAPED_MARKS)));
+        functions.put("decodeURI", (base, args) -> new ConcreteString(decode(toStr(arg(args, 0)), URI_RESERVED + "#")));
+        functions.put("decodeURIComponent", (base, args) -> new ConcreteString(decode(toStr(arg(args, 0)), "")));
+        functions.put("escape", (base, args) -> new ConcreteString(escape(toStr(arg(args, 0)))));
+        functions.put("unescape", (base, args) -> new ConcreteString(unescape(toStr(arg(args, 0)))));
+    }
+
+    /**
+     * Creates a Nashorn-based fallback, or returns null if Nashorn is not available in the running JDK.
+     */
+    public static NativeConcreteSemantics makeNashornFallback() {
+        try {
+            NashornConcreteSemantics nashorn = new NashornConcreteSemantics();
+            if (nashorn.isAvailable())
+                return nashorn;
+        } catch (LinkageError e) {
+            // Nashorn classes not present
+        }
+        log.debug("Nashorn is not available, some native functions will not be evaluated concretely");
+        return null;
+    }
+
+    /**
+     * Checks whether this implementation supports the given function directly (without the fallback).
+     */
+    public boolean isSupported(String functionName) {
+        return functions.containsKey(functionName) || mappingFunctions.containsKey(functionName);
+    }
+
+    @Override
+    public MappedNativeResult<ConcreteValue> apply(String functionName, ConcreteValue base, List<ConcreteValue> arguments) {
+        ConcreteFunction f = functions.get(functionName);
+        MappingFunction mf = mappingFunctions.get(functionName);
+        if (f != null || mf != null) {
+            try {
+                ConcreteApplyMapping mapping;
+                if (f != null)
+                    mapping = new ConcreteApplyMapping(base, new ConcreteArray(arguments, newMap()), f.apply(base, arguments));
+                else
+                    mapping = mf.apply(base, arguments);
+                return new MappedNativeResult<>(Optional.of(mapping), NativeResult.makeValue(mapping.getResult()));
+            } catch (ConcreteException e) {
+                return new MappedNativeResult<>(Optional.empty(), NativeResult.makeException());
+            } catch (NotSupported e) {
+                // use the fallback
+            }
+        }
+        if (fallback != null)
+            return fallback.apply(functionName, base, arguments);
+        return new MappedNativeResult<>(Optional.empty(), NativeResult.makeNonConcrete());
+    }
+
+    @Override
+    public NativeResult<ConcreteValue> eval(String script) {
+        if (fallback != null)
+            return fallback.eval(script);
+        return NativeResult.makeNonConcrete();
+    }
+
+    /*
+     * Conversions.
+     */
+
+    private static ConcreteValue arg(List<ConcreteValue> args, int i) {
+        return i < args.size() ? args.get(i) : new ConcreteUndefined();
+    }
+
+    private static boolean isUndefined(ConcreteValue v) {
+        return v instanceof ConcreteUndefined;
+    }
+
+    /**
+     * 7.1.3 ToNumber.
+     */
+    private static double toNumber(ConcreteValue v) {
+        if (v instanceof ConcreteNumber)
+            return ((ConcreteNumber) v).getNumber();
+        if (v instanceof ConcreteString)
+            return stringToNumber(((ConcreteString) v).getString());
+        if (v instanceof ConcreteBoolean)
+            return ((ConcreteBoolean) v).getBooleanValue() ? 1 : 0;
+        if (v instanceof ConcreteUndefined)
+            return Double.NaN;
+        if (v instanceof ConcreteNull)
+            return 0;
+        throw new NotSupported(); // objects require ToPrimitive
+    }
+
+    /**
+     * 7.1.3.1 ToNumber applied to the String type.
+     */
+    private static double stringToNumber(String s) {
+        s = trim(s, true, true);
+        if (s.isEmpty())
+            return 0;
+        if (s.length() > 2 && s.charAt(0) == '0') {
+            int radix = 0;
+            switch (s.charAt(1)) {
+                case 'x':
+                case 'X':
+                    radix = 16;
+                    break;
+                case 'o':
+                case 'O':
+                    radix = 8;
+                    break;
+                case 'b':
+                case 'B':
+                    radix = 2;
+                    break;
+            }
+            if (radix != 0) {
+                String digits = s.substring(2);
+                if (digitPrefixLength(digits, radix) != digits.length())
+                    return Double.NaN;
+                return new BigInteger(digits, radix).doubleValue();
+            }
+        }
+        if (!DECIMAL_LITERAL.matcher(s).matches())
+            return Double.NaN;
+        return parseDecimal(s);
+    }
+
+    /**
+     * Parses a string that matches the StrDecimalLiteral production.
+     */
+    private static double parseDecimal(String s) {
+        if (s.endsWith("Infinity"))
+            return s.charAt(0) == '-' ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        return Double.parseDouble(s);
+    }
+
+    /**
+     * 7.1.4 ToInteger.
+     */
+    private static double toInteger(ConcreteValue v) {
+        double d = toNumber(v);
+        if (Double.isNaN(d))
+            return 0;
+        if (Double.isInfinite(d))
+            return d;
+        return d < 0 ? Math.ceil(d) : Math.floor(d);
+    }
+
+    /**
+     * 7.1.5 ToInt32.
+     */
+    private static int toInt32(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d))
+            return 0;
+        return (int) (long) (d % 4294967296.0);
+    }
+
+    /**
+     * 7.1.6 ToUint32.
+     */
+    private static long toUint32(double d) {
+        return toInt32(d) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * 7.1.12 ToString.
+     */
+    private static String toStr(ConcreteValue v) {
+        if (v instanceof ConcreteString)
+            return ((ConcreteString) v).getString();
+        if (v instanceof ConcreteNumber)
+            return NumberFormatting.toString(((ConcreteNumber) v).getNumber());
+        if (v instanceof ConcreteBoolean)
+            return Boolean.toString(((ConcreteBoolean) v).getBooleanValue());
+        if (v instanceof ConcreteUndefined)
+            return "undefined";
+        if (v instanceof ConcreteNull)
+            return "null";
+        throw new NotSupported(); // objects require ToPrimitive
+    }
+
+    /**
+     * 21.1.3 RequireObjectCoercible followed by ToString, for the this value of String.prototype functions.
+     */
+    private static String thisString(ConcreteValue base) {
+        if (base instanceof ConcreteUndefined || base instanceof ConcreteNull || base instanceof ConcreteNullOrUndefined)
+            throw new ConcreteException(); // TypeError
+        return toStr(base);
+    }
+
+    /**
+     * 20.1.3 thisNumberValue.
+     */
+    private static double thisNumber(ConcreteValue base) {
+        if (!(base instanceof ConcreteNumber))
+            throw new ConcreteException(); // TypeError
+        return ((ConcreteNumber) base).getNumber();
+    }
+
+    /**
+     * Checks whether the given character is WhiteSpace or LineTerminator.
+     */
+    private static boolean isWhitespace(char ch) {
+        switch (ch) {
+            case '\t':
+            case '\u000B':
+            case '\f':
+            case ' ':
+            case '\u00A0':
+            case '\uFEFF':
+            case '\n':
+            case '\r':
+            case '\u2028':
+            case '\u2029':
+                return true;
+            default:
+                return Character.getType(ch) == Character.SPACE_SEPARATOR;
+        }
+    }
+
+    private static String trim(String s, boolean start, boolean end) {
+        int from = 0;
+        int to = s.length();
+        if (start)
+            while (from < to && isWhitespace(s.charAt(from)))
+                from++;
+        if (end)
+            while (to > from && isWhitespace(s.charAt(to - 1)))
+                to--;
+        return s.substring(from, to);
+    }
+
+    private static int clamp(double d, int min, int max) {
+        return (int) Math.min(Math.max(d, min), max);
+    }
+
+    private static ConcreteArray makeArray(List<ConcreteValue> elements) {
+        return new ConcreteArray(elements, newMap());
+    }
+
+    /*
+     * String functions.
+     */
+
+    private static ConcreteValue fromCharCode(ConcreteValue base, List<ConcreteValue> args) {
+        StringBuilder b = new StringBuilder();
+        for (ConcreteValue a : args)
+            b.append((char) (toInt32(toNumber(a)) & 0xFFFF));
+        return new ConcreteString(b.toString());
+    }
+
+    private static ConcreteValue fromCodePoint(ConcreteValue base, List<ConcreteValue> args) {
+        StringBuilder b = new StringBuilder();
+        for (ConcreteValue a : args) {
+            double cp = toNumber(a);
+            if (cp != toInteger(a) || cp < 0 || cp > 0x10FFFF)
+                throw new ConcreteException(); // RangeError
+            b.appendCodePoint((int) cp);
+        }
+        return new ConcreteString(b.toString());
+    }
+
+    private static ConcreteValue charAt(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        double pos = toInteger(arg(args, 0));
+        return new ConcreteString(pos < 0 || pos >= s.length() ? "" : String.valueOf(s.charAt((int) pos)));
+    }
+
+    private static ConcreteValue charCodeAt(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        double pos = toInteger(arg(args, 0));
+        return new ConcreteNumber(pos < 0 || pos >= s.length() ? Double.NaN : (double) s.charAt((int) pos));
+    }
+
+    private static ConcreteValue concat(ConcreteValue base, List<ConcreteValue> args) {
+        StringBuilder b = new StringBuilder(thisString(base));
+        for (ConcreteValue a : args)
+            b.append(toStr(a));
+        return new ConcreteString(b.toString());
+    }
+
+    private static String searchString(ConcreteValue v) {
+        if (v instanceof ConcreteRegularExpression)
+            throw new ConcreteException(); // TypeError (IsRegExp)
+        return toStr(v);
+    }
+
+    private static ConcreteValue startsWith(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        String search = searchString(arg(args, 0));
+        int start = clamp(toInteger(arg(args, 1)), 0, s.length());
+        return new ConcreteBoolean(s.startsWith(search, start));
+    }
+
+    private static ConcreteValue endsWith(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        String search = searchString(arg(args, 0));
+        ConcreteValue endPosition = arg(args, 1);
+        int end = isUndefined(endPosition) ? s.length() : clamp(toInteger(endPosition), 0, s.length());
+        int start = end - search.length();
+        return new ConcreteBoolean(start >= 0 && s.startsWith(search, start));
+    }
+
+    private static ConcreteValue indexOf(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        String search = toStr(arg(args, 0));
+        int start = clamp(toInteger(arg(args, 1)), 0, s.length());
+        return new ConcreteNumber((double) s.indexOf(search, start));
+    }
+
+    private static ConcreteValue lastIndexOf(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        String search = toStr(arg(args, 0));
+        double numPos = toNumber(arg(args, 1));
+        double pos = Double.isNaN(numPos) ? Double.POSITIVE_INFINITY : toInteger(new ConcreteNumber(numPos));
+        int start = clamp(pos, 0, s.length());
+        return new ConcreteNumber((double) s.lastIndexOf(search, start));
+    }
+
+    private static ConcreteApplyMapping replace(ConcreteValue base, List<ConcreteValue> args) {
+        ConcreteValue searchValue = arg(args, 0);
+        String s = thisString(base);
+        if (searchValue instanceof ConcreteRegularExpression)
+            return replaceRegExp(base, args, s, (ConcreteRegularExpression) searchValue);
+        String search = toStr(searchValue);
+        String replacement = toStr(arg(args, 1));
+        int pos = s.indexOf(search);
+        String result = pos == -1 ? s : s.substring(0, pos) + getSubstitution(search, s, pos, Collections.emptyList(), replacement) + s.substring(pos + search.length());
+        return unmodified(base, args, new ConcreteString(result));
+    }
+
+    /**
+     * 21.1.3.14.1 GetSubstitution.
+     *
+     * @param captures the captured strings, null for groups that did not participate
+     */
+    private static String getSubstitution(String matched, String s, int position, List<String> captures, String replacement) {
+        StringBuilder b = new StringBuilder();
+        int m = captures.size();
+        for (int i = 0; i < replacement.length(); i++) {
+            char ch = replacement.charAt(i);
+            if (ch == '$' && i + 1 < replacement.length()) {
+                char next = replacement.charAt(i + 1);
+                if (next >= '0' && next <= '9') {
+                    int n = next - '0';
+                    if (i + 2 < replacement.length() && Character.isDigit(replacement.charAt(i + 2))) {
+                        int nn = n * 10 + (replacement.charAt(i + 2) - '0');
+                        if (nn >= 1 && nn <= m) {
+                            String c = captures.get(nn - 1);
+                            b.append(c != null ? c : "");
+                            i += 2;
+                            continue;
+                        }
+                    }
+                    if (n >= 1 && n <= m) {
+                        String c = captures.get(n - 1);
+                        b.append(c != null ? c : "");
+                        i++;
+                        continue;
+                    }
+                } else if (next == '$') {
+                    b.append('$');
+                    i++;
+                    continue;
+                } else if (next == '&') {
+                    b.append(matched);
+                    i++;
+                    continue;
+                } else if (next == '`') {
+                    b.append(s, 0, position);
+                    i++;
+                    continue;
+                } else if (next == '\'') {
+                    b.append(s.substring(Math.min(position + matched.length(), s.length())));
+                    i++;
+                    continue;
+                }
+            }
+            b.append(ch);
+        }
+        return b.toString();
+    }
+
+    private static ConcreteValue slice(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        int len = s.length();
+        double intStart = toInteger(arg(args, 0));
+        ConcreteValue end = arg(args, 1);
+        double intEnd = isUndefined(end) ? len : toInteger(end);
+        int from = intStart < 0 ? clamp(len + intStart, 0, len) : clamp(intStart, 0, len);
+        int to = intEnd < 0 ? clamp(len + intEnd, 0, len) : clamp(intEnd, 0, len);
+        return new ConcreteString(from < to ? s.substring(from, to) : "");
+    }
+
+    private static ConcreteValue substring(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        int len = s.length();
+        ConcreteValue end = arg(args, 1);
+        int finalStart = clamp(toInteger(arg(args, 0)), 0, len);
+        int finalEnd = isUndefined(end) ? len : clamp(toInteger(end), 0, len);
+        return new ConcreteString(s.substring(Math.min(finalStart, finalEnd), Math.max(finalStart, finalEnd)));
+    }
+
+    private static ConcreteValue substr(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        int len = s.length();
+        double intStart = toInteger(arg(args, 0));
+        ConcreteValue length = arg(args, 1);
+        double end = isUndefined(length) ? Double.POSITIVE_INFINITY : toInteger(length);
+        int start = intStart < 0 ? clamp(len + intStart, 0, len) : clamp(intStart, 0, len);
+        int resultLength = clamp(end, 0, len - start);
+        return new ConcreteString(s.substring(start, start + resultLength));
+    }
+
+    private static ConcreteValue split(ConcreteValue base, List<ConcreteValue> args) {
+        ConcreteValue separator = arg(args, 0);
+        String s = thisString(base);
+        ConcreteValue limit = arg(args, 1);
+        long lim = isUndefined(limit) ? 0xFFFFFFFFL : toUint32(toNumber(limit));
+        if (separator instanceof ConcreteRegularExpression)
+            return splitRegExp(s, (ConcreteRegularExpression) separator, lim);
+        String r = isUndefined(separator) ? null : toStr(separator);
+        List<ConcreteValue> parts = newList();
+        if (lim == 0)
+            return makeArray(parts);
+        if (r == null) {
+            parts.add(new ConcreteString(s));
+            return makeArray(parts);
+        }
+        if (s.isEmpty()) {
+            if (!r.isEmpty())
+                parts.add(new ConcreteString(s));
+            return makeArray(parts);
+        }
+        if (r.isEmpty()) {
+            for (int i = 0; i < s.length() && parts.size() < lim; i++)
+                parts.add(new ConcreteString(String.valueOf(s.charAt(i))));
+            return makeArray(parts);
+        }
+        int p = 0;
+        int q;
+        while ((q = s.indexOf(r, p)) != -1) {
+            parts.add(new ConcreteString(s.substring(p, q)));
+            if (parts.size() == lim)
+                return makeArray(parts);
+            p = q + r.length();
+        }
+        parts.add(new ConcreteString(s.substring(p)));
+        return makeArray(parts);
+    }
+
+    /*
+     * Regular expressions.
+     */
+
+    private static ConcreteApplyMapping unmodified(ConcreteValue base, List<ConcreteValue> args, ConcreteValue result) {
+        return new ConcreteApplyMapping(base, new ConcreteArray(args, newMap()), result);
+    }
+
+    private static ConcreteRegularExpression withLastIndex(ConcreteRegularExpression r, double lastIndex) {
+        return new ConcreteRegularExpression(r.getSource(), r.getGlobal(), r.getIgnoreCase(), r.getMultiline(), new ConcreteNumber(lastIndex));
+    }
+
+    private static ConcreteRegularExpression makeRegExp(String source) {
+        return new ConcreteRegularExpression(new ConcreteString(source), new ConcreteBoolean(false), new ConcreteBoolean(false), new ConcreteBoolean(false), new ConcreteNumber(0.0));
+    }
+
+    private static ConcreteRegularExpression thisRegExp(ConcreteValue base) {
+        if (!(base instanceof ConcreteRegularExpression))
+            throw new ConcreteException(); // TypeError
+        return (ConcreteRegularExpression) base;
+    }
+
+    /**
+     * Returns the given argument if it is a regular expression, and otherwise converts it as new RegExp(arg).
+     */
+    private static ConcreteRegularExpression toRegExp(ConcreteValue v) {
+        if (v instanceof ConcreteRegularExpression)
+            return (ConcreteRegularExpression) v;
+        return makeRegExp(patternSource(isUndefined(v) ? "" : toStr(v)));
+    }
+
+    private static ECMAScriptRegExp compile(ConcreteRegularExpression r) {
+        ECMAScriptRegExp re = ECMAScriptRegExp.get(r.getSource().getString(), r.getIgnoreCase().getBooleanValue(), r.getMultiline().getBooleanValue());
+        if (re == null)
+            throw new NotSupported();
+        return re;
+    }
+
+    /**
+     * Returns the source text for the given pattern: "(?:)" for the empty pattern, and otherwise the pattern with unescaped slashes escaped.
+     */
+    private static String patternSource(String p) {
+        if (p.isEmpty())
+            return "(?:)";
+        StringBuilder b = new StringBuilder();
+        boolean escaped = false;
+        for (int i = 0; i < p.length(); i++) {
+            char ch = p.charAt(i);
+            if (ch == '/' && !escaped)
+                b.append('\\');
+            b.append(ch);
+            escaped = ch == '\\' && !escaped;
+        }
+        return b.toString();
+    }
+
+    private static List<String> captures(ECMAScriptRegExp re, MatchResult m) {
+        List<String> captures = newList();
+        for (int i = 1; i <= re.getGroupCount(); i++)
+            captures.add(re.group(m, i));
+        return captures;
+    }
+
+    /**
+     * 21.2.3.1 RegExp(pattern, flags), for string patterns.
+     */
+    private static ConcreteValue regExp(ConcreteValue base, List<ConcreteValue> args) {
+        ConcreteValue pattern = arg(args, 0);
+        ConcreteValue flags = arg(args, 1);
+        if (pattern instanceof ConcreteRegularExpression)
+            throw new NotSupported();
+        String p = isUndefined(pattern) ? "" : toStr(pattern);
+        String f = isUndefined(flags) ? "" : toStr(flags);
+        boolean global = false, ignoreCase = false, multiline = false;
+        for (int i = 0; i < f.length(); i++) {
+            char ch = f.charAt(i);
+            if (ch == 'g' && !global)
+                global = true;
+            else if (ch == 'i' && !ignoreCase)
+                ignoreCase = true;
+            else if (ch == 'm' && !multiline)
+                multiline = true;
+            else
+                throw new ConcreteException(); // SyntaxError
+        }
+        String source = patternSource(p);
+        if (ECMAScriptRegExp.get(source, ignoreCase, multiline) == null)
+            throw new NotSupported(); // possibly a SyntaxError, left to the fallback
+        return new ConcreteRegularExpression(new ConcreteString(source), new ConcreteBoolean(global), new ConcreteBoolean(ignoreCase), new ConcreteBoolean(multiline), new ConcreteNumber(0.0));
+    }
+
+    /**
+     * Runs the RegExpBuiltinExec algorithm (15.10.6.2) for the given regular expression and string.
+     *
+     * @return the regular expression after the call (with updated lastIndex) and the match result
+     */
+    private static ConcreteApplyMapping execute(ConcreteRegularExpression r, String s) {
+        ECMAScriptRegExp re = compile(r);
+        boolean global = r.getGlobal().getBooleanValue();
+        double i = global ? toInteger(r.getLastIndex()) : 0;
+        Matcher m = re.matcher(s);
+        if (i < 0 || i > s.length() || !re.find(m, s, (int) i))
+            return new ConcreteApplyMapping(withLastIndex(r, 0), makeArray(newList()), new ConcreteNull());
+        List<ConcreteValue> elements = newList();
+        elements.add(new ConcreteString(m.group()));
+        for (String c : captures(re, m))
+            elements.add(c != null ? new ConcreteString(c) : new ConcreteUndefined());
+        Map<PKey, ConcreteValue> properties = newMap();
+        properties.put(StringPKey.make("index"), new ConcreteNumber((double) m.start()));
+        properties.put(StringPKey.make("input"), new ConcreteString(s));
+        return new ConcreteApplyMapping(global ? withLastIndex(r, m.end()) : r, makeArray(newList()), new ConcreteArray(elements, properties));
+    }
+
+    private static ConcreteApplyMapping exec(ConcreteValue base, List<ConcreteValue> args) {
+        ConcreteRegularExpression r = thisRegExp(base);
+        ConcreteApplyMapping m = execute(r, toStr(arg(args, 0)));
+        return new ConcreteApplyMapping(m.getBase(), new ConcreteArray(args, newMap()), m.getResult());
+    }
+
+    private static ConcreteApplyMapping test(ConcreteValue base, List<ConcreteValue> args) {
+        ConcreteRegularExpression r = thisRegExp(base);
+        ConcreteApplyMapping m = execute(r, toStr(arg(args, 0)));
+        return new ConcreteApplyMapping(m.getBase(), new ConcreteArray(args, newMap()), new ConcreteBoolean(!(m.getResult() instanceof ConcreteNull)));
+    }
+
+    private static ConcreteValue regExpToString(ConcreteValue base, List<ConcreteValue> args) {
+        ConcreteRegularExpression r = thisRegExp(base);
+        return new ConcreteString("/" + r.getSource().getString() + "/"
+                + (r.getGlobal().getBooleanValue() ? "g" : "")
+                + (r.getIgnoreCase().getBooleanValue() ? "i" : "")
+                + (r.getMultiline().getBooleanValue() ? "m" : ""));
+    }
+
+    /**
+     * Returns the arguments with the first one replaced.
+     */
+    private static ConcreteArray withFirst(List<ConcreteValue> args, ConcreteValue first) {
+        List<ConcreteValue> result = newList(args);
+        if (result.isEmpty())
+            result.add(first);
+        else
+            result.set(0, first);
+        return new ConcreteArray(result, newMap());
+    }
+
+    /**
+     * Finds all matches as in String.prototype.match with a global regular expression.
+     */
+    private static List<MatchResult> matchAll(ECMAScriptRegExp re, String s) {
+        List<MatchResult> matches = newList();
+        Matcher m = re.matcher(s);
+        int lastIndex = 0;
+        while (lastIndex <= s.length() && re.find(m, s, lastIndex)) {
+            matches.add(m.toMatchResult());
+            lastIndex = m.end() == m.start() ? m.end() + 1 : m.end();
+        }
+        return matches;
+    }
+
+    private static ConcreteApplyMapping match(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        ConcreteValue regexp = arg(args, 0);
+        ConcreteRegularExpression r = toRegExp(regexp);
+        boolean modifiable = regexp instanceof ConcreteRegularExpression;
+        if (!r.getGlobal().getBooleanValue()) {
+            ConcreteApplyMapping m = execute(r, s);
+            return new ConcreteApplyMapping(base, modifiable ? withFirst(args, m.getBase()) : new ConcreteArray(args, newMap()), m.getResult());
+        }
+        List<ConcreteValue> elements = newList();
+        for (MatchResult mr : matchAll(compile(r), s))
+            elements.add(new ConcreteString(mr.group()));
+        ConcreteValue result = elements.isEmpty() ? new ConcreteNull() : makeArray(elements);
+        return new ConcreteApplyMapping(base, withFirst(args, withLastIndex(r, 0)), result);
+    }
+
+    private static ConcreteApplyMapping replaceRegExp(ConcreteValue base, List<ConcreteValue> args, String s, ConcreteRegularExpression r) {
+        String replacement = toStr(arg(args, 1));
+        ECMAScriptRegExp re = compile(r);
+        boolean global = r.getGlobal().getBooleanValue();
+        List<MatchResult> matches;
+        if (global)
+            matches = matchAll(re, s);
+        else {
+            matches = newList();
+            Matcher m = re.matcher(s);
+            if (re.find(m, s, 0))
+                matches.add(m.toMatchResult());
+        }
+        StringBuilder b = new StringBuilder();
+        int p = 0;
+        for (MatchResult m : matches) {
+            b.append(s, p, m.start()).append(getSubstitution(m.group(), s, m.start(), captures(re, m), replacement));
+            p = m.end();
+        }
+        b.append(s.substring(p));
+        return new ConcreteApplyMapping(base, global ? withFirst(args, withLastIndex(r, 0)) : new ConcreteArray(args, newMap()), new ConcreteString(b.toString()));
+    }
+
+    private static ConcreteValue search(ConcreteValue base, List<ConcreteValue> args) {
+        String s = thisString(base);
+        ECMAScriptRegExp re = compile(toRegExp(arg(args, 0)));
+        Matcher m = re.matcher(s);
+        return new ConcreteNumber(re.find(m, s, 0) ? (double) m.start() : -1);
+    }
+
+    /**
+     * 15.5.4.14 String.prototype.split with a regular expression separator.
+     */
+    private static ConcreteValue splitRegExp(String s, ConcreteRegularExpression r, long lim) {
+        ECMAScriptRegExp re = compile(r);
+        Matcher m = re.matcher(s);
+        List<ConcreteValue> parts = newList();
+        if (lim == 0)
+            return makeArray(parts);
+        if (s.isEmpty()) {
+            if (!re.matchAt(m, s, 0))
+                parts.add(new ConcreteString(s));
+            return makeArray(parts);
+        }
+        int p = 0;
+        int q = 0;
+        while (q < s.length() && re.find(m, s, q) && m.start() < s.length()) {
+            int e = m.end();
+            if (e == p) {
+                q = m.start() + 1;
+                continue;
+            }
+            parts.add(new ConcreteString(s.substring(p, m.start())));
+            if (parts.size() == lim)
+                return makeArray(parts);
+            p = e;
+            for (String c : captures(re, m)) {
+                parts.add(c != null ? new ConcreteString(c) : new ConcreteUndefined());
+                if (parts.size() == lim)
+                    return makeArray(parts);
+            }
+            q = p;
+        }
+        parts.add(new ConcreteString(s.substring(p)));
+        return makeArray(parts);
+    }
+
+    /*
+     * Number functions.
+     */
+
+    private static ConcreteValue numberToString(ConcreteValue base, List<ConcreteValue> args) {
+        double x = thisNumber(base);
+        ConcreteValue radix = arg(args, 0);
+        double r = isUndefined(radix) ? 10 : toInteger(radix);
+        if (r < 2 || r > 36)
+            throw new ConcreteException(); // RangeError
+        String s = NumberFormatting.toString(x, (int) r);
+        if (s == null)
+            throw new NotSupported();
+        return new ConcreteString(s);
+    }
+
+    private static ConcreteValue toFixed(ConcreteValue base, List<ConcreteValue> args) {
+        double x = thisNumber(base);
+        double f = toInteger(arg(args, 0));
+        if (f < 0 || f > 100)
+            throw new ConcreteException(); // RangeError
+        return new ConcreteString(NumberFormatting.toFixed(x, (int) f));
+    }
+
+    private static ConcreteValue toExponential(ConcreteValue base, List<ConcreteValue> args) {
+        double x = thisNumber(base);
+        ConcreteValue fractionDigits = arg(args, 0);
+        double f = toInteger(fractionDigits);
+        if (!Double.isNaN(x) && !Double.isInfinite(x) && (f < 0 || f > 100))
+            throw new ConcreteException(); // RangeError
+        return new ConcreteString(NumberFormatting.toExponential(x, isUndefined(fractionDigits) ? -1 : (int) f));
+    }
+
+    private static ConcreteValue toPrecision(ConcreteValue base, List<ConcreteValue> args) {
+        double x = thisNumber(base);
+        ConcreteValue precision = arg(args, 0);
+        if (isUndefined(precision))
+            return new ConcreteString(NumberFormatting.toString(x));
+        double p = toInteger(precision);
+        if (!Double.isNaN(x) && !Double.isInfinite(x) && (p < 1 || p > 100))
+            throw new ConcreteException(); // RangeError
+        return new ConcreteString(NumberFormatting.toPrecision(x, (int) p));
+    }
+
+    /*
+     * Global functions.
+     */
+
+    private static int digitPrefixLength(String s, int radix) {
+        int i = 0;
+        while (i < s.length() && Character.digit(s.charAt(i), radix) != -1 && s.charAt(i) < 128)
+            i++;
+        return i;
+    }
+
+    private static ConcreteValue parseInt(ConcreteValue base, List<ConcreteValue> args) {
+        String s = trim(toStr(arg(args, 0)), true, false);
+        int radix = toInt32(toNumber(arg(args, 1)));
+        boolean negative = false;
+        if (!s.isEmpty() && (s.charAt(0) == '+' || s.charAt(0) == '-')) {
+            negative = s.charAt(0) == '-';
+            s = s.substring(1);
+        }
+        boolean stripPrefix = true;
+        if (radix != 0) {
+            if (radix < 2 || radix > 36)
+                return new ConcreteNumber(Double.NaN);
+            if (radix != 16)
+                stripPrefix = false;
+        } else
+            radix = 10;
+        if (stripPrefix && s.length() >= 2 && s.charAt(0) == '0' && (s.charAt(1) == 'x' || s.charAt(1) == 'X')) {
+            s = s.substring(2);
+            radix = 16;
+        }
+        int end = digitPrefixLength(s, radix);
+        if (end == 0)
+            return new ConcreteNumber(Double.NaN);
+        double d = new BigInteger(s.substring(0, end), radix).doubleValue();
+        return new ConcreteNumber(negative ? -d : d);
+    }
+
+    private static ConcreteValue parseFloat(ConcreteValue base, List<ConcreteValue> args) {
+        String s = trim(toStr(arg(args, 0)), true, false);
+        Matcher m = DECIMAL_LITERAL.matcher(s);
+        if (!m.lookingAt())
+            return new ConcreteNumber(Double.NaN);
+        return new ConcreteNumber(parseDecimal(m.group()));
+    }
+
+    private static boolean isAlphaNumeric(char ch) {
+        return (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9');
+    }
+
+    private static void appendHex(StringBuilder b, int value, int digits) {
+        String hex = Integer.toHexString(value).toUpperCase(Locale.ROOT);
+        for (int i = hex.length(); i < digits; i++)
+            b.append('0');
+        b.append(hex);
+    }
+
+    /**
+     * 18.2.6.1.1 Encode.
+     */
+    private static String encode(String s, String unescapedMarks) {
+        StringBuilder b = new StringBuilder();
+        for (int k = 0; k < s.length(); k++) {
+            char ch = s.charAt(k);
+            if (isAlphaNumeric(ch) || unescapedMarks.indexOf(ch) != -1) {
+                b.append(ch);
+                continue;
+            }
+            int cp = ch;
+            if (Character.isLowSurrogate(ch))
+                throw new ConcreteException(); // URIError
+            if (Character.isHighSurrogate(ch)) {
+                if (k + 1 == s.length() || !Character.isLowSurrogate(s.charAt(k + 1)))
+                    throw new ConcreteException(); // URIError
+                cp = Character.toCodePoint(ch, s.charAt(++k));
+            }
+            for (byte octet : new String(Character.toChars(cp)).getBytes(StandardCharsets.UTF_8)) {
+                b.append('%');
+                appendHex(b, octet & 0xFF, 2);
+            }
+        }
+        return b.toString();
+    }
+
+    private static int hexByte(String s, int k) {
+        if (k + 2 >= s.length() || s.charAt(k) != '%')
+            throw new ConcreteException(); // URIError
+        int hi = Character.digit(s.charAt(k + 1), 16);
+        int lo = Character.digit(s.charAt(k + 2), 16);
+        if (hi == -1 || lo == -1)
+            throw new ConcreteException(); // URIError
+        return hi * 16 + lo;
+    }
+
+    /**
+     * 18.2.6.1.2 Decode.
+     */
+    private static String decode(String s, String reserved) {
+        StringBuilder b = new StringBuilder();
+        for (int k = 0; k < s.length(); k++) {
+            char ch = s.charAt(k);
+            if (ch != '%') {
+                b.append(ch);
+                continue;
+            }
+            int start = k;
+            int octet = hexByte(s, k);
+            k += 2;
+            if ((octet & 0x80) == 0) {
+                if (reserved.indexOf((char) octet) != -1)
+                    b.append(s, start, k + 1);
+                else
+                    b.append((char) octet);
+                continue;
+            }
+            int n;
+            if ((octet & 0xE0) == 0xC0)
+                n = 2;
+            else if ((octet & 0xF0) == 0xE0)
+                n = 3;
+            else if ((octet & 0xF8) == 0xF0)
+                n = 4;
+            else
+                throw new ConcreteException(); // URIError
+            int cp = octet & (0xFF >> (n + 1));
+            for (int j = 1; j < n; j++) {
+                int next = hexByte(s, k + 1);
+                if ((next & 0xC0) != 0x80)
+                    throw new ConcreteException(); // URIError
+                cp = (cp << 6) | (next & 0x3F);
+                k += 3;
+            }
+            int min = n == 2 ? 0x80 : n == 3 ? 0x800 : 0x10000;
+            if (cp < min || cp > 0x10FFFF || (cp >= 0xD800 && cp <= 0xDFFF))
+                throw new ConcreteException(); // URIError (overlong or invalid code point)
+            b.appendCodePoint(cp);
+        }
+        return b.toString();
+    }
+
+    /**
+     * B.2.1.1 escape.
+     */
+    private static String escape(String s) {
+        StringBuilder b = new StringBuilder();
+        for (int k = 0; k < s.length(); k++) {
+            char ch = s.charAt(k);
+            if (isAlphaNumeric(ch) || ESCAPE_UNESCAPED.indexOf(ch) != -1)
+                b.append(ch);
+            else if (ch < 256) {
+                b.append('%');
+                appendHex(b, ch, 2);
+            } else {
+                b.append("%u");
+                appendHex(b, ch, 4);
+            }
+        }
+        return b.toString();
+    }
+
+    private static int hexValue(String s, int from, int to) {
+        if (to > s.length())
+            return -1;
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            int d = Character.digit(s.charAt(i), 16);
+            if (d == -1 || s.charAt(i) >= 128)
+                return -1;
+            v = v * 16 + d;
+        }
+        return v;
+    }
+
+    /**
+     * B.2.1.2 unescape.
+     */
+    private static String unescape(String s) {
+        StringBuilder b = new StringBuilder();
+        for (int k = 0; k < s.length(); k++) {
+            char ch = s.charAt(k);
+            if (ch == '%') {
+                int v;
+                if (k + 1 < s.length() && s.charAt(k + 1) == 'u' && (v = hexValue(s, k + 2, k + 6)) != -1) {
+                    ch = (char) v;
+                    k += 5;
+                } else if ((v = hexValue(s, k + 1, k + 3)) != -1) {
+                    ch = (char) v;
+                    k += 2;
+                }
+            }
+            b.append(ch);
+        }
+        return b.toString();
+    }
+}
@@ -50,6 +50,13 @@ public class NashornConcreteSemantics implements NativeConcreteSemantics {
         engine = new ScriptEngineManager().getEngineByName("JavaScript");
     }
 
+    /**
+     * Checks whether a JavaScript engine is available in the running JDK.
+     */
+    public boolean isAvailable() {
+        return engine != null;
+    }
+
     public static void main(String[] args) throws ScriptException {
         Object o = new NashornConcreteSemantics()._eval("var base = \"abcdefg\"; var argumentsList = [1.00000000000000000000]; var result = String.prototype.substring.apply(base, argumentsList); ({base: base, argumentsList: argumentsList, result: result, MAPPING_OBJECT: true});");
         System.out.println(o);
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.analysis.nativeobjects.concrete;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+
+/**
+ * Number-to-string conversions with ECMAScript semantics.
+ * <p>
+ * All roundings are performed on the exact decimal value of the double, as required by the specification.
+ */
+final class NumberFormatting {
+
+    private NumberFormatting() {
+    }
+
+    /**
+     * Decimal digits and exponent n such that the value is 0.d1d2...dk * 10^n.
+     */
+    private static final class Digits {
+
+        final String digits;
+
+        final int n;
+
+        Digits(BigDecimal d) {
+            String s = d.unscaledValue().toString();
+            digits = s;
+            n = s.length() - d.scale();
+        }
+    }
+
+    /**
+     * Finds the shortest digit sequence that round-trips to the given positive finite number.
+     */
+    private static Digits shortest(double m) {
+        BigDecimal exact = new BigDecimal(m);
+        for (int p = 1; p < 17; p++) {
+            BigDecimal r = exact.round(new MathContext(p, RoundingMode.HALF_EVEN));
+            if (r.doubleValue() == m)
+                return new Digits(r.stripTrailingZeros());
+        }
+        return new Digits(exact.round(new MathContext(17, RoundingMode.HALF_EVEN)).stripTrailingZeros());
+    }
+
+    /**
+     * Rounds the given positive finite number to p significant digits, choosing the larger value at ties.
+     * The resulting digit string has exactly p digits.
+     */
+    private static Digits significant(double m, int p) {
+        BigDecimal r = new BigDecimal(m).round(new MathContext(p, RoundingMode.HALF_UP));
+        StringBuilder b = new StringBuilder(r.unscaledValue().toString());
+        int scale = r.scale();
+        while (b.length() < p) {
+            b.append('0');
+            scale++;
+        }
+        return new Digits(new BigDecimal(new BigInteger(b.toString()), scale));
+    }
+
+    private static String zeros(int n) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < n; i++)
+            b.append('0');
+        return b.toString();
+    }
+
+    private static String exponent(int e) {
+        return "e" + (e >= 0 ? "+" : "-") + Math.abs(e);
+    }
+
+    /**
+     * 7.1.12.1 NumberToString.
+     */
+    static String toString(double m) {
+        if (Double.isNaN(m))
+            return "NaN";
+        if (m == 0)
+            return "0";
+        if (m < 0)
+            return "-" + toString(-m);
+        if (Double.isInfinite(m))
+            return "Infinity";
+        Digits d = shortest(m);
+        String s = d.digits;
+        int k = s.length();
+        int n = d.n;
+        if (k <= n && n <= 21)
+            return s + zeros(n - k);
+        if (0 < n && n <= 21)
+            return s.substring(0, n) + "." + s.substring(n);
+        if (-6 < n && n <= 0)
+            return "0." + zeros(-n) + s;
+        if (k == 1)
+            return s + exponent(n - 1);
+        return s.charAt(0) + "." + s.substring(1) + exponent(n - 1);
+    }
+
+    /**
+     * Number.prototype.toString with a radix other than 10.
+     *
+     * @return the string, or null if the number has a fraction or is an integer outside the safe range with a radix
+     * that is not a power of two (implementations disagree on those)
+     */
+    static String toString(double m, int radix) {
+        if (radix == 10)
+            return toString(m);
+        if (Double.isNaN(m))
+            return "NaN";
+        if (Double.isInfinite(m))
+            return m > 0 ? "Infinity" : "-Infinity";
+        if (m != Math.rint(m))
+            return null;
+        if (Math.abs(m) <= 9007199254740991d)
+            return Long.toString((long) m, radix);
+        if (Integer.bitCount(radix) != 1)
+            return null;
+        return new BigDecimal(m).toBigInteger().toString(radix);
+    }
+
+    /**
+     * 20.1.3.3 Number.prototype.toFixed, for 0 &lt;= f &lt;= 100.
+     */
+    static String toFixed(double x, int f) {
+        if (Double.isNaN(x))
+            return "NaN";
+        if (Math.abs(x) >= 1e21)
+            return toString(x);
+        String sign = "";
+        if (x < 0) {
+            sign = "-";
+            x = -x;
+        }
+        return sign + new BigDecimal(x).setScale(f, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    /**
+     * 20.1.3.2 Number.prototype.toExponential, for 0 &lt;= f &lt;= 100 or f = -1 meaning undefined.
+     */
+    static String toExponential(double x, int f) {
+        if (Double.isNaN(x))
+            return "NaN";
+        String sign = "";
+        if (x < 0) {
+            sign = "-";
+            x = -x;
+        }
+        if (Double.isInfinite(x))
+            return sign + "Infinity";
+        if (x == 0)
+            return sign + "0" + (f > 0 ? "." + zeros(f) : "") + exponent(0);
+        Digits d = f < 0 ? shortest(x) : significant(x, f + 1);
+        String s = d.digits;
+        int e = d.n - 1;
+        return sign + s.charAt(0) + (s.length() > 1 ? "." + s.substring(1) : "") + exponent(e);
+    }
+
+    /**
+     * 20.1.3.5 Number.prototype.toPrecision, for 1 &lt;= p &lt;= 100.
+     */
+    static String toPrecision(double x, int p) {
+        if (Double.isNaN(x))
+            return "NaN";
+        String sign = "";
+        if (x < 0) {
+            sign = "-";
+            x = -x;
+        }
+        if (Double.isInfinite(x))
+            return sign + "Infinity";
+        String s;
+        int e;
+        if (x == 0) {
+            s = zeros(p);
+            e = 0;
+        } else {
+            Digits d = significant(x, p);
+            s = d.digits;
+            e = d.n - 1;
+            if (e < -6 || e >= p)
+                return sign + s.charAt(0) + (p != 1 ? "." + s.substring(1) : "") + exponent(e);
+        }
+        if (e == p - 1)
+            return sign + s;
+        if (e >= 0)
+            return sign + s.substring(0, e + 1) + "." + s.substring(e + 1);
+        return sign + "0." + zeros(-(e + 1)) + s;
+    }
+}
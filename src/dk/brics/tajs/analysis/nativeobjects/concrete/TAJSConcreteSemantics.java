@@ -36,7 +36,7 @@ import java.util.function.Supplier;
  */
 public class TAJSConcreteSemantics {
 
-    private static final NativeConcreteSemantics nativeConcreteSemantics = new CachingNativeConcreteSemantics(new NashornConcreteSemantics());
+    private static final CachingNativeConcreteSemantics nativeConcreteSemantics = new CachingNativeConcreteSemantics(new JavaConcreteSemantics(JavaConcreteSemantics.makeNashornFallback()));
 
     /**
      * Implements a general call with implicit arguments. The default behavior is used if the concrete semantics was inapplicable to the call. The default behavior is used if the concrete semantics was inapplicable to the call.
@@ -77,6 +77,13 @@ public class TAJSConcreteSemantics {
         return nativeConcreteSemantics;
     }
 
+    /**
+     * Returns the cache of concrete results, which is shared between analysis runs in the same JVM.
+     */
+    public static CachingNativeConcreteSemantics getCache() {
+        return nativeConcreteSemantics;
+    }
+
     /**
      * Implements eval.Throws exception if the concrete semantics was inapplicable to the call.
      */
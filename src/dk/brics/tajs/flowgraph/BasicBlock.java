@@ -16,12 +16,16 @@
 
 package dk.brics.tajs.flowgraph;
 
+import dk.brics.tajs.flowgraph.jsnodes.IfNode;
 import dk.brics.tajs.flowgraph.jsnodes.ReturnNode;
 import dk.brics.tajs.flowgraph.jsnodes.ThrowNode;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Strings;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.Collection;
@@ -62,12 +66,12 @@ public class BasicBlock implements Serializable {
     /**
      * Successors of this block. Not including successors of call nodes and exception edges.
      */
-    private Collection<BasicBlock> successors;
+    private transient Collection<BasicBlock> successors;
 
     /**
      * The exception handler block for nodes in this block.
      */
-    private BasicBlock exception_handler;
+    private transient BasicBlock exception_handler;
 
     /**
      * The function containing this block.
@@ -80,13 +84,13 @@ public class BasicBlock implements Serializable {
      * The entry_block can be thought of as the entry block of a function.
      * This information is ultimately needed by {@link dk.brics.tajs.lattice.UnknownValueResolver}
      */
-    private BasicBlock entry_block;
+    private transient BasicBlock entry_block;
 
     /**
      * The predecessor block for an entry block.
      * Non-null iff this block is an entry block, i.e. `this.entry_block == this`
      */
-    private BasicBlock entry_predecessor_block;
+    private transient BasicBlock entry_predecessor_block;
 
     /**
      * Constructs a new initially empty block of nodes.
@@ -416,4 +420,42 @@ public class BasicBlock implements Serializable {
     public void setEntryPredecessorBlock(BasicBlock entry_predecessor_block) {
         this.entry_predecessor_block = entry_predecessor_block;
     }
+
+    /**
+     * Writes the references from this block and its 'if' nodes to other blocks.
+     * Called by {@link Function} after all its blocks have been written,
+     * such that the nesting depth of the serialized form does not grow with the length of the control flow.
+     */
+    void writeLinks(ObjectOutputStream out) throws IOException {
+        out.writeObject(successors);
+        out.writeObject(exception_handler);
+        out.writeObject(entry_block);
+        out.writeObject(entry_predecessor_block);
+        for (AbstractNode n : nodes) {
+            if (n instanceof IfNode) {
+                IfNode ifn = (IfNode) n;
+                out.writeObject(ifn);
+                out.writeObject(ifn.getSuccTrue());
+                out.writeObject(ifn.getSuccFalse());
+            }
+        }
+        out.writeObject(null);
+    }
+
+    /**
+     * Reads the references written by {@link #writeLinks(ObjectOutputStream)}.
+     */
+    @SuppressWarnings("unchecked")
+    void readLinks(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        successors = (Collection<BasicBlock>) in.readObject();
+        exception_handler = (BasicBlock) in.readObject();
+        entry_block = (BasicBlock) in.readObject();
+        entry_predecessor_block = (BasicBlock) in.readObject();
+        IfNode ifn;
+        while ((ifn = (IfNode) in.readObject()) != null) {
+            BasicBlock succTrue = (BasicBlock) in.readObject();
+            BasicBlock succFalse = (BasicBlock) in.readObject();
+            ifn.setSuccessors(succTrue, succFalse);
+        }
+    }
 }
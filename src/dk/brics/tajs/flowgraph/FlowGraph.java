@@ -20,9 +20,12 @@ import dk.brics.tajs.flowgraph.syntaticinfo.RawSyntacticInformation;
 import dk.brics.tajs.flowgraph.syntaticinfo.SyntacticQueries;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.Pair;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
+import java.io.Serializable;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -31,6 +34,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newMap;
@@ -41,7 +47,7 @@ import static dk.brics.tajs.util.Collections.newSet;
  * the main program. Each function contains blocks of nodes. Nodes represent
  * primitive instructions, edges represent control flow.
  */
-public class FlowGraph {
+public class FlowGraph implements Serializable {
 
     /**
      * The functions in this flow graph.
@@ -86,13 +92,28 @@ public class FlowGraph {
     /**
      * Cache of dynamically created functions.
      */
-    private Map<FunctionCacheKey, Function> functionCache = newMap();
+    private transient Map<FunctionCacheKey, Function> functionCache = newMap();
 
     /**
      * Additional syntactic information to be used for mapping between flowgraph locations and locations from value logs (mainly used for soundness testing)
      */
     private ValueLogLocationInformation valueLogLocationInformation;
 
+    /**
+     * Translators for the bodies of functions that have not been translated yet (see option -lazy-translation).
+     */
+    private transient Map<Function, Consumer<FlowGraph>> pending_bodies = newMap();
+
+    /**
+     * Number of function bodies translated on demand.
+     */
+    private int number_of_lazily_translated_functions;
+
+    /**
+     * Statistics about the construction of this flow graph, reported with the analysis statistics.
+     */
+    private transient List<Supplier<String>> statistics = newList();
+
     /**
      * Constructs a new uninitialized flow graph.
      */
@@ -104,6 +125,13 @@ public class FlowGraph {
         this.valueLogLocationInformation = new ValueLogLocationInformation();
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        functionCache = newMap();
+        pending_bodies = newMap();
+        statistics = newList();
+    }
+
     /**
      * Adds a block to this flow graph. Increases the block and node counts for the flowgraph.
      *
@@ -159,6 +187,70 @@ public class FlowGraph {
         f.setIndex(number_of_functions++);
     }
 
+    /**
+     * Adds functions whose blocks have already been constructed, for example copies of functions from another flow graph.
+     * The indices of the functions, blocks and nodes are cleared, and the blocks are added to the flow graph.
+     */
+    public void addCompletedFunctions(List<Function> fs) {
+        for (Function f : fs) {
+            f.clearIndex();
+            addFunction(f);
+            List<BasicBlock> blocks = newList(f.getBlocks());
+            f.removeBlocks(blocks);
+            for (BasicBlock b : blocks) {
+                b.setIndex(-1);
+                for (AbstractNode n : b.getNodes())
+                    n.setIndex(-1);
+                addBlock(b);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the block and node counts and renumbers the blocks and nodes consecutively, preserving their order,
+     * after blocks or nodes have been removed from the functions.
+     */
+    public void compactIndices() {
+        List<BasicBlock> blocks = newList();
+        List<AbstractNode> nodes = newList();
+        for (Function f : functions)
+            for (BasicBlock b : f.getBlocks()) {
+                blocks.add(b);
+                nodes.addAll(b.getNodes());
+            }
+        blocks.sort(Comparator.comparingInt(BasicBlock::getIndex));
+        nodes.sort(Comparator.comparingInt(AbstractNode::getIndex));
+        for (int i = 0; i < blocks.size(); i++)
+            blocks.get(i).setIndex(i);
+        number_of_user_code_nodes = 0;
+        for (int i = 0; i < nodes.size(); i++) {
+            nodes.get(i).setIndex(i);
+            if (isUserCode(nodes.get(i)))
+                number_of_user_code_nodes++;
+        }
+        number_of_blocks = blocks.size();
+        number_of_nodes = nodes.size();
+    }
+
+    /**
+     * Renumbers the registers that are associated with variable names, see {@link SyntacticQueries#getVariableNameFromReg(Function, int)}.
+     *
+     * @param renumberings for each function whose registers have been renumbered, the new number of each old register, or -1 if no longer used
+     */
+    public void renumberVariableReads(Map<Function, int[]> renumberings) {
+        Map<Pair<Function, Integer>, String> reads = rawSyntacticInformation.getVariableReads();
+        Map<Pair<Function, Integer>, String> renumbered = newMap();
+        reads.forEach((p, name) -> {
+            int[] renumbering = renumberings.get(p.getFirst());
+            if (renumbering == null || p.getSecond() < 0)
+                renumbered.put(p, name);
+            else if (p.getSecond() < renumbering.length && renumbering[p.getSecond()] != -1)
+                renumbered.put(Pair.make(p.getFirst(), renumbering[p.getSecond()]), name);
+        });
+        reads.clear();
+        reads.putAll(renumbered);
+    }
+
     /**
      * Deletes a collection of functions from the flow graph.
      */
@@ -335,6 +427,62 @@ public class FlowGraph {
         return functionCache;
     }
 
+    /**
+     * Registers the translator for the body of a function that has not been translated yet.
+     * Until then, the function body is a stub that returns undefined.
+     */
+    public void addPendingBody(Function f, Consumer<FlowGraph> translator) {
+        pending_bodies.put(f, translator);
+    }
+
+    /**
+     * Translates the body of the given function and adds it to this flow graph, if not done already.
+     * Must be called before the function is entered.
+     */
+    public void translatePendingBody(Function f) {
+        Consumer<FlowGraph> translator = pending_bodies.remove(f);
+        if (translator != null) {
+            translator.accept(this);
+            number_of_lazily_translated_functions++;
+        }
+    }
+
+    /**
+     * Returns true if the body of the given function has not been translated yet.
+     */
+    public boolean hasPendingBody(Function f) {
+        return pending_bodies.containsKey(f);
+    }
+
+    /**
+     * Returns the number of function bodies that have not been translated yet.
+     */
+    public int getNumberOfPendingBodies() {
+        return pending_bodies.size();
+    }
+
+    /**
+     * Returns the number of function bodies translated on demand.
+     */
+    public int getNumberOfLazilyTranslatedFunctions() {
+        return number_of_lazily_translated_functions;
+    }
+
+    /**
+     * Adds a line to the statistics about the construction of this flow graph.
+     * The line is computed when the statistics are reported.
+     */
+    public void addStatistics(Supplier<String> line) {
+        statistics.add(line);
+    }
+
+    /**
+     * Returns the statistics about the construction of this flow graph, one line per element.
+     */
+    public List<String> getStatistics() {
+        return statistics.stream().map(Supplier::get).collect(Collectors.toList());
+    }
+
     public ValueLogLocationInformation getValueLogLocationInformation() {
         return valueLogLocationInformation;
     }
@@ -21,6 +21,9 @@ import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Strings;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.Arrays;
@@ -139,6 +142,18 @@ public class Function implements Serializable {
         this(name, parameter_names, outer_function, false, location, null);
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (BasicBlock b : blocks)
+            b.writeLinks(out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        for (BasicBlock b : blocks)
+            b.readLinks(in);
+    }
+
     /**
      * Returns true if this is the main function.
      */
@@ -146,6 +161,13 @@ public class Function implements Serializable {
         return outer_function == null;
     }
 
+    /**
+     * Clears the function index, such that the function can be added to another flow graph.
+     */
+    void clearIndex() {
+        index = -1;
+    }
+
     /**
      * Sets the function index.
      * Called when the function is added to a flow graph.
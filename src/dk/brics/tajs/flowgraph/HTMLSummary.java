@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.flowgraph;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Summary of the elements of an HTML document, as needed for modeling the page before scripts are invoked.
+ * <p>
+ * Only the tag name and the 'id' and 'name' attributes of each element are kept, in document order.
+ * An element without 'id' and 'name' attributes is only recorded if no other element with the same tag name has been recorded,
+ * so the size of the summary is proportional to the number of distinct tag names and named elements, not to the size of the document.
+ */
+public class HTMLSummary {
+
+    private final List<Element> elements = newList();
+
+    private final Set<String> tagNames = newSet();
+
+    private int numberOfElements;
+
+    /**
+     * Adds an element to the summary.
+     *
+     * @param tagName the tag name
+     * @param id      the value of the 'id' attribute, or null if absent
+     * @param name    the value of the 'name' attribute, or null if absent
+     */
+    public void addElement(String tagName, String id, String name) {
+        numberOfElements++;
+        if (!tagNames.add(tagName) && id == null && name == null)
+            return;
+        elements.add(new Element(tagName, id, name));
+    }
+
+    /**
+     * Returns the recorded elements, in document order.
+     */
+    public List<Element> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    /**
+     * Returns the number of elements in the document, including the ones that have not been recorded.
+     */
+    public int getNumberOfElements() {
+        return numberOfElements;
+    }
+
+    /**
+     * Element in an HTML document.
+     */
+    public static class Element {
+
+        private final String tagName;
+
+        private final String id;
+
+        private final String name;
+
+        private Element(String tagName, String id, String name) {
+            this.tagName = tagName;
+            this.id = id;
+            this.name = name;
+        }
+
+        /**
+         * Returns the tag name.
+         */
+        public String getTagName() {
+            return tagName;
+        }
+
+        /**
+         * Returns the value of the 'id' attribute, or null if absent.
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Returns the value of the 'name' attribute, or null if absent.
+         */
+        public String getName() {
+            return name;
+        }
+    }
+}
@@ -26,65 +26,70 @@ import javax.annotation.Nonnull;
 import java.io.Serializable;
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
 
+import static dk.brics.tajs.util.Collections.newMap;
+
 /**
  * Source location.
+ * <p>
+ * The file part of a source location (custom name, URL, loader location and kind) is interned as a {@link SourceFile} with a numeric ID,
+ * and the line and column numbers are packed into a single <code>long</code>,
+ * so equality of canonical source locations is decided by comparing the interned file and the packed position.
  */
 public class SourceLocation implements DeepImmutable, Serializable {
 
     /**
-     * A custom name for this source location (only used for pretty printing and sorting).
+     * Interned source files, reset together with the canonicalizer.
      */
-    private final String customName;
+    private static final Map<SourceFile, SourceFile> files = newMap();
 
     /**
-     * The location where the source code resides.
+     * The file part of this source location.
      */
-    private final URL location;
+    private final SourceFile file;
 
     /**
-     * The line number inside the source code (starts at 1).
+     * The line number (high 32 bits) and column number (low 32 bits).
      */
-    private final int lineNumber;
+    private final long position;
 
     /**
-     * The column number inside the source code (starts at 1).
+     * The end line number (high 32 bits) and end column number (low 32 bits).
      */
-    private final int columnNumber;
+    private final long endPosition;
+
+    private final int hashCode;
 
     /**
-     * The location where the source code is created and loaded dynamically (only used for pretty printing and sorting).
+     * Constructs a new source location.
+     * 0 means "no number".
      */
-    private final SourceLocation loaderLocation;
+    private SourceLocation(SourceFile file, long position, long endPosition) {
+        this.file = file;
+        this.position = position;
+        // TODO make equal/hashcode work for the end-positions as well (GitHub #360)
+        this.endPosition = endPosition;
+        this.hashCode = 31 * file.hashCode + Long.hashCode(position);
+    }
 
     /**
-     * The kind of the source location (only used for pretty printing and sorting).
+     * Discards the interned source files.
      */
-    private final Kind kind;
-
-    private final int endLineNumber;
-
-    private final int endColumnNumber;
-
-    private final int hashCode;
+    public static void reset() {
+        files.clear();
+    }
 
     /**
-     * Constructs a new source location.
-     * 0 means "no number".
+     * Returns the number of interned source files.
      */
-    private SourceLocation(String customName, URL location, int lineNumber, int columnNumber, int endLineNumber, int endColumnNumber, SourceLocation loaderLocation, Kind kind) {
-        checkNormalizedFileURL(location);
-        this.customName = customName;
-        this.location = location;
-        this.lineNumber = lineNumber;
-        this.columnNumber = columnNumber;
-        // TODO make equal/hashcode work for the end-positions as well (GitHub #360)
-        this.endLineNumber = endLineNumber;
-        this.endColumnNumber = endColumnNumber;
-        this.loaderLocation = loaderLocation;
-        this.kind = kind;
-        this.hashCode = computeHashCode();
+    public static int getNumberOfFiles() {
+        return files.size();
+    }
+
+    private static long pack(int high, int low) {
+        return ((long) high << 32) | (low & 0xffffffffL);
     }
 
     private static void checkNormalizedFileURL(URL location) {
@@ -109,19 +114,27 @@ public class SourceLocation implements DeepImmutable, Serializable {
     }
 
     public int getEndLineNumber() {
-        return endLineNumber;
+        return (int) (endPosition >>> 32);
     }
 
     public int getEndColumnNumber() {
-        return endColumnNumber;
+        return (int) endPosition;
     }
 
     public URL getLocation() {
-        return location;
+        return file.location;
     }
 
     public SourceLocation getLoaderLocation() {
-        return loaderLocation;
+        return file.loaderLocation;
+    }
+
+    /**
+     * Returns the ID of the interned source file of this source location.
+     * Source locations have the same ID if and only if they only differ in their positions.
+     */
+    public int getFileID() {
+        return file.id;
     }
 
     @Override
@@ -133,23 +146,7 @@ public class SourceLocation implements DeepImmutable, Serializable {
         if (!(o instanceof SourceLocation)) return false;
 
         final SourceLocation that = (SourceLocation) o;
-
-        if (lineNumber != that.lineNumber) return false;
-        if (columnNumber != that.columnNumber) return false;
-        if (!Objects.equals(customName, that.customName)) return false;
-        if (!Objects.equals(location, that.location)) return false;
-        if (!Objects.equals(loaderLocation, that.loaderLocation)) return false;
-        return kind == that.kind;
-    }
-
-    private int computeHashCode() {
-        int result = customName != null ? customName.hashCode() : 0;
-        result = 31 * result + (location != null ? location.hashCode() : 0);
-        result = 31 * result + lineNumber;
-        result = 31 * result + columnNumber;
-        result = 31 * result + (loaderLocation != null ? loaderLocation.hashCode() : 0);
-        result = 31 * result + kind.hashCode();
-        return result;
+        return file == that.file && position == that.position;
     }
 
     @Override
@@ -157,12 +154,19 @@ public class SourceLocation implements DeepImmutable, Serializable {
         return hashCode;
     }
 
+    /**
+     * Canonicalizes deserialized source locations, recomputing the hash code.
+     */
+    private Object readResolve() {
+        return Canonicalizer.get().canonicalize(new SourceLocation(file, position, endPosition));
+    }
+
     /**
      * Returns the source line number.
      * 0 means "no number".
      */
     public int getLineNumber() {
-        return lineNumber;
+        return (int) (position >>> 32);
     }
 
     /**
@@ -170,7 +174,7 @@ public class SourceLocation implements DeepImmutable, Serializable {
      * 0 means "no number".
      */
     public int getColumnNumber() {
-        return columnNumber;
+        return (int) position;
     }
 
     /**
@@ -183,20 +187,20 @@ public class SourceLocation implements DeepImmutable, Serializable {
 
     private String toFullString() {
         String selectedFileName;
-        switch (kind) {
+        switch (file.kind) {
             case SYNTHETIC:
-                selectedFileName = customName;
+                selectedFileName = file.customName;
                 break;
             case DYNAMIC:
-                selectedFileName = wrapDynamic(loaderLocation.toString());
+                selectedFileName = wrapDynamic(file.loaderLocation.toString());
                 break;
             case STATIC:
-                selectedFileName = location.toString();
+                selectedFileName = file.location.toString();
                 break;
             default:
-                throw new AnalysisException("Unhandled switch case: " + kind);
+                throw new AnalysisException("Unhandled switch case: " + file.kind);
         }
-        return format(selectedFileName, lineNumber, columnNumber, true);
+        return format(selectedFileName, getLineNumber(), getColumnNumber(), true);
     }
 
     /**
@@ -206,18 +210,19 @@ public class SourceLocation implements DeepImmutable, Serializable {
      */
     public String toUserFriendlyString(boolean showPosition) {
         final String selectedFileName;
-        switch (kind) {
+        switch (file.kind) {
             case SYNTHETIC:
-                selectedFileName = customName;
+                selectedFileName = file.customName;
                 break;
             case DYNAMIC:
-                selectedFileName = wrapDynamic(loaderLocation.toUserFriendlyString(showPosition));
+                selectedFileName = wrapDynamic(file.loaderLocation.toUserFriendlyString(showPosition));
                 break;
             case STATIC:
+                URL location = file.location;
                 if (location.getProtocol().equalsIgnoreCase("http") || location.getProtocol().equalsIgnoreCase("https") || location.getProtocol().equalsIgnoreCase("jar")) {
                     selectedFileName = location.toString();
-                } else if (customName != null) {
-                    selectedFileName = customName;
+                } else if (file.customName != null) {
+                    selectedFileName = file.customName;
                 } else {
                     Path actual = PathAndURLUtils.toPath(location, true);
                     Path relativeToWorkingDirectory = PathAndURLUtils.getRelativeToWorkingDirectory(actual);
@@ -225,10 +230,10 @@ public class SourceLocation implements DeepImmutable, Serializable {
                 }
                 break;
             default:
-                throw new AnalysisException("Unhandled switch case: " + kind);
+                throw new AnalysisException("Unhandled switch case: " + file.kind);
         }
 
-        return format(selectedFileName, lineNumber, columnNumber, showPosition);
+        return format(selectedFileName, getLineNumber(), getColumnNumber(), showPosition);
     }
 
     private String wrapDynamic(String loaderLocationString) {
@@ -236,7 +241,91 @@ public class SourceLocation implements DeepImmutable, Serializable {
     }
 
     public Kind getKind() {
-        return kind;
+        return file.kind;
+    }
+
+    /**
+     * The file part of source locations.
+     * Source files are interned, so they can be compared by identity.
+     */
+    private static final class SourceFile implements Serializable {
+
+        /**
+         * A custom name (only used for pretty printing and sorting).
+         */
+        private final String customName;
+
+        /**
+         * The location where the source code resides.
+         */
+        private final URL location;
+
+        /**
+         * The location where the source code is created and loaded dynamically (only used for pretty printing and sorting).
+         */
+        private final SourceLocation loaderLocation;
+
+        /**
+         * The kind of the source locations (only used for pretty printing and sorting).
+         */
+        private final Kind kind;
+
+        private final transient int hashCode;
+
+        /**
+         * The number of this source file among the interned source files, or -1 if not interned.
+         */
+        private final transient int id;
+
+        private SourceFile(String customName, URL location, SourceLocation loaderLocation, Kind kind, int id) {
+            this.customName = customName;
+            this.location = location;
+            this.loaderLocation = loaderLocation;
+            this.kind = kind;
+            this.id = id;
+            int result = customName != null ? customName.hashCode() : 0;
+            result = 31 * result + (location != null ? location.hashCode() : 0);
+            result = 31 * result + (loaderLocation != null ? loaderLocation.hashCode() : 0);
+            result = 31 * result + kind.hashCode();
+            this.hashCode = result;
+        }
+
+        /**
+         * Returns the interned source file with the given properties.
+         */
+        static SourceFile intern(String customName, URL location, SourceLocation loaderLocation, Kind kind) {
+            SourceFile key = new SourceFile(customName, location, loaderLocation, kind, -1);
+            SourceFile file = files.get(key);
+            if (file == null) {
+                checkNormalizedFileURL(location);
+                file = new SourceFile(customName, location, loaderLocation, kind, files.size());
+                files.put(file, file);
+            }
+            return file;
+        }
+
+        /**
+         * Interns deserialized source files.
+         */
+        private Object readResolve() {
+            return intern(customName, location, loaderLocation, kind);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SourceFile)) return false;
+            SourceFile that = (SourceFile) o;
+            return loaderLocation == that.loaderLocation // loader locations are canonical
+                    && kind == that.kind
+                    && Objects.equals(customName, that.customName)
+                    && Objects.equals(location, that.location);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 
     public enum Kind {
@@ -269,7 +358,7 @@ public class SourceLocation implements DeepImmutable, Serializable {
         }
 
         protected SourceLocation makeCanonical(String customName, URL location, int lineNumber, int columnNumber, int endLineNumber, int endColumnNumber, SourceLocation loaderLocation, Kind kind) {
-            SourceLocation instance = new SourceLocation(customName, location, lineNumber, columnNumber, endLineNumber, endColumnNumber, loaderLocation, kind);
+            SourceLocation instance = new SourceLocation(SourceFile.intern(customName, location, loaderLocation, kind), pack(lineNumber, columnNumber), pack(endLineNumber, endColumnNumber));
             return Canonicalizer.get().canonicalize(instance);
         }
     }
@@ -369,6 +458,15 @@ public class SourceLocation implements DeepImmutable, Serializable {
         }
 
         public static int compareStatic(@Nonnull SourceLocation o1, @Nonnull SourceLocation o2) {
+            if (o1.file != o2.file) {
+                int c = compareFiles(o1.file, o2.file);
+                if (c != 0)
+                    return c;
+            }
+            return Long.compare(o1.position, o2.position);
+        }
+
+        private static int compareFiles(SourceFile o1, SourceFile o2) {
             int c = o1.kind.compareTo(o2.kind);
             if (c != 0)
                 return c;
@@ -378,16 +476,7 @@ public class SourceLocation implements DeepImmutable, Serializable {
             c = o1.location == o2.location ? 0 : (o1.location == null ? -1 : (o2.location == null ? 1 : o1.location.getPath().compareTo(o2.location.getPath())));
             if (c != 0)
                 return c;
-            c = o1.loaderLocation == o2.loaderLocation ? 0 : (o1.loaderLocation == null ? -1 : (o2.loaderLocation == null ? 1 : compareStatic(o1.loaderLocation, o2.loaderLocation)));
-            if (c != 0)
-                return c;
-            c = o1.lineNumber - o2.lineNumber;
-            if (c != 0)
-                return c;
-            c = o1.columnNumber - o2.columnNumber;
-            if (c != 0)
-                return c;
-            return 0;
+            return o1.loaderLocation == o2.loaderLocation ? 0 : (o1.loaderLocation == null ? -1 : (o2.loaderLocation == null ? 1 : compareStatic(o1.loaderLocation, o2.loaderLocation)));
         }
     }
 }
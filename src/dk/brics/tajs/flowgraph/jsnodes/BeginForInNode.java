@@ -71,6 +71,13 @@ public class BeginForInNode extends Node {
         return object_reg;
     }
 
+    /**
+     * Sets the object register.
+     */
+    public void setObjectRegister(int object_reg) {
+        this.object_reg = object_reg;
+    }
+
     /**
      * Returns the property list register.
      */
@@ -78,6 +85,13 @@ public class BeginForInNode extends Node {
         return propertylist_reg;
     }
 
+    /**
+     * Sets the property list register.
+     */
+    public void setPropertyListRegister(int propertylist_reg) {
+        this.propertylist_reg = propertylist_reg;
+    }
+
     @Override
     public String toString() {
         return "begin-for-in[v" + object_reg + ",v" + propertylist_reg + "]";
@@ -44,6 +44,13 @@ public class BeginWithNode extends Node {
         return object_reg;
     }
 
+    /**
+     * Sets the object register.
+     */
+    public void setObjectRegister(int object_reg) {
+        this.object_reg = object_reg;
+    }
+
     @Override
     public String toString() {
         return "begin-with[v" + object_reg + "]";
@@ -167,6 +167,13 @@ public class BinaryOperatorNode extends LoadNode {
         return arg1_reg;
     }
 
+    /**
+     * Sets the first argument register.
+     */
+    public void setArg1Register(int arg1_reg) {
+        this.arg1_reg = arg1_reg;
+    }
+
     /**
      * Returns the second argument register.
      */
@@ -174,6 +181,13 @@ public class BinaryOperatorNode extends LoadNode {
         return arg2_reg;
     }
 
+    /**
+     * Sets the second argument register.
+     */
+    public void setArg2Register(int arg2_reg) {
+        this.arg2_reg = arg2_reg;
+    }
+
     /**
      * Returns the operator.
      */
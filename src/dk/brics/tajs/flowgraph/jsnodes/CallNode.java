@@ -166,6 +166,13 @@ public class CallNode extends LoadNode {
         return base_reg;
     }
 
+    /**
+     * Sets the base register.
+     */
+    public void setBaseRegister(int base_reg) {
+        this.base_reg = base_reg;
+    }
+
     /**
      * Returns the function register, or {@link dk.brics.tajs.flowgraph.AbstractNode#NO_VALUE} if not applicable.
      */
@@ -173,6 +180,13 @@ public class CallNode extends LoadNode {
         return function_reg;
     }
 
+    /**
+     * Sets the function register.
+     */
+    public void setFunctionRegister(int function_reg) {
+        this.function_reg = function_reg;
+    }
+
     /**
      * Returns the property register, or {@link dk.brics.tajs.flowgraph.AbstractNode#NO_VALUE} if not applicable.
      */
@@ -180,6 +194,13 @@ public class CallNode extends LoadNode {
         return property_reg;
     }
 
+    /**
+     * Sets the property register.
+     */
+    public void setPropertyRegister(int property_reg) {
+        this.property_reg = property_reg;
+    }
+
     /**
      * Returns the property string, or null if not fixed.
      */
@@ -202,6 +223,14 @@ public class CallNode extends LoadNode {
         return arg_regs[i];
     }
 
+    /**
+     * Sets the given argument register.
+     * Counts from 0.
+     */
+    public void setArgRegister(int i, int arg_reg) {
+        arg_regs[i] = arg_reg;
+    }
+
     /**
      * Returns the number of arguments.
      */
@@ -77,6 +77,13 @@ public class CatchNode extends Node {
         return scopeobj_reg;
     }
 
+    /**
+     * Sets the scope object register.
+     */
+    public void setScopeObjRegister(int scopeobj_reg) {
+        this.scopeobj_reg = scopeobj_reg;
+    }
+
     /**
      * Returns the result register,
      * or {@link AbstractNode#NO_VALUE} if not using a register.
@@ -85,6 +92,13 @@ public class CatchNode extends Node {
         return value_reg;
     }
 
+    /**
+     * Sets the result register.
+     */
+    public void setValueRegister(int value_reg) {
+        this.value_reg = value_reg;
+    }
+
     @Override
     public String toString() {
         if (varname != null)
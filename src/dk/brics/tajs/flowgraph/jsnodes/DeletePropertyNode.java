@@ -73,6 +73,13 @@ public class DeletePropertyNode extends LoadNode {
         return base_reg;
     }
 
+    /**
+     * Sets the base register.
+     */
+    public void setBaseRegister(int base_reg) {
+        this.base_reg = base_reg;
+    }
+
     /**
      * Returns the property register, or {@link dk.brics.tajs.flowgraph.AbstractNode#NO_VALUE} if not applicable.
      */
@@ -80,6 +87,13 @@ public class DeletePropertyNode extends LoadNode {
         return property_reg;
     }
 
+    /**
+     * Sets the property register.
+     */
+    public void setPropertyRegister(int property_reg) {
+        this.property_reg = property_reg;
+    }
+
     /**
      * Returns the property string, or null if not fixed or not a reference.
      */
@@ -44,6 +44,13 @@ public class HasNextPropertyNode extends LoadNode {
         return propertylist_reg;
     }
 
+    /**
+     * Sets the property list register.
+     */
+    public void setPropertyListRegister(int propertylist_reg) {
+        this.propertylist_reg = propertylist_reg;
+    }
+
     @Override
     public boolean canThrowExceptions() {
         return false;
@@ -33,9 +33,9 @@ public class IfNode extends Node {
 
     private int condition_reg;
 
-    private BasicBlock succ_true;
+    private transient BasicBlock succ_true; // serialized by the block, see BasicBlock.writeLinks
 
-    private BasicBlock succ_false;
+    private transient BasicBlock succ_false;
 
     /**
      * Constructs a new if node.
@@ -66,6 +66,13 @@ public class IfNode extends Node {
         return condition_reg;
     }
 
+    /**
+     * Sets the condition register.
+     */
+    public void setConditionRegister(int condition_reg) {
+        this.condition_reg = condition_reg;
+    }
+
     /**
      * Returns the 'true' successor.
      */
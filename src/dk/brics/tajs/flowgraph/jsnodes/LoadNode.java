@@ -46,4 +46,11 @@ public abstract class LoadNode extends Node {
     public int getResultRegister() {
         return result_reg;
     }
+
+    /**
+     * Sets the result register.
+     */
+    public void setResultRegister(int result_reg) {
+        this.result_reg = result_reg;
+    }
 }
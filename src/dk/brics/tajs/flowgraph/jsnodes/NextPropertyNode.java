@@ -47,6 +47,13 @@ public class NextPropertyNode extends Node {
         return propertylist_reg;
     }
 
+    /**
+     * Sets the property queue register.
+     */
+    public void setPropertyListRegister(int propertylist_reg) {
+        this.propertylist_reg = propertylist_reg;
+    }
+
     /**
      * Returns the property register.
      */
@@ -61,6 +61,13 @@ public class ReadVariableNode extends LoadNode {
         return result_base_reg;
     }
 
+    /**
+     * Sets the result base register.
+     */
+    public void setResultBaseRegister(int result_base_reg) {
+        this.result_base_reg = result_base_reg;
+    }
+
     @Override
     public String toString() {
         return "read-variable['" + Strings.escape(varname) + "'," +
@@ -25,6 +25,9 @@ import dk.brics.tajs.monitoring.inspector.util.OccurenceCountingMap;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Pair;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -37,7 +40,7 @@ import static dk.brics.tajs.util.Collections.newSet;
 /**
  * Syntactic information that eventually is used in {@link SyntacticQueries}.
  */
-public class RawSyntacticInformation {
+public class RawSyntacticInformation implements Serializable {
 
     private final Map<AbstractNode, Set<String>> variableDependencies;
 
@@ -51,9 +54,9 @@ public class RawSyntacticInformation {
 
     private final Map<AbstractNode, SyntacticReference> nodeWithBaseReferences;
 
-    private final Map<ParseTree, SyntacticReference> simpleReads;
+    private transient Map<ParseTree, SyntacticReference> simpleReads; // only used during translation, not serialized
 
-    private final Map<ParseTree, Integer> expressionRegisters;
+    private transient Map<ParseTree, Integer> expressionRegisters; // only used during translation, not serialized
 
     private final Map<IfNode, Set<String>> conditionRefined1ArgumentVariables;
 
@@ -149,6 +152,16 @@ public class RawSyntacticInformation {
         return numberOfWritesToVariablesInnerFunctions;
     }
 
+    /**
+     * Returns the names of the variables that are written in some function or inner function.
+     */
+    public Set<String> getWrittenVariableNames() {
+        Set<String> names = newSet();
+        numberOfWritesToVariablesInFunction.getResults().forEach(r -> names.add(r.getElement().getSecond()));
+        numberOfWritesToVariablesInnerFunctions.getResults().forEach(r -> names.add(r.getElement().getSecond()));
+        return names;
+    }
+
     public void registerVariableWriteInFunction(Function function, String variableName) {
         numberOfWritesToVariablesInFunction.count(Pair.make(function, variableName));
     }
@@ -195,6 +208,12 @@ public class RawSyntacticInformation {
         }
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        simpleReads = newMap();
+        expressionRegisters = newMap();
+    }
+
     public SyntacticQueries getQueryView() {
         return new QueryView();
     }
@@ -19,10 +19,12 @@ package dk.brics.tajs.flowgraph.syntaticinfo;
 import dk.brics.tajs.flowgraph.SourceLocation;
 import dk.brics.tajs.util.AnalysisException;
 
+import java.io.Serializable;
+
 /**
  * Reference type.
  */
-public abstract class SyntacticReference {
+public abstract class SyntacticReference implements Serializable {
     /**
      * The type of the reference.
      */
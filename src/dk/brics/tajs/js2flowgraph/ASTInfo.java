@@ -257,6 +257,34 @@ public class ASTInfo {
         newFunctions.forEach(this::updateFunctionsWithVariableCorrelatedPropertyAccesses);
     }
 
+    /**
+     * Adds the information gathered by another instance.
+     * The other instance must have been updated with other trees than this one,
+     * in which case the result is the same as updating this instance with those trees.
+     */
+    public void addAll(ASTInfo other) {
+        nestedLoops.addAll(other.nestedLoops);
+        loopConditionVariableReads.putAll(other.loopConditionVariableReads);
+        loopNonInitializerVariableWrites.putAll(other.loopNonInitializerVariableWrites);
+        loopNonInitializerDynamicPropertyVariableReads.putAll(other.loopNonInitializerDynamicPropertyVariableReads);
+        literalsInForIn.addAll(other.literalsInForIn);
+        functionsOrLoopsWithDynamicPropertyReads.addAll(other.functionsOrLoopsWithDynamicPropertyReads);
+        dynamicPropertyWrites.addAll(other.dynamicPropertyWrites);
+        variableReadsInLiterals.putAll(other.variableReadsInLiterals);
+        functionVariableReads.putAll(other.functionVariableReads);
+        functionVariableDeclarations.putAll(other.functionVariableDeclarations);
+        functionClosureVariables.putAll(other.functionClosureVariables);
+        nonStackVariables.putAll(other.nonStackVariables);
+        functionHierarchy.putAll(other.functionHierarchy);
+        functions.addAll(other.functions);
+        functionsWithThisReference.addAll(other.functionsWithThisReference);
+        functionsWithVariablesAsPropertyAccessName.putAll(other.functionsWithVariablesAsPropertyAccessName);
+        functionsWithVariableCorrelatedPropertyAccesses.putAll(other.functionsWithVariableCorrelatedPropertyAccesses);
+        conditionsWithVariableReadsInTheCondition.putAll(other.conditionsWithVariableReadsInTheCondition);
+        conditionsWithVariableReadsAsArgumentsInTheCondition.putAll(other.conditionsWithVariableReadsAsArgumentsInTheCondition);
+        conditionsWithVariableReadsInTheBodies.putAll(other.conditionsWithVariableReadsInTheBodies);
+    }
+
     public Map<ConditionTree, Set<String>> getConditionRefinedVariables() {
         Map<ConditionTree, Set<String>> map = newMap();
         conditionsWithVariableReadsInTheCondition.forEach((tree, conditionVariables) -> {
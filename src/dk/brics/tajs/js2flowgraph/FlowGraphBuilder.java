@@ -20,8 +20,10 @@ import com.google.common.collect.ImmutableList;
 import com.google.javascript.jscomp.parsing.parser.IdentifierToken;
 import com.google.javascript.jscomp.parsing.parser.Parser.Config.Mode;
 import com.google.javascript.jscomp.parsing.parser.trees.FormalParameterListTree;
+import com.google.javascript.jscomp.parsing.parser.trees.FunctionDeclarationTree;
 import com.google.javascript.jscomp.parsing.parser.trees.FunctionDeclarationTree.Kind;
 import com.google.javascript.jscomp.parsing.parser.trees.IdentifierExpressionTree;
+import com.google.javascript.jscomp.parsing.parser.trees.ParseTree;
 import com.google.javascript.jscomp.parsing.parser.trees.ProgramTree;
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
@@ -48,6 +50,7 @@ import dk.brics.tajs.flowgraph.syntaticinfo.RawSyntacticInformation;
 import dk.brics.tajs.js2flowgraph.JavaScriptParser.ParseResult;
 import dk.brics.tajs.js2flowgraph.JavaScriptParser.SyntaxMesssage;
 import dk.brics.tajs.options.Options;
+import dk.brics.tajs.refinement.instantiations.forwards_backwards.RefinerOptions;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Collections;
 import dk.brics.tajs.util.Collectors;
@@ -64,6 +67,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.stream.IntStream;
 
 import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.addNodeToBlock;
 import static dk.brics.tajs.js2flowgraph.FunctionBuilderHelper.makeBasicBlock;
@@ -108,6 +112,11 @@ public class FlowGraphBuilder {
 
     private final ValueLogLocationInformation valueLogMappingInformation;
 
+    /**
+     * If set, the bodies of nested functions are translated when the functions are first called.
+     */
+    private boolean lazyTranslation;
+
     /**
      * Constructs a flow graph builder.
      * @param env traversal environment
@@ -123,6 +132,15 @@ public class FlowGraphBuilder {
         processed = TranslationResult.makeAppendBlock(initialEnv.getAppendBlock());
         syntacticInformation = new RawSyntacticInformation();
         valueLogMappingInformation = new ValueLogLocationInformation();
+        // the closure variable specialization relies on the variable writes of all functions
+        lazyTranslation = Options.get().isLazyTranslationEnabled() && !RefinerOptions.get().isSpecializeImpreciseClosureVariablesWithOnlyOneWrite();
+    }
+
+    /**
+     * Translates all function bodies eagerly, regardless of the options.
+     */
+    void disableLazyTranslation() {
+        lazyTranslation = false;
     }
 
     /**
@@ -174,9 +192,15 @@ public class FlowGraphBuilder {
      * @param columnOffset number of columns preceding the first line of the code
      */
     Function transformCode(String source, int lineOffset, int columnOffset, SourceLocationMaker sourceLocationMaker) {
+        return transformCode(makeAST(source, lineOffset, columnOffset, sourceLocationMaker), sourceLocationMaker);
+    }
+
+    /**
+     * Transforms the given parsed JavaScript code and appends it to the main function.
+     */
+    private Function transformCode(ProgramTree t, SourceLocationMaker sourceLocationMaker) {
         final AstEnv env = initialEnv.makeAppendBlock(processed.getAppendBlock());
-        ProgramTree t = makeAST(source, lineOffset, columnOffset, sourceLocationMaker);
-        processed = new FunctionBuilder(astInfo, functionAndBlocksManager, sourceLocationMaker, makeSyntacticAnalysis()).process(t, env);
+        processed = new FunctionBuilder(astInfo, functionAndBlocksManager, sourceLocationMaker, makeSyntacticAnalysis(), lazyTranslation).process(t, env);
         return processed.getAppendBlock().getFunction();
     }
 
@@ -184,10 +208,26 @@ public class FlowGraphBuilder {
      * Parses the given JavaScript code.
      */
     private ProgramTree makeAST(String sourceContent, int lineOffset, int columnOffset, SourceLocationMaker sourceLocationMaker) {
+        return makeAST(parse(sourceContent, lineOffset, columnOffset, sourceLocationMaker.makeUnspecifiedPosition().toString(), sourceLocationMaker));
+    }
+
+    /**
+     * Reports the parse messages of the given parsed code and adds its AST information.
+     */
+    private ProgramTree makeAST(ParsedProgram program) {
         if (closed) {
             throw new RuntimeException("Already closed.");
         }
+        reportParseMessages(program.parseResult);
+        astInfo.addAll(program.astInfo);
+        return program.parseResult.getProgramAST();
+    }
 
+    /**
+     * Parses the given JavaScript code and gathers its AST information.
+     * Does not modify this builder or create source locations, so it may be called concurrently.
+     */
+    private ParsedProgram parse(String sourceContent, int lineOffset, int columnOffset, String sourceName, SourceLocationMaker sourceLocationMaker) {
         // add line/column offsets (a bit hacky - but it avoids other silly encodings or extra fields)
         StringBuilder s = new StringBuilder();
         for (int i = 0; i < lineOffset; i++) {
@@ -198,10 +238,56 @@ public class FlowGraphBuilder {
         }
         s.append(sourceContent);
 
-        ParseResult parseResult = parser.parse(s.toString(), sourceLocationMaker);
-        reportParseMessages(parseResult);
-        astInfo.updateWith(parseResult.getProgramAST());
-        return parseResult.getProgramAST();
+        ParseResult parseResult = parser.parse(s.toString(), sourceName, sourceLocationMaker);
+        ASTInfo info = new ASTInfo();
+        if (parseResult.getErrors().isEmpty()) {
+            info.updateWith(parseResult.getProgramAST());
+        }
+        return new ParsedProgram(parseResult, info);
+    }
+
+    /**
+     * Parses the given JavaScript sources, in parallel if there are more than one.
+     * Sources that cannot be parsed on a worker thread, for example due to deeply nested code, are parsed on the current thread.
+     *
+     * @return the parsed programs, in the same order as the sources
+     */
+    private List<ParsedProgram> parseAll(List<Pair<JavaScriptSource, SourceLocationMaker>> sources) {
+        List<String> sourceNames = sources.stream().map(p -> p.getSecond().makeUnspecifiedPosition().toString()).collect(Collectors.toList()); // source locations are only created on this thread
+        IntStream indices = IntStream.range(0, sources.size());
+        if (sources.size() > 1) {
+            indices = indices.parallel();
+        }
+        List<ParsedProgram> programs = indices.mapToObj(i -> {
+            JavaScriptSource s = sources.get(i).getFirst();
+            try {
+                return parse(s.getCode(), s.getLineOffset(), s.getColumnOffset(), sourceNames.get(i), sources.get(i).getSecond());
+            } catch (StackOverflowError e) {
+                return null;
+            }
+        }).collect(Collectors.toList());
+        for (int i = 0; i < programs.size(); i++) {
+            if (programs.get(i) == null) {
+                JavaScriptSource s = sources.get(i).getFirst();
+                programs.set(i, parse(s.getCode(), s.getLineOffset(), s.getColumnOffset(), sourceNames.get(i), sources.get(i).getSecond()));
+            }
+        }
+        return programs;
+    }
+
+    /**
+     * Result of parsing a program, with the AST information of the program.
+     */
+    private static final class ParsedProgram {
+
+        private final ParseResult parseResult;
+
+        private final ASTInfo astInfo;
+
+        private ParsedProgram(ParseResult parseResult, ASTInfo astInfo) {
+            this.parseResult = parseResult;
+            this.astInfo = astInfo;
+        }
     }
 
     /**
@@ -228,21 +314,40 @@ public class FlowGraphBuilder {
      * Transforms the given web application JavaScript source code.
      */
     public Function transformWebAppCode(JavaScriptSource s, SourceLocationMaker sourceLocationMaker) {
+        return transformWebAppCode(s, makeAST(s.getCode(), s.getLineOffset(), s.getColumnOffset(), sourceLocationMaker), sourceLocationMaker);
+    }
+
+    /**
+     * Transforms the given web application JavaScript sources in order, like {@link #transformWebAppCode(JavaScriptSource, SourceLocationMaker)}.
+     * The sources are parsed in parallel, but translated sequentially in the given order,
+     * so the resulting flow graph is the same as when transforming the sources one at a time.
+     */
+    public void transformWebAppCode(List<Pair<JavaScriptSource, SourceLocationMaker>> sources) {
+        List<ParsedProgram> programs = parseAll(sources);
+        for (int i = 0; i < sources.size(); i++) {
+            transformWebAppCode(sources.get(i).getFirst(), makeAST(programs.get(i)), sources.get(i).getSecond());
+        }
+    }
+
+    /**
+     * Transforms the given parsed web application JavaScript source code.
+     */
+    private Function transformWebAppCode(JavaScriptSource s, ProgramTree tree, SourceLocationMaker sourceLocationMaker) {
         switch (s.getKind()) {
 
             case FILE: { // TODO: (#119) processing order of external JavaScript files (sync/async loading...)
                 // TODO: (#119) should be added as a load event, but that does not work currently...
                 // Function function = processFunctionBody(Collections.<String>newList(), s.getFileName(), s.getJavaScript(), 0, initialEnv);
                 // eventHandlers.add(Pair.make(function, EventHandlerKind.DOM_LOAD));
-                return transformStandAloneCode(s.getCode(), sourceLocationMaker);
+                return transformCode(tree, sourceLocationMaker);
             }
 
             case EMBEDDED: { // TODO: (#119) currently ignoring events during page load (unsound)
-                return transformCode(s.getCode(), s.getLineOffset(), s.getColumnOffset(), sourceLocationMaker);
+                return transformCode(tree, sourceLocationMaker);
             }
 
             case EVENTHANDLER: {
-                Function function = transformFunctionBody(s.getCode(), s.getLineOffset(), s.getColumnOffset(), initialEnv, sourceLocationMaker);
+                Function function = transformFunctionBody(tree, initialEnv, sourceLocationMaker);
                 function.getNode().setDomEventType(s.getEventKind());
                 return function;
             }
@@ -252,14 +357,13 @@ public class FlowGraphBuilder {
     }
 
     /**
-     * Transforms the given code as a function body.
+     * Transforms the given parsed code as a function body.
      *
      * @return the new function
      */
-    private Function transformFunctionBody(String sourceContent, int lineOffset, int columnOffset, AstEnv env, SourceLocationMaker sourceLocationMaker) {
-        ProgramTree tree = makeAST(sourceContent, lineOffset, columnOffset, sourceLocationMaker);
+    private Function transformFunctionBody(ProgramTree tree, AstEnv env, SourceLocationMaker sourceLocationMaker) {
         FormalParameterListTree params = new FormalParameterListTree(tree.location, ImmutableList.of());
-        return new FunctionBuilder(astInfo, functionAndBlocksManager, sourceLocationMaker, makeSyntacticAnalysis()).processFunctionDeclaration(Kind.DECLARATION, null, params, tree, env, makeSourceLocation(tree, sourceLocationMaker), null);
+        return new FunctionBuilder(astInfo, functionAndBlocksManager, sourceLocationMaker, makeSyntacticAnalysis(), lazyTranslation).processFunctionDeclaration(Kind.DECLARATION, null, params, tree, env, makeSourceLocation(tree, sourceLocationMaker), null);
     }
 
     /**
@@ -312,6 +416,7 @@ public class FlowGraphBuilder {
         for (Function f : blocksAndFunctions.getFirst()) {
             flowGraph.addFunction(f);
         }
+        functionAndBlocksManager.getPendingBodies().forEach(flowGraph::addPendingBody);
         flowGraph.getFunctions().forEach(f -> setEntryBlocks(f, functionAndBlocksManager));
 
         // bypass empty basic blocks
@@ -370,6 +475,17 @@ public class FlowGraphBuilder {
             end.getBeginNode().getEndNodes().add(end);
         }
 
+        completeAndIndex(flowGraph, origBlockCount, origNodeCount);
+        return flowGraph;
+    }
+
+    /**
+     * Sets the block orders and assigns indices to the blocks and nodes that do not have one yet.
+     *
+     * @param origBlockCount number of blocks in the flow graph before the new blocks were added
+     * @param origNodeCount  number of nodes in the flow graph before the new nodes were added
+     */
+    static void completeAndIndex(FlowGraph flowGraph, int origBlockCount, int origNodeCount) {
         // set block orders
         flowGraph.complete();
 
@@ -401,8 +517,6 @@ public class FlowGraphBuilder {
                     }
             }
         }
-
-        return flowGraph;
     }
 
     /**
@@ -602,10 +716,59 @@ public class FlowGraphBuilder {
         return last;
     }
 
+    /**
+     * Translates the body of a function that was declared with a stub body by {@link FunctionBuilder} and adds it to the flow graph.
+     * The edge from the function entry to the ordinary exit is replaced by the translated body,
+     * and the new blocks and nodes are indexed in the same way as other extensions of the flow graph.
+     */
+    static void translatePendingBody(Function function, ParseTree body, FunctionDeclarationTree tree, AstEnv functionEnv, ASTInfo astInfo,
+                                     SourceLocationMaker sourceLocationMaker, FlowGraph flowGraph) {
+        FunctionAndBlockManager fab = new FunctionAndBlockManager();
+        BasicBlock declarationBlock = makeBasicBlock(function, fab);
+        BasicBlock bodyBlock = makeBasicBlock(function.getExceptionalExit(), fab);
+        declarationBlock.addSuccessor(bodyBlock);
+        function.getEntry().removeSuccessor(function.getOrdinaryExit());
+        function.getEntry().addSuccessor(declarationBlock);
+        AstEnv env = functionEnv.makeDeclarationBlock(declarationBlock).makeAppendBlock(bodyBlock);
+
+        FlowGraphBuilder builder = new FlowGraphBuilder(env, fab);
+        builder.processed = new FunctionBuilder(astInfo, fab, sourceLocationMaker, builder.makeSyntacticAnalysis(), builder.lazyTranslation).processPendingBody(function, body, tree, env);
+
+        if (declarationBlock.isEmpty()) {
+            // insert a dummy node to prevent empty basic blocks, the function entry is already in the flow graph
+            ConstantNode undef = ConstantNode.makeUndefined(AbstractNode.NO_VALUE, function.getSourceLocation());
+            undef.setArtificial();
+            declarationBlock.addNode(undef);
+        }
+        builder.close(flowGraph, function.getOrdinaryExit());
+    }
+
     public ASTInfo getAstInfo() {
         return astInfo;
     }
 
+    /**
+     * Returns the functions created by this builder.
+     */
+    List<Function> getFunctions() {
+        return functionAndBlocksManager.getFunctions();
+    }
+
+    /**
+     * Returns the basic blocks created by this builder.
+     */
+    List<BasicBlock> getBlocks() {
+        return functionAndBlocksManager.getBlocks();
+    }
+
+    RawSyntacticInformation getSyntacticInformation() {
+        return syntacticInformation;
+    }
+
+    ValueLogLocationInformation getValueLogLocationInformation() {
+        return valueLogMappingInformation;
+    }
+
     /**
      * Creates a call to a function that defines and calls functions containing the host function sources.
      *
@@ -664,7 +827,7 @@ public class FlowGraphBuilder {
 
         FormalParameterListTree params = new FormalParameterListTree(tree.location, ImmutableList.copyOf(parameters));
 
-        Function function = new FunctionBuilder(astInfo, functionAndBlocksManager, sourceLocationMaker, makeSyntacticAnalysis()).processFunctionDeclaration(Kind.EXPRESSION, null, params, tree, env.makeResultRegister(AbstractNode.NO_VALUE), makeSourceLocation(tree, sourceLocationMaker), source);
+        Function function = new FunctionBuilder(astInfo, functionAndBlocksManager, sourceLocationMaker, makeSyntacticAnalysis(), lazyTranslation).processFunctionDeclaration(Kind.EXPRESSION, null, params, tree, env.makeResultRegister(AbstractNode.NO_VALUE), makeSourceLocation(tree, sourceLocationMaker), source);
 
         return function;
     }
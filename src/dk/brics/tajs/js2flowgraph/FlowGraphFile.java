@@ -0,0 +1,193 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.HostEnvSources;
+import dk.brics.tajs.flowgraph.JavaScriptSource;
+import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.BuildIdentifier;
+import dk.brics.tajs.util.Pair;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Files containing prebuilt flow graphs.
+ * <p>
+ * A file consists of a header with a format version and a key, followed by the compressed serialized flow graph,
+ * including the functions, blocks, nodes, source locations and syntactic information, with all indices.
+ * The key is a hash of the input sources, the options and the TAJS build (see {@link BuildIdentifier}),
+ * so a file is ignored and rebuilt when any of these change.
+ * The flow graph is written before the analysis starts, so it does not contain code added during the analysis.
+ */
+public class FlowGraphFile {
+
+    private static Logger log = Logger.getLogger(FlowGraphFile.class);
+
+    /**
+     * Identifies the flow graph file format.
+     */
+    private static final int FILE_MAGIC = 0x54464746;
+
+    private static final int FILE_VERSION = 1;
+
+    private static int loads;
+
+    private static int saves;
+
+    private FlowGraphFile() {
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public static void reset() {
+        loads = 0;
+        saves = 0;
+    }
+
+    /**
+     * Returns the key for a flow graph built from the given input files and sources with the current options.
+     *
+     * @param files   the input files
+     * @param sources the JavaScript sources found in the input files
+     */
+    public static String makeKey(List<URL> files, List<Pair<JavaScriptSource, SourceLocationMaker>> sources) throws IOException {
+        Map<String, Object> options = Options.get().getOptionValues();
+        options.remove("-flowgraph-file");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, FILE_VERSION + "\n" + BuildIdentifier.get() + "\n" + options + "\n" + Options.get().getUnsoundness() + "\n" + HostEnvSources.getAccordingToOptions());
+            for (URL file : files) {
+                update(digest, file.toString());
+                try (InputStream in = file.openStream()) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) != -1)
+                        digest.update(buffer, 0, n);
+                }
+            }
+            for (Pair<JavaScriptSource, SourceLocationMaker> p : sources) {
+                JavaScriptSource s = p.getFirst();
+                update(digest, s.getKind() + ":" + s.getEventKind() + ":" + s.getLineOffset() + ":" + s.getColumnOffset() + ":" + p.getSecond().makeUnspecifiedPosition());
+                update(digest, s.getCode());
+            }
+            StringBuilder b = new StringBuilder();
+            for (byte x : digest.digest())
+                b.append(String.format("%02x", x));
+            return b.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    /**
+     * Reads the flow graph with the given key from the given file.
+     *
+     * @return the flow graph, or null if the file does not exist, is invalid, or has another key
+     */
+    public static FlowGraph read(Path file, String key) {
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                log.warn("Ignoring flow graph file in unknown format: " + file);
+                return null;
+            }
+            if (!in.readUTF().equals(key)) {
+                log.debug("Ignoring flow graph file for other sources or options: " + file);
+                return null;
+            }
+            FlowGraph fg;
+            try (ObjectInputStream oin = new ObjectInputStream(new InflaterInputStream(in))) {
+                fg = (FlowGraph) oin.readObject();
+            }
+            loads++;
+            return fg;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            log.warn("Unable to read flow graph file " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes the given flow graph with the given key to the given file.
+     * A flow graph with untranslated function bodies is not written, and write failures are only reported as warnings.
+     */
+    public static void write(FlowGraph fg, Path file, String key) {
+        if (fg.getNumberOfPendingBodies() != 0) {
+            log.warn("Not writing flow graph file " + file + ", the flow graph has untranslated function bodies (-lazy-translation)");
+            return;
+        }
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "tajs-flowgraph-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(key);
+                try (ObjectOutputStream oout = new ObjectOutputStream(new DeflaterOutputStream(out))) {
+                    oout.writeObject(fg);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Unable to write flow graph file " + file + ": " + e);
+            return;
+        }
+        saves++;
+    }
+
+    public static int getNumberOfLoads() {
+        return loads;
+    }
+
+    public static int getNumberOfSaves() {
+        return saves;
+    }
+}
@@ -148,7 +148,14 @@ public class FlowGraphMutator {
         if (!existingFlowgraph.getFunctionCache().containsKey(key)) {
             try {
                 String source = Loader.getString(sourceFile, Charset.forName("UTF-8"));
-                Function function = addTopLevelFunction(parameterNames, source, existingFlowgraph, sourceLocationMaker);
+                Function function;
+                if (isHostEnvironment) {
+                    String cacheKey = HostEnvFunctionCache.makeKey(sourceFile, parameterNames, source, sourceLocationMaker);
+                    function = HostEnvFunctionCache.get(cacheKey, existingFlowgraph);
+                    if (function == null)
+                        function = addTopLevelFunction(parameterNames, source, existingFlowgraph, sourceLocationMaker, cacheKey);
+                } else
+                    function = addTopLevelFunction(parameterNames, source, existingFlowgraph, sourceLocationMaker, null);
                 existingFlowgraph.getFunctionCache().put(key, function);
             } catch (IOException e) {
                 throw new AnalysisException(e);
@@ -165,7 +172,7 @@ public class FlowGraphMutator {
         SourceLocation location = sourceLocationMaker.makeUnspecifiedPosition();
         FlowGraph.FunctionDynamicSourceCacheKey key = new FlowGraph.FunctionDynamicSourceCacheKey(location, parameterNames, source);
         if (!existingFlowgraph.getFunctionCache().containsKey(key)) {
-            Function function = addTopLevelFunction(parameterNames, source, existingFlowgraph, sourceLocationMaker);
+            Function function = addTopLevelFunction(parameterNames, source, existingFlowgraph, sourceLocationMaker, null);
             existingFlowgraph.getFunctionCache().put(key, function);
         }
         return existingFlowgraph.getFunctionCache().get(key);
@@ -173,13 +180,18 @@ public class FlowGraphMutator {
 
     /**
      * Adds a new top level function with the given parameter names and body source.
+     * If a cache key is given, the translation is stored in the {@link HostEnvFunctionCache}.
      */
-    private static Function addTopLevelFunction(List<String> parameterNames, String source, FlowGraph existingFlowgraph, SourceLocationMaker sourceLocationMaker) {
+    private static Function addTopLevelFunction(List<String> parameterNames, String source, FlowGraph existingFlowgraph, SourceLocationMaker sourceLocationMaker, String cacheKey) {
         BasicBlock standaloneBlock = new BasicBlock(existingFlowgraph.getMain());
         AstEnv env = AstEnv.makeInitial().makeEnclosingFunction(existingFlowgraph.getMain()).makeAppendBlock(standaloneBlock);
         FlowGraphBuilder builder = new FlowGraphBuilder(env, new FunctionAndBlockManager());
+        if (cacheKey != null)
+            builder.disableLazyTranslation(); // the cache only holds complete translations
         Function function = builder.transformFunctionBody(source, parameterNames, sourceLocationMaker);
         builder.close(existingFlowgraph, null);
+        if (cacheKey != null)
+            HostEnvFunctionCache.put(cacheKey, function, builder, existingFlowgraph);
         return function;
     }
 }
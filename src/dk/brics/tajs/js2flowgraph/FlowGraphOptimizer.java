@@ -0,0 +1,692 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.AbstractNodeVisitor;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.BeginForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.BeginWithNode;
+import dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.CallNode;
+import dk.brics.tajs.flowgraph.jsnodes.CatchNode;
+import dk.brics.tajs.flowgraph.jsnodes.ConstantNode;
+import dk.brics.tajs.flowgraph.jsnodes.DeclareFunctionNode;
+import dk.brics.tajs.flowgraph.jsnodes.DefaultNodeVisitor;
+import dk.brics.tajs.flowgraph.jsnodes.DeletePropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndForInNode;
+import dk.brics.tajs.flowgraph.jsnodes.EndLoopNode;
+import dk.brics.tajs.flowgraph.jsnodes.EventDispatcherNode;
+import dk.brics.tajs.flowgraph.jsnodes.ExceptionalReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.HasNextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.IfNode;
+import dk.brics.tajs.flowgraph.jsnodes.NewObjectNode;
+import dk.brics.tajs.flowgraph.jsnodes.NextPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadPropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReadVariableNode;
+import dk.brics.tajs.flowgraph.jsnodes.ReturnNode;
+import dk.brics.tajs.flowgraph.jsnodes.ThrowNode;
+import dk.brics.tajs.flowgraph.jsnodes.TypeofNode;
+import dk.brics.tajs.flowgraph.jsnodes.UnaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.WritePropertyNode;
+import dk.brics.tajs.flowgraph.jsnodes.WriteVariableNode;
+import dk.brics.tajs.util.Pair;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+
+import static dk.brics.tajs.util.Collections.newMap;
+
+/**
+ * Optimizations of the flow graph before the analysis (see {@link dk.brics.tajs.options.OptionValues#isFlowGraphOptimizationEnabled()}).
+ * <p>
+ * The passes are applied to each function whose body has been translated:
+ * <ol>
+ * <li>constant folding of arithmetic on numbers, concatenation of strings and negation of constants,</li>
+ * <li>reuse of a register that already holds the same constant in the block,</li>
+ * <li>removal of constants whose registers are never read and of nop nodes,</li>
+ * <li>merging of a block into its only predecessor where neither node requires a block boundary,</li>
+ * <li>consecutive renumbering of the registers, which bounds the size of the register lists in the abstract states.</li>
+ * </ol>
+ * Registers are not shared between different values, since filtering at if nodes follows
+ * the must-reaching definitions of the condition through registers that are otherwise dead.
+ */
+public class FlowGraphOptimizer {
+
+    private static Logger log = Logger.getLogger(FlowGraphOptimizer.class);
+
+    private static int nodes_before;
+
+    private static int nodes_after;
+
+    private static int blocks_before;
+
+    private static int blocks_after;
+
+    private static int edges_before;
+
+    private static int edges_after;
+
+    private static int registers_before;
+
+    private static int registers_after;
+
+    private FlowGraphOptimizer() {
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public static void reset() {
+        nodes_before = 0;
+        nodes_after = 0;
+        blocks_before = 0;
+        blocks_after = 0;
+        edges_before = 0;
+        edges_after = 0;
+        registers_before = 0;
+        registers_after = 0;
+    }
+
+    /**
+     * Optimizes the given flow graph.
+     * Functions with pending bodies (see {@link FlowGraph#hasPendingBody(Function)}) are left unchanged.
+     */
+    public static void optimize(FlowGraph fg) {
+        nodes_before += fg.getNumberOfNodes();
+        blocks_before += fg.getNumberOfBlocks();
+        edges_before += countEdges(fg);
+        registers_before += countRegisters(fg);
+        Map<Function, int[]> renumberings = newMap();
+        for (Function f : fg.getFunctions()) {
+            if (fg.hasPendingBody(f))
+                continue;
+            for (BasicBlock b : f.getBlocks()) {
+                foldConstants(b);
+            }
+            int[] uses = countRegisterUses(f, true);
+            int[] defs = countRegisterUses(f, false);
+            for (BasicBlock b : f.getBlocks()) {
+                reuseConstants(b, uses, defs);
+            }
+            removeDeadNodes(f, countRegisterUses(f, true));
+            mergeBlocks(f);
+            renumberings.put(f, renumberRegisters(f));
+        }
+        fg.renumberVariableReads(renumberings);
+        fg.compactIndices();
+        fg.complete();
+        fg.check();
+        nodes_after += fg.getNumberOfNodes();
+        blocks_after += fg.getNumberOfBlocks();
+        edges_after += countEdges(fg);
+        registers_after += countRegisters(fg);
+        if (log.isDebugEnabled())
+            log.debug("Flow graph optimization: nodes " + nodes_before + " -> " + nodes_after + ", blocks " + blocks_before + " -> " + blocks_after);
+    }
+
+    /**
+     * Replaces operators on constants defined earlier in the block by constants.
+     */
+    private static void foldConstants(BasicBlock b) {
+        Map<Integer, ConstantNode> constants = newMap();
+        for (ListIterator<AbstractNode> it = b.getNodes().listIterator(); it.hasNext(); ) {
+            AbstractNode n = it.next();
+            ConstantNode folded = fold(n, constants);
+            if (folded != null) {
+                folded.setIndex(n.getIndex());
+                folded.setBlock(b);
+                folded.setDuplicateOf(n.getDuplicateOf());
+                folded.setIsLoopEntryNode(n.isLoopEntryNode());
+                if (n.isArtificial())
+                    folded.setArtificial();
+                it.set(folded);
+                n = folded;
+            }
+            visitRegisters(n, IntUnaryOperator.identity(), reg -> {
+                constants.remove(reg);
+                return reg;
+            });
+            if (n instanceof ConstantNode && ((ConstantNode) n).getResultRegister() >= AbstractNode.FIRST_ORDINARY_REG)
+                constants.put(((ConstantNode) n).getResultRegister(), (ConstantNode) n);
+        }
+    }
+
+    /**
+     * Returns a constant node with the result of the given node if its arguments are the given constants, or null if not applicable.
+     * Only operations where the abstract operator yields a single value without conversions are folded.
+     */
+    private static ConstantNode fold(AbstractNode n, Map<Integer, ConstantNode> constants) {
+        if (n instanceof BinaryOperatorNode) {
+            BinaryOperatorNode bn = (BinaryOperatorNode) n;
+            ConstantNode c1 = constants.get(bn.getArg1Register());
+            ConstantNode c2 = constants.get(bn.getArg2Register());
+            if (c1 == null || c2 == null)
+                return null;
+            if (bn.getOperator() == BinaryOperatorNode.Op.ADD && c1.getType() == ConstantNode.Type.STRING && c2.getType() == ConstantNode.Type.STRING)
+                return ConstantNode.makeString(c1.getString() + c2.getString(), bn.getResultRegister(), bn.getSourceLocation());
+            if (!isOrdinaryNumber(c1) || !isOrdinaryNumber(c2))
+                return null;
+            double d1 = c1.getNumber();
+            double d2 = c2.getNumber();
+            double r;
+            switch (bn.getOperator()) {
+                case ADD:
+                    r = d1 + d2;
+                    break;
+                case SUB:
+                    r = d1 - d2;
+                    break;
+                case MUL:
+                    r = d1 * d2;
+                    break;
+                case DIV:
+                    r = d1 / d2;
+                    break;
+                case REM:
+                    r = d1 % d2;
+                    break;
+                default:
+                    return null;
+            }
+            if (!isOrdinaryNumber(r))
+                return null;
+            return ConstantNode.makeNumber(r, bn.getResultRegister(), bn.getSourceLocation());
+        } else if (n instanceof UnaryOperatorNode) {
+            UnaryOperatorNode un = (UnaryOperatorNode) n;
+            ConstantNode c = constants.get(un.getArgRegister());
+            if (c == null)
+                return null;
+            switch (un.getOperator()) {
+                case NOT:
+                    return ConstantNode.makeBoolean(!isTruthy(c), un.getResultRegister(), un.getSourceLocation());
+                case MINUS:
+                    if (isOrdinaryNumber(c) && c.getNumber() != 0)
+                        return ConstantNode.makeNumber(-c.getNumber(), un.getResultRegister(), un.getSourceLocation());
+                    return null;
+                case PLUS:
+                    if (isOrdinaryNumber(c))
+                        return ConstantNode.makeNumber(c.getNumber(), un.getResultRegister(), un.getSourceLocation());
+                    return null;
+                default:
+                    return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isOrdinaryNumber(ConstantNode c) {
+        return c.getType() == ConstantNode.Type.NUMBER && isOrdinaryNumber(c.getNumber());
+    }
+
+    /**
+     * Returns true if the given number is finite and not negative zero.
+     */
+    private static boolean isOrdinaryNumber(double d) {
+        return !Double.isNaN(d) && !Double.isInfinite(d) && !(d == 0 && 1 / d < 0);
+    }
+
+    private static boolean isTruthy(ConstantNode c) {
+        switch (c.getType()) {
+            case NUMBER:
+                return c.getNumber() != 0 && !Double.isNaN(c.getNumber());
+            case STRING:
+                return !c.getString().isEmpty();
+            case BOOLEAN:
+                return c.getBoolean();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Replaces constants by earlier registers in the block holding the same constant,
+     * if the register of the constant is only read in the rest of the block.
+     */
+    private static void reuseConstants(BasicBlock b, int[] uses, int[] defs) {
+        Map<Pair<ConstantNode.Type, Object>, Integer> available = newMap();
+        Map<Integer, Pair<ConstantNode.Type, Object>> held = newMap();
+        List<AbstractNode> nodes = b.getNodes();
+        for (int i = 0; i < nodes.size(); i++) {
+            AbstractNode n = nodes.get(i);
+            if (n instanceof ConstantNode) {
+                ConstantNode c = (ConstantNode) n;
+                int reg = c.getResultRegister();
+                Integer other = available.get(getValue(c));
+                if (reg >= AbstractNode.FIRST_ORDINARY_REG && defs[reg] == 1 && other != null && isOnlyReadLocally(nodes, i, reg, other, uses[reg])) {
+                    for (int j = i + 1; j < nodes.size(); j++)
+                        visitRegisters(nodes.get(j), r -> r == reg ? other : r, IntUnaryOperator.identity());
+                    uses[other] += uses[reg];
+                    uses[reg] = 0;
+                    defs[reg] = 0;
+                    nodes.remove(i--);
+                    continue;
+                }
+            }
+            visitRegisters(n, IntUnaryOperator.identity(), reg -> {
+                Pair<ConstantNode.Type, Object> value = held.remove(reg);
+                if (value != null)
+                    available.remove(value);
+                return reg;
+            });
+            if (n instanceof ConstantNode) {
+                ConstantNode c = (ConstantNode) n;
+                if (c.getResultRegister() >= AbstractNode.FIRST_ORDINARY_REG && !available.containsKey(getValue(c))) {
+                    available.put(getValue(c), c.getResultRegister());
+                    held.put(c.getResultRegister(), getValue(c));
+                }
+            }
+        }
+    }
+
+    private static Pair<ConstantNode.Type, Object> getValue(ConstantNode c) {
+        switch (c.getType()) {
+            case NUMBER:
+                return Pair.make(c.getType(), c.getNumber()); // Double.equals distinguishes -0 and +0
+            case STRING:
+                return Pair.make(c.getType(), c.getString());
+            case BOOLEAN:
+                return Pair.make(c.getType(), c.getBoolean());
+            default:
+                return Pair.make(c.getType(), null);
+        }
+    }
+
+    /**
+     * Checks that all reads of the register defined at the given index are later in the block,
+     * and that the other register is not overwritten before the last of them.
+     */
+    private static boolean isOnlyReadLocally(List<AbstractNode> nodes, int index, int reg, int other, int reads) {
+        int[] found = new int[1];
+        boolean[] overwritten = new boolean[1];
+        boolean[] ok = {true};
+        for (int j = index + 1; j < nodes.size() && found[0] < reads; j++) {
+            visitRegisters(nodes.get(j), r -> {
+                if (r == reg) {
+                    found[0]++;
+                    if (overwritten[0])
+                        ok[0] = false;
+                }
+                return r;
+            }, r -> {
+                if (r == other)
+                    overwritten[0] = true;
+                return r;
+            });
+        }
+        return ok[0] && found[0] == reads;
+    }
+
+    /**
+     * Removes constants whose registers are never read and nop nodes, except where they are needed as the only node of a block or as loop entries.
+     */
+    private static void removeDeadNodes(Function f, int[] uses) {
+        for (BasicBlock b : f.getBlocks()) {
+            List<AbstractNode> nodes = b.getNodes();
+            for (int i = b == f.getEntry() ? 1 : 0; i < nodes.size() && nodes.size() > 1; i++) { // the first node of the function is used for messages
+                AbstractNode n = nodes.get(i);
+                if (n.isLoopEntryNode())
+                    continue;
+                boolean dead = n instanceof NopNode;
+                if (n instanceof ConstantNode) {
+                    int reg = ((ConstantNode) n).getResultRegister();
+                    dead = reg == AbstractNode.NO_VALUE || (reg >= AbstractNode.FIRST_ORDINARY_REG && uses[reg] == 0);
+                }
+                if (dead)
+                    nodes.remove(i--);
+            }
+        }
+    }
+
+    /**
+     * Merges each block with its successor, if the successor has no other predecessors
+     * and the nodes at the boundary do not need to end or start a block.
+     */
+    private static void mergeBlocks(Function f) {
+        Map<BasicBlock, Integer> predecessors = newMap();
+        predecessors.put(f.getEntry(), 1);
+        for (BasicBlock b : f.getBlocks()) {
+            for (BasicBlock s : b.getSuccessors())
+                predecessors.merge(s, 1, Integer::sum);
+            if (b.getExceptionHandler() != null)
+                predecessors.merge(b.getExceptionHandler(), 1, Integer::sum);
+        }
+        Map<BasicBlock, BasicBlock> mergedInto = newMap();
+        for (BasicBlock b1 : f.getBlocks()) {
+            if (mergedInto.containsKey(b1))
+                continue;
+            while (b1.getSuccessors().size() == 1) {
+                BasicBlock b2 = b1.getSingleSuccessor();
+                if (b2 == b1 || b2.getFunction() != f || predecessors.get(b2) != 1
+                        || b2 == f.getOrdinaryExit() || b2 == f.getExceptionalExit()
+                        || b1.getExceptionHandler() != b2.getExceptionHandler()
+                        || b2.getEntryBlock() == b2 || b2.getEntryBlock() != b1.getEntryBlock()
+                        || endsBlock(b1.getLastNode()) || startsBlock(b2.getFirstNode()))
+                    break;
+                for (AbstractNode n : b2.getNodes())
+                    b1.addNode(n);
+                b1.removeSuccessor(b2);
+                for (BasicBlock s : b2.getSuccessors())
+                    b1.addSuccessor(s);
+                mergedInto.put(b2, b1);
+            }
+        }
+        if (mergedInto.isEmpty())
+            return;
+        for (BasicBlock b : f.getBlocks()) {
+            BasicBlock p = b.getEntryPredecessorBlock();
+            while (p != null && mergedInto.containsKey(p))
+                p = mergedInto.get(p);
+            b.setEntryPredecessorBlock(p);
+        }
+        f.removeBlocks(mergedInto.keySet());
+    }
+
+    /**
+     * Returns true if the given node must be the last node in its block,
+     * because it has special successors or propagates to its successor in another context.
+     */
+    private static boolean endsBlock(AbstractNode n) {
+        return n instanceof IfNode || n instanceof CallNode || n instanceof EventDispatcherNode
+                || n instanceof BeginForInNode || n instanceof EndForInNode || n instanceof BeginLoopNode || n instanceof EndLoopNode
+                || n instanceof ReturnNode || n instanceof ExceptionalReturnNode || n instanceof ThrowNode;
+    }
+
+    /**
+     * Returns true if the given node must be the first node in its block.
+     */
+    private static boolean startsBlock(AbstractNode n) {
+        return n instanceof CallNode || n instanceof EventDispatcherNode || n instanceof EndForInNode || n instanceof CatchNode || n.isLoopEntryNode();
+    }
+
+    /**
+     * Renumbers the ordinary registers of the function consecutively, preserving their order.
+     *
+     * @return the new number of each old register, or -1 if not used
+     */
+    private static int[] renumberRegisters(Function f) {
+        BitSet used = new BitSet();
+        for (BasicBlock b : f.getBlocks())
+            for (AbstractNode n : b.getNodes())
+                visitRegisters(n, reg -> {
+                    used.set(reg);
+                    return reg;
+                }, reg -> {
+                    used.set(reg);
+                    return reg;
+                });
+        int[] renumbering = new int[Math.max(used.length(), f.getMaxRegister())];
+        Arrays.fill(renumbering, -1);
+        for (int reg = 0; reg < AbstractNode.FIRST_ORDINARY_REG && reg < renumbering.length; reg++)
+            renumbering[reg] = reg;
+        int next = AbstractNode.FIRST_ORDINARY_REG;
+        for (int reg = used.nextSetBit(AbstractNode.FIRST_ORDINARY_REG); reg >= 0; reg = used.nextSetBit(reg + 1))
+            renumbering[reg] = next++;
+        IntUnaryOperator rename = reg -> renumbering[reg];
+        for (BasicBlock b : f.getBlocks())
+            for (AbstractNode n : b.getNodes())
+                visitRegisters(n, rename, rename);
+        f.setMaxRegister(next);
+        return renumbering;
+    }
+
+    /**
+     * Returns the number of reads (or writes) of each ordinary register in the function.
+     */
+    private static int[] countRegisterUses(Function f, boolean reads) {
+        int[] counts = new int[Math.max(getMaxRegister(f), f.getMaxRegister()) + 1];
+        for (BasicBlock b : f.getBlocks())
+            for (AbstractNode n : b.getNodes())
+                visitRegisters(n, reg -> {
+                    if (reads)
+                        counts[reg]++;
+                    return reg;
+                }, reg -> {
+                    if (!reads)
+                        counts[reg]++;
+                    return reg;
+                });
+        return counts;
+    }
+
+    private static int countEdges(FlowGraph fg) {
+        int edges = 0;
+        for (Function f : fg.getFunctions())
+            for (BasicBlock b : f.getBlocks()) {
+                edges += b.getSuccessors().size();
+                if (b.getExceptionHandler() != null && b.canThrowExceptions())
+                    edges++;
+            }
+        return edges;
+    }
+
+    /**
+     * Returns the sum over the functions of the largest register number used plus one.
+     */
+    private static int countRegisters(FlowGraph fg) {
+        int registers = 0;
+        for (Function f : fg.getFunctions())
+            registers += getMaxRegister(f) + 1;
+        return registers;
+    }
+
+    /**
+     * Returns the largest register number used in the function.
+     */
+    private static int getMaxRegister(Function f) {
+        int[] max = {AbstractNode.FIRST_ORDINARY_REG - 1};
+        for (BasicBlock b : f.getBlocks())
+            for (AbstractNode n : b.getNodes())
+                visitRegisters(n, reg -> {
+                    max[0] = Math.max(max[0], reg);
+                    return reg;
+                }, reg -> {
+                    max[0] = Math.max(max[0], reg);
+                    return reg;
+                });
+        return max[0];
+    }
+
+    /**
+     * Applies the given functions to the ordinary registers read and written by the node, and replaces the registers by the results.
+     * The registers read are visited before the registers written.
+     */
+    private static void visitRegisters(AbstractNode n, IntUnaryOperator read, IntUnaryOperator write) {
+        n.visitBy((AbstractNodeVisitor) new RegisterVisitor(read, write));
+    }
+
+    private static final class RegisterVisitor extends DefaultNodeVisitor {
+
+        private final IntUnaryOperator read;
+
+        private final IntUnaryOperator write;
+
+        RegisterVisitor(IntUnaryOperator read, IntUnaryOperator write) {
+            this.read = read;
+            this.write = write;
+        }
+
+        private int r(int reg) {
+            return reg >= AbstractNode.FIRST_ORDINARY_REG ? read.applyAsInt(reg) : reg;
+        }
+
+        private int w(int reg) {
+            return reg >= AbstractNode.FIRST_ORDINARY_REG ? write.applyAsInt(reg) : reg;
+        }
+
+        @Override
+        public void visit(BinaryOperatorNode n) {
+            n.setArg1Register(r(n.getArg1Register()));
+            n.setArg2Register(r(n.getArg2Register()));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(CallNode n) {
+            n.setBaseRegister(r(n.getBaseRegister()));
+            n.setFunctionRegister(r(n.getFunctionRegister()));
+            n.setPropertyRegister(r(n.getPropertyRegister()));
+            for (int i = 0; i < n.getNumberOfArgs(); i++)
+                n.setArgRegister(i, r(n.getArgRegister(i)));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(CatchNode n) {
+            n.setValueRegister(w(n.getValueRegister()));
+            n.setScopeObjRegister(w(n.getScopeObjRegister()));
+        }
+
+        @Override
+        public void visit(ConstantNode n) {
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(DeletePropertyNode n) {
+            n.setBaseRegister(r(n.getBaseRegister()));
+            n.setPropertyRegister(r(n.getPropertyRegister()));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(BeginWithNode n) {
+            n.setObjectRegister(r(n.getObjectRegister()));
+        }
+
+        @Override
+        public void visit(DeclareFunctionNode n) {
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(BeginForInNode n) {
+            n.setObjectRegister(r(n.getObjectRegister()));
+            n.setPropertyListRegister(w(n.getPropertyListRegister()));
+        }
+
+        @Override
+        public void visit(IfNode n) {
+            n.setConditionRegister(r(n.getConditionRegister()));
+        }
+
+        @Override
+        public void visit(NewObjectNode n) {
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(NextPropertyNode n) {
+            n.setPropertyListRegister(r(n.getPropertyListRegister()));
+            n.setPropertyRegister(w(n.getPropertyRegister()));
+        }
+
+        @Override
+        public void visit(HasNextPropertyNode n) {
+            n.setPropertyListRegister(r(n.getPropertyListRegister()));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(ReadPropertyNode n) {
+            n.setBaseRegister(r(n.getBaseRegister()));
+            n.setPropertyRegister(r(n.getPropertyRegister()));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(ReadVariableNode n) {
+            n.setResultRegister(w(n.getResultRegister()));
+            n.setResultBaseRegister(w(n.getResultBaseRegister()));
+        }
+
+        @Override
+        public void visit(ReturnNode n) {
+            n.setReturnValueRegister(r(n.getReturnValueRegister()));
+        }
+
+        @Override
+        public void visit(ThrowNode n) {
+            n.setValueRegister(r(n.getValueRegister()));
+        }
+
+        @Override
+        public void visit(TypeofNode n) {
+            n.setArgRegister(r(n.getArgRegister()));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(UnaryOperatorNode n) {
+            n.setArgRegister(r(n.getArgRegister()));
+            n.setResultRegister(w(n.getResultRegister()));
+        }
+
+        @Override
+        public void visit(WritePropertyNode n) {
+            n.setBaseRegister(r(n.getBaseRegister()));
+            n.setPropertyRegister(r(n.getPropertyRegister()));
+            n.setValueRegister(r(n.getValueRegister()));
+        }
+
+        @Override
+        public void visit(WriteVariableNode n) {
+            n.setRegister(r(n.getValueRegister()));
+        }
+    }
+
+    public static int getNumberOfNodesBefore() {
+        return nodes_before;
+    }
+
+    public static int getNumberOfNodesAfter() {
+        return nodes_after;
+    }
+
+    public static int getNumberOfBlocksBefore() {
+        return blocks_before;
+    }
+
+    public static int getNumberOfBlocksAfter() {
+        return blocks_after;
+    }
+
+    public static int getNumberOfEdgesBefore() {
+        return edges_before;
+    }
+
+    public static int getNumberOfEdgesAfter() {
+        return edges_after;
+    }
+
+    public static int getNumberOfRegistersBefore() {
+        return registers_before;
+    }
+
+    public static int getNumberOfRegistersAfter() {
+        return registers_after;
+    }
+}
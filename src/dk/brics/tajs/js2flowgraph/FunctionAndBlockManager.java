@@ -17,6 +17,7 @@
 package dk.brics.tajs.js2flowgraph;
 
 import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
 import dk.brics.tajs.flowgraph.Function;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.Collections;
@@ -27,6 +28,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newMap;
@@ -45,6 +47,8 @@ public class FunctionAndBlockManager {
 
     private final List<Function> functions;
 
+    private final Map<Function, Consumer<FlowGraph>> pendingBodies;
+
     private boolean closed;
 
     /**
@@ -65,6 +69,7 @@ public class FunctionAndBlockManager {
         closed = false;
         blocks = newList();
         functions = newList();
+        pendingBodies = newMap();
         unreachableSyntacticSuccessors = newMap();
         unreachableSyntacticSuccessorPredecessors = newMap();
         sessionMap = newMap();
@@ -103,6 +108,23 @@ public class FunctionAndBlockManager {
         blocks.addAll(bs);
     }
 
+    /**
+     * Registers the translator for the body of a function that is translated on demand.
+     */
+    void addPendingBody(Function function, Consumer<FlowGraph> translator) {
+        if (closed) {
+            throw new IllegalStateException("Already closed, cannot add more functions.");
+        }
+        pendingBodies.put(function, translator);
+    }
+
+    /**
+     * Returns the translators for the bodies of the functions that are translated on demand.
+     */
+    Map<Function, Consumer<FlowGraph>> getPendingBodies() {
+        return pendingBodies;
+    }
+
     /**
      * Closes this collection of functions and blocks.
      */
@@ -111,6 +133,20 @@ public class FunctionAndBlockManager {
         return Pair.make(functions, blocks);
     }
 
+    /**
+     * Returns the functions added so far.
+     */
+    List<Function> getFunctions() {
+        return functions;
+    }
+
+    /**
+     * Returns the blocks added so far.
+     */
+    List<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
     /**
      * Marks the start of a session.
      * Blocks created in this session can be extracted later with
@@ -171,15 +171,21 @@ public class FunctionBuilder extends DefaultDispatchingParseTreeAuxVisitor<Trans
 
     private final SyntacticAnalysis syntacticInformationCollector;
 
+    /**
+     * If set, the bodies of nested functions are translated when the functions are first called.
+     */
+    private final boolean lazyTranslation;
+
     /**
      * Constructs a new function builder.
      */
-    FunctionBuilder(ASTInfo astInfo, FunctionAndBlockManager functionAndBlocksManager, SourceLocationMaker sourceLocationMaker,SyntacticAnalysis syntacticInformationCollector) {
+    FunctionBuilder(ASTInfo astInfo, FunctionAndBlockManager functionAndBlocksManager, SourceLocationMaker sourceLocationMaker, SyntacticAnalysis syntacticInformationCollector, boolean lazyTranslation) {
         this.literalBuilder = new LiteralBuilder();
         this.astInfo = astInfo;
         this.functionAndBlocksManager = functionAndBlocksManager;
         this.sourceLocationMaker = sourceLocationMaker;
         this.syntacticInformationCollector = syntacticInformationCollector;
+        this.lazyTranslation = lazyTranslation;
     }
 
     /**
@@ -815,6 +821,15 @@ public class FunctionBuilder extends DefaultDispatchingParseTreeAuxVisitor<Trans
      * Processes a function declaration.
      */
     Function processFunctionDeclaration(FunctionDeclarationTree.Kind kind, String name, FormalParameterListTree parameters, ParseTree body, AstEnv env, SourceLocation location, String source) {
+        return processFunctionDeclaration(kind, name, parameters, body, null, false, env, location, source);
+    }
+
+    /**
+     * Processes a function declaration.
+     * If lazy, the function body is a stub until {@link FlowGraphBuilder#translatePendingBody} is called.
+     */
+    private Function processFunctionDeclaration(FunctionDeclarationTree.Kind kind, String name, FormalParameterListTree parameters, ParseTree body, FunctionDeclarationTree tree, boolean lazy,
+                                                AstEnv env, SourceLocation location, String source) {
         // 1. prepare function object
         List<String> parameterNames = newList();
         for (ParseTree parameter : parameters.parameters) {
@@ -849,14 +864,34 @@ public class FunctionBuilder extends DefaultDispatchingParseTreeAuxVisitor<Trans
         }
 
         // 3. wire the function body
-        TranslationResult processedBody = process(body, functionEnv);
-        processedBody.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+        if (lazy) {
+            functionEnv.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+            functionAndBlocksManager.addPendingBody(function, flowGraph ->
+                    FlowGraphBuilder.translatePendingBody(function, body, tree, functionEnv, astInfo, sourceLocationMaker, flowGraph));
+        } else {
+            TranslationResult processedBody = process(body, functionEnv);
+            processedBody.getAppendBlock().addSuccessor(function.getOrdinaryExit());
+        }
 
         function.setMaxRegister(functionEnv.getRegisterManager().getRegister()); // assumes monotonically increasing register implementation
 
         return function;
     }
 
+    /**
+     * Processes the body of a function that was declared with a stub body.
+     *
+     * @param tree the function declaration, or null if not available
+     */
+    TranslationResult processPendingBody(Function function, ParseTree body, FunctionDeclarationTree tree, AstEnv functionEnv) {
+        TranslationResult processedBody = process(body, functionEnv);
+        if (tree != null) {
+            syntacticInformationCollector.registerStackVariables(function, tree, astInfo);
+        }
+        function.setMaxRegister(functionEnv.getRegisterManager().getRegister());
+        return processedBody;
+    }
+
     @Override
     public TranslationResult process(ArrayLiteralExpressionTree tree, AstEnv env) {
         List<Integer> elementRegisters = newList();
@@ -1091,7 +1126,7 @@ public class FunctionBuilder extends DefaultDispatchingParseTreeAuxVisitor<Trans
         if (tree.kind == FunctionDeclarationTree.Kind.EXPRESSION && RefinerOptions.get().isSpecializeImpreciseClosureVariablesWithOnlyOneWrite()) {
             env = env.makeAppendBlock(makeSuccessorBasicBlock(env.getAppendBlock(), functionAndBlocksManager));
         }
-        Function function = processFunctionDeclaration(tree.kind, name, tree.formalParameterList, tree.functionBody, env, makeSourceLocation(tree), getSource(tree));
+        Function function = processFunctionDeclaration(tree.kind, name, tree.formalParameterList, tree.functionBody, tree, lazyTranslation, env, makeSourceLocation(tree), getSource(tree));
         syntacticInformationCollector.registerFunction(function, tree, astInfo);
         return TranslationResult.makeAppendBlock(env.getAppendBlock());
     }
@@ -1672,7 +1707,7 @@ public class FunctionBuilder extends DefaultDispatchingParseTreeAuxVisitor<Trans
         syntacticInformationCollector.registerDeclaredAccessor(accessorTree, location, sourceLocationMaker);
 
         int functionRegister = env.getRegisterManager().nextRegister();
-        processFunctionDeclaration(FunctionDeclarationTree.Kind.EXPRESSION, null, parameters, body, env.makeResultRegister(functionRegister), location, prettySource);
+        processFunctionDeclaration(FunctionDeclarationTree.Kind.EXPRESSION, null, parameters, body, null, lazyTranslation, env.makeResultRegister(functionRegister), location, prettySource);
         Integer base = env.getThisRegister();
         WritePropertyNode write = makeWriteFixedPropertyNode(base, propertyName, functionRegister, propertyKind, location);
         addNodeToBlock(write, env.getAppendBlock(), env);
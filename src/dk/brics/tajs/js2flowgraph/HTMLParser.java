@@ -17,6 +17,7 @@
 package dk.brics.tajs.js2flowgraph;
 
 import dk.brics.tajs.flowgraph.EventType;
+import dk.brics.tajs.flowgraph.HTMLSummary;
 import dk.brics.tajs.flowgraph.JavaScriptSource;
 import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
 import dk.brics.tajs.flowgraph.SourceLocation.StaticLocationMaker;
@@ -51,12 +52,15 @@ import static dk.brics.tajs.util.Collections.newSet;
 
 /**
  * HTML parser based on Jericho.
+ * <p>
+ * The JavaScript code and a summary of the elements are extracted in a single pass over the parsed document,
+ * after which the document itself is discarded.
  */
 public class HTMLParser {
 
     private static final Logger log = Logger.getLogger(HTMLParser.class);
 
-    private final Source doc;
+    private final HTMLSummary summary;
 
     private List<Pair<URL, JavaScriptSource>> code;
 
@@ -71,11 +75,11 @@ public class HTMLParser {
      * Parses the given HTML source.
      */
     public HTMLParser(String source, URL baseURL, SourceLocationMaker maker) {
-        this.doc = new Source(source);
-        this.code = parseCode(doc, baseURL, maker);
+        this.summary = new HTMLSummary();
+        this.code = parse(new Source(source), baseURL, maker, summary);
     }
 
-    private static List<Pair<URL, JavaScriptSource>> parseCode(Source doc, URL baseURL, SourceLocationMaker sourceLocationMaker) {
+    private static List<Pair<URL, JavaScriptSource>> parse(Source doc, URL baseURL, SourceLocationMaker sourceLocationMaker, HTMLSummary summary) {
         Set<String> standardJavaScriptScriptTypeNames = newSet(Arrays.asList("text/javascript", "text/ecmascript", "application/javascript", "application/ecmascript"));
         Set<String> allJavaScriptScriptTypeNames = newSet();
         allJavaScriptScriptTypeNames.addAll(standardJavaScriptScriptTypeNames);
@@ -105,6 +109,7 @@ public class HTMLParser {
         List<Pair<URL, JavaScriptSource>> code = newList();
         for (Element e : doc.getAllElements()) {
             String name = e.getName();
+            summary.addElement(name, e.getAttributeValue("id"), e.getAttributeValue("name"));
             if ("script".equals(name) && (e.getAttributeValue("type") == null || allJavaScriptScriptTypeNames.contains(e.getAttributeValue("type")))) {
                 String src = e.getAttributeValue("src");
                 if (src != null) {
@@ -184,10 +189,10 @@ public class HTMLParser {
     }
 
     /**
-     * Returns the HTML.
+     * Returns the summary of the elements in the document.
      */
-    public Source getHTML() {
-        return doc;
+    public HTMLSummary getSummary() {
+        return summary;
     }
 
     /**
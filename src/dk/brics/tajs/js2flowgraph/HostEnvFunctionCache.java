@@ -0,0 +1,349 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.js2flowgraph;
+
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.HostEnvSources;
+import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
+import dk.brics.tajs.flowgraph.ValueLogLocationInformation;
+import dk.brics.tajs.flowgraph.syntaticinfo.RawSyntacticInformation;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.BuildIdentifier;
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Cache of translated host-environment functions (see {@link HostEnvSources}).
+ * <p>
+ * A translated function is stored in serialized form together with its inner functions and syntactic information,
+ * keyed by a hash of the source, the parameter names, the source location maker, the options and, for entries stored on disk, the TAJS build (see {@link BuildIdentifier}).
+ * Each use deserializes a fresh copy, rebinds it to the main function of the flow graph and assigns new block and node indices
+ * in the same way as {@link FlowGraphBuilder#close(FlowGraph, BasicBlock)}, so the flow graph is the same as if the source had been translated.
+ * Entries are kept in memory across analyses and, if a cache directory is set, on disk.
+ */
+public class HostEnvFunctionCache {
+
+    private static Logger log = Logger.getLogger(HostEnvFunctionCache.class);
+
+    /**
+     * Identifies the cache file format.
+     */
+    private static final int FILE_MAGIC = 0x54464743;
+
+    private static final int FILE_VERSION = 2;
+
+    private static final Map<String, byte[]> entries = newMap();
+
+    private static int hits;
+
+    private static int misses;
+
+    private static int loads;
+
+    private static int saves;
+
+    private HostEnvFunctionCache() {
+    }
+
+    /**
+     * Resets the statistics.
+     */
+    public static void reset() {
+        hits = 0;
+        misses = 0;
+        loads = 0;
+        saves = 0;
+    }
+
+    /**
+     * Discards the entries kept in memory.
+     */
+    public static void clear() {
+        entries.clear();
+    }
+
+    /**
+     * A translated function with its inner functions and syntactic information.
+     */
+    private static final class Fragment implements Serializable {
+
+        final Function function;
+
+        final List<Function> functions;
+
+        final RawSyntacticInformation syntacticInformation;
+
+        final ValueLogLocationInformation valueLogLocationInformation;
+
+        /**
+         * Variable names that may be resolved in the main function during translation, and whether the main function declared them.
+         */
+        final Map<String, Boolean> mainVariables;
+
+        Fragment(Function function, List<Function> functions, RawSyntacticInformation syntacticInformation,
+                 ValueLogLocationInformation valueLogLocationInformation, Map<String, Boolean> mainVariables) {
+            this.function = function;
+            this.functions = functions;
+            this.syntacticInformation = syntacticInformation;
+            this.valueLogLocationInformation = valueLogLocationInformation;
+            this.mainVariables = mainVariables;
+        }
+    }
+
+    /**
+     * Placeholder for the main function of the flow graph in the serialized form.
+     */
+    private static final class MainFunction implements Serializable {
+    }
+
+    private static final class FragmentOutputStream extends ObjectOutputStream {
+
+        private final Function main;
+
+        private final Set<Function> functions;
+
+        private final BasicBlock declarationBlock;
+
+        FragmentOutputStream(OutputStream out, Function main, Set<Function> functions, BasicBlock declarationBlock) throws IOException {
+            super(out);
+            this.main = main;
+            this.functions = functions;
+            this.declarationBlock = declarationBlock;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj == main)
+                return new MainFunction();
+            if (obj instanceof Function && !functions.contains(obj))
+                throw new NotSerializableException("Reference to other function " + obj);
+            if (obj instanceof BasicBlock && ((BasicBlock) obj).getFunction() == main && obj != declarationBlock)
+                throw new NotSerializableException("Reference to block of main function " + obj);
+            return obj;
+        }
+    }
+
+    private static final class FragmentInputStream extends ObjectInputStream {
+
+        private final Function main;
+
+        FragmentInputStream(InputStream in, Function main) throws IOException {
+            super(in);
+            this.main = main;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) {
+            return obj instanceof MainFunction ? main : obj;
+        }
+    }
+
+    /**
+     * Returns the cache key for the given source.
+     */
+    static String makeKey(URL file, List<String> parameterNames, String source, SourceLocationMaker sourceLocationMaker) {
+        Map<String, Object> options = Options.get().getOptionValues();
+        options.remove("-flowgraph-cache");
+        String description = FILE_VERSION + "\n" + file + "\n" + parameterNames + "\n" + sourceLocationMaker.makeUnspecifiedPosition() + "\n"
+                + options + "\n" + Options.get().getUnsoundness() + "\n";
+        if (Options.get().getFlowGraphCacheDirectory() != null)
+            description += BuildIdentifier.get() + "\n"; // entries in the cache directory may be from another build
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(description.getBytes(StandardCharsets.UTF_8));
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder b = new StringBuilder();
+            for (byte x : digest.digest())
+                b.append(String.format("%02x", x));
+            return b.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+    }
+
+    /**
+     * Adds a copy of the cached function with the given key to the flow graph.
+     *
+     * @return the function, or null if not cached
+     */
+    static Function get(String key, FlowGraph flowGraph) {
+        byte[] data = entries.get(key);
+        if (data == null && Options.get().getFlowGraphCacheDirectory() != null) {
+            data = load(getFile(key), key);
+            if (data != null) {
+                entries.put(key, data);
+                loads++;
+            }
+        }
+        if (data == null) {
+            misses++;
+            return null;
+        }
+        Function main = flowGraph.getMain();
+        Fragment fragment;
+        try (FragmentInputStream in = new FragmentInputStream(new ByteArrayInputStream(data), main)) {
+            fragment = (Fragment) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Ignoring invalid cached translation of host-environment source: " + e);
+            entries.remove(key);
+            misses++;
+            return null;
+        }
+        if (!fragment.mainVariables.equals(getMainVariables(main, fragment.mainVariables.keySet()))) {
+            misses++;
+            return null;
+        }
+        int origBlockCount = flowGraph.getNumberOfBlocks();
+        int origNodeCount = flowGraph.getNumberOfNodes();
+        flowGraph.addSyntacticInformation(fragment.syntacticInformation, fragment.valueLogLocationInformation);
+        flowGraph.addCompletedFunctions(fragment.functions);
+        FlowGraphBuilder.completeAndIndex(flowGraph, origBlockCount, origNodeCount);
+        hits++;
+        return fragment.function;
+    }
+
+    /**
+     * Caches the given function, which has just been translated by the given builder and added to the flow graph.
+     */
+    static void put(String key, Function function, FlowGraphBuilder builder, FlowGraph flowGraph) {
+        Function main = flowGraph.getMain();
+        Set<Function> functions = newSet(builder.getFunctions());
+        for (BasicBlock b : builder.getBlocks())
+            if (!b.isEmpty() && !functions.contains(b.getFunction())) {
+                log.debug("Not caching translation with blocks outside the translated functions: " + function);
+                return;
+            }
+        Fragment fragment = new Fragment(function, newList(builder.getFunctions()), builder.getSyntacticInformation(), builder.getValueLogLocationInformation(),
+                getMainVariables(main, getFreeVariables(builder.getSyntacticInformation())));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (FragmentOutputStream out = new FragmentOutputStream(bytes, main, functions, function.getNode() != null ? function.getNode().getBlock() : null)) {
+            out.writeObject(fragment);
+        } catch (IOException e) {
+            log.debug("Unable to cache translation of " + function + ": " + e);
+            return;
+        }
+        byte[] data = bytes.toByteArray();
+        entries.put(key, data);
+        if (Options.get().getFlowGraphCacheDirectory() != null)
+            save(getFile(key), key, data);
+    }
+
+    /**
+     * Returns the variable names that are looked up in the enclosing functions during translation.
+     */
+    private static Set<String> getFreeVariables(RawSyntacticInformation syntacticInformation) {
+        Set<String> names = newSet();
+        syntacticInformation.getFunctionClosureVariables().values().forEach(names::addAll);
+        names.addAll(syntacticInformation.getWrittenVariableNames());
+        return names;
+    }
+
+    private static Map<String, Boolean> getMainVariables(Function main, Set<String> names) {
+        Map<String, Boolean> res = newMap();
+        for (String name : names)
+            res.put(name, main.getVariableNames().contains(name) || main.getParameterNames().contains(name));
+        return res;
+    }
+
+    private static Path getFile(String key) {
+        return Options.get().getFlowGraphCacheDirectory().resolve("tajs-hostenv-" + key + ".bin");
+    }
+
+    private static byte[] load(Path file, String key) {
+        if (!Files.exists(file))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || !Objects.equals(in.readUTF(), key)) {
+                log.warn("Ignoring host-environment translation cache file in unknown format: " + file);
+                return null;
+            }
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return data;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Unable to read host-environment translation cache file " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private static void save(Path file, String key, byte[] data) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmp = Files.createTempFile(file.getParent(), "tajs-hostenv-", ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeInt(FILE_VERSION);
+                out.writeUTF(key);
+                out.writeInt(data.length);
+                out.write(data);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new AnalysisException("Unable to write host-environment translation cache file " + file, e);
+        }
+        saves++;
+    }
+
+    public static int getNumberOfHits() {
+        return hits;
+    }
+
+    public static int getNumberOfMisses() {
+        return misses;
+    }
+
+    public static int getNumberOfLoads() {
+        return loads;
+    }
+
+    public static int getNumberOfSaves() {
+        return saves;
+    }
+}
@@ -26,6 +26,7 @@ import dk.brics.tajs.flowgraph.SourceLocation;
 import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
 
 import java.util.List;
+import java.util.function.Supplier;
 
 import static dk.brics.tajs.util.Collections.newList;
 
@@ -54,26 +55,38 @@ public class JavaScriptParser {
      * @param contents the code
      */
     public ParseResult parse(String contents, SourceLocationMaker sourceLocationMaker) {
+        return parse(contents, sourceLocationMaker.makeUnspecifiedPosition().toString(), sourceLocationMaker);
+    }
+
+    /**
+     * Parses the given JavaScript code.
+     * Source locations of the syntax messages are created on demand, so this method may be called concurrently
+     * as long as the messages are only inspected by one thread.
+     *
+     * @param contents   the code
+     * @param sourceName name of the source file, as used in the AST
+     */
+    public ParseResult parse(String contents, String sourceName, SourceLocationMaker sourceLocationMaker) {
         final List<SyntaxMesssage> warnings = newList();
         final List<SyntaxMesssage> errors = newList();
 
         ErrorReporter errorReporter = new ErrorReporter() {
             @Override
             protected void reportError(SourcePosition sourcePosition, String message) {
-                errors.add(new SyntaxMesssage(message, sourceLocationMaker.make(sourcePosition.line, sourcePosition.column + 1, sourcePosition.line, sourcePosition.column + 1)));
+                errors.add(new SyntaxMesssage(message, () -> sourceLocationMaker.make(sourcePosition.line, sourcePosition.column + 1, sourcePosition.line, sourcePosition.column + 1)));
             }
 
             @Override
             protected void reportWarning(SourcePosition sourcePosition, String message) {
-                warnings.add(new SyntaxMesssage(message, sourceLocationMaker.make(sourcePosition.line, sourcePosition.column + 1, sourcePosition.line, sourcePosition.column + 1)));
+                warnings.add(new SyntaxMesssage(message, () -> sourceLocationMaker.make(sourcePosition.line, sourcePosition.column + 1, sourcePosition.line, sourcePosition.column + 1)));
             }
         };
 
         ProgramTree programAST = null;
         try {
-            programAST = new Parser(new Parser.Config(mode, strict), errorReporter, new SourceFile(sourceLocationMaker.makeUnspecifiedPosition().toString(), contents)).parseProgram();
+            programAST = new Parser(new Parser.Config(mode, strict), errorReporter, new SourceFile(sourceName, contents)).parseProgram();
         } catch (Exception e) {
-            errors.add(new SyntaxMesssage(String.format("%s: %s", e.getClass(), e.getMessage()), sourceLocationMaker.makeUnspecifiedPosition()));
+            errors.add(new SyntaxMesssage(String.format("%s: %s", e.getClass(), e.getMessage()), sourceLocationMaker::makeUnspecifiedPosition));
         }
         return new ParseResult(programAST, errors, warnings);
     }
@@ -85,12 +98,12 @@ public class JavaScriptParser {
 
         private final String message;
 
-        private final SourceLocation sourceLocation;
+        private final Supplier<SourceLocation> sourceLocation;
 
         /**
          * Constructs a new syntax error message object.
          */
-        SyntaxMesssage(String message, SourceLocation sourceLocation) {
+        SyntaxMesssage(String message, Supplier<SourceLocation> sourceLocation) {
             this.message = message;
             this.sourceLocation = sourceLocation;
         }
@@ -106,7 +119,7 @@ public class JavaScriptParser {
          * Returns the source location.
          */
         SourceLocation getSourceLocation() {
-            return sourceLocation;
+            return sourceLocation.get();
         }
     }
 
@@ -109,15 +109,22 @@ public class SyntacticAnalysis {
         if (candidates.containsKey(functionTree)) {
             rawSyntacticInformation.getCorrelatedAccessFunctions().add(function);
         }
+        registerStackVariables(function, functionTree, astInfo);
+        rawSyntacticInformation.registerFunctionClosureVariables(function, astInfo.getFunctionClosureVariables().get(functionTree));
+        if (astInfo.getFunctionsWithThisReference().contains(functionTree)) {
+            rawSyntacticInformation.getFunctionsWithThisReference().add(function);
+        }
+    }
+
+    /**
+     * Registers the stack variables of a function, which requires the variable declarations of the function body to have been translated.
+     */
+    public void registerStackVariables(Function function, FunctionDeclarationTree functionTree, ASTInfo astInfo) {
         Set<String> stackVariables = newSet();
         stackVariables.addAll(function.getVariableNames());
         stackVariables.addAll(function.getParameterNames());
         stackVariables.removeAll(astInfo.getNonStackVariables().getOrDefault(functionTree, newSet()));
         rawSyntacticInformation.getStackVariables().put(function, stackVariables);
-        rawSyntacticInformation.registerFunctionClosureVariables(function, astInfo.getFunctionClosureVariables().get(functionTree));
-        if (astInfo.getFunctionsWithThisReference().contains(functionTree)) {
-            rawSyntacticInformation.getFunctionsWithThisReference().add(function);
-        }
     }
 
     public void registerFunctionCall(CallNode callNode, ParseTree operand, ArgumentListTree arguments, SyntacticReference reference) {
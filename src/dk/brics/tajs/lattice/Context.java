@@ -37,7 +37,8 @@ import static dk.brics.tajs.util.Collections.newSet;
 
 /**
  * Context for context sensitive analysis.
- * Immutable.
+ * Immutable and canonicalized (also the component maps and lists), so equality is object identity.
+ * Each canonical context has a unique ID.
  */
 public final class Context implements IContext<Context>, DeepImmutable {
 
@@ -104,6 +105,21 @@ public final class Context implements IContext<Context>, DeepImmutable {
     private final Context contextAtEntry;
 
     private final PropertyReadSpecialization propertyReadSpecialization;
+
+    /**
+     * Unique ID of this context, assigned when first canonicalized.
+     */
+    private int id = -1;
+
+    /**
+     * Cached string representation, or null if not yet computed.
+     */
+    private String string;
+
+    private static int number_of_contexts_created;
+
+    private static int number_of_contexts_reused;
+
     /**
      * Constructs a new context object.
      */
@@ -159,12 +175,64 @@ public final class Context implements IContext<Context>, DeepImmutable {
         this.hashcode = hashcode;
     }
 
+    /**
+     * Constructs a new (canonicalized) context.
+     * This is the only way contexts are created.
+     */
     public static Context make(Value thisval, Map<Integer, Value> specialRegs,
                                Context contextAtEntry, Map<Qualifier, Value> extraAllocationContexts,
                                Map<BeginLoopNode, Integer> loopUnrolling,
                                Value unknownArg, List<String> parameterNames, List<Value> arguments, Map<String, Value> freeVariables, FreeVariablePartitioning partitionings, PropertyReadSpecialization propertyReadSpecialization) {
-        return Canonicalizer.get().canonicalize(new Context(thisval, specialRegs, contextAtEntry,
-                extraAllocationContexts, loopUnrolling, unknownArg, parameterNames, arguments, freeVariables, partitionings, propertyReadSpecialization));
+        Context c = new Context(thisval, canonicalizeComponent(specialRegs), contextAtEntry,
+                canonicalizeComponent(extraAllocationContexts), canonicalizeComponent(loopUnrolling), unknownArg,
+                canonicalizeComponent(parameterNames), canonicalizeComponent(arguments), canonicalizeComponent(freeVariables), partitionings, propertyReadSpecialization);
+        Context r = Canonicalizer.get().canonicalize(c);
+        if (r == c) {
+            r.id = number_of_contexts_created++;
+        } else
+            number_of_contexts_reused++;
+        return r;
+    }
+
+    /**
+     * Returns the canonical unmodifiable version of the given map, or null if empty.
+     */
+    private static <K, V> Map<K, V> canonicalizeComponent(Map<K, V> m) {
+        if (m == null || m.isEmpty())
+            return null;
+        return Canonicalizer.get().canonicalizeViaImmutableBox(java.util.Collections.unmodifiableMap(m));
+    }
+
+    /**
+     * Returns the canonical unmodifiable version of the given list, or null if empty.
+     */
+    private static <T> List<T> canonicalizeComponent(List<T> l) {
+        if (l == null || l.isEmpty())
+            return null;
+        return Canonicalizer.get().canonicalizeViaImmutableBox(java.util.Collections.unmodifiableList(l));
+    }
+
+    /**
+     * Returns the number of distinct contexts created.
+     * This is also the next context ID.
+     */
+    public static int getNumberOfContextsCreated() {
+        return number_of_contexts_created;
+    }
+
+    /**
+     * Returns the number of context constructions that resulted in an existing context.
+     */
+    public static int getNumberOfContextsReused() {
+        return number_of_contexts_reused;
+    }
+
+    /**
+     * Resets the context numbers.
+     */
+    public static void reset() {
+        number_of_contexts_created = 0;
+        number_of_contexts_reused = 0;
     }
 
     public static Context make(Value unknownArg, List<String> parameterNames, List<Value> arguments, Map<String, Value> freeVariables) {
@@ -194,6 +262,13 @@ public final class Context implements IContext<Context>, DeepImmutable {
         return make(thisval, specialRegs, contextAtEntry, extraAllocationContexts, loopUnrolling, unknownArg, parameterNames, arguments, freeVariables, freeVariablePartitioning, propertyReadSpecialization);
     }
 
+    /**
+     * Returns the unique ID of this context.
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Returns the this-value.
      */
@@ -307,7 +382,13 @@ public final class Context implements IContext<Context>, DeepImmutable {
     }
 
     @Override
-    public String toString() { // TODO: cache resulting string?
+    public String toString() {
+        if (string == null)
+            string = computeString();
+        return string;
+    }
+
+    private String computeString() {
         StringBuilder s = new StringBuilder();
         boolean any = false;
         if (thisval != null) {
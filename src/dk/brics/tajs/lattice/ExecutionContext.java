@@ -18,7 +18,6 @@ package dk.brics.tajs.lattice;
 
 import dk.brics.tajs.util.AnalysisException;
 
-import java.util.Map;
 import java.util.Set;
 
 import static dk.brics.tajs.util.Collections.newSet;
@@ -150,8 +149,8 @@ public final class ExecutionContext implements Cloneable {
     /**
      * Replaces all occurrences of oldlabel by newlabel.
      */
-    public void replaceObjectLabel(ObjectLabel oldlabel, ObjectLabel newlabel, Map<ScopeChain, ScopeChain> cache) {
-        scope_chain = ScopeChain.replaceObjectLabel(scope_chain, oldlabel, newlabel, cache);
+    public void replaceObjectLabel(ObjectLabel oldlabel, ObjectLabel newlabel) {
+        scope_chain = ScopeChain.replaceObjectLabel(scope_chain, oldlabel, newlabel);
         var_obj = replaceObjectLabel(var_obj, oldlabel, newlabel);
         thisval = thisval.replaceObjectLabel(oldlabel, newlabel);
     }
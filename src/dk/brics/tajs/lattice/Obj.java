@@ -54,8 +54,12 @@ public final class Obj {
 
     private int hash_code; // hash code, only used if non-writable, 0 means uninitialized
 
+    private int version; // version stamp, objects with the same version have the same content
+
     private static int number_of_objs_created;
 
+    private static int next_version; // never reset, so version stamps remain unique across analyses
+
     private static int number_of_makewritable_properties;
 
     private static Obj the_absent_modified;
@@ -71,6 +75,7 @@ public final class Obj {
     }
 
     private Obj() {
+        version = ++next_version;
         number_of_objs_created++;
     }
 
@@ -92,6 +97,7 @@ public final class Obj {
             x.writable_properties = writable_properties = false;
         }
         writable = true;
+        version = x.version;
         number_of_objs_created++;
     }
 
@@ -265,6 +271,24 @@ public final class Obj {
     private void checkWritable() {
         if (!writable)
             throw new AnalysisException("Attempt to modify non-writable Obj");
+        version = ++next_version;
+    }
+
+    /**
+     * Returns the version stamp of this object.
+     * The version changes whenever the object is modified and is preserved when the object is copied,
+     * so equal versions imply equal contents.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the most recently issued version stamp.
+     * If this is unchanged between two points in time, then no object has been created or modified in between.
+     */
+    public static int getLatestVersion() {
+        return next_version;
     }
 
     /**
@@ -558,13 +582,13 @@ public final class Obj {
      * Replaces all occurrences of oldlabel by newlabel.
      * Ignores 'unknown' values.
      */
-    public void replaceObjectLabel(ObjectLabel oldlabel, ObjectLabel newlabel, Map<ScopeChain, ScopeChain> cache) {
+    public void replaceObjectLabel(ObjectLabel oldlabel, ObjectLabel newlabel) {
         checkWritable();
         Map<PKey, Value> newproperties = newMap();
         for (Entry<PKey, Value> me : properties.entrySet())
             newproperties.put(me.getKey().replaceObjectLabel(oldlabel, newlabel), me.getValue().replaceObjectLabel(oldlabel, newlabel));
         properties = newproperties;
-        scope = ScopeChain.replaceObjectLabel(scope, oldlabel, newlabel, cache);
+        scope = ScopeChain.replaceObjectLabel(scope, oldlabel, newlabel);
         default_other_property = default_other_property.replaceObjectLabel(oldlabel, newlabel);
         default_numeric_property = default_numeric_property.replaceObjectLabel(oldlabel, newlabel);
         internal_prototype = internal_prototype.replaceObjectLabel(oldlabel, newlabel);
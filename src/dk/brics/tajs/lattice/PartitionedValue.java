@@ -26,6 +26,7 @@ import dk.brics.tajs.util.DeepImmutable;
 import javax.annotation.Nonnull;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -33,6 +34,7 @@ import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
+import static dk.brics.tajs.util.Collections.newList;
 import static dk.brics.tajs.util.Collections.newMap;
 import static dk.brics.tajs.util.Collections.newSet;
 
@@ -50,6 +52,59 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
     @Nonnull
     private Map<AbstractNode, Partitions> partitions;
 
+    private static int memo_hits;
+
+    private static int memo_misses;
+
+    /*
+     * Attribute and meta-flag operations, used as memoization keys in the shared partition maps.
+     */
+
+    private static final Function<Value, Value> JOIN_MODIFIED = Value::joinModified;
+
+    private static final Function<Value, Value> RESTRICT_TO_NOT_MODIFIED = Value::restrictToNotModified;
+
+    private static final Function<Value, Value> RESTRICT_TO_NOT_ABSENT = Value::restrictToNotAbsent;
+
+    private static final Function<Value, Value> JOIN_ABSENT = Value::joinAbsent;
+
+    private static final Function<Value, Value> JOIN_ABSENT_MODIFIED = Value::joinAbsentModified;
+
+    private static final Function<Value, Value> REMOVE_ATTRIBUTES = Value::removeAttributes;
+
+    private static final Function<Value, Value> SET_BOTTOM_PROPERTY_DATA = Value::setBottomPropertyData;
+
+    private static final Function<Value, Value> SET_DONTENUM = Value::setDontEnum;
+
+    private static final Function<Value, Value> SET_NOT_DONTENUM = Value::setNotDontEnum;
+
+    private static final Function<Value, Value> JOIN_NOT_DONTENUM = Value::joinNotDontEnum;
+
+    private static final Function<Value, Value> SET_DONTDELETE = Value::setDontDelete;
+
+    private static final Function<Value, Value> SET_NOT_DONTDELETE = Value::setNotDontDelete;
+
+    private static final Function<Value, Value> JOIN_NOT_DONTDELETE = Value::joinNotDontDelete;
+
+    private static final Function<Value, Value> SET_READONLY = Value::setReadOnly;
+
+    private static final Function<Value, Value> SET_NOT_READONLY = Value::setNotReadOnly;
+
+    private static final Function<Value, Value> JOIN_NOT_READONLY = Value::joinNotReadOnly;
+
+    private static final Function<Value, Value> RESTRICT_TO_ATTRIBUTES = Value::restrictToAttributes;
+
+    private static final Function<Value, Value> RESTRICT_TO_NON_ATTRIBUTES = Value::restrictToNonAttributes;
+
+    private static final List<Function<Value, Value>> SET_ATTRIBUTES = newList();
+
+    static {
+        for (int i = 0; i < 8; i++) {
+            boolean dontenum = (i & 4) != 0, dontdelete = (i & 2) != 0, readonly = (i & 1) != 0;
+            SET_ATTRIBUTES.add(v -> v.setAttributes(dontenum, dontdelete, readonly));
+        }
+    }
+
     /**
      * Constructs a new (not canonicalized) partitioned value.
      */
@@ -73,12 +128,42 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
     private static PartitionedValue make(Value v, Map<AbstractNode, Map<PartitioningQualifier, Value>> partitions) {
         Map<AbstractNode, Partitions> transformedMap =
                 partitions.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> Partitions.make(e.getValue())));
+        return makeShared(v, Canonicalizer.get().canonicalizeMap(transformedMap));
+    }
+
+    /**
+     * Constructs a new (canonicalized) partitioned value from a canonical partition map.
+     * @param v single abstract value that overapproximates the partitions
+     */
+    private static PartitionedValue makeShared(Value v, Map<AbstractNode, Partitions> partitions) {
         canonicalizing = true;
-        PartitionedValue canonicalize = Canonicalizer.get().canonicalize(new PartitionedValue(v, Canonicalizer.get().canonicalizeMap(transformedMap)));
+        PartitionedValue canonicalize = Canonicalizer.get().canonicalize(new PartitionedValue(v, partitions));
         canonicalizing = false;
         return canonicalize;
     }
 
+    /**
+     * Returns the number of operations on partition maps answered by the memos of the shared partition maps.
+     */
+    public static int getNumberOfMemoHits() {
+        return memo_hits;
+    }
+
+    /**
+     * Returns the number of operations on partition maps not answered by the memos of the shared partition maps.
+     */
+    public static int getNumberOfMemoMisses() {
+        return memo_misses;
+    }
+
+    /**
+     * Resets the memo numbers.
+     */
+    public static void reset() {
+        memo_hits = 0;
+        memo_misses = 0;
+    }
+
     /**
      * Constructs a new (canonicalized) partitioned value.
      * @return a partitioned value with a single abstract value that is the join of the partition values
@@ -104,26 +189,37 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
     public static Value join(Value v1, Value v2, boolean widen) {
         if (v1 instanceof PartitionedValue) {
             if (v2 instanceof PartitionedValue) {
-                Set<AbstractNode> pns = newSet(((PartitionedValue)v1).partitions.keySet());
-                pns.addAll(((PartitionedValue)v2).partitions.keySet());
-                Map<AbstractNode, Map<PartitioningQualifier, Value>> resPartitionings = newMap();
+                PartitionedValue pv1 = (PartitionedValue) v1;
+                PartitionedValue pv2 = (PartitionedValue) v2;
+                if (pv1 == pv2 && !widen)
+                    return pv1;
+                Set<AbstractNode> pns = newSet(pv1.partitions.keySet());
+                pns.addAll(pv2.partitions.keySet());
+                Map<AbstractNode, Partitions> resPartitionings = newMap();
                 for (AbstractNode n : pns) {
+                    Partitions p1 = pv1.partitions.get(n);
+                    Partitions p2 = pv2.partitions.get(n);
+                    if (p1 != null && p2 != null && !widen) {
+                        // both values are partitioned at this node, so the result only depends on the two shared partition maps
+                        resPartitionings.put(n, p1.join(p2));
+                        continue;
+                    }
                     // find the union of the partition qualifiers
-                    Set<PartitioningQualifier> ps = newSet(((PartitionedValue) v1).getPartitionQualifiers(n));
-                    ps.addAll(((PartitionedValue) v2).getPartitionQualifiers(n));
+                    Set<PartitioningQualifier> ps = newSet(pv1.getPartitionQualifiers(n));
+                    ps.addAll(pv2.getPartitionQualifiers(n));
                     Map<PartitioningQualifier, Value> partitioningsForNode =
-                            ps.stream().collect(Collectors.toMap(q -> q, q -> ((PartitionedValue)v1).getPartitionValue(n, q, false).joinSingleValue(((PartitionedValue)v2).getPartitionValue(n, q, false), widen)));
-                    resPartitionings.put(n, partitioningsForNode);
+                            ps.stream().collect(Collectors.toMap(q -> q, q -> pv1.getPartitionValue(n, q, false).joinSingleValue(pv2.getPartitionValue(n, q, false), widen)));
+                    resPartitionings.put(n, Partitions.make(partitioningsForNode));
                 }
-                return make(new Value(v1.joinSingleValue(v2, widen)), resPartitionings);
+                return makeShared(new Value(v1.joinSingleValue(v2, widen)), Canonicalizer.get().canonicalizeMap(resPartitionings));
             } else {
                 // v2 is not a PartitionValue, so just use v2 for each partition in this value
-                return make(new Value(v1.joinSingleValue(v2, widen)), ((PartitionedValue)v1).applyForEachPartition((e, n) -> e.getValue().joinSingleValue(v2, widen)));
+                return makeShared(new Value(v1.joinSingleValue(v2, widen)), ((PartitionedValue)v1).mapPartitions(p -> p.map(x -> x.joinSingleValue(v2, widen))));
             }
         } else {
             if (v2 instanceof PartitionedValue) {
                 // v1 is not a PartitionValue, so just use v1 for each partition in this value
-                return make(new Value(v1.joinSingleValue(v2, widen)), ((PartitionedValue)v2).applyForEachPartition((e, n) -> v1.joinSingleValue(e.getValue(), widen)));
+                return makeShared(new Value(v1.joinSingleValue(v2, widen)), ((PartitionedValue)v2).mapPartitions(p -> p.map(x -> v1.joinSingleValue(x, widen))));
             } else {
                 return v1.joinSingleValue(v2, widen);
             }
@@ -263,9 +359,9 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
      * Adds additional partitions to this partitioned value.
      */
     public PartitionedValue addPartitions(PartitionedValue v) {
-        Map<AbstractNode, Map<PartitioningQualifier, Value>> newPartitions = partitions.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().partitions));
-        v.partitions.forEach((key, value) -> newPartitions.put(key, value.partitions));
-        return make(new Value(this), newPartitions);
+        Map<AbstractNode, Partitions> newPartitions = newMap(partitions);
+        newPartitions.putAll(v.partitions);
+        return makeShared(new Value(this), sharePartitions(newPartitions));
     }
 
     @Override
@@ -291,9 +387,11 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
     private PartitionedValue applyFunction(Value v, BiFunction<Value, Value, Value> func) {
         if (v instanceof PartitionedValue) {
             // v is also a PartitionedValue, so for each partition in this value, look up the corresponding partition value in v
-            return make(func.apply(new Value(this), v), applyForEachPartition((e, n) -> func.apply(e.getValue(), ((PartitionedValue) v).getPartitionValue(n, e.getKey(), false))));
+            Map<AbstractNode, Partitions> newPartitions = newMap();
+            partitions.forEach((n, p) -> newPartitions.put(n, p.map((q, x) -> func.apply(x, ((PartitionedValue) v).getPartitionValue(n, q, false)))));
+            return makeShared(func.apply(new Value(this), v), sharePartitions(newPartitions));
         } else {
-            return make(func.apply(new Value(this), v), applyForEachPartition((e, n) -> func.apply(e.getValue(), v)));
+            return makeShared(func.apply(new Value(this), v), mapPartitions(p -> p.map(x -> func.apply(x, v))));
         }
     }
 
@@ -301,16 +399,34 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
      * Applies the given function to the single value and each partition value.
      */
     private PartitionedValue applyFunction(Function<Value, Value> func) {
-        return make(func.apply(new Value(this)), applyForEachPartition((e, n) -> func.apply(e.getValue())));
+        return makeShared(func.apply(new Value(this)), mapPartitions(p -> p.map(func)));
     }
 
     /**
-     * Applies the given function to each partition value.
+     * Applies the given attribute or meta-flag operation to the single value and each partition value.
+     * The operation must be a constant of this class, since its result is memoized on the shared partition maps.
+     */
+    private PartitionedValue applyAttributeFunction(Function<Value, Value> op) {
+        return makeShared(op.apply(new Value(this)), mapPartitions(p -> p.transform(op)));
+    }
+
+    /**
+     * Applies the given function to each partition map.
+     * Returns the current partition map itself if the function does not change any of the partition maps.
+     */
+    private Map<AbstractNode, Partitions> mapPartitions(Function<Partitions, Partitions> func) {
+        Map<AbstractNode, Partitions> newPartitions = newMap();
+        partitions.forEach((n, p) -> newPartitions.put(n, func.apply(p)));
+        return sharePartitions(newPartitions);
+    }
+
+    /**
+     * Returns the current partition map if it has the same partition maps as the given one, and otherwise the canonical version of the given one.
      */
-    private Map<AbstractNode, Map<PartitioningQualifier, Value>> applyForEachPartition(BiFunction<Map.Entry<PartitioningQualifier, Value>, AbstractNode, Value> func) {
-        return getPartitionNodes().stream().collect(Collectors.toMap(n -> n,
-                        n -> partitions.get(n).entrySet().stream().collect(
-                                Collectors.toMap(Map.Entry::getKey, e -> func.apply(e, n)))));
+    private Map<AbstractNode, Partitions> sharePartitions(Map<AbstractNode, Partitions> newPartitions) {
+        if (newPartitions.size() == partitions.size() && newPartitions.entrySet().stream().allMatch(e -> partitions.get(e.getKey()) == e.getValue()))
+            return partitions;
+        return Canonicalizer.get().canonicalizeMap(newPartitions);
     }
 
     /**
@@ -354,17 +470,17 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
 
     @Override
     public Value joinModified() {
-        return applyFunction(Value::joinModified);
+        return applyAttributeFunction(JOIN_MODIFIED);
     }
 
     @Override
     public Value restrictToNotModified() {
-        return applyFunction(Value::restrictToNotModified);
+        return applyAttributeFunction(RESTRICT_TO_NOT_MODIFIED);
     }
 
     @Override
     public Value restrictToNotAbsent() {
-        return applyFunction(Value::restrictToNotAbsent);
+        return applyAttributeFunction(RESTRICT_TO_NOT_ABSENT);
     }
 
     @Override
@@ -399,17 +515,17 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
 
     @Override
     public Value joinAbsent() {
-        return applyFunction(Value::joinAbsent);
+        return applyAttributeFunction(JOIN_ABSENT);
     }
 
     @Override
     public Value joinAbsentModified() {
-        return applyFunction(Value::joinAbsentModified);
+        return applyAttributeFunction(JOIN_ABSENT_MODIFIED);
     }
 
     @Override
     public Value removeAttributes() {
-        return applyFunction(Value::removeAttributes);
+        return applyAttributeFunction(REMOVE_ATTRIBUTES);
     }
 
     @Override
@@ -419,57 +535,57 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
 
     @Override
     public Value setBottomPropertyData() {
-        return applyFunction(Value::setBottomPropertyData);
+        return applyAttributeFunction(SET_BOTTOM_PROPERTY_DATA);
     }
 
     @Override
     public Value setDontEnum() {
-        return applyFunction(Value::setDontEnum);
+        return applyAttributeFunction(SET_DONTENUM);
     }
 
     @Override
     public Value setNotDontEnum() {
-        return applyFunction(Value::setNotDontEnum);
+        return applyAttributeFunction(SET_NOT_DONTENUM);
     }
 
     @Override
     public Value joinNotDontEnum() {
-        return applyFunction(Value::joinNotDontEnum);
+        return applyAttributeFunction(JOIN_NOT_DONTENUM);
     }
 
     @Override
     public Value setDontDelete() {
-        return applyFunction(Value::setDontDelete);
+        return applyAttributeFunction(SET_DONTDELETE);
     }
 
     @Override
     public Value setNotDontDelete() {
-        return applyFunction(Value::setNotDontDelete);
+        return applyAttributeFunction(SET_NOT_DONTDELETE);
     }
 
     @Override
     public Value joinNotDontDelete() {
-        return applyFunction(Value::joinNotDontDelete);
+        return applyAttributeFunction(JOIN_NOT_DONTDELETE);
     }
 
     @Override
     public Value setReadOnly() {
-        return applyFunction(Value::setReadOnly);
+        return applyAttributeFunction(SET_READONLY);
     }
 
     @Override
     public Value setNotReadOnly() {
-        return applyFunction(Value::setNotReadOnly);
+        return applyAttributeFunction(SET_NOT_READONLY);
     }
 
     @Override
     public Value joinNotReadOnly() {
-        return applyFunction(Value::joinNotReadOnly);
+        return applyAttributeFunction(JOIN_NOT_READONLY);
     }
 
     @Override
     public Value setAttributes(boolean dontenum, boolean dontdelete, boolean readonly) {
-        return applyFunction(v1 -> v1.setAttributes(dontenum, dontdelete, readonly));
+        return applyAttributeFunction(SET_ATTRIBUTES.get((dontenum ? 4 : 0) | (dontdelete ? 2 : 0) | (readonly ? 1 : 0)));
     }
 
     @Override
@@ -774,12 +890,12 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
 
     @Override
     public Value restrictToAttributes() {
-        return applyFunction(Value::restrictToAttributes);
+        return applyAttributeFunction(RESTRICT_TO_ATTRIBUTES);
     }
 
     @Override
     public Value restrictToNonAttributes() {
-        return applyFunction(Value::restrictToNonAttributes);
+        return applyAttributeFunction(RESTRICT_TO_NON_ATTRIBUTES);
     }
 
     @Override
@@ -824,11 +940,22 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
 
     /**
      * Map from partition qualifier to value.
+     * The canonical instances are shared between partitioned values and memoize the results of operations on them.
      */
     static private class Partitions implements DeepImmutable {
 
+        /**
+         * Maximum number of memoized operation results per partition map.
+         */
+        private static final int MEMO_LIMIT = 64;
+
         private final Map<PartitioningQualifier, Value> partitions;
 
+        /**
+         * Memoized results of {@link #transform} and {@link #join}, created on demand (only for canonical instances).
+         */
+        private Map<Object, Partitions> memo;
+
         private Partitions(Map<PartitioningQualifier, Value> partitions) {
             this.partitions = partitions;
         }
@@ -837,10 +964,86 @@ public final class PartitionedValue extends Value implements Undef, Null, Bool,
             return Canonicalizer.get().canonicalize(new Partitions(Canonicalizer.get().canonicalizeMap(partitions)));
         }
 
+        /**
+         * Applies the given function to each partition value.
+         * Returns this partition map if no partition value is changed.
+         */
+        Partitions map(Function<Value, Value> func) {
+            return map((q, v) -> func.apply(v));
+        }
+
+        /**
+         * Applies the given function to each partition qualifier and value.
+         * Returns this partition map if no partition value is changed.
+         */
+        Partitions map(BiFunction<PartitioningQualifier, Value, Value> func) {
+            Map<PartitioningQualifier, Value> res = newMap();
+            boolean changed = false;
+            for (Map.Entry<PartitioningQualifier, Value> e : partitions.entrySet()) {
+                Value v = func.apply(e.getKey(), e.getValue());
+                changed |= v != e.getValue();
+                res.put(e.getKey(), v);
+            }
+            return changed ? make(res) : this;
+        }
+
+        /**
+         * Applies the given attribute or meta-flag operation to each partition value.
+         * The result is memoized, using the operation itself as key.
+         */
+        Partitions transform(Function<Value, Value> op) {
+            Partitions res = lookup(op);
+            if (res == null)
+                res = record(op, map(op));
+            return res;
+        }
+
+        /**
+         * Joins this partition map with the given one (without widening).
+         * The result is memoized, using the other partition map as key.
+         */
+        Partitions join(Partitions other) {
+            if (other == this)
+                return this;
+            Partitions res = lookup(other);
+            if (res == null) {
+                Set<PartitioningQualifier> qs = newSet(partitions.keySet());
+                qs.addAll(other.partitions.keySet());
+                Map<PartitioningQualifier, Value> joined = newMap();
+                for (PartitioningQualifier q : qs)
+                    joined.put(q, getOrNone(q).joinSingleValue(other.getOrNone(q), false));
+                res = record(other, make(joined));
+            }
+            return res;
+        }
+
+        private Partitions lookup(Object key) {
+            Partitions res = memo != null ? memo.get(key) : null;
+            if (res != null)
+                memo_hits++;
+            else
+                memo_misses++;
+            return res;
+        }
+
+        private Partitions record(Object key, Partitions res) {
+            if (memo == null)
+                memo = newMap();
+            else if (memo.size() >= MEMO_LIMIT)
+                memo.clear();
+            memo.put(key, res);
+            return res;
+        }
+
         public Value get(PartitioningQualifier q) {
             return partitions.get(q);
         }
 
+        private Value getOrNone(PartitioningQualifier q) {
+            Value v = partitions.get(q);
+            return v != null ? v : Value.makeNone();
+        }
+
         public Collection<Value> values() {
             return partitions.values();
         }
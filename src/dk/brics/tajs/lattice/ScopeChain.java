@@ -18,43 +18,193 @@ package dk.brics.tajs.lattice;
 
 import dk.brics.tajs.util.Collections;
 
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static dk.brics.tajs.util.Collections.newSet;
 
 /**
  * Abstract scope chain.
- * Immutable.
+ * Immutable and hash-consed: two scope chains are equal if and only if they are the same object.
+ * <p>
+ * The canonicalization cache and the per-chain operation memos are thread-safe, and
+ * entries are reclaimed when the scope chains are no longer referenced.
  */
 public final class ScopeChain {
 
-    private Set<ObjectLabel> obj; // TODO: canonicalize? (#140)
+    /**
+     * Canonical, unmodifiable object label set.
+     */
+    private final Set<ObjectLabel> obj;
+
+    private final ScopeChain next;
+
+    private final int hashcode;
+
+    /**
+     * Memoized results of {@link #replaceObjectLabel}, {@link #summarize}, and {@link #add} with this chain as first argument.
+     * Created on demand.
+     */
+    private volatile Map<Object, Object> memo;
+
+    private static final Map<LabelsReference, LabelsReference> label_sets = new ConcurrentHashMap<>();
 
-    private ScopeChain next;
+    private static final ReferenceQueue<Set<ObjectLabel>> reclaimed_label_sets = new ReferenceQueue<>();
 
-    private int hashcode;
+    private static final Map<Key, ChainReference> cache = new ConcurrentHashMap<>();
 
-    private static Map<ScopeChain, WeakReference<ScopeChain>> cache = new WeakHashMap<>();
+    private static final ReferenceQueue<ScopeChain> reclaimed = new ReferenceQueue<>();
 
-    private static int cache_hits;
+    private static final AtomicInteger cache_hits = new AtomicInteger();
 
-    private static int cache_misses;
+    private static final AtomicInteger cache_misses = new AtomicInteger();
+
+    private static final AtomicInteger memo_hits = new AtomicInteger();
+
+    private static final AtomicInteger memo_misses = new AtomicInteger();
 
     /**
-     * Clears the canonicalization cache.
+     * Structural key of a scope chain node in the canonicalization cache.
+     * The components are canonical, so they are compared by identity.
      */
-    public static void clearCache() {
-        cache.clear();
+    private static final class Key {
+
+        private final Set<ObjectLabel> obj;
+
+        private final ScopeChain next;
+
+        private final int hashcode;
+
+        private Key(Set<ObjectLabel> obj, ScopeChain next) {
+            this.obj = obj;
+            this.next = next;
+            this.hashcode = obj.hashCode() * 17 + (next != null ? next.hashcode : 0) * 3;
+        }
+
+        @Override
+        public boolean equals(Object x) {
+            if (!(x instanceof Key))
+                return false;
+            Key k = (Key) x;
+            return hashcode == k.hashcode && obj == k.obj && next == k.next;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+    }
+
+    /**
+     * Weak reference to a canonical scope chain, remembering its cache key for removal after reclamation.
+     */
+    private static final class ChainReference extends WeakReference<ScopeChain> {
+
+        private final Key key;
+
+        private ChainReference(ScopeChain sc, Key key) {
+            super(sc, reclaimed);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Weak reference to a canonical object label set, compared by the contents of the set.
+     */
+    private static final class LabelsReference extends WeakReference<Set<ObjectLabel>> {
+
+        private final int hashcode;
+
+        private LabelsReference(Set<ObjectLabel> obj, ReferenceQueue<Set<ObjectLabel>> queue) {
+            super(obj, queue);
+            this.hashcode = obj.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object x) {
+            if (x == this)
+                return true;
+            if (!(x instanceof LabelsReference))
+                return false;
+            LabelsReference r = (LabelsReference) x;
+            if (hashcode != r.hashcode)
+                return false;
+            Set<ObjectLabel> s = get();
+            return s != null && s.equals(r.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+    }
+
+    /**
+     * Memo key for {@link #replaceObjectLabel}.
+     */
+    private static final class ReplaceKey {
+
+        private final ObjectLabel oldlabel;
+
+        private final ObjectLabel newlabel;
+
+        private ReplaceKey(ObjectLabel oldlabel, ObjectLabel newlabel) {
+            this.oldlabel = oldlabel;
+            this.newlabel = newlabel;
+        }
+
+        @Override
+        public boolean equals(Object x) {
+            if (!(x instanceof ReplaceKey))
+                return false;
+            ReplaceKey k = (ReplaceKey) x;
+            return oldlabel.equals(k.oldlabel) && newlabel.equals(k.newlabel);
+        }
+
+        @Override
+        public int hashCode() {
+            return oldlabel.hashCode() * 31 + newlabel.hashCode();
+        }
+    }
+
+    /**
+     * Memo key for {@link #summarize}, restricted to the labels of a single scope chain node.
+     */
+    private static final class SummarizeKey {
+
+        private final Set<ObjectLabel> maybe;
+
+        private final Set<ObjectLabel> definitely;
+
+        private SummarizeKey(Set<ObjectLabel> maybe, Set<ObjectLabel> definitely) {
+            this.maybe = maybe;
+            this.definitely = definitely;
+        }
+
+        @Override
+        public boolean equals(Object x) {
+            if (!(x instanceof SummarizeKey))
+                return false;
+            SummarizeKey k = (SummarizeKey) x;
+            return maybe.equals(k.maybe) && definitely.equals(k.definitely);
+        }
+
+        @Override
+        public int hashCode() {
+            return maybe.hashCode() * 3 + definitely.hashCode() * 17;
+        }
     }
 
     /**
      * Returns the canonicalization cache size.
      */
     public static int getCacheSize() {
+        expungeReclaimed();
         return cache.size();
     }
 
@@ -62,31 +212,50 @@ public final class ScopeChain {
      * Returns the number of cache misses.
      */
     public static int getNumberOfCacheMisses() {
-        return cache_misses;
+        return cache_misses.get();
     }
 
     /**
      * Returns the number of cache hits.
      */
     public static int getNumberOfCacheHits() {
-        return cache_hits;
+        return cache_hits.get();
+    }
+
+    /**
+     * Returns the number of operations answered by the persistent operation memos.
+     */
+    public static int getNumberOfMemoHits() {
+        return memo_hits.get();
+    }
+
+    /**
+     * Returns the number of operations not answered by the persistent operation memos.
+     */
+    public static int getNumberOfMemoMisses() {
+        return memo_misses.get();
     }
 
     /**
      * Resets the cache numbers.
+     * The canonicalization cache itself is kept, since live scope chains must remain canonical;
+     * its entries are reclaimed together with the scope chains.
      */
     public static void reset() {
-        cache_hits = 0;
-        cache_misses = 0;
-        clearCache();
+        cache_hits.set(0);
+        cache_misses.set(0);
+        memo_hits.set(0);
+        memo_misses.set(0);
+        expungeReclaimed();
     }
 
     /**
      * Creates a new scope chain.
      */
-    private ScopeChain(Set<ObjectLabel> obj, ScopeChain next) {
-        this.obj = obj;
-        this.next = next;
+    private ScopeChain(Key key) {
+        this.obj = key.obj;
+        this.next = key.next;
+        this.hashcode = key.hashcode;
     }
 
     /**
@@ -94,7 +263,7 @@ public final class ScopeChain {
      * This object gets ownership of the set.
      */
     public static ScopeChain make(Set<ObjectLabel> obj, ScopeChain next) {
-        return canonicalize(new ScopeChain(obj, next));
+        return canonicalize(new Key(canonicalizeLabels(obj), next));
     }
 
     /**
@@ -104,17 +273,99 @@ public final class ScopeChain {
         return make(Collections.singleton(obj), null);
     }
 
-    private static ScopeChain canonicalize(ScopeChain e) {
-        WeakReference<ScopeChain> ref = cache.get(e);
+    /**
+     * Returns the canonical unmodifiable representative of the given object label set.
+     */
+    private static Set<ObjectLabel> canonicalizeLabels(Set<ObjectLabel> obj) {
+        LabelsReference probe = new LabelsReference(obj, null);
+        LabelsReference ref = label_sets.get(probe);
+        Set<ObjectLabel> c = ref != null ? ref.get() : null;
+        if (c != null)
+            return c;
+        Set<ObjectLabel> e = java.util.Collections.unmodifiableSet(obj);
+        LabelsReference eref = new LabelsReference(e, reclaimed_label_sets);
+        while (true) {
+            ref = label_sets.putIfAbsent(eref, eref);
+            if (ref == null)
+                return e;
+            c = ref.get();
+            if (c != null)
+                return c;
+            label_sets.remove(ref, ref); // reclaimed but not yet expunged
+        }
+    }
+
+    private static ScopeChain canonicalize(Key key) {
+        ChainReference ref = cache.get(key);
         ScopeChain c = ref != null ? ref.get() : null;
-        if (c == null) {
-            cache.put(e, new WeakReference<>(e));
-            cache_misses++;
-        } else {
-            e = c;
-            cache_hits++;
+        if (c != null) {
+            cache_hits.incrementAndGet();
+            return c;
+        }
+        expungeReclaimed();
+        ScopeChain e = new ScopeChain(key);
+        ChainReference eref = new ChainReference(e, key);
+        while (true) {
+            ChainReference old = cache.putIfAbsent(key, eref);
+            if (old == null) {
+                cache_misses.incrementAndGet();
+                return e;
+            }
+            c = old.get();
+            if (c != null) {
+                cache_hits.incrementAndGet();
+                return c;
+            }
+            cache.remove(key, old); // reclaimed but not yet expunged
         }
-        return e;
+    }
+
+    /**
+     * Removes cache entries whose scope chains or object label sets have been reclaimed.
+     */
+    private static void expungeReclaimed() {
+        ChainReference ref;
+        while ((ref = (ChainReference) reclaimed.poll()) != null)
+            cache.remove(ref.key, ref);
+        LabelsReference lref;
+        while ((lref = (LabelsReference) reclaimed_label_sets.poll()) != null)
+            label_sets.remove(lref, lref);
+    }
+
+    /**
+     * Returns the memo of this scope chain node, creating it if necessary.
+     */
+    private Map<Object, Object> getMemo() {
+        Map<Object, Object> m = memo;
+        if (m == null) {
+            synchronized (this) {
+                m = memo;
+                if (m == null)
+                    memo = m = new ConcurrentHashMap<>(4);
+            }
+        }
+        return m;
+    }
+
+    /**
+     * Looks up a memoized operation result for this scope chain node, or null if absent.
+     */
+    private ScopeChain lookupMemo(Object key) {
+        Map<Object, Object> m = memo;
+        ScopeChain c = m != null ? (ScopeChain) m.get(key) : null;
+        if (c != null)
+            memo_hits.incrementAndGet();
+        else
+            memo_misses.incrementAndGet();
+        return c;
+    }
+
+    /**
+     * Records a memoized operation result for this scope chain node.
+     */
+    private ScopeChain recordMemo(Object key, ScopeChain result) {
+        getMemo().putIfAbsent(key, result);
+        return result;
     }
 
     /**
@@ -134,10 +385,11 @@ public final class ScopeChain {
     /**
      * Replaces all occurrences of oldlabel by newlabel.
      */
-    public static ScopeChain replaceObjectLabel(ScopeChain sc, ObjectLabel oldlabel, ObjectLabel newlabel, Map<ScopeChain, ScopeChain> replace_cache) {
+    public static ScopeChain replaceObjectLabel(ScopeChain sc, ObjectLabel oldlabel, ObjectLabel newlabel) {
         if (sc == null)
             return null;
-        ScopeChain c = replace_cache.get(sc);
+        ReplaceKey key = new ReplaceKey(oldlabel, newlabel);
+        ScopeChain c = sc.lookupMemo(key);
         if (c == null) {
             Set<ObjectLabel> newobj;
             if (sc.obj.contains(oldlabel)) {
@@ -146,12 +398,12 @@ public final class ScopeChain {
                 newobj.add(newlabel);
             } else
                 newobj = sc.obj;
-            ScopeChain n = replaceObjectLabel(sc.next, oldlabel, newlabel, replace_cache);
+            ScopeChain n = replaceObjectLabel(sc.next, oldlabel, newlabel);
             if (newobj != sc.obj || n != sc.next)
                 c = make(newobj, n);
             else
                 c = sc;
-            replace_cache.put(sc, c);
+            sc.recordMemo(key, c);
         }
         return c;
     }
@@ -177,53 +429,70 @@ public final class ScopeChain {
 
     /**
      * Constructs a scope chain as a copy of the given one but with object labels summarized.
+     * Returns the given scope chain itself if no object label is affected.
      */
     public static ScopeChain summarize(ScopeChain sc, Summarized s) {
-        return summarize(sc, s, Collections.newMap());
-    }
-
-    /**
-     * Summarizes this scope chain.
-     */
-    public static ScopeChain summarize(ScopeChain sc, Summarized s, Map<ScopeChain, ScopeChain> summarize_cache) {
         if (sc == null)
             return null;
-        if (s == null)
+        if (s == null || s.getMaybeSummarized().isEmpty())
             return sc;
-        ScopeChain cs = summarize_cache.get(sc);
+        ScopeChain n = summarize(sc.next, s);
+        Set<ObjectLabel> maybe = null;
+        Set<ObjectLabel> definitely = null;
+        for (ObjectLabel l : sc.obj)
+            if (l.isSingleton() && s.isMaybeSummarized(l)) {
+                if (maybe == null) {
+                    maybe = newSet();
+                    definitely = newSet();
+                }
+                maybe.add(l);
+                if (s.isDefinitelySummarized(l))
+                    definitely.add(l);
+            }
+        if (maybe == null)
+            return n == sc.next ? sc : make(sc.obj, n);
+        // the memo maps the summarization of this node to a chain with the original tail; re-attach the new tail if needed
+        SummarizeKey key = new SummarizeKey(maybe, definitely);
+        ScopeChain cs = sc.lookupMemo(key);
         if (cs == null) {
             Set<ObjectLabel> newobj = newSet();
             for (ObjectLabel l : sc.obj) {
-                if (l.isSingleton()) {
-                    if (s.isMaybeSummarized(l)) {
-                        newobj.add(l.makeSummary());
-                        if (!s.isDefinitelySummarized(l))
-                            newobj.add(l);
-                    } else
+                if (maybe.contains(l)) {
+                    newobj.add(l.makeSummary());
+                    if (!definitely.contains(l))
                         newobj.add(l);
                 } else
                     newobj.add(l);
             }
-            ScopeChain n = summarize(sc.next, s, summarize_cache);
-            cs = make(newobj, n);
-            summarize_cache.put(sc, cs);
+            cs = sc.recordMemo(key, make(newobj, sc.next));
         }
-        return cs;
+        return n == sc.next ? cs : make(cs.obj, n);
     }
 
     /**
      * Returns the least upper bound of the two scope chains.
      */
     public static ScopeChain add(ScopeChain s1, ScopeChain s2) {
-        if (s1 == null)
+        if (s1 == null || s1 == s2)
             return s2;
         if (s2 == null)
             return s1;
-        ScopeChain n = add(s1.next, s2.next);
-        Set<ObjectLabel> newobj = newSet();
-        newobj.addAll(s1.obj);
-        newobj.addAll(s2.obj);
-        return make(newobj, n);
+        ScopeChain c = s1.lookupMemo(s2);
+        if (c == null) {
+            ScopeChain n = add(s1.next, s2.next);
+            Set<ObjectLabel> newobj;
+            if (s1.obj.containsAll(s2.obj))
+                newobj = s1.obj;
+            else if (s2.obj.containsAll(s1.obj))
+                newobj = s2.obj;
+            else {
+                newobj = newSet();
+                newobj.addAll(s1.obj);
+                newobj.addAll(s2.obj);
+            }
+            c = s1.recordMemo(s2, newobj == s1.obj && n == s1.next ? s1 : make(newobj, n));
+        }
+        return c;
     }
 
     /**
@@ -249,29 +518,18 @@ public final class ScopeChain {
 
     /**
      * Checks whether the given scope chain is equal to this one.
+     * Scope chains are canonical, so this is an identity check.
      */
     @Override
     public boolean equals(Object x) {
-        if (x == this)
-            return true;
-        if (!(x instanceof ScopeChain))
-            return false;
-        ScopeChain e = (ScopeChain) x;
-        if ((next == null) != (e.next == null) || (next != null && !next.equals(e.next)))
-            return false;
-        return obj.equals(e.obj);
+        return x == this;
     }
 
     /**
-     * Computes the hash code for this scope chain.
+     * Returns the hash code for this scope chain, computed at construction.
      */
     @Override
     public int hashCode() {
-        if (hashcode == 0) {
-            hashcode = obj.hashCode() * 17 + (next != null ? next.hashCode() : 0) * 3;
-            if (hashcode == 0)
-                hashcode = 1;
-        }
         return hashcode;
     }
 
@@ -34,7 +34,6 @@ import org.apache.log4j.Logger;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -89,6 +88,12 @@ public class State implements IState<State, Context, CallEdge> {
      */
     private Map<ObjectLabel, Obj> basis_store;
 
+    /**
+     * Host objects shared by all states, in place of the none object of the store default.
+     * An object is copied into 'store' when it is first written.
+     */
+    private static Map<ObjectLabel, Obj> host_store = newMap();
+
     /**
      * Current execution context.
      */
@@ -133,6 +138,8 @@ public class State implements IState<State, Context, CallEdge> {
 
     private static int number_of_makewritable_registers; // TODO: currently not used
 
+    private static int number_of_host_objects_materialized;
+
     /**
      * Constructs a new none-state (representing the empty set of concrete states).
      */
@@ -326,6 +333,15 @@ public class State implements IState<State, Context, CallEdge> {
 //                    log.debug("making writable object from basis store: " + objlabel);
             }
         }
+        if (obj == null && !host_store.isEmpty()) {
+            // check the shared host objects
+            obj = getHostObject(objlabel);
+            if (obj != null && writable) {
+                obj = new Obj(obj);
+                writeToStore(objlabel, obj);
+                number_of_host_objects_materialized++;
+            }
+        }
         if (obj == null) {
             // take the default
             obj = store_default;
@@ -339,6 +355,33 @@ public class State implements IState<State, Context, CallEdge> {
         return obj;
     }
 
+    /**
+     * Returns the shared host object for the given object label, or null if the store default is not the none object.
+     */
+    private Obj getHostObject(ObjectLabel objlabel) {
+        Obj obj = host_store.get(objlabel);
+        if (obj != null && !store_default.isAllNone())
+            return null;
+        return obj;
+    }
+
+    /**
+     * Moves the given objects from the store to the shared host objects, replacing the existing ones.
+     * The objects are then visible in all states where the store default is the none object,
+     * until they are written, so they should never be summarized.
+     */
+    public void moveToHostStore(Collection<ObjectLabel> objlabels) {
+        makeWritableStore();
+        host_store = newMap();
+        for (ObjectLabel objlabel : objlabels) {
+            Obj obj = store.remove(objlabel);
+            if (obj != null)
+                host_store.put(objlabel, Canonicalizer.get().canonicalizeViaImmutableBox(obj.freeze()));
+        }
+        if (log.isDebugEnabled())
+            log.debug("moveToHostStore(): " + host_store.size() + " objects");
+    }
+
     /**
      * Returns the store default object.
      */
@@ -359,7 +402,7 @@ public class State implements IState<State, Context, CallEdge> {
     public void removeObjectsEqualToDefault(boolean default_none_at_entry) {
         for (Iterator<Map.Entry<ObjectLabel, Obj>> it = store.entrySet().iterator(); it.hasNext(); ) {
             Map.Entry<ObjectLabel, Obj> me = it.next();
-            if (me.getValue().equals(store_default)) {
+            if (me.getValue().equals(store_default) && !host_store.containsKey(me.getKey())) {
                 if (log.isDebugEnabled())
                     log.debug("removing object equal to the default: " + me.getKey());
                 it.remove();
@@ -475,6 +518,8 @@ public class State implements IState<State, Context, CallEdge> {
         number_of_states_created = 0;
         number_of_makewritable_store = 0;
         number_of_makewritable_registers = 0;
+        number_of_host_objects_materialized = 0;
+        host_store = newMap();
     }
 
     /**
@@ -484,6 +529,20 @@ public class State implements IState<State, Context, CallEdge> {
         return number_of_makewritable_store;
     }
 
+    /**
+     * Returns the number of shared host objects.
+     */
+    public static int getNumberOfHostObjects() {
+        return host_store.size();
+    }
+
+    /**
+     * Returns the number of times a shared host object has been copied into the store of a state.
+     */
+    public static int getNumberOfHostObjectsMaterialized() {
+        return number_of_host_objects_materialized;
+    }
+
     /**
      * Clears modified flags for all values in the store.
      * Ignores the basis store.
@@ -933,7 +992,8 @@ public class State implements IState<State, Context, CallEdge> {
         if (store_default.isAllNone() && !s.store_default.isAllNone()) {
             for (ObjectLabel lab : s.store.keySet()) { // materialize before changing default
                 if (!store.containsKey(lab)) {
-                    writeToStore(lab, store_default);
+                    Obj obj = host_store.get(lab);
+                    writeToStore(lab, obj != null ? obj : store_default);
                 }
             }
             store_default = s.store_default = Canonicalizer.get().canonicalizeViaImmutableBox(s.store_default.freeze());
@@ -1232,15 +1292,14 @@ public class State implements IState<State, Context, CallEdge> {
             // FIXME Support c.getMonitoring().visitRenameObject(c.getNode(), singleton, summary, this); (GitHub #413)
             propagateObj(summary, this, singleton, true, false);
             // update references
-            Map<ScopeChain, ScopeChain> cache = new HashMap<>();
             for (ObjectLabel objlabel2 : newList(store.keySet())) {
                 if (getObject(objlabel2, false).containsObjectLabel(singleton)) {
                     Obj obj = getObject(objlabel2, true);
-                    obj.replaceObjectLabel(singleton, summary, cache);
+                    obj.replaceObjectLabel(singleton, summary);
                 }
             }
             makeWritableExecutionContext();
-            execution_context.replaceObjectLabel(singleton, summary, cache);
+            execution_context.replaceObjectLabel(singleton, summary);
             makeWritableRegisters();
             for (int i = 0; i < registers.size(); i++) {
                 Value v = registers.get(i);
@@ -1293,15 +1352,14 @@ public class State implements IState<State, Context, CallEdge> {
             propagateObj(summarylabel, this, objlabel, true, false);
             store.remove(objlabel);
             // update references
-            Map<ScopeChain, ScopeChain> cache = new HashMap<>();
             for (ObjectLabel objlabel2 : newList(store.keySet())) {
                 if (getObject(objlabel2, false).containsObjectLabel(objlabel)) {
                     Obj obj = getObject(objlabel2, true);
-                    obj.replaceObjectLabel(objlabel, summarylabel, cache);
+                    obj.replaceObjectLabel(objlabel, summarylabel);
                 }
             }
             makeWritableExecutionContext();
-            execution_context.replaceObjectLabel(objlabel, summarylabel, cache);
+            execution_context.replaceObjectLabel(objlabel, summarylabel);
             makeWritableRegisters();
             for (int i = 0; i < registers.size(); i++) {
                 Value v = registers.get(i);
@@ -1327,17 +1385,16 @@ public class State implements IState<State, Context, CallEdge> {
      */
     public void replaceObjectLabel(ObjectLabel oldlabel, ObjectLabel newlabel) {
         makeWritableStore();
-        Map<ScopeChain, ScopeChain> cache = new HashMap<>();
         for (ObjectLabel objlabel2 : newList(store.keySet())) {
             if (getObject(objlabel2, false).containsObjectLabel(oldlabel)) {
                 Obj obj = getObject(objlabel2, true);
-                obj.replaceObjectLabel(oldlabel, newlabel, cache);
+                obj.replaceObjectLabel(oldlabel, newlabel);
             }
             if (objlabel2.equals(oldlabel))
                 store.put(newlabel, store.remove(oldlabel));
         }
         makeWritableExecutionContext();
-        execution_context.replaceObjectLabel(oldlabel, newlabel, cache);
+        execution_context.replaceObjectLabel(oldlabel, newlabel);
         makeWritableRegisters();
         for (int i = 0; i < registers.size(); i++) {
             Value v = registers.get(i);
@@ -0,0 +1,423 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.lattice;
+
+import dk.brics.tajs.lattice.ObjectLabel.Kind;
+import dk.brics.tajs.util.AnalysisException;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newMap;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Compact binary image of the store and execution context of a state.
+ * Object labels and values that occur repeatedly are written once and referred to by index.
+ * Only states where all objects are host objects defined by enums and all values are ordinary
+ * (not polymorphic or partitioned) can be imaged.
+ */
+public final class StateImage {
+
+    private static Logger log = Logger.getLogger(StateImage.class);
+
+    private final byte[] data;
+
+    private StateImage(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Makes an image of the store and execution context of the given state.
+     *
+     * @return the image, or null if the state contains parts that cannot be imaged
+     */
+    public static StateImage make(State s) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            Writer out = new Writer(data);
+            out.writeInt(s.getStore().size());
+            for (Map.Entry<ObjectLabel, Obj> me : s.getStore().entrySet()) {
+                out.writeLabel(me.getKey());
+                out.writeObj(me.getValue());
+            }
+            ExecutionContext e = s.getExecutionContext();
+            out.writeScopeChain(e.getScopeChain());
+            out.writeLabels(e.getVariableObject());
+            out.writeValue(e.getThis());
+        } catch (UnsupportedPartException e) {
+            log.debug("Unable to make state image: " + e.getMessage());
+            return null;
+        } catch (IOException e) {
+            throw new AnalysisException(e);
+        }
+        return new StateImage(bytes.toByteArray());
+    }
+
+    /**
+     * Restores the store and execution context of the given state from this image.
+     * The image is decoded completely before the state is modified.
+     */
+    public void restore(State s) {
+        Decoded d;
+        try {
+            d = decode();
+        } catch (IOException | RuntimeException e) {
+            throw new AnalysisException("Invalid state image: " + e, e);
+        }
+        d.store.forEach(s::putObject);
+        s.setExecutionContext(d.context);
+    }
+
+    /**
+     * Decodes this image.
+     *
+     * @throws IOException if the image is invalid
+     */
+    private Decoded decode() throws IOException {
+        try (DataInputStream data = new DataInputStream(new ByteArrayInputStream(this.data))) {
+            Reader in = new Reader(data);
+            int objects = in.readInt();
+            if (objects < 0)
+                throw new IOException("negative number of objects");
+            Map<ObjectLabel, Obj> store = newMap();
+            for (int i = 0; i < objects; i++) {
+                ObjectLabel objlabel = in.readLabel();
+                store.put(objlabel, in.readObj());
+            }
+            ScopeChain scope_chain = in.readScopeChain();
+            Set<ObjectLabel> var_obj = in.readLabels();
+            ExecutionContext context = new ExecutionContext(scope_chain, var_obj != null ? var_obj : newSet(), in.readValue());
+            if (data.available() != 0)
+                throw new IOException("trailing data");
+            return new Decoded(store, context);
+        }
+    }
+
+    /**
+     * Decoded store and execution context.
+     */
+    private static final class Decoded {
+
+        private final Map<ObjectLabel, Obj> store;
+
+        private final ExecutionContext context;
+
+        private Decoded(Map<ObjectLabel, Obj> store, ExecutionContext context) {
+            this.store = store;
+            this.context = context;
+        }
+    }
+
+    /**
+     * Returns the size of this image in bytes.
+     */
+    public int size() {
+        return data.length;
+    }
+
+    /**
+     * Writes this image to the given output.
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    /**
+     * Reads an image written by {@link #write(DataOutput)}.
+     *
+     * @throws IOException if the image is truncated or cannot be decoded
+     */
+    public static StateImage read(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            throw new IOException("negative image size");
+        byte[] data = new byte[length];
+        in.readFully(data);
+        StateImage image = new StateImage(data);
+        try {
+            image.decode();
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid state image: " + e, e);
+        }
+        return image;
+    }
+
+    private static ObjectLabel makeHostLabel(HostObject hostobject, Kind kind, boolean singleton) {
+        ObjectLabel objlabel = ObjectLabel.make(hostobject, kind);
+        return singleton ? objlabel : objlabel.makeSummary();
+    }
+
+    /**
+     * Thrown if a state contains a part that cannot be imaged.
+     */
+    static final class UnsupportedPartException extends IOException {
+
+        UnsupportedPartException(String msg) {
+            super(msg);
+        }
+    }
+
+    /**
+     * Writer for the parts of a state image.
+     */
+    static final class Writer {
+
+        private final DataOutput out;
+
+        private final Map<ObjectLabel, Integer> labels = newMap();
+
+        private final Map<Value, Integer> values = newMap();
+
+        private Writer(DataOutput out) {
+            this.out = out;
+        }
+
+        void writeInt(int i) throws IOException {
+            out.writeInt(i);
+        }
+
+        void writeNullableDouble(Double d) throws IOException {
+            out.writeBoolean(d != null);
+            if (d != null)
+                out.writeDouble(d);
+        }
+
+        void writeNullableString(String s) throws IOException {
+            out.writeBoolean(s != null);
+            if (s != null) {
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+
+        /**
+         * Writes a string set, or -1 for null.
+         */
+        void writeStrings(StringSet ss) throws IOException {
+            out.writeInt(ss != null ? ss.size() : -1);
+            if (ss != null)
+                for (String s : ss)
+                    writeNullableString(s);
+        }
+
+        /**
+         * Writes an object label, as an index if written before.
+         */
+        void writeLabel(ObjectLabel objlabel) throws IOException {
+            Integer index = labels.get(objlabel);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            HostObject hostobject = objlabel.getHostObject();
+            if (!(hostobject instanceof Enum) || !objlabel.equals(makeHostLabel(hostobject, objlabel.getKind(), objlabel.isSingleton())))
+                throw new UnsupportedPartException("object label " + objlabel);
+            out.writeInt(labels.size());
+            labels.put(objlabel, labels.size());
+            out.writeUTF(((Enum<?>) hostobject).getDeclaringClass().getName());
+            out.writeUTF(((Enum<?>) hostobject).name());
+            out.writeUTF(objlabel.getKind().name());
+            out.writeBoolean(objlabel.isSingleton());
+        }
+
+        /**
+         * Writes a set of object labels, or -1 for null.
+         */
+        void writeLabels(Set<ObjectLabel> objlabels) throws IOException {
+            out.writeInt(objlabels != null ? objlabels.size() : -1);
+            if (objlabels != null)
+                for (ObjectLabel objlabel : objlabels)
+                    writeLabel(objlabel);
+        }
+
+        /**
+         * Writes a value, as an index if written before.
+         */
+        void writeValue(Value v) throws IOException {
+            Integer index = values.get(v);
+            if (index != null) {
+                out.writeInt(index);
+                return;
+            }
+            out.writeInt(values.size());
+            values.put(v, values.size());
+            v.writeImage(this);
+        }
+
+        void writePKey(PKey pkey) throws IOException {
+            if (pkey instanceof PKey.StringPKey) {
+                out.writeBoolean(true);
+                writeNullableString(((PKey.StringPKey) pkey).getStr());
+            } else {
+                out.writeBoolean(false);
+                writeLabel(((PKey.SymbolPKey) pkey).getObjectLabel());
+            }
+        }
+
+        void writeScopeChain(ScopeChain scope) throws IOException {
+            List<Set<ObjectLabel>> elements = newList();
+            for (ScopeChain sc = scope; sc != null; sc = sc.next())
+                elements.add(sc.getObject());
+            out.writeInt(elements.size());
+            for (Set<ObjectLabel> objlabels : elements)
+                writeLabels(objlabels);
+        }
+
+        void writeObj(Obj obj) throws IOException {
+            out.writeInt(obj.getProperties().size());
+            for (Map.Entry<PKey, Value> me : obj.getProperties().entrySet()) {
+                writePKey(me.getKey());
+                writeValue(me.getValue());
+            }
+            writeValue(obj.getDefaultNumericProperty());
+            writeValue(obj.getDefaultOtherProperty());
+            writeValue(obj.getInternalPrototype());
+            writeValue(obj.getInternalValue());
+            out.writeBoolean(obj.isScopeChainUnknown());
+            if (!obj.isScopeChainUnknown())
+                writeScopeChain(obj.getScopeChain());
+        }
+    }
+
+    /**
+     * Reader for the parts of a state image.
+     */
+    static final class Reader {
+
+        private final DataInput in;
+
+        private final List<ObjectLabel> labels = newList();
+
+        private final List<Value> values = newList();
+
+        private Reader(DataInput in) {
+            this.in = in;
+        }
+
+        int readInt() throws IOException {
+            return in.readInt();
+        }
+
+        Double readNullableDouble() throws IOException {
+            return in.readBoolean() ? in.readDouble() : null;
+        }
+
+        String readNullableString() throws IOException {
+            if (!in.readBoolean())
+                return null;
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        StringSet readStrings() throws IOException {
+            int size = in.readInt();
+            if (size < 0)
+                return null;
+            List<String> ss = newList();
+            for (int i = 0; i < size; i++)
+                ss.add(readNullableString());
+            return StringSet.make(ss);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ObjectLabel readLabel() throws IOException {
+            int index = in.readInt();
+            if (index < labels.size())
+                return labels.get(index);
+            Class<?> hostclass;
+            try {
+                hostclass = Class.forName(in.readUTF());
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            HostObject hostobject = (HostObject) Enum.valueOf((Class<Enum>) hostclass, in.readUTF());
+            Kind kind = Kind.valueOf(in.readUTF());
+            ObjectLabel objlabel = makeHostLabel(hostobject, kind, in.readBoolean());
+            labels.add(objlabel);
+            return objlabel;
+        }
+
+        Set<ObjectLabel> readLabels() throws IOException {
+            int size = in.readInt();
+            if (size < 0)
+                return null;
+            Set<ObjectLabel> objlabels = newSet();
+            for (int i = 0; i < size; i++)
+                objlabels.add(readLabel());
+            return objlabels;
+        }
+
+        Value readValue() throws IOException {
+            int index = in.readInt();
+            if (index < values.size())
+                return values.get(index);
+            Value v = Value.readImage(this);
+            values.add(v);
+            return v;
+        }
+
+        PKey readPKey() throws IOException {
+            if (in.readBoolean())
+                return PKey.StringPKey.make(readNullableString());
+            return PKey.SymbolPKey.make(readLabel());
+        }
+
+        ScopeChain readScopeChain() throws IOException {
+            int size = in.readInt();
+            List<Set<ObjectLabel>> elements = newList();
+            for (int i = 0; i < size; i++)
+                elements.add(readLabels());
+            ScopeChain scope = null;
+            for (int i = size - 1; i >= 0; i--)
+                scope = ScopeChain.make(elements.get(i), scope);
+            return scope;
+        }
+
+        Obj readObj() throws IOException {
+            Obj obj = new Obj(Obj.makeNone());
+            int properties = in.readInt();
+            for (int i = 0; i < properties; i++) {
+                PKey pkey = readPKey();
+                obj.setProperty(pkey, readValue());
+            }
+            obj.setDefaultNumericProperty(readValue());
+            obj.setDefaultOtherProperty(readValue());
+            obj.setInternalPrototype(readValue());
+            obj.setInternalValue(readValue());
+            if (in.readBoolean())
+                obj.setScopeChainUnknown();
+            else
+                obj.setScopeChain(readScopeChain());
+            return obj;
+        }
+    }
+}
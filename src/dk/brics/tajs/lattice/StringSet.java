@@ -0,0 +1,626 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.lattice;
+
+import dk.brics.tajs.util.DeepImmutable;
+import dk.brics.tajs.util.Strings;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+/**
+ * Immutable sorted set of strings, used for the included/excluded strings of {@link Value}.
+ * <p>
+ * The strings are kept in sorted order and front-coded in buckets:
+ * the first string of each bucket is stored in full, the following ones only store the length
+ * of the prefix they share with their predecessor and the remaining suffix.
+ * Union, intersection and subset checks are linear merges over the sorted representations.
+ * The hash code and a classification of the strings (array index, numeric, identifier, ...)
+ * are computed once at construction, so neither canonicalization nor the flag maintenance in
+ * {@link Value} needs to rescan the strings.
+ * <p>
+ * All mutating methods of {@link java.util.Set} throw {@link UnsupportedOperationException}.
+ */
+public final class StringSet extends AbstractSet<String> implements DeepImmutable {
+
+    /**
+     * Number of strings per front-coding bucket.
+     */
+    private static final int BUCKET_SIZE = 16;
+
+    /**
+     * Classification: array index, see {@link Strings#isArrayIndex(String)}.
+     */
+    static final int ARRAY_INDEX = 0x001;
+
+    /**
+     * Classification: numeric, see {@link Strings#isNumeric(String)}.
+     */
+    static final int NUMERIC = 0x002;
+
+    /**
+     * Classification: identifier, see {@link Strings#isIdentifier(String)}.
+     */
+    static final int IDENTIFIER = 0x004;
+
+    /**
+     * Classification: identifier parts, see {@link Strings#isIdentifierParts(String)}.
+     */
+    static final int IDENTIFIER_PARTS = 0x008;
+
+    /**
+     * Classification: numeric but not array index.
+     */
+    static final int OTHER_NUMERIC = 0x010;
+
+    /**
+     * Classification: identifier but not numeric.
+     */
+    static final int NON_NUMERIC_IDENTIFIER = 0x020;
+
+    /**
+     * Classification: identifier parts but neither identifier nor numeric.
+     */
+    static final int NON_NUMERIC_OTHER_IDENTIFIER_PARTS = 0x040;
+
+    /**
+     * Classification: identifier parts but neither identifier nor array index.
+     */
+    static final int NON_INDEX_OTHER_IDENTIFIER_PARTS = 0x080;
+
+    /**
+     * Classification: neither numeric nor identifier parts.
+     */
+    static final int OTHER = 0x100;
+
+    private static final StringSet EMPTY = new StringSet(0, new char[0], new int[1], new char[0], new short[0], 0, 0, 0);
+
+    private final int size;
+
+    /**
+     * Concatenated suffixes.
+     */
+    private final char[] chars;
+
+    /**
+     * Start of the suffix of each string in {@link #chars}, with an extra end marker.
+     */
+    private final int[] offsets;
+
+    /**
+     * Length of the prefix shared with the preceding string (always 0 at bucket starts).
+     */
+    private final char[] shared;
+
+    /**
+     * Classification of each string.
+     */
+    private final short[] classes;
+
+    /**
+     * Bitwise or of the classifications.
+     */
+    private final int anyClasses;
+
+    /**
+     * Bitwise and of the classifications.
+     */
+    private final int allClasses;
+
+    /**
+     * Length of the longest string.
+     */
+    private final int maxLength;
+
+    private final int hashcode;
+
+    private StringSet(int size, char[] chars, int[] offsets, char[] shared, short[] classes, int anyClasses, int allClasses, int maxLength) {
+        this.size = size;
+        this.chars = chars;
+        this.offsets = offsets;
+        this.shared = shared;
+        this.classes = classes;
+        this.anyClasses = anyClasses;
+        this.allClasses = size == 0 ? 0 : allClasses;
+        this.maxLength = maxLength;
+        int h = 0;
+        Cursor c = new Cursor();
+        while (c.next())
+            h += c.stringHashCode();
+        this.hashcode = h;
+    }
+
+    /**
+     * Returns the empty string set.
+     */
+    public static StringSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Constructs a string set containing the given strings.
+     */
+    public static StringSet make(Collection<String> strings) {
+        if (strings instanceof StringSet)
+            return (StringSet) strings;
+        if (strings.isEmpty())
+            return EMPTY;
+        String[] ss = strings.toArray(new String[0]);
+        Arrays.sort(ss);
+        Builder b = new Builder(ss.length);
+        for (String s : ss)
+            if (!b.isLast(s))
+                b.add(s, classify(s));
+        return b.build();
+    }
+
+    /**
+     * Constructs a string set containing the given strings.
+     */
+    public static StringSet make(String... strings) {
+        return make(Arrays.asList(strings));
+    }
+
+    /**
+     * Computes the classification bits of the given string.
+     */
+    static int classify(String s) {
+        int c = 0;
+        boolean arrayIndex = Strings.isArrayIndex(s);
+        boolean numeric = arrayIndex || Strings.isNumeric(s);
+        boolean identifier = Strings.isIdentifier(s);
+        boolean identifierParts = identifier || Strings.isIdentifierParts(s);
+        if (arrayIndex)
+            c |= ARRAY_INDEX;
+        if (numeric)
+            c |= NUMERIC;
+        if (identifier)
+            c |= IDENTIFIER;
+        if (identifierParts)
+            c |= IDENTIFIER_PARTS;
+        if (numeric && !arrayIndex)
+            c |= OTHER_NUMERIC;
+        if (identifier && !numeric)
+            c |= NON_NUMERIC_IDENTIFIER;
+        if (identifierParts && !identifier && !numeric)
+            c |= NON_NUMERIC_OTHER_IDENTIFIER_PARTS;
+        if (identifierParts && !identifier && !arrayIndex)
+            c |= NON_INDEX_OTHER_IDENTIFIER_PARTS;
+        if (!identifierParts && !numeric)
+            c |= OTHER;
+        return c;
+    }
+
+    /**
+     * Checks whether some string in this set has the given classification.
+     */
+    boolean isAny(int classification) {
+        return (anyClasses & classification) != 0;
+    }
+
+    /**
+     * Checks whether all strings in this set have the given classification.
+     * Trivially true for the empty set.
+     */
+    boolean isAll(int classification) {
+        return size == 0 || (allClasses & classification) == classification;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String) || size == 0)
+            return false;
+        String s = (String) o;
+        // binary search for the last bucket whose first string is not greater than s
+        int lo = 0, hi = (size - 1) / BUCKET_SIZE;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (compareSuffix(mid * BUCKET_SIZE, s) <= 0)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        int start = lo * BUCKET_SIZE;
+        int end = Math.min(start + BUCKET_SIZE, size);
+        Cursor c = new Cursor(start);
+        while (c.index + 1 < end) {
+            c.next();
+            int cmp = c.compareTo(s);
+            if (cmp == 0)
+                return true;
+            if (cmp > 0)
+                return false;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean containsAll(Collection<?> c) {
+        if (c instanceof StringSet)
+            return isSupersetOf((StringSet) c);
+        return super.containsAll(c);
+    }
+
+    /**
+     * Checks whether all strings of the given set are in this set.
+     */
+    public boolean isSupersetOf(StringSet other) {
+        if (other == this || other.size == 0)
+            return true;
+        if (other.size > size || (other.anyClasses & ~anyClasses) != 0)
+            return false;
+        Cursor a = new Cursor();
+        Cursor b = other.new Cursor();
+        boolean hasA = a.next();
+        while (b.next()) {
+            int cmp = -1;
+            while (hasA && (cmp = a.compareTo(b)) < 0)
+                hasA = a.next();
+            if (!hasA || cmp != 0)
+                return false;
+            hasA = a.next();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the union of this set and the given set.
+     */
+    public StringSet union(StringSet other) {
+        if (isSupersetOf(other))
+            return this;
+        if (other.isSupersetOf(this))
+            return other;
+        Builder r = new Builder(size + other.size);
+        Cursor a = new Cursor();
+        Cursor b = other.new Cursor();
+        boolean hasA = a.next(), hasB = b.next();
+        while (hasA || hasB) {
+            int cmp = !hasA ? 1 : !hasB ? -1 : a.compareTo(b);
+            if (cmp <= 0) {
+                r.add(a);
+                hasA = a.next();
+                if (cmp == 0)
+                    hasB = b.next();
+            } else {
+                r.add(b);
+                hasB = b.next();
+            }
+        }
+        return r.build();
+    }
+
+    /**
+     * Returns the intersection of this set and the given set.
+     */
+    public StringSet intersection(StringSet other) {
+        if (isSupersetOf(other))
+            return other;
+        if (other.isSupersetOf(this))
+            return this;
+        Builder r = new Builder(Math.min(size, other.size));
+        Cursor a = new Cursor();
+        Cursor b = other.new Cursor();
+        boolean hasA = a.next(), hasB = b.next();
+        while (hasA && hasB) {
+            int cmp = a.compareTo(b);
+            if (cmp == 0) {
+                r.add(a);
+                hasA = a.next();
+                hasB = b.next();
+            } else if (cmp < 0)
+                hasA = a.next();
+            else
+                hasB = b.next();
+        }
+        return r.build();
+    }
+
+    /**
+     * Returns the strings of this set that are not in the given collection.
+     */
+    public StringSet difference(Collection<String> other) {
+        if (other.isEmpty())
+            return this;
+        return filter(s -> !other.contains(s));
+    }
+
+    /**
+     * Returns this set with the given string added.
+     */
+    public StringSet plus(String s) {
+        if (contains(s))
+            return this;
+        return union(make(s));
+    }
+
+    /**
+     * Returns this set with the given string removed.
+     */
+    public StringSet minus(String s) {
+        if (!contains(s))
+            return this;
+        return filter(x -> !x.equals(s));
+    }
+
+    /**
+     * Returns the strings of this set that satisfy the given predicate.
+     */
+    public StringSet filter(Predicate<String> p) {
+        Builder r = new Builder(size);
+        Cursor c = new Cursor();
+        while (c.next())
+            if (p.test(c.toString()))
+                r.add(c);
+        if (r.size == size)
+            return this;
+        return r.build();
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+
+            private final Cursor c = new Cursor();
+
+            @Override
+            public boolean hasNext() {
+                return c.index + 1 < size;
+            }
+
+            @Override
+            public String next() {
+                if (!c.next())
+                    throw new NoSuchElementException();
+                return c.toString();
+            }
+        };
+    }
+
+    @Override
+    public int hashCode() {
+        return hashcode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o instanceof StringSet) {
+            StringSet other = (StringSet) o;
+            // the representation is canonical for a given set of strings
+            return size == other.size && hashcode == other.hashcode && anyClasses == other.anyClasses
+                    && Arrays.equals(offsets, other.offsets) && Arrays.equals(shared, other.shared) && Arrays.equals(chars, other.chars);
+        }
+        return super.equals(o);
+    }
+
+    /**
+     * Compares the string at the given bucket start index with the given string.
+     */
+    private int compareSuffix(int index, String s) {
+        int from = offsets[index], to = offsets[index + 1];
+        int len = to - from;
+        int n = Math.min(len, s.length());
+        for (int i = 0; i < n; i++) {
+            char c1 = chars[from + i], c2 = s.charAt(i);
+            if (c1 != c2)
+                return c1 - c2;
+        }
+        return len - s.length();
+    }
+
+    /**
+     * Sequential decoder of the front-coded strings.
+     */
+    private final class Cursor {
+
+        private final char[] buf = new char[maxLength];
+
+        private int length;
+
+        private int index;
+
+        Cursor() {
+            index = -1;
+        }
+
+        /**
+         * Positions the cursor just before the given bucket start index.
+         */
+        Cursor(int start) {
+            index = start - 1;
+        }
+
+        /**
+         * Advances to the next string.
+         *
+         * @return false if there are no more strings
+         */
+        boolean next() {
+            if (index + 1 >= size)
+                return false;
+            index++;
+            int p = shared[index];
+            int from = offsets[index], to = offsets[index + 1];
+            System.arraycopy(chars, from, buf, p, to - from);
+            length = p + to - from;
+            return true;
+        }
+
+        int compareTo(String s) {
+            int n = Math.min(length, s.length());
+            for (int i = 0; i < n; i++) {
+                char c1 = buf[i], c2 = s.charAt(i);
+                if (c1 != c2)
+                    return c1 - c2;
+            }
+            return length - s.length();
+        }
+
+        int compareTo(Cursor other) {
+            int n = Math.min(length, other.length);
+            for (int i = 0; i < n; i++) {
+                char c1 = buf[i], c2 = other.buf[i];
+                if (c1 != c2)
+                    return c1 - c2;
+            }
+            return length - other.length;
+        }
+
+        int stringHashCode() {
+            int h = 0;
+            for (int i = 0; i < length; i++)
+                h = 31 * h + buf[i];
+            return h;
+        }
+
+        int classification() {
+            return classes[index];
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, 0, length);
+        }
+    }
+
+    /**
+     * Builder for string sets. Strings must be added in strictly increasing order.
+     */
+    private static final class Builder {
+
+        private char[] chars;
+
+        private int charsLength;
+
+        private final int[] offsets;
+
+        private final char[] shared;
+
+        private final short[] classes;
+
+        private int size;
+
+        private char[] last = new char[16];
+
+        private int lastLength;
+
+        private int anyClasses;
+
+        private int allClasses = ~0;
+
+        private int maxLength;
+
+        Builder(int capacity) {
+            chars = new char[Math.max(16, capacity * 8)];
+            offsets = new int[capacity + 1];
+            shared = new char[capacity];
+            classes = new short[capacity];
+        }
+
+        boolean isLast(String s) {
+            if (size == 0 || s.length() != lastLength)
+                return false;
+            for (int i = 0; i < lastLength; i++)
+                if (last[i] != s.charAt(i))
+                    return false;
+            return true;
+        }
+
+        void add(String s, int classification) {
+            int len = s.length();
+            int p = sharedPrefix(s, len);
+            ensureChars(len - p);
+            s.getChars(p, len, chars, charsLength);
+            if (last.length < len)
+                last = Arrays.copyOf(last, Math.max(len, last.length * 2));
+            s.getChars(p, len, last, p);
+            append(p, len, classification);
+        }
+
+        void add(StringSet.Cursor c) {
+            int len = c.length;
+            int p = sharedPrefix(c.buf, len);
+            ensureChars(len - p);
+            System.arraycopy(c.buf, p, chars, charsLength, len - p);
+            if (last.length < len)
+                last = Arrays.copyOf(last, Math.max(len, last.length * 2));
+            System.arraycopy(c.buf, p, last, p, len - p);
+            append(p, len, c.classification());
+        }
+
+        private int sharedPrefix(String s, int len) {
+            if (size % BUCKET_SIZE == 0)
+                return 0;
+            int n = Math.min(Math.min(len, lastLength), Character.MAX_VALUE);
+            int p = 0;
+            while (p < n && last[p] == s.charAt(p))
+                p++;
+            return p;
+        }
+
+        private int sharedPrefix(char[] s, int len) {
+            if (size % BUCKET_SIZE == 0)
+                return 0;
+            int n = Math.min(Math.min(len, lastLength), Character.MAX_VALUE);
+            int p = 0;
+            while (p < n && last[p] == s[p])
+                p++;
+            return p;
+        }
+
+        private void ensureChars(int n) {
+            if (charsLength + n > chars.length)
+                chars = Arrays.copyOf(chars, Math.max(charsLength + n, chars.length * 2));
+        }
+
+        private void append(int p, int len, int classification) {
+            shared[size] = (char) p;
+            offsets[size] = charsLength;
+            classes[size] = (short) classification;
+            charsLength += len - p;
+            size++;
+            offsets[size] = charsLength;
+            lastLength = len;
+            anyClasses |= classification;
+            allClasses &= classification;
+            maxLength = Math.max(maxLength, len);
+        }
+
+        StringSet build() {
+            if (size == 0)
+                return EMPTY;
+            return new StringSet(size, Arrays.copyOf(chars, charsLength), Arrays.copyOf(offsets, size + 1),
+                    Arrays.copyOf(shared, size), Arrays.copyOf(classes, size), anyClasses, allClasses, maxLength);
+        }
+    }
+}
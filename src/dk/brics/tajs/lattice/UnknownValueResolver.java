@@ -51,6 +51,8 @@ public final class UnknownValueResolver {
 
     public static Logger log = Logger.getLogger(UnknownValueResolver.class);
 
+    private static int number_of_entry_state_lookups; // never reset, only used for detecting lookups
+
     static {
         LogManager.getLogger(UnknownValueResolver.class).setLevel(Level.INFO);
     } // set to Level.DEBUG to force debug output or Level.INFO to disable
@@ -277,6 +279,7 @@ public final class UnknownValueResolver {
      * Generic function for recovering 'unknown' properties.
      */
     private static Obj recover(State s, ObjectProperty prop, boolean partial) {
+        number_of_entry_state_lookups++;
         Value value_at_s = getValue(s, prop);
         if (!partial && value_at_s != null && value_at_s.isPolymorphic() && value_at_s.isMaybeAbsent() && !value_at_s.isMaybePresent()) { // optimization only
             Obj res = s.getObject(prop.getObjectLabel(), true);
@@ -763,6 +766,14 @@ public final class UnknownValueResolver {
         return obj.getProperties();
     }
 
+    /**
+     * Returns the number of times unknown or polymorphic values have been looked up via function entry states.
+     * If this is unchanged between two points in time, then the values read in between do not depend on other states.
+     */
+    public static int getNumberOfEntryStateLookups() {
+        return number_of_entry_state_lookups;
+    }
+
     /**
      * Fully recovers the given value if polymorphic.
      */
@@ -771,6 +782,7 @@ public final class UnknownValueResolver {
             return v;
         if (v.isMaybeAbsent() && !v.isMaybePresent())
             return Value.makeAbsent();
+        number_of_entry_state_lookups++;
         State entry_state = getEntryState(s);
         ObjectProperty var = v.getObjectProperty();
         Value res;
@@ -25,6 +25,7 @@ import dk.brics.tajs.util.Collectors;
 import dk.brics.tajs.util.DeepImmutable;
 import dk.brics.tajs.util.Strings;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -245,13 +246,13 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
      * Strings that are excluded.
      * (Only used for fuzzy strings.)
      */
-    private Set<String> excluded_strings;
+    private StringSet excluded_strings;
 
     /**
      * Strings that are included.
      * (Only used for fuzzy strings.)
      */
-    private Set<String> included_strings;
+    private StringSet included_strings;
 
     /**
      * Information about partitioning of free variables in object_values, or null if none.
@@ -328,6 +329,39 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         hashcode = v.hashcode;
     }
 
+    /**
+     * Writes this value to a state image.
+     * Polymorphic and partitioned values are not supported.
+     */
+    void writeImage(StateImage.Writer out) throws IOException {
+        if (getClass() != Value.class || var != null || freeVariablePartitioning != null)
+            throw new StateImage.UnsupportedPartException("value " + this);
+        out.writeInt(flags);
+        out.writeNullableDouble(num);
+        out.writeNullableString(str);
+        out.writeLabels(object_labels);
+        out.writeLabels(getters);
+        out.writeLabels(setters);
+        out.writeStrings(excluded_strings);
+        out.writeStrings(included_strings);
+    }
+
+    /**
+     * Reads a value written by {@link #writeImage(StateImage.Writer)}.
+     */
+    static Value readImage(StateImage.Reader in) throws IOException {
+        Value r = new Value();
+        r.flags = in.readInt();
+        r.num = in.readNullableDouble();
+        r.str = in.readNullableString();
+        r.object_labels = in.readLabels();
+        r.getters = in.readLabels();
+        r.setters = in.readLabels();
+        r.excluded_strings = in.readStrings();
+        r.included_strings = in.readStrings();
+        return canonicalize(r);
+    }
+
     /**
      * Put the value into canonical form.
      */
@@ -388,9 +422,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         if (v.setters != null)
             v.setters = Canonicalizer.get().canonicalizeSet(v.setters);
         if (v.excluded_strings != null)
-            v.excluded_strings = Canonicalizer.get().canonicalizeStringSet(v.excluded_strings);
+            v.excluded_strings = Canonicalizer.get().canonicalize(v.excluded_strings);
         if (v.included_strings != null)
-            v.included_strings = Canonicalizer.get().canonicalizeStringSet(v.included_strings);
+            v.included_strings = Canonicalizer.get().canonicalize(v.included_strings);
         v.hashcode = v.computeHashCode();
         Value cv = Canonicalizer.get().canonicalize(v);
         canonicalizing = false;
@@ -1213,8 +1247,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     private boolean joinIncludedStrings(Value v, boolean widen) {
         if (included_strings != null && v.included_strings != null) {
             // both this and v have included strings, so just union
-            this.included_strings = newSet(included_strings);
-            boolean changed = included_strings.addAll(v.included_strings);
+            StringSet old_included_strings = included_strings;
+            included_strings = included_strings.union(v.included_strings);
+            boolean changed = included_strings != old_included_strings;
             if (widen && changed) {
                 // apply widening
                 included_strings = null;
@@ -1234,8 +1269,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                         return false;
                     } else if (!widen) {
                         // v contains a fixed string that is not already in included_strings
-                        included_strings = newSet(included_strings);
-                        included_strings.add(v.str);
+                        included_strings = included_strings.plus(v.str);
                         if (included_strings.size() > Options.Constants.STRING_SETS_BOUND)
                             included_strings = null;
                         return true;
@@ -1275,12 +1309,12 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     private boolean joinExcludedStrings(Value v, boolean widen) {
         if (excluded_strings == null && v.excluded_strings == null)
             return false;
-        Set<String> new_excluded_strings = excluded_strings == null ? newSet() : newSet(excluded_strings);
+        StringSet new_excluded_strings = excluded_strings == null ? StringSet.empty() : excluded_strings;
         // remove the strings from this.excluded_strings that are matched by v
-        new_excluded_strings.removeIf(v::isMaybeStr);
+        new_excluded_strings = new_excluded_strings.filter(s -> !v.isMaybeStr(s));
         // add the strings from v.excluded_strings that are not matched by this
         if (v.excluded_strings != null)
-            new_excluded_strings.addAll(v.excluded_strings.stream().filter(s -> !isMaybeStr(s)).collect(Collectors.toSet()));
+            new_excluded_strings = new_excluded_strings.union(v.excluded_strings.filter(s -> !isMaybeStr(s)));
         // fix representation if empty
         if (new_excluded_strings.isEmpty())
             new_excluded_strings = null;
@@ -1345,14 +1379,13 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                 v.setters.removeAll(old.setters);
         }
         if (old.excluded_strings != null) {
-            v.excluded_strings = newSet(old.excluded_strings);
+            v.excluded_strings = old.excluded_strings;
             if (excluded_strings != null)
-                v.excluded_strings.removeAll(excluded_strings);
+                v.excluded_strings = v.excluded_strings.difference(excluded_strings);
         }
         if (v.included_strings != null) {
-            v.included_strings = newSet(v.included_strings);
             if (old.included_strings != null)
-                v.included_strings.removeAll(old.included_strings);
+                v.included_strings = v.included_strings.difference(old.included_strings);
         }
         b.append(v);
     }
@@ -1545,9 +1578,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
             if (excluded_strings != null || included_strings != null) {
                 b.append(')');
                 if (excluded_strings != null)
-                    b.append("\\{").append(excluded_strings.stream().sorted().map(s -> '"' + Strings.escape(s) + '"').collect(java.util.stream.Collectors.joining(","))).append("}");
+                    b.append("\\{").append(excluded_strings.stream().map(s -> '"' + Strings.escape(s) + '"').collect(java.util.stream.Collectors.joining(","))).append("}");
                 if (included_strings != null)
-                    b.append("{").append(included_strings.stream().sorted().map(s -> '"' + Strings.escape(s) + '"').collect(java.util.stream.Collectors.joining(","))).append("}");
+                    b.append("{").append(included_strings.stream().map(s -> '"' + Strings.escape(s) + '"').collect(java.util.stream.Collectors.joining(","))).append("}");
                 any = true;
             }
             if (object_labels != null) {
@@ -2536,7 +2569,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public boolean isMaybeStrSomeUInt() {
         checkNotPolymorphicOrUnknown();
         if (included_strings != null)
-            return included_strings.stream().anyMatch(Strings::isArrayIndex);
+            return included_strings.isAny(StringSet.ARRAY_INDEX);
         return isMaybeStrUInt() || (str != null && Strings.isArrayIndex(str));
     }
 
@@ -2544,7 +2577,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public boolean isMaybeStrSomeNumeric() {
         checkNotPolymorphicOrUnknown();
         if (included_strings != null)
-            return included_strings.stream().anyMatch(Strings::isNumeric);
+            return included_strings.isAny(StringSet.NUMERIC);
         return isMaybeStrUInt() || isMaybeStrOtherNum() || (str != null && Strings.isNumeric(str));
     }
 
@@ -2552,7 +2585,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public boolean isMaybeStrSomeNonUInt() {
         checkNotPolymorphicOrUnknown();
         if (included_strings != null)
-            return included_strings.stream().anyMatch(s -> !Strings.isArrayIndex(s));
+            return !included_strings.isAll(StringSet.ARRAY_INDEX);
         return (flags & (STR_OTHERNUM | STR_PREFIX | STR_IDENTIFIER | STR_OTHERIDENTIFIERPARTS | STR_OTHER | STR_JSON)) != 0
                 || (str != null && !Strings.isArrayIndex(str));
     }
@@ -2561,7 +2594,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public boolean isMaybeStrSomeNonNumeric() {
         checkNotPolymorphicOrUnknown();
         if (included_strings != null)
-            return included_strings.stream().anyMatch(s -> !Strings.isNumeric(s));
+            return !included_strings.isAll(StringSet.NUMERIC);
         return (flags & (STR_PREFIX | STR_IDENTIFIER | STR_OTHERIDENTIFIERPARTS | STR_OTHER | STR_JSON)) != 0
                 || (str != null && !Strings.isNumeric(str));
     }
@@ -2612,7 +2645,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public boolean isStrIdentifierParts() {
         checkNotPolymorphicOrUnknown();
         if (included_strings != null)
-            return included_strings.stream().allMatch(Strings::isIdentifierParts);
+            return included_strings.isAll(StringSet.IDENTIFIER_PARTS);
         return (((flags & STR_IDENTIFIERPARTS) != 0 && (flags & PRIMITIVE & ~STR_IDENTIFIERPARTS) == 0)
                 || (str != null && Strings.isIdentifierParts(str))) && num == null && object_labels == null && getters == null && setters == null;
     }
@@ -2621,7 +2654,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public boolean isStrIdentifier() {
         checkNotPolymorphicOrUnknown();
         if (included_strings != null)
-            return included_strings.stream().allMatch(Strings::isIdentifier);
+            return included_strings.isAll(StringSet.IDENTIFIER);
         return ((flags & PRIMITIVE) == STR_IDENTIFIER
                 || (str != null && Strings.isIdentifier(str))) && num == null && object_labels == null && getters == null && setters == null;
     }
@@ -2763,10 +2796,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         return canonicalize(r);
     }
 
-    private static Set<String> removeStringsIf(Set<String> ss, Predicate<String> p) {
+    private static StringSet removeStringsIf(StringSet ss, Predicate<String> p) {
         if (ss != null) {
-            ss = newSet(ss);
-            ss.removeIf(p);
+            ss = ss.filter(p.negate());
             if (ss.isEmpty())
                 ss = null;
         }
@@ -2904,22 +2936,19 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                 // no knowledge about the suffix of a prefix: set all str-bits
                 flags |= STR_OTHERNUM | STR_IDENTIFIERPARTS | STR_OTHER;
             } else { // if string set, we know all the suffixes, so we can make a precise join
-                if (included_strings.stream().anyMatch(Strings::isArrayIndex)) {
+                if (included_strings.isAny(StringSet.ARRAY_INDEX)) {
                     flags |= STR_UINT;
                 }
-                if (included_strings.stream().filter(str -> !Strings.isArrayIndex(str)).anyMatch(Strings::isNumeric)) {
+                if (included_strings.isAny(StringSet.OTHER_NUMERIC)) {
                     flags |= STR_OTHERNUM;
                 }
-                if (included_strings.stream().anyMatch(Strings::isIdentifier)) {
+                if (included_strings.isAny(StringSet.IDENTIFIER)) {
                     flags |= STR_IDENTIFIER;
                 }
-                if (included_strings.stream()
-                        .filter(str -> !Strings.isIdentifier(str))
-                        .filter(str -> !Strings.isArrayIndex(str))
-                        .anyMatch(Strings::isIdentifierParts)) {
+                if (included_strings.isAny(StringSet.NON_INDEX_OTHER_IDENTIFIER_PARTS)) {
                     flags |= STR_OTHERIDENTIFIERPARTS;
                 }
-                if (included_strings.stream().filter(str -> !Strings.isIdentifierParts(str)).anyMatch(str -> !Strings.isNumeric(str))) {
+                if (included_strings.isAny(StringSet.OTHER)) {
                     flags |= STR_OTHER;
                 }
             }
@@ -2940,6 +2969,24 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         return flags != oldflags;
     }
 
+    /**
+     * Joins the included strings as fuzzy non-prefix strings into the flags of this value.
+     * Equivalent to joining each of the included strings individually using {@link #joinSingleStringOrPrefixStringAsFuzzyNonPrefix},
+     * but uses the classification cached in the string set.
+     */
+    private void joinIncludedStringsAsFuzzyNonPrefix() {
+        if (included_strings.isAny(StringSet.ARRAY_INDEX))
+            flags |= STR_UINT;
+        if (included_strings.isAny(StringSet.OTHER_NUMERIC))
+            flags |= STR_OTHERNUM;
+        if (included_strings.isAny(StringSet.NON_NUMERIC_IDENTIFIER))
+            flags |= STR_IDENTIFIER;
+        if (included_strings.isAny(StringSet.NON_NUMERIC_OTHER_IDENTIFIER_PARTS))
+            flags |= STR_OTHERIDENTIFIERPARTS;
+        if (included_strings.isAny(StringSet.OTHER))
+            flags |= STR_OTHER;
+    }
+
     /**
      * Joins the single string or prefix string part of the given value into this value.
      * No other parts of v are used.
@@ -2961,9 +3008,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                         return false;
                     } else if (!Options.get().isNoStringSets()) {
                         // different single strings, and string sets enabled
-                        included_strings = newSet();
-                        included_strings.add(str);
-                        included_strings.add(v.str);
+                        included_strings = StringSet.make(str, v.str);
                         modified = true;
                     }
                 }
@@ -2998,8 +3043,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                 // this is a non-prefix fuzzy, v is a single/prefix string
                 modified = joinSingleStringOrPrefixStringAsFuzzyNonPrefix(v.str, v_is_prefix);
                 if (included_strings != null && !v_is_prefix) {
-                    included_strings = newSet(included_strings);
-                    modified |= included_strings.add(v.str);
+                    StringSet old_included_strings = included_strings;
+                    included_strings = included_strings.plus(v.str);
+                    modified |= included_strings != old_included_strings;
                 }
             }
         } // otherwise, neither is a single/prefix string so do nothing
@@ -3188,7 +3234,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         checkNotPolymorphicOrUnknown();
         Value r = new Value();
         if (included_strings != null) {
-            r.included_strings = included_strings.stream().filter(Strings::isNumeric).collect(Collectors.toSet());
+            r.included_strings = included_strings.filter(Strings::isNumeric);
         }
         r.flags = flags & (STR_OTHERNUM | STR_UINT);
         if (isMaybeStrPrefix() && Strings.isNumeric(str)) {
@@ -3205,7 +3251,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         checkNotPolymorphicOrUnknown();
         Value r = new Value();
         if (included_strings != null) {
-            r.included_strings = included_strings.stream().filter(s -> !Strings.isNumeric(s)).collect(Collectors.toSet());
+            r.included_strings = included_strings.filter(s -> !Strings.isNumeric(s));
         }
         r.flags = flags & (STR & ~(STR_OTHERNUM | STR_UINT));
         if (isMaybeStrPrefix()) {
@@ -3307,7 +3353,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     }
 
     @Override
-    public Set<String> getExcludedStrings() {
+    public StringSet getExcludedStrings() {
         return excluded_strings;
     }
 
@@ -3326,8 +3372,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                 v.str = null;
         } else if (v.included_strings != null) {
             // fuzzy, with included strings
-            v.included_strings = newSet(v.included_strings);
-            v.included_strings.removeAll(strings);
+            v.included_strings = v.included_strings.difference(strings);
             if (v.included_strings.isEmpty()) {
                 v.included_strings = null;
                 v.flags &= ~STR;
@@ -3337,9 +3382,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         }
         else {
             // fuzzy, without explicitly included strings
-            v.excluded_strings = newSet(strings);
+            v.excluded_strings = StringSet.make(strings);
             if (excluded_strings != null)
-                v.excluded_strings.addAll(excluded_strings);
+                v.excluded_strings = v.excluded_strings.union(excluded_strings);
         }
         return canonicalize(v);
     }
@@ -3350,8 +3395,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
      */
     public static Value makeAnyStrExcluding(Collection<String> strings) {
         Value r = new Value(makeAnyStr());
-        r.excluded_strings = newSet();
-        r.excluded_strings.addAll(strings);
+        r.excluded_strings = StringSet.make(strings);
         return canonicalize(r);
     }
 
@@ -3395,7 +3439,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     public static Value makeStrings(Collection<String> strings) {
         Value r = new Value(join(strings.stream().map(Value::makeStr).collect(Collectors.toSet())));
         if (!Options.get().isNoStringSets() && r.isMaybeFuzzyStr())
-            r.included_strings = newSet(strings);
+            r.included_strings = StringSet.make(strings);
         return canonicalize(r);
     }
 
@@ -3409,7 +3453,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
     }
 
     @Override
-    public Set<String> getIncludedStrings() {
+    public StringSet getIncludedStrings() {
         return included_strings;
     }
 
@@ -4251,23 +4295,21 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
             // both are fuzzy string (or not string)
             if (included_strings != null || v.included_strings != null) {
                 if (included_strings != null) {
-                    r.included_strings = newSet(r.included_strings);
                     if (v.included_strings != null) {
                         // both are included_strings
-                        r.included_strings.retainAll(v.included_strings);
+                        r.included_strings = r.included_strings.intersection(v.included_strings);
                     } else {
                         // this is included_strings, v isn't
-                        r.included_strings.removeIf(s -> !v.isMaybeStr(s));
+                        r.included_strings = r.included_strings.filter(v::isMaybeStr);
                     }
                 } else {
                     // this is not included_strings, but v is
-                    r.included_strings = newSet(v.included_strings);
-                    r.included_strings.removeIf(s -> !isMaybeStr(s));
+                    r.included_strings = v.included_strings.filter(this::isMaybeStr);
                 }
                 r.excluded_strings = null;
                 r.str = null;
                 r.flags &= ~STR;
-                r.included_strings.forEach(s -> r.joinSingleStringOrPrefixStringAsFuzzyNonPrefix(s, false));
+                r.joinIncludedStringsAsFuzzyNonPrefix();
                 r.fixSingletonIncluded();
                 if (r.included_strings != null && r.included_strings.isEmpty())
                     r.included_strings = null;
@@ -4327,14 +4369,13 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                 if (v.excluded_strings != null) {
                     // v has excluded string, so add them to r
                     if (r.excluded_strings != null)
-                        r.excluded_strings = newSet(r.excluded_strings);
+                        r.excluded_strings = r.excluded_strings.union(v.excluded_strings);
                     else
-                        r.excluded_strings = newSet();
-                    r.excluded_strings.addAll(v.excluded_strings);
+                        r.excluded_strings = v.excluded_strings;
                 }
                 if (r.excluded_strings != null) {
                     // remove excluded strings that don't match any of the STR flags
-                    r.excluded_strings = r.excluded_strings.stream().filter(r::isMaybeStrIgnoreIncludedExcluded).collect(Collectors.toSet());
+                    r.excluded_strings = r.excluded_strings.filter(r::isMaybeStrIgnoreIncludedExcluded);
                     if (r.excluded_strings.isEmpty())
                         r.excluded_strings = null;
                 }
@@ -4412,18 +4453,16 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         Value r = new Value(this);
         if (included_strings != null || v.included_strings != null) {
             if (included_strings != null) {
-                r.included_strings = newSet(r.included_strings);
                 if (v.included_strings != null) {
                     // both are included_strings
-                    r.included_strings.retainAll(v.included_strings);
+                    r.included_strings = r.included_strings.intersection(v.included_strings);
                 } else {
                     // this is included_strings, v isn't
-                    r.included_strings.removeIf(s -> !v.isMaybeStr(s));
+                    r.included_strings = r.included_strings.filter(v::isMaybeStr);
                 }
             } else {
                 // this is not included_strings, but v is
-                r.included_strings = newSet(v.included_strings);
-                r.included_strings.removeIf(s -> !isMaybeStr(s));
+                r.included_strings = v.included_strings.filter(this::isMaybeStr);
             }
             r.excluded_strings = null;
         } else {
@@ -4591,7 +4630,7 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
                 // clean up flags according to included_strings
                 flags &= ~STR;
                 excluded_strings = null;
-                included_strings.forEach(s -> joinSingleStringOrPrefixStringAsFuzzyNonPrefix(s, false));
+                joinIncludedStringsAsFuzzyNonPrefix();
             }
             fixSingletonIncluded();
             if (included_strings != null && included_strings.isEmpty())
@@ -4599,9 +4638,9 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
         }
         if (excluded_strings != null) {
             // remove excluded strings that don't match any of the STR flags
-            excluded_strings = excluded_strings.stream().filter(this::isMaybeStrIgnoreIncludedExcluded).collect(Collectors.toSet());
+            excluded_strings = excluded_strings.filter(this::isMaybeStrIgnoreIncludedExcluded);
             if (isMaybeSingleStr() && excluded_strings.contains(str)) {
-                excluded_strings.remove(str);
+                excluded_strings = excluded_strings.minus(str);
                 str = null;
             }
             if (excluded_strings.isEmpty())
@@ -4611,17 +4650,15 @@ public class Value implements Undef, Null, Bool, Num, Str, PKeys, DeepImmutable
 
     private void removeIncludedAddExcludedString(String s) {
         if (included_strings != null) {
-            included_strings = newSet(included_strings);
-            included_strings.remove(s);
+            included_strings = included_strings.minus(s);
             fixSingletonIncluded();
             if (included_strings != null && included_strings.isEmpty())
                 included_strings = null;
         } else {
             if (excluded_strings == null)
-                excluded_strings = newSet();
+                excluded_strings = StringSet.make(s);
             else
-                excluded_strings = newSet(excluded_strings);
-            excluded_strings.add(s);
+                excluded_strings = excluded_strings.plus(s);
         }
     }
 
@@ -16,8 +16,14 @@
 
 package dk.brics.tajs.monitoring;
 
+import dk.brics.tajs.analysis.CustomContextSensitivityStrategy;
 import dk.brics.tajs.analysis.HostAPIs;
+import dk.brics.tajs.analysis.InitialStateSnapshot;
+import dk.brics.tajs.analysis.NativeFunctionRegistry;
+import dk.brics.tajs.analysis.PrimitiveOperationCache;
 import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ECMAScriptRegExp;
+import dk.brics.tajs.analysis.nativeobjects.concrete.TAJSConcreteSemantics;
 import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.FlowGraph;
@@ -60,6 +66,7 @@ import dk.brics.tajs.lattice.Obj;
 import dk.brics.tajs.lattice.ObjectLabel;
 import dk.brics.tajs.lattice.ObjectLabel.Kind;
 import dk.brics.tajs.lattice.PKey;
+import dk.brics.tajs.lattice.PartitionedValue;
 import dk.brics.tajs.lattice.PKey.StringPKey;
 import dk.brics.tajs.lattice.PKeys;
 import dk.brics.tajs.lattice.ScopeChain;
@@ -258,6 +265,16 @@ public class AnalysisMonitor implements IAnalysisMonitoring {
      */
     private CallGraph<State, Context, CallEdge> callgraph;
 
+    /**
+     * The current context sensitivity strategy
+     */
+    private CustomContextSensitivityStrategy context_sensitivity_strategy;
+
+    /**
+     * The current solver interface
+     */
+    private Solver.SolverInterface solver_interface;
+
     private final ReachabilityMonitor reachabilityMonitor;
 
     private long joinTime;
@@ -356,6 +373,8 @@ public class AnalysisMonitor implements IAnalysisMonitoring {
     public void setSolverInterface(Solver.SolverInterface c) {
         flowgraph = c.getFlowGraph();
         callgraph = c.getAnalysisLatticeElement().getCallGraph();
+        context_sensitivity_strategy = c.getAnalysis().getContextSensitivityStrategy();
+        solver_interface = c;
     }
 
     /**
@@ -629,15 +648,41 @@ public class AnalysisMonitor implements IAnalysisMonitoring {
 
             b.append(callgraph.getCallGraphStatistics());
 
-            b.append("\nBlockState: created=").append(State.getNumberOfStatesCreated()).append(", makeWritableStore=").append(State.getNumberOfMakeWritableStoreCalls());
+            b.append("\nBlockState: created=").append(State.getNumberOfStatesCreated()).append(", makeWritableStore=").append(State.getNumberOfMakeWritableStoreCalls())
+                    .append(", hostObjects=").append(State.getNumberOfHostObjects()).append(", hostObjectsMaterialized=").append(State.getNumberOfHostObjectsMaterialized());
             b.append("\nObj: created=").append(Obj.getNumberOfObjsCreated()).append(", makeWritableProperties=").append(Obj.getNumberOfMakeWritablePropertiesCalls());
-            b.append("\nScopeChain cache: hits=").append(ScopeChain.getNumberOfCacheHits()).append(", misses=").append(ScopeChain.getNumberOfCacheMisses()).append(", finalSize=").append(ScopeChain.getCacheSize());
+            b.append("\nScopeChain cache: hits=").append(ScopeChain.getNumberOfCacheHits()).append(", misses=").append(ScopeChain.getNumberOfCacheMisses()).append(", finalSize=").append(ScopeChain.getCacheSize()).append(", memo hits=").append(ScopeChain.getNumberOfMemoHits()).append(", memo misses=").append(ScopeChain.getNumberOfMemoMisses());
+            if (solver_interface != null) {
+                b.append("\n").append(solver_interface.getFunctionEntryStatistics());
+                b.append("\n").append(solver_interface.getAnalysis().getPropVarOperations().getPropertyReadCache().getStatistics());
+            }
+            b.append("\nContext: created=").append(Context.getNumberOfContextsCreated()).append(", reused=").append(Context.getNumberOfContextsReused());
+            if (context_sensitivity_strategy != null)
+                b.append(context_sensitivity_strategy.getContextStatistics());
+            if (solver_interface != null && solver_interface.getAnalysis().getAdaptiveContextSensitivityStrategy() != null)
+                b.append(solver_interface.getAnalysis().getAdaptiveContextSensitivityStrategy().getDegradationStatistics());
+            if (solver_interface != null && solver_interface.getAnalysis().getLoopUnrollingController() != null)
+                b.append("\n").append(solver_interface.getAnalysis().getLoopUnrollingController().getStatistics());
+            if (solver_interface != null && solver_interface.getAnalysis().getPartitioningBudget() != null)
+                b.append("\n").append(solver_interface.getAnalysis().getPartitioningBudget().getStatistics());
+            b.append("\n").append(NativeFunctionRegistry.getStatistics());
+            if (Options.get().getInitialStateSnapshotDirectory() != null)
+                b.append("\nInitial state snapshot: restores=").append(InitialStateSnapshot.getNumberOfRestores()).append(", loads=").append(InitialStateSnapshot.getNumberOfLoads()).append(", saves=").append(InitialStateSnapshot.getNumberOfSaves());
+            for (String line : flowgraph.getStatistics())
+                b.append("\n").append(line);
+            if (Options.get().isLazyTranslationEnabled() && solver_interface != null)
+                b.append("\nLazy translation: translated=").append(solver_interface.getFlowGraph().getNumberOfLazilyTranslatedFunctions()).append(", pending=").append(solver_interface.getFlowGraph().getNumberOfPendingBodies());
+            b.append("\n").append(TAJSConcreteSemantics.getCache().getStatistics());
+            b.append("\nRegExp translation cache: hits=").append(ECMAScriptRegExp.getNumberOfHits()).append(", misses=").append(ECMAScriptRegExp.getNumberOfMisses()).append(", evictions=").append(ECMAScriptRegExp.getNumberOfEvictions()).append(", size=").append(ECMAScriptRegExp.getSize());
+            b.append("\nPrimitive operation memo: hits=").append(PrimitiveOperationCache.getNumberOfHits()).append(", misses=").append(PrimitiveOperationCache.getNumberOfMisses()).append(", evictions=").append(PrimitiveOperationCache.getNumberOfEvictions()).append(", finalSize=").append(PrimitiveOperationCache.getSize());
+            b.append("\nPartitionedValue partition memo: hits=").append(PartitionedValue.getNumberOfMemoHits()).append(", misses=").append(PartitionedValue.getNumberOfMemoMisses());
             b.append("\nBasic blocks: ").append(flowgraph.getNumberOfBlocks());
             b.append("\nRecovery graph sizes: ").append(recovery_graph_sizes);
 
             b.append("\n\nTotal time for state joins:                                                   ").append(joinTime).append("ms");
 
             b.append("\n\nCanonicalizer: hits=").append(Canonicalizer.get().getCacheHits()).append(", misses=").append(Canonicalizer.get().getCacheMisses());
+            b.append("\nSource files: ").append(SourceLocation.getNumberOfFiles());
 
             log.info(b);
         }
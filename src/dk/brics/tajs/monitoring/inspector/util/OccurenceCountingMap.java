@@ -18,6 +18,7 @@ package dk.brics.tajs.monitoring.inspector.util;
 
 import dk.brics.tajs.monitoring.inspector.util.OccurenceCountingMap.CountingResult.ByOccurencesThenElementToStringComparator;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -30,7 +31,7 @@ import java.util.Map.Entry;
 /**
  * Utility class for counting occurences of various objects
  */
-public class OccurenceCountingMap<E> {
+public class OccurenceCountingMap<E> implements Serializable {
 
 	public void init(E element) {
 		count(element, 0);
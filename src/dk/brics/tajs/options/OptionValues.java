@@ -89,8 +89,8 @@ public class OptionValues {
     @Option(name = "-no-user-events", usage = "Disable modeling of user events")
     private boolean noUserEvents;
 
-//	@Optional(name = "-flowgraph-optimization", usage = "Enable flowgraph optimization")
-//	private boolean flowgraphOptimization;
+    @Option(name = "-flowgraph-optimization", usage = "Enable flowgraph optimization (constant folding, dead constant removal, block merging, register renumbering)")
+    private boolean flowgraphOptimization;
 
     @Option(name = "-context-specialization", usage = "Enable context specialization")
     private boolean contextSpecialization;
@@ -189,6 +189,12 @@ public class OptionValues {
     @Option(name = "-loop-unrolling", usage = "Enable unrolling of loops up to [n] times (default: 1)")
     private int loopUnrollings = -1; // -1 represents the default value
 
+    @Option(name = "-context-budget", usage = "Merge further call contexts of a function into one widened context when it has [n] contexts (default: unlimited)")
+    private int contextBudget = -1; // -1 represents unlimited
+
+    @Option(name = "-adaptive-loop-unrolling", usage = "Stop unrolling loops that repeatedly reach the unrolling limit without exiting")
+    private boolean adaptiveLoopUnrolling;
+
     @Option(name = "-determinacy", usage = "Enable the techniques described in 'Determinacy in Static Analysis of jQuery', OOPSLA 2014")
     private boolean determinacy;
 
@@ -225,6 +231,24 @@ public class OptionValues {
     @Option(name = "-config", usage = "The location of tajs.properties properties file")
     private String config;
 
+    @Option(name = "-concrete-cache", usage = "Load and save results of concrete evaluation of native functions in the given file")
+    private String concreteCacheFile;
+
+    @Option(name = "-initial-state-snapshot", usage = "Load and save snapshots of the initial state in the given directory")
+    private String initialStateSnapshotDirectory;
+
+    @Option(name = "-flowgraph-cache", usage = "Load and save translated host-environment sources in the given directory")
+    private String flowGraphCacheDirectory;
+
+    @Option(name = "-lazy-translation", usage = "Translate function bodies into the flow graph when the functions are first called")
+    private boolean lazyTranslation;
+
+    @Option(name = "-flowgraph-file", usage = "Load the flow graph from the given file if built from the same sources and options, otherwise build it and save it there")
+    private String flowGraphFile;
+
+    @Option(name = "-nodejs-resolve-cache", usage = "Load and save results of NodeJS module resolution in the given directory")
+    private String nodeJSResolveCacheDirectory;
+
     @Option(name = "-show-internal-messages", usage = "Show messages for host functions modeled as JavaScript source code")
     private boolean showInternalMessages;
 
@@ -264,6 +288,12 @@ public class OptionValues {
     @Option(name = "-babel", usage = "Enables Babel preprocessing for source files")
     private boolean babel;
 
+    @Option(name = "-babel-cache", usage = "Load and save files transpiled by Babel in the given directory (default: _babel_cache in the common ancestor of the source files)")
+    private String babelCacheDirectory;
+
+    @Option(name = "-babel-workers", usage = "Number of concurrent Babel processes (default: number of processors)")
+    private int babelWorkers = -1; // -1 represents the number of processors
+
     @Option(name = "-type-checks", usage = "Enables type checking")
     private boolean typeCheckEnabled;
 
@@ -276,6 +306,15 @@ public class OptionValues {
     @Option(name = "-prop-name-partitioning", usage = "Partitions the property name value at imprecise dynamic property reads")
     private boolean propNamePartitioning;
 
+    @Option(name = "-partition-limit", usage = "Stop value partitioning at a partitioning node when it has created more than [n] partitions (default: unlimited)")
+    private int partitionLimit = -1; // -1 represents unlimited
+
+    @Option(name = "-partition-state-limit", usage = "Do not partition a value into more than [n] partitions (default: unlimited)")
+    private int partitionStateLimit = -1; // -1 represents unlimited
+
+    @Option(name = "-partition-cost-accounting", usage = "Stop value partitioning at partitioning nodes whose cost exceeds their observed benefit")
+    private boolean partitionCostAccounting;
+
     @Argument
     private List<Path> arguments = new ArrayList<>();
 
@@ -306,6 +345,7 @@ public class OptionValues {
         if (noConcreteNative != that.noConcreteNative) return false;
         if (noForInSpecialization != that.noForInSpecialization) return false;
         if (noUserEvents != that.noUserEvents) return false;
+        if (flowgraphOptimization != that.flowgraphOptimization) return false;
         if (contextSpecialization != that.contextSpecialization) return false;
         if (lowSeverity != that.lowSeverity) return false;
         if (flowgraph != that.flowgraph) return false;
@@ -334,6 +374,8 @@ public class OptionValues {
         if (parameterSensitivity != that.parameterSensitivity) return false;
         if (ignoreUnreached != that.ignoreUnreached) return false;
         if (loopUnrollings != that.loopUnrollings) return false;
+        if (contextBudget != that.contextBudget) return false;
+        if (adaptiveLoopUnrolling != that.adaptiveLoopUnrolling) return false;
         if (determinacy != that.determinacy) return false;
         if (typeCheckEnabled != that.typeCheckEnabled) return false;
         if (polyfillMDN != that.polyfillMDN) return false;
@@ -355,13 +397,24 @@ public class OptionValues {
         if (doNotExpectOrdinaryExit != that.doNotExpectOrdinaryExit) return false;
         if (inspector != that.inspector) return false;
         if (babel != that.babel) return false;
+        if (!Objects.equals(babelCacheDirectory, that.babelCacheDirectory)) return false;
+        if (babelWorkers != that.babelWorkers) return false;
         if (propNamePartitioning != that.propNamePartitioning) return false;
+        if (partitionLimit != that.partitionLimit) return false;
+        if (partitionStateLimit != that.partitionStateLimit) return false;
+        if (partitionCostAccounting != that.partitionCostAccounting) return false;
         if (!Objects.equals(unsoundnessString, that.unsoundnessString)) return false;
         if (!Objects.equals(unsoundness, that.unsoundness)) return false;
         if (!Objects.equals(ignoredLibrariesString, that.ignoredLibrariesString)) return false;
         if (!Objects.equals(ignoredLibraries, that.ignoredLibraries)) return false;
         if (!Objects.equals(logFile, that.logFile)) return false;
         if (!Objects.equals(config, that.config)) return false;
+        if (!Objects.equals(concreteCacheFile, that.concreteCacheFile)) return false;
+        if (!Objects.equals(initialStateSnapshotDirectory, that.initialStateSnapshotDirectory)) return false;
+        if (!Objects.equals(flowGraphCacheDirectory, that.flowGraphCacheDirectory)) return false;
+        if (lazyTranslation != that.lazyTranslation) return false;
+        if (!Objects.equals(flowGraphFile, that.flowGraphFile)) return false;
+        if (!Objects.equals(nodeJSResolveCacheDirectory, that.nodeJSResolveCacheDirectory)) return false;
         if (!Objects.equals(arguments, that.arguments)) return false;
         if (blendedAnalysis != that.blendedAnalysis) return false;
         if (noFiltering != that.noFiltering) return false;
@@ -383,6 +436,7 @@ public class OptionValues {
         result = 31 * result + (noConcreteNative ? 1 : 0);
         result = 31 * result + (noForInSpecialization ? 1 : 0);
         result = 31 * result + (noUserEvents ? 1 : 0);
+        result = 31 * result + (flowgraphOptimization ? 1 : 0);
         result = 31 * result + (contextSpecialization ? 1 : 0);
         result = 31 * result + (lowSeverity ? 1 : 0);
         result = 31 * result + (unsoundnessString != null ? unsoundnessString.hashCode() : 0);
@@ -415,6 +469,8 @@ public class OptionValues {
         result = 31 * result + (parameterSensitivity ? 1 : 0);
         result = 31 * result + (ignoreUnreached ? 1 : 0);
         result = 31 * result + loopUnrollings;
+        result = 31 * result + contextBudget;
+        result = 31 * result + (adaptiveLoopUnrolling ? 1 : 0);
         result = 31 * result + (determinacy ? 1 : 0);
         result = 31 * result + (polyfillMDN ? 1 : 0);
         result = 31 * result + (polyfillES6Collections ? 1 : 0);
@@ -427,6 +483,12 @@ public class OptionValues {
         result = 31 * result + (generateLog ? 1 : 0);
         result = 31 * result + (logFile != null ? logFile.hashCode() : 0);
         result = 31 * result + (config != null ? config.hashCode() : 0);
+        result = 31 * result + (concreteCacheFile != null ? concreteCacheFile.hashCode() : 0);
+        result = 31 * result + (initialStateSnapshotDirectory != null ? initialStateSnapshotDirectory.hashCode() : 0);
+        result = 31 * result + (flowGraphCacheDirectory != null ? flowGraphCacheDirectory.hashCode() : 0);
+        result = 31 * result + (lazyTranslation ? 1 : 0);
+        result = 31 * result + (flowGraphFile != null ? flowGraphFile.hashCode() : 0);
+        result = 31 * result + (nodeJSResolveCacheDirectory != null ? nodeJSResolveCacheDirectory.hashCode() : 0);
         result = 31 * result + (showInternalMessages ? 1 : 0);
         result = 31 * result + (consoleModel ? 1 : 0);
         result = 31 * result + (commonAsyncPolyfill ? 1 : 0);
@@ -437,11 +499,16 @@ public class OptionValues {
         result = 31 * result + (doNotExpectOrdinaryExit ? 1 : 0);
         result = 31 * result + (inspector ? 1 : 0);
         result = 31 * result + (babel ? 1 : 0);
+        result = 31 * result + (babelCacheDirectory != null ? babelCacheDirectory.hashCode() : 0);
+        result = 31 * result + babelWorkers;
         result = 31 * result + (arguments != null ? arguments.hashCode() : 0);
         result = 31 * result + (soundnessTesterOptions != null ? soundnessTesterOptions.hashCode() : 0);
         result = 31 * result + (typeCheckEnabled ? 1 : 0);
         result = 31 * result + (blendedAnalysis ? 1 : 0);
         result = 31 * result + (propNamePartitioning ? 1 : 0);
+        result = 31 * result + partitionLimit;
+        result = 31 * result + partitionStateLimit;
+        result = 31 * result + (partitionCostAccounting ? 1 : 0);
         result = 31 * result + (noFiltering ? 1 : 0);
         return result;
     }
@@ -587,9 +654,9 @@ public class OptionValues {
         flowgraph = false;
     }
 
-//	public void disableFlowgraphOptimization() {
-//		flowgraphOptimization = false;
-//	}
+    public void disableFlowgraphOptimization() {
+        flowgraphOptimization = false;
+    }
 
     public void disableNoForInSpecialization() {
         noForInSpecialization = false;
@@ -744,13 +811,21 @@ public class OptionValues {
         contextSensitiveHeap = true;
     }
 
+    public void enableAdaptiveLoopUnrolling() {
+        adaptiveLoopUnrolling = true;
+    }
+
+    public void disableAdaptiveLoopUnrolling() {
+        adaptiveLoopUnrolling = false;
+    }
+
     public void enableContextSpecialization() {
         contextSpecialization = true;
     }
 
-//	public void enableFlowgraphOptimization() {
-//		flowgraphOptimization = true;
-//	}
+    public void enableFlowgraphOptimization() {
+        flowgraphOptimization = true;
+    }
 
     public void enableControlSensitivity() {
         noControlSensitivity = false;
@@ -928,6 +1003,17 @@ public class OptionValues {
         return loopUnrollings;
     }
 
+    /**
+     * Returns the maximum number of call contexts per function, or -1 if unlimited.
+     */
+    public int getContextBudget() {
+        return contextBudget;
+    }
+
+    public void setContextBudget(int contextBudget) {
+        this.contextBudget = contextBudget;
+    }
+
     public boolean isAlwaysCanPut() {
         return alwaysCanput;
     }
@@ -953,9 +1039,13 @@ public class OptionValues {
         return contextSensitiveHeap;
     }
 
-//	public boolean isFlowGraphOptimizationEnabled() {
-//		return flowgraphOptimization;
-//	}
+    public boolean isAdaptiveLoopUnrollingEnabled() {
+        return adaptiveLoopUnrolling;
+    }
+
+    public boolean isFlowGraphOptimizationEnabled() {
+        return flowgraphOptimization;
+    }
 
     public boolean isContextSpecializationEnabled() {
         return contextSpecialization;
@@ -1120,6 +1210,9 @@ public class OptionValues {
         if (blendedAnalysis && unsoundness.isUseFixedRandom()) {
             throw new CmdLineException(null, "-blended-analysis and -unsound -use-fixed-random are not allowed together", null);
         }
+        if (flowGraphFile != null && lazyTranslation) {
+            throw new CmdLineException(null, "-flowgraph-file and -lazy-translation are not allowed together", null);
+        }
     }
 
     public void enablePolyfillMDN() {
@@ -1174,6 +1267,69 @@ public class OptionValues {
         return config;
     }
 
+    /**
+     * Returns the file for persisting results of concrete evaluation, or null if not set.
+     */
+    public Path getConcreteCacheFile() {
+        return concreteCacheFile != null ? Paths.get(concreteCacheFile) : null;
+    }
+
+    public void setConcreteCacheFile(Path file) {
+        concreteCacheFile = file != null ? file.toString() : null;
+    }
+
+    /**
+     * Returns the directory for initial state snapshots, or null if not set.
+     */
+    public Path getInitialStateSnapshotDirectory() {
+        return initialStateSnapshotDirectory != null ? Paths.get(initialStateSnapshotDirectory) : null;
+    }
+
+    public void setInitialStateSnapshotDirectory(Path dir) {
+        initialStateSnapshotDirectory = dir != null ? dir.toString() : null;
+    }
+
+    /**
+     * Returns the directory for translated host-environment sources, or null if not set.
+     */
+    public Path getFlowGraphCacheDirectory() {
+        return flowGraphCacheDirectory != null ? Paths.get(flowGraphCacheDirectory) : null;
+    }
+
+    public void setFlowGraphCacheDirectory(Path dir) {
+        flowGraphCacheDirectory = dir != null ? dir.toString() : null;
+    }
+
+    public boolean isLazyTranslationEnabled() {
+        return lazyTranslation;
+    }
+
+    public void enableLazyTranslation() {
+        lazyTranslation = true;
+    }
+
+    /**
+     * Returns the file for the prebuilt flow graph, or null if not set.
+     */
+    public Path getFlowGraphFile() {
+        return flowGraphFile != null ? Paths.get(flowGraphFile) : null;
+    }
+
+    public void setFlowGraphFile(Path file) {
+        flowGraphFile = file != null ? file.toString() : null;
+    }
+
+    /**
+     * Returns the directory for NodeJS module resolution results, or null if not set.
+     */
+    public Path getNodeJSResolveCacheDirectory() {
+        return nodeJSResolveCacheDirectory != null ? Paths.get(nodeJSResolveCacheDirectory) : null;
+    }
+
+    public void setNodeJSResolveCacheDirectory(Path dir) {
+        nodeJSResolveCacheDirectory = dir != null ? dir.toString() : null;
+    }
+
     public UnsoundnessOptionValues getUnsoundness() {
         return unsoundness;
     }
@@ -1318,6 +1474,25 @@ public class OptionValues {
         babel = false;
     }
 
+    /**
+     * Returns the directory for files transpiled by Babel, or null if not set.
+     */
+    public Path getBabelCacheDirectory() {
+        return babelCacheDirectory != null ? Paths.get(babelCacheDirectory) : null;
+    }
+
+    public void setBabelCacheDirectory(Path dir) {
+        babelCacheDirectory = dir != null ? dir.toString() : null;
+    }
+
+    public int getBabelWorkers() {
+        return babelWorkers;
+    }
+
+    public void setBabelWorkers(int babelWorkers) {
+        this.babelWorkers = babelWorkers;
+    }
+
     public boolean isTypeCheckEnabled() {
         return this.typeCheckEnabled;
     }
@@ -1361,4 +1536,38 @@ public class OptionValues {
     public void disablePropNamePartitioning() {
         this.propNamePartitioning = false;
     }
+
+    /**
+     * Returns the maximum number of partitions per partitioning node, or -1 if unlimited.
+     */
+    public int getPartitionLimit() {
+        return partitionLimit;
+    }
+
+    public void setPartitionLimit(int partitionLimit) {
+        this.partitionLimit = partitionLimit;
+    }
+
+    /**
+     * Returns the maximum number of partitions of a single partitioned value, or -1 if unlimited.
+     */
+    public int getPartitionStateLimit() {
+        return partitionStateLimit;
+    }
+
+    public void setPartitionStateLimit(int partitionStateLimit) {
+        this.partitionStateLimit = partitionStateLimit;
+    }
+
+    public boolean isPartitionCostAccountingEnabled() {
+        return partitionCostAccounting;
+    }
+
+    public void enablePartitionCostAccounting() {
+        this.partitionCostAccounting = true;
+    }
+
+    public void disablePartitionCostAccounting() {
+        this.partitionCostAccounting = false;
+    }
 }
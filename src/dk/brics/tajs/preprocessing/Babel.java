@@ -16,6 +16,9 @@
 
 package dk.brics.tajs.preprocessing;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.options.TAJSEnvironmentConfig;
 import dk.brics.tajs.util.AnalysisException;
@@ -27,29 +30,146 @@ import org.apache.log4j.Logger;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import static dk.brics.tajs.util.Collections.newList;
+import static dk.brics.tajs.util.Collections.newSet;
+
+/**
+ * Babel preprocessing of source files.
+ * <p>
+ * Transpiled files are stored in a content-addressed cache, keyed by the hash of the file contents and the hash of the transpiler configuration,
+ * so only new or changed files are transpiled.
+ * The configuration of the Babel command line interface consists of the installed versions of Babel and the plugins and the nearest babel.config.js;
+ * file-relative configuration (.babelrc files and "babel" entries in package.json files) is disabled.
+ * Cache entries that have not been used for {@link #MAX_CACHE_ENTRY_AGE_DAYS} days are deleted.
+ * Cache misses are transpiled in batches by a pool of concurrent transpiler processes.
+ */
 public class Babel {
 
     private static final Logger log = Logger.getLogger(Babel.class);
 
-    private static final String babelPlugins =
+    private static final List<String> babelPluginPackages =
             Stream.of("arrow-functions", "block-scoping", "classes", "shorthand-properties", "for-of",
                       "template-literals", "parameters", "spread", "destructuring", "computed-properties")
-            .map(name -> "@babel/plugin-transform-" + name).collect(java.util.stream.Collectors.joining(","));
+            .map(name -> "@babel/plugin-transform-" + name).collect(Collectors.toList());
+
+    private static final String babelPlugins = String.join(",", babelPluginPackages);
 
     private static final Pattern successPattern = Pattern.compile("Successfully compiled (\\d+) files? with Babel\\.");
 
     private static final Set<String> supportedFileExtensions = Stream.of(".es6", ".js", ".es", ".jsx", ".mjs", "").collect(java.util.stream.Collectors.toSet());
 
+    /**
+     * Maximal number of files given to one transpiler process, to avoid the argument list length limit.
+     */
+    private static final int MAX_BATCH_SIZE = 100;
+
+    /**
+     * Number of days a cache entry is kept after it was last used.
+     */
+    public static final int MAX_CACHE_ENTRY_AGE_DAYS = 30;
+
+    private static Transpiler transpiler = new BabelProcess();
+
+    private static int transpiled_files;
+
+    private static int cache_hits;
+
+    private static int written_files;
+
+    private static int pruned_cache_entries;
+
+    /**
+     * Transpiler of source files.
+     * Implementations must allow concurrent invocations of {@link #transpile}.
+     */
+    public interface Transpiler {
+
+        /**
+         * Returns a description of everything that may affect the output of the transpiler, except the input files.
+         */
+        String getConfiguration();
+
+        /**
+         * Transpiles the given files.
+         *
+         * @param inputDir  the directory containing the files
+         * @param files     the files to transpile, relative to the input directory
+         * @param outputDir the directory where the transpiled files are put, with the same relative paths as the input files
+         */
+        void transpile(Path inputDir, List<Path> files, Path outputDir) throws IOException, InterruptedException;
+    }
+
+    /**
+     * Resets the transpiler and the statistics.
+     */
+    public static void reset() {
+        transpiler = new BabelProcess();
+        transpiled_files = 0;
+        cache_hits = 0;
+        written_files = 0;
+        pruned_cache_entries = 0;
+    }
+
+    /**
+     * Sets the transpiler, for example to a stand-in that does not require Babel to be installed.
+     */
+    public static void setTranspiler(Transpiler t) {
+        transpiler = t;
+    }
+
+    /**
+     * Returns the number of files that have been transpiled.
+     */
+    public static int getNumberOfTranspiledFiles() {
+        return transpiled_files;
+    }
+
+    /**
+     * Returns the number of files that have been found in the cache.
+     */
+    public static int getNumberOfCacheHits() {
+        return cache_hits;
+    }
+
+    /**
+     * Returns the number of cache entries that have been deleted because they were not used for {@link #MAX_CACHE_ENTRY_AGE_DAYS} days.
+     */
+    public static int getNumberOfPrunedCacheEntries() {
+        return pruned_cache_entries;
+    }
+
+    /**
+     * Returns the number of files that have been written to the output directory, including copied files.
+     * Files that are unchanged since the previous preprocessing are not written.
+     */
+    public static int getNumberOfWrittenFiles() {
+        return written_files;
+    }
+
     /**
      * This method performs babel preprocessing on the files listed in the *files* parameter.
      * It replaces the main file of the analysis with the one generated by babel.
@@ -71,8 +191,8 @@ public class Babel {
         List<Path> args = Options.get().getArguments();
         Path testFile = Lists.getLast(args);
         Path realCommonAncestor = PathAndURLUtils.toRealPath(commonAncestor);
-        Path babelRoot = commonAncestor.resolve("_babel");
-        Path babelPath = TAJSEnvironmentConfig.get().getBabel();
+        Path babelRoot = realCommonAncestor.resolve("_babel");
+        Path cacheDir = Options.get().getBabelCacheDirectory() != null ? Options.get().getBabelCacheDirectory().toAbsolutePath() : realCommonAncestor.resolve("_babel_cache");
 
         /* If we run babel with the project root as input directory, it will copy all files in it! */
         if (PathAndURLUtils.getWorkingDirectory().startsWith(realCommonAncestor)) {
@@ -90,64 +210,33 @@ public class Babel {
                 .map(file -> realCommonAncestor.relativize(file.toAbsolutePath()))
                 .distinct().collect(Collectors.toList());
 
-        Set<String> fileExtensions = relativeFiles.stream().map(PathAndURLUtils::getFileExtension).collect(Collectors.toSet());
-        fileExtensions.retainAll(supportedFileExtensions);
-
-        List<String> baseCmd = Arrays.asList(
-                babelPath.toString(),
-                "--root-mode", "upward",            // Find the nearest babel.config.js in the file-system
-                "--extensions", String.join(",", fileExtensions),
-                "--keep-file-extension",
-                "--verbose",
-                "--plugins", babelPlugins,          // Plugins used for transformations
-                "--out-dir", babelRoot.toString()   // Output directory
-        );
-
         try {
-            // Split list into sublists to avoid argument list length limit
-            final int sublistSize = 100;
-            for(int i = 0; i < relativeFiles.size(); i += sublistSize) {
-                List<Path> subFiles = relativeFiles.subList(i, Math.min(i + sublistSize, relativeFiles.size()));
-                ArrayList<String> cmd = new ArrayList<>(baseCmd);
-
-                if(i == 0) { // Delete and copy other files in the first pass
-                    cmd.add("--delete-dir-on-start");
-                    cmd.add("--copy-files");
-                }
-
-                cmd.add("--only"); // Control which files to transform (must be absolute for babel to work correctly)
-                cmd.add(subFiles.stream().map(file -> commonAncestor.resolve(file).toString()).collect(java.util.stream.Collectors.joining(",")));
-                cmd.add(commonAncestor.toString()); // Input directory
-
-                // Run the babel command
-                Process process = new ProcessBuilder(cmd).directory(babelPath.getParent().toFile()).start();
-                String output, err;
-
-                try (BufferedReader stdBr = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                     BufferedReader errBr = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-
-                    output = stdBr.lines().collect(java.util.stream.Collectors.joining("\n"));
-                    err = errBr.lines().collect(java.util.stream.Collectors.joining("\n"));
-                    process.waitFor();
-                }
-
-                if (process.exitValue() != 0)
-                    throw new AnalysisException("Error occurred while running babel:\n" + err);
-
-                if (!Options.get().isQuietEnabled())
-                    System.out.println(output);
-
-                Matcher m = successPattern.matcher(output);
-                if (!m.find())
-                    log.warn("Babel might not have run successfully!\n" + output);
-                else {
-                    int processedFiles = Integer.parseInt(m.group(1));
-                    if (processedFiles != subFiles.size())
-                        throw new AnalysisException(String.format("Babel processed %d/%d files", processedFiles, subFiles.size()));
+            Set<Path> outputs = newSet();
+            String configurationHash = hash(transpiler.getConfiguration().getBytes(StandardCharsets.UTF_8));
+            List<Path> misses = newList();
+            List<String> missKeys = newList();
+            for (Path file : relativeFiles) {
+                String extension = PathAndURLUtils.getFileExtension(file);
+                if (!supportedFileExtensions.contains(extension))
+                    continue;
+                String key = hash((configurationHash + ":" + extension + ":" + hash(Files.readAllBytes(realCommonAncestor.resolve(file)))).getBytes(StandardCharsets.UTF_8));
+                Path cacheFile = cacheDir.resolve(key + ".js");
+                if (Files.isRegularFile(cacheFile)) {
+                    writeIfChanged(Files.readAllBytes(cacheFile), babelRoot.resolve(file));
+                    Files.setLastModifiedTime(cacheFile, FileTime.fromMillis(System.currentTimeMillis())); // marks the entry as used
+                    cache_hits++;
+                } else {
+                    misses.add(file);
+                    missKeys.add(key);
                 }
+                outputs.add(babelRoot.resolve(file));
             }
-        } catch (InterruptedException | IOException e) {
-
+            if (!misses.isEmpty())
+                transpileAll(realCommonAncestor, misses, missKeys, babelRoot, cacheDir);
+            copyOtherFiles(realCommonAncestor, babelRoot, cacheDir, outputs);
+            deleteStaleFiles(babelRoot, outputs);
+            pruneCache(cacheDir);
+        } catch (IOException | InterruptedException e) {
             throw new AnalysisException("Error occurred while running babel:\n" + e);
         }
 
@@ -167,4 +256,260 @@ public class Babel {
 
         args.set(args.size() - 1, babelTestFile);
     }
+
+    /**
+     * Transpiles the given files in batches, using a pool of concurrent transpiler invocations,
+     * and stores the results in the cache and in the output directory.
+     */
+    private static void transpileAll(Path inputDir, List<Path> files, List<String> keys, Path babelRoot, Path cacheDir) throws IOException, InterruptedException {
+        int workers = Options.get().getBabelWorkers() > 0 ? Options.get().getBabelWorkers() : Runtime.getRuntime().availableProcessors();
+        int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, (files.size() + workers - 1) / workers));
+        Files.createDirectories(cacheDir);
+        Path tmpDir = Files.createTempDirectory(cacheDir, "tajs-babel-");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(workers, (files.size() + batchSize - 1) / batchSize));
+        Throwable failure = null;
+        try {
+            List<Future<?>> futures = newList();
+            for (int i = 0; i < files.size(); i += batchSize) {
+                List<Path> batch = files.subList(i, Math.min(i + batchSize, files.size()));
+                List<String> batchKeys = keys.subList(i, Math.min(i + batchSize, files.size()));
+                Path outputDir = tmpDir.resolve(Integer.toString(i));
+                futures.add(executor.submit(() -> {
+                    Files.createDirectories(outputDir);
+                    transpiler.transpile(inputDir, batch, outputDir);
+                    for (int j = 0; j < batch.size(); j++) {
+                        Path output = outputDir.resolve(batch.get(j));
+                        if (!Files.isRegularFile(output))
+                            throw new AnalysisException("Babel produced no output for " + inputDir.resolve(batch.get(j)));
+                        byte[] bytes = Files.readAllBytes(output);
+                        Path cacheFile = cacheDir.resolve(batchKeys.get(j) + ".js");
+                        Files.move(output, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                        writeIfChanged(bytes, babelRoot.resolve(batch.get(j)));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof AnalysisException)
+                        throw (AnalysisException) e.getCause();
+                    throw new AnalysisException("Error occurred while running babel:\n" + e.getCause(), e.getCause());
+                }
+            }
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            executor.shutdownNow();
+            try {
+                // running transpiler processes are not stopped by the interrupt and may still write to the temporary directory
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+                deleteRecursively(tmpDir);
+            } catch (IOException | InterruptedException e) {
+                if (failure == null)
+                    throw e;
+                failure.addSuppressed(e);
+                if (e instanceof InterruptedException)
+                    Thread.currentThread().interrupt();
+            }
+        }
+        transpiled_files += files.size();
+    }
+
+    /**
+     * Copies the files in the input directory that are not transpiled to the output directory, unless they are already there.
+     */
+    private static void copyOtherFiles(Path inputDir, Path babelRoot, Path cacheDir, Set<Path> outputs) throws IOException {
+        List<Path> others;
+        try (Stream<Path> s = Files.walk(inputDir)) {
+            others = s.filter(p -> !p.startsWith(babelRoot) && !p.startsWith(cacheDir) && Files.isRegularFile(p))
+                    .filter(p -> !outputs.contains(babelRoot.resolve(inputDir.relativize(p))))
+                    .collect(Collectors.toList());
+        }
+        for (Path p : others) {
+            Path target = babelRoot.resolve(inputDir.relativize(p));
+            outputs.add(target);
+            if (Files.isRegularFile(target)) {
+                BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+                BasicFileAttributes b = Files.readAttributes(target, BasicFileAttributes.class);
+                if (a.size() == b.size() && a.lastModifiedTime().equals(b.lastModifiedTime()))
+                    continue;
+            }
+            Files.createDirectories(target.getParent());
+            Files.copy(p, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            written_files++;
+        }
+    }
+
+    /**
+     * Deletes the files in the output directory that have not been produced by this preprocessing, and the resulting empty directories.
+     */
+    private static void deleteStaleFiles(Path babelRoot, Set<Path> outputs) throws IOException {
+        if (!Files.isDirectory(babelRoot))
+            return;
+        List<Path> paths;
+        try (Stream<Path> s = Files.walk(babelRoot)) {
+            paths = s.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path p : paths) {
+            if (Files.isDirectory(p)) {
+                if (!p.equals(babelRoot)) {
+                    try (Stream<Path> s = Files.list(p)) {
+                        if (!s.findAny().isPresent())
+                            Files.delete(p);
+                    }
+                }
+            } else if (!outputs.contains(p)) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    /**
+     * Deletes the cache entries that have not been used for {@link #MAX_CACHE_ENTRY_AGE_DAYS} days.
+     */
+    private static void pruneCache(Path cacheDir) throws IOException {
+        long limit = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_CACHE_ENTRY_AGE_DAYS);
+        List<Path> old;
+        try (Stream<Path> s = Files.list(cacheDir)) {
+            old = s.filter(p -> p.getFileName().toString().endsWith(".js")).collect(Collectors.toList());
+        }
+        for (Path p : old) {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+            if (a.isRegularFile() && a.lastModifiedTime().toMillis() < limit) {
+                Files.deleteIfExists(p);
+                pruned_cache_entries++;
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir))
+            return;
+        List<Path> paths;
+        try (Stream<Path> s = Files.walk(dir)) {
+            paths = s.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+        }
+        for (Path p : paths)
+            Files.delete(p);
+    }
+
+    /**
+     * Writes the given contents to the given file, unless the file already has those contents.
+     */
+    private static synchronized void writeIfChanged(byte[] bytes, Path file) throws IOException {
+        if (Files.isRegularFile(file) && Arrays.equals(Files.readAllBytes(file), bytes))
+            return;
+        Files.createDirectories(file.getParent());
+        Files.write(file, bytes);
+        written_files++;
+    }
+
+    private static String hash(byte[] bytes) {
+        try {
+            StringBuilder b = new StringBuilder();
+            for (byte x : MessageDigest.getInstance("SHA-256").digest(bytes))
+                b.append(String.format("%02x", x));
+            return b.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AnalysisException(e);
+        }
+    }
+
+    /**
+     * Transpiler that runs the Babel command line interface.
+     */
+    private static class BabelProcess implements Transpiler {
+
+        @Override
+        public String getConfiguration() {
+            Path babelPath = TAJSEnvironmentConfig.get().getBabel();
+            StringBuilder b = new StringBuilder(babelPath.toAbsolutePath() + "\n");
+            List<String> packages = newList(Arrays.asList("@babel/cli", "@babel/core"));
+            packages.addAll(babelPluginPackages);
+            for (String pkg : packages)
+                b.append(pkg).append("@").append(getInstalledVersion(babelPath, pkg)).append("\n");
+            // the nearest babel.config.js, as found by --root-mode upward
+            for (Path dir = babelPath.toAbsolutePath().getParent(); dir != null; dir = dir.getParent()) {
+                Path config = dir.resolve("babel.config.js");
+                if (Files.isRegularFile(config)) {
+                    try {
+                        b.append(config).append("\n").append(new String(Files.readAllBytes(config), StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        throw new AnalysisException("Unable to read " + config, e);
+                    }
+                    break;
+                }
+            }
+            return b.toString();
+        }
+
+        /**
+         * Returns the version of the given package as found by Node.js module resolution from the Babel command, or "?" if not found.
+         */
+        private static String getInstalledVersion(Path babelPath, String pkg) {
+            for (Path dir = babelPath.toAbsolutePath().getParent(); dir != null; dir = dir.getParent()) {
+                Path file = dir.resolve("node_modules").resolve(pkg).resolve("package.json");
+                if (Files.isRegularFile(file)) {
+                    try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                        JsonElement e = new JsonParser().parse(r);
+                        if (e.isJsonObject() && e.getAsJsonObject().has("version"))
+                            return e.getAsJsonObject().get("version").getAsString();
+                    } catch (IOException | JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                        throw new AnalysisException("Unable to read " + file, e);
+                    }
+                    return "?";
+                }
+            }
+            return "?";
+        }
+
+        @Override
+        public void transpile(Path inputDir, List<Path> files, Path outputDir) throws IOException, InterruptedException {
+            Path babelPath = TAJSEnvironmentConfig.get().getBabel();
+            Set<String> fileExtensions = files.stream().map(PathAndURLUtils::getFileExtension).collect(Collectors.toSet());
+            List<String> cmd = new ArrayList<>(Arrays.asList(
+                    babelPath.toString(),
+                    "--root-mode", "upward",            // Find the nearest babel.config.js in the file-system
+                    "--extensions", String.join(",", fileExtensions),
+                    "--keep-file-extension",
+                    "--no-babelrc",                     // Ignore file-relative configuration, which is not part of the cache key
+                    "--verbose",
+                    "--plugins", babelPlugins,          // Plugins used for transformations
+                    "--out-dir", outputDir.toString()   // Output directory
+            ));
+            cmd.add("--only"); // Control which files to transform (must be absolute for babel to work correctly)
+            cmd.add(files.stream().map(file -> inputDir.resolve(file).toString()).collect(java.util.stream.Collectors.joining(",")));
+            cmd.add(inputDir.toString()); // Input directory
+
+            // Run the babel command
+            Process process = new ProcessBuilder(cmd).directory(babelPath.getParent().toFile()).start();
+            String output, err;
+
+            try (BufferedReader stdBr = new BufferedReader(new InputStreamReader(process.getInputStream()));
+                 BufferedReader errBr = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+
+                output = stdBr.lines().collect(java.util.stream.Collectors.joining("\n"));
+                err = errBr.lines().collect(java.util.stream.Collectors.joining("\n"));
+                process.waitFor();
+            }
+
+            if (process.exitValue() != 0)
+                throw new AnalysisException("Error occurred while running babel:\n" + err);
+
+            if (!Options.get().isQuietEnabled())
+                System.out.println(output);
+
+            Matcher m = successPattern.matcher(output);
+            if (!m.find())
+                log.warn("Babel might not have run successfully!\n" + output);
+            else {
+                int processedFiles = Integer.parseInt(m.group(1));
+                if (processedFiles != files.size())
+                    throw new AnalysisException(String.format("Babel processed %d/%d files", processedFiles, files.size()));
+            }
+        }
+    }
 }
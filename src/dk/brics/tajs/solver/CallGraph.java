@@ -60,6 +60,11 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
 
     private Map<AbstractNode,Set<Function>> callees_ignoring_contexts;
 
+    /**
+     * Map from function to the contexts of its entry block.
+     */
+    private Map<Function, Set<ContextType>> function_contexts;
+
     /**
      * Map from basic block and context to occurrence order.
      */
@@ -114,6 +119,7 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
         funentry_order = newMap();
         context_order = newMap();
         callees_ignoring_contexts = newMap();
+        function_contexts = newMap();
     }
 
     /**
@@ -174,8 +180,27 @@ public class CallGraph<StateType extends IState<StateType, ContextType, CallEdge
      * Assigns an order to the given function entry.
      */
     public void registerFunctionEntry(BlockAndContext<ContextType> bc) {
-        if (!funentry_order.containsKey(bc))
+        if (!funentry_order.containsKey(bc)) {
             funentry_order.put(bc, next_funentry_order++);
+            if (bc.getBlock().isEntry())
+                addToMapSet(function_contexts, bc.getBlock().getFunction(), bc.getContext());
+        }
+    }
+
+    /**
+     * Returns the number of contexts the given function has been entered in.
+     */
+    public int getNumberOfContexts(Function f) {
+        Set<ContextType> cs = function_contexts.get(f);
+        return cs != null ? cs.size() : 0;
+    }
+
+    /**
+     * Checks whether the given function has been entered in the given context.
+     */
+    public boolean hasContext(Function f, ContextType c) {
+        Set<ContextType> cs = function_contexts.get(f);
+        return cs != null && cs.contains(c);
     }
 
     /**
@@ -20,6 +20,7 @@ import dk.brics.tajs.flowgraph.AbstractNode;
 import dk.brics.tajs.flowgraph.BasicBlock;
 import dk.brics.tajs.flowgraph.FlowGraph;
 import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.HTMLSummary;
 import dk.brics.tajs.lattice.Context;
 import dk.brics.tajs.monitoring.refinement.RefinerStatistics;
 import dk.brics.tajs.options.Options;
@@ -27,7 +28,6 @@ import dk.brics.tajs.solver.IAnalysisLatticeElement.MergeResult;
 import dk.brics.tajs.solver.refinement.QueryManager;
 import dk.brics.tajs.util.AnalysisException;
 import dk.brics.tajs.util.AnalysisLimitationException;
-import net.htmlparser.jericho.Source;
 import org.apache.log4j.Logger;
 
 import java.util.Iterator;
@@ -72,6 +72,21 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
 
     private SolverInterface c;
 
+    /**
+     * Number of new call edge flows that changed the callee entry state, so the callee had to be (re-)solved.
+     */
+    private int entry_states_changed;
+
+    /**
+     * Number of new call edge flows that did not change the callee entry state, because it already subsumed the edge state.
+     */
+    private int entry_states_unchanged;
+
+    /**
+     * Number of edge states that were not propagated because the call edge already subsumed them.
+     */
+    private int edge_states_subsumed;
+
     /**
      * Interface to solver used while evaluating transfer functions.
      * Provides callbacks from transfer functions to solver state.
@@ -90,6 +105,13 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
             return current_node;
         }
 
+        /**
+         * Checks whether a node is currently being visited.
+         */
+        public boolean hasNode() {
+            return current_node != null;
+        }
+
         /**
          * Returns the current abstract state.
          */
@@ -251,12 +273,17 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
                     toReprocess.forEach(bAndC -> c.addToWorklist(bAndC.getBlock(), (ContextType) bAndC.getContext()));
                 }
                 // propagate transformed state into function entry
-                propagateAndUpdateWorklist(edge_state, callee_entry, callee_context, true);
+                if (propagate(edge_state, new BlockAndContext<>(callee_entry, callee_context), true)) {
+                    entry_states_changed++;
+                    addToWorklist(callee_entry, callee_context);
+                } else
+                    entry_states_unchanged++; // the callee need not be re-solved
                 if (deps.isFunctionActive(new BlockAndContext<>(callee_entry, callee_context))) {
                     // charge the call edge
                     deps.chargeCallEdge(call_node, caller_context, edge_context, callee_entry, callee_context, callKind);
                 }
-            }
+            } else
+                edge_states_subsumed++;
             if (Options.get().isChargedCallsDisabled() || !CallDependencies.DELAY_RETURN_FLOW_UNTIL_DISCHARGED || !deps.isCallEdgeCharged(call_node, caller_context, edge_context, callee_entry, callee_context)) {
                 // process existing ordinary/exceptional return flow
                 StateType stored_state = current_state;
@@ -294,6 +321,35 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
             current_node = node;
         }
 
+        /**
+         * Returns the number of new call edge flows that changed the callee entry state.
+         */
+        public int getNumberOfChangedEntryStates() {
+            return entry_states_changed;
+        }
+
+        /**
+         * Returns the number of new call edge flows that did not change the callee entry state.
+         */
+        public int getNumberOfUnchangedEntryStates() {
+            return entry_states_unchanged;
+        }
+
+        /**
+         * Returns the number of edge states that were already subsumed by the call edge.
+         */
+        public int getNumberOfSubsumedEdgeStates() {
+            return edge_states_subsumed;
+        }
+
+        /**
+         * Returns a description of how call edge flow affected function entry states.
+         */
+        public String getFunctionEntryStatistics() {
+            return "Function entry states: changed=" + entry_states_changed + ", unchanged=" + entry_states_unchanged +
+                    ", edge states subsumed by call edge=" + edge_states_subsumed;
+        }
+
         public WorkList<ContextType> getWorklist() {
             return worklist;
         }
@@ -315,7 +371,7 @@ public class GenericSolver<StateType extends IState<StateType, ContextType, Call
     /**
      * Initializes the solver for the given flow graph and HTML document.
      */
-    public void init(FlowGraph fg, Source document) {
+    public void init(FlowGraph fg, HTMLSummary document) {
         if (the_analysis_lattice_element != null)
             throw new IllegalStateException("init() called repeatedly");
         flowgraph = fg;
@@ -17,7 +17,7 @@
 package dk.brics.tajs.solver;
 
 import dk.brics.tajs.flowgraph.BasicBlock;
-import net.htmlparser.jericho.Source;
+import dk.brics.tajs.flowgraph.HTMLSummary;
 
 /**
  * Interface for initial state builder classes.
@@ -31,5 +31,5 @@ public interface IInitialStateBuilder<StateType extends IState<StateType, Contex
     /**
      * Builds the initial state.
      */
-    StateType build(BasicBlock global_entry_block, GenericSolver<StateType, ContextType, CallEdgeType, MonitoringType, AnalysisType>.SolverInterface c, Source document);
+    StateType build(BasicBlock global_entry_block, GenericSolver<StateType, ContextType, CallEdgeType, MonitoringType, AnalysisType>.SolverInterface c, HTMLSummary document);
 }
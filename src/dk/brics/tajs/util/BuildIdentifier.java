@@ -0,0 +1,101 @@
+/*
+ * Copyright 2009-2019 Aarhus University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package dk.brics.tajs.util;
+
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.UUID;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Identifies the build of TAJS that is running, for keys of persistent caches.
+ * <p>
+ * The identifier is a hash of the TAJS class files, so it changes whenever the analysis or translation code changes.
+ */
+public class BuildIdentifier {
+
+    private static Logger log = Logger.getLogger(BuildIdentifier.class);
+
+    private static final String CLASS_PREFIX = "dk/brics/tajs/";
+
+    private static String id;
+
+    private BuildIdentifier() {
+    }
+
+    /**
+     * Returns the identifier of the running build.
+     * If the class files cannot be read, a new identifier is made for each run, so persistent caches are not reused.
+     */
+    public static synchronized String get() {
+        if (id == null) {
+            try {
+                id = computeId();
+            } catch (IOException | URISyntaxException | NoSuchAlgorithmException e) {
+                log.warn("Unable to identify the TAJS build, persistent caches will not be reused: " + e);
+                id = UUID.randomUUID().toString();
+            }
+        }
+        return id;
+    }
+
+    private static String computeId() throws IOException, URISyntaxException, NoSuchAlgorithmException {
+        CodeSource codeSource = BuildIdentifier.class.getProtectionDomain().getCodeSource();
+        URL location = codeSource != null ? codeSource.getLocation() : null;
+        if (location == null)
+            throw new IOException("Unknown location of TAJS classes");
+        Path path = Paths.get(location.toURI());
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        if (Files.isDirectory(path)) {
+            List<Path> classFiles;
+            try (Stream<Path> files = Files.walk(path.resolve(CLASS_PREFIX))) {
+                classFiles = files.filter(p -> p.toString().endsWith(".class")).sorted().collect(Collectors.toList());
+            }
+            for (Path p : classFiles) {
+                digest.update(path.relativize(p).toString().getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(p));
+            }
+        } else {
+            try (JarFile jar = new JarFile(path.toFile())) {
+                for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                    JarEntry e = entries.nextElement();
+                    if (e.getName().startsWith(CLASS_PREFIX) && e.getName().endsWith(".class"))
+                        digest.update((e.getName() + ":" + e.getCrc() + ":" + e.getSize() + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        StringBuilder b = new StringBuilder();
+        for (byte x : digest.digest())
+            b.append(String.format("%02x", x));
+        return b.toString();
+    }
+}
@@ -102,13 +102,6 @@ public class Canonicalizer {
         return canonicalizeViaImmutableBox(map);
     }
 
-    /**
-     * Canonicalizes a set of strings into an immutable version.
-     */
-    public Set<String> canonicalizeStringSet(Set<String> strings) {
-        return canonicalizeViaImmutableBox(strings);
-    }
-
     /**
      * Canonicalizes an Obj into an immutable version.
      */
@@ -19,6 +19,11 @@ import org.junit.runners.Suite;
         TestAnderson.class,
         // specific tests
         TestValue.class,
+        TestStringSet.class,
+        TestScopeChain.class,
+        TestPropertyReadCache.class,
+        TestPrimitiveOperationCache.class,
+        TestNativeFunctionRegistry.class,
         TestTAJSFunctions.class,
         TestHeap.class,
         TestForIn.class,
@@ -28,7 +33,20 @@ import org.junit.runners.Suite;
         TestGettersSetters.class,
         TestStrict.class,
         TestConversion.class,
-        TestMicroDifferentLoopKinds.class
+        TestMicroDifferentLoopKinds.class,
+        TestContextBudget.class,
+        TestPartitioningBudget.class,
+        TestInitialStateSnapshot.class,
+        TestHostEnvFunctionCache.class,
+        TestLazyTranslation.class,
+        TestFlowGraphFile.class,
+        TestFlowGraphOptimization.class,
+        TestHTMLSummary.class,
+        TestDOMHostObjects.class,
+        TestBabelCache.class,
+        TestPartitionedValue.class,
+        TestFunctionEntryStatistics.class,
+        TestContextInterning.class
 })
 public class RunFast {
 
@@ -37,6 +37,7 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses(value = {
         TestFlowgraphBuilder.class,
         TestUneval.class,
+        TestConcreteSemantics.class,
         TestHostFunctionSources_ArrayPrototype.class,
         TestHostFunctionSources_ES6Collections.class,
         TestHostFunctionSources_TypedArrays.class,
@@ -0,0 +1,212 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.preprocessing.Babel;
+import dk.brics.tajs.util.AnalysisException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static dk.brics.tajs.util.Collections.newSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestBabelCache {
+
+    private Path dir;
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    /**
+     * Stand-in for Babel that rewrites 'let' declarations to 'var' declarations.
+     */
+    private class StandIn implements Babel.Transpiler {
+
+        private final String configuration;
+
+        StandIn(String configuration) {
+            this.configuration = configuration;
+        }
+
+        @Override
+        public String getConfiguration() {
+            return configuration;
+        }
+
+        @Override
+        public void transpile(Path inputDir, List<Path> files, Path outputDir) throws IOException {
+            batches.incrementAndGet();
+            for (Path file : files) {
+                String s = new String(Files.readAllBytes(inputDir.resolve(file)), StandardCharsets.UTF_8);
+                Path output = outputDir.resolve(file);
+                Files.createDirectories(output.getParent());
+                Files.write(output, s.replace("let ", "var ").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Before
+    public void before() throws IOException {
+        dir = Paths.get("out/temp-babel/" + getClass().getSimpleName());
+        if (Files.exists(dir)) {
+            try (Stream<Path> s = Files.walk(dir)) {
+                for (Path p : s.sorted(Comparator.reverseOrder()).collect(Collectors.toList()))
+                    Files.delete(p);
+            }
+        }
+        Files.createDirectories(dir);
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path p = dir.resolve(file);
+        Files.createDirectories(p.getParent());
+        Files.write(p, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void run(String configuration) {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().enableBabel();
+        Babel.setTranspiler(new StandIn(configuration));
+        batches.set(0);
+        Misc.run(dir.resolve("main.js").toString());
+    }
+
+    @Test
+    public void cacheHitOnSecondRun() throws IOException {
+        write("main.js", "let x = 1; TAJS_assert(x === 1);");
+        run("a");
+        assertEquals(1, Babel.getNumberOfTranspiledFiles());
+        assertEquals(0, Babel.getNumberOfCacheHits());
+        assertTrue(Files.isRegularFile(dir.resolve("_babel/main.js")));
+
+        run("a");
+        assertEquals(0, Babel.getNumberOfTranspiledFiles());
+        assertEquals(1, Babel.getNumberOfCacheHits());
+        assertEquals(0, Babel.getNumberOfWrittenFiles());
+        assertEquals(0, batches.get());
+    }
+
+    @Test
+    public void changedFileTranspiled() throws IOException {
+        write("main.js", "let x = 1; TAJS_assert(x === 1);");
+        run("a");
+        write("main.js", "let x = 2; TAJS_assert(x === 2);");
+        run("a");
+        assertEquals(1, Babel.getNumberOfTranspiledFiles());
+        assertEquals(0, Babel.getNumberOfCacheHits());
+        assertEquals("var x = 2; TAJS_assert(x === 2);", new String(Files.readAllBytes(dir.resolve("_babel/main.js")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void changedConfigurationTranspiled() throws IOException {
+        write("main.js", "let x = 1; TAJS_assert(x === 1);");
+        run("a");
+        run("b");
+        assertEquals(1, Babel.getNumberOfTranspiledFiles());
+        assertEquals(0, Babel.getNumberOfCacheHits());
+    }
+
+    @Test
+    public void otherFilesCopiedAndStaleFilesDeleted() throws IOException {
+        write("main.js", "let x = 1; TAJS_assert(x === 1);");
+        write("data/x.txt", "x");
+        write("_babel/stale/y.txt", "y");
+        run("a");
+        assertTrue(Files.isRegularFile(dir.resolve("_babel/data/x.txt")));
+        assertFalse(Files.exists(dir.resolve("_babel/stale")));
+        run("a");
+        assertEquals(0, Babel.getNumberOfWrittenFiles());
+    }
+
+    @Test
+    public void missesSplitOverWorkers() throws IOException {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().setBabelWorkers(3);
+        Babel.setTranspiler(new StandIn("a"));
+        Path realDir = dir.toRealPath();
+        Set<Path> files = newSet();
+        for (int i = 0; i < 10; i++) {
+            write("f" + i + ".js", "let x = " + i + ";");
+            files.add(realDir.resolve("f" + i + ".js"));
+        }
+        Options.get().getArguments().add(dir.resolve("f0.js"));
+        Babel.translate(realDir, files);
+        assertEquals(10, Babel.getNumberOfTranspiledFiles());
+        assertEquals(3, batches.get());
+        assertEquals(dir.resolve("_babel/f0.js"), Options.get().getArguments().get(0));
+        for (int i = 0; i < 10; i++)
+            assertEquals("var x = " + i + ";", new String(Files.readAllBytes(dir.resolve("_babel/f" + i + ".js")), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void unusedEntriesPruned() throws IOException {
+        write("main.js", "let x = 1; TAJS_assert(x === 1);");
+        run("a");
+        write("main.js", "let x = 2; TAJS_assert(x === 2);"); // the entry for the old contents is no longer used
+        run("a");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(Babel.MAX_CACHE_ENTRY_AGE_DAYS + 1));
+        try (Stream<Path> s = Files.list(dir.resolve("_babel_cache"))) {
+            for (Path p : s.collect(Collectors.toList()))
+                Files.setLastModifiedTime(p, old);
+        }
+        run("a");
+        assertEquals(1, Babel.getNumberOfCacheHits());
+        assertEquals(1, Babel.getNumberOfPrunedCacheEntries());
+        try (Stream<Path> s = Files.list(dir.resolve("_babel_cache"))) {
+            assertEquals(1, s.count());
+        }
+    }
+
+    @Test
+    public void failedBatchReportedAfterOtherBatchesFinish() throws IOException {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().setBabelWorkers(2);
+        Babel.setTranspiler(new StandIn("a") {
+            @Override
+            public void transpile(Path inputDir, List<Path> files, Path outputDir) throws IOException {
+                if (files.contains(Paths.get("f0.js")))
+                    throw new AnalysisException("Stand-in failure");
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // continue like a running Babel process
+                }
+                super.transpile(inputDir, files, outputDir);
+            }
+        });
+        Path realDir = dir.toRealPath();
+        Set<Path> files = newSet();
+        for (int i = 0; i < 2; i++) {
+            write("f" + i + ".js", "let x = " + i + ";");
+            files.add(realDir.resolve("f" + i + ".js"));
+        }
+        try {
+            Babel.translate(realDir, files);
+            fail("Expected the failure of the first batch");
+        } catch (AnalysisException e) {
+            assertEquals("Stand-in failure", e.getMessage());
+        }
+        try (Stream<Path> s = Files.list(dir.resolve("_babel_cache"))) {
+            assertFalse(s.anyMatch(p -> p.getFileName().toString().startsWith("tajs-babel-")));
+        }
+    }
+}
@@ -0,0 +1,378 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.nativeobjects.concrete.CachingNativeConcreteSemantics;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteArray;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteBoolean;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteNumber;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteRegularExpression;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteString;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteUndefined;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ConcreteValue;
+import dk.brics.tajs.analysis.nativeobjects.concrete.ECMAScriptRegExp;
+import dk.brics.tajs.analysis.nativeobjects.concrete.JavaConcreteSemantics;
+import dk.brics.tajs.analysis.nativeobjects.concrete.MappedNativeResult;
+import dk.brics.tajs.analysis.nativeobjects.concrete.NativeConcreteSemantics;
+import dk.brics.tajs.analysis.nativeobjects.concrete.NativeResult;
+import dk.brics.tajs.options.Options;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential tests of {@link JavaConcreteSemantics} against the Nashorn engine, and tests of {@link CachingNativeConcreteSemantics} and {@link ECMAScriptRegExp}.
+ */
+@SuppressWarnings("static-method")
+public class TestConcreteSemantics {
+
+    private static final NativeConcreteSemantics nashorn = JavaConcreteSemantics.makeNashornFallback();
+
+    private static final JavaConcreteSemantics java = new JavaConcreteSemantics(null);
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestConcreteSemantics");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static ConcreteValue s(String s) {
+        return new ConcreteString(s);
+    }
+
+    private static ConcreteValue n(double d) {
+        return new ConcreteNumber(d);
+    }
+
+    private static ConcreteValue u() {
+        return new ConcreteUndefined();
+    }
+
+    private static ConcreteValue r(String source, String flags, double lastIndex) {
+        return new ConcreteRegularExpression(new ConcreteString(source), new ConcreteBoolean(flags.contains("g")), new ConcreteBoolean(flags.contains("i")), new ConcreteBoolean(flags.contains("m")), new ConcreteNumber(lastIndex));
+    }
+
+    private static ConcreteValue r(String source, String flags) {
+        return r(source, flags, 0);
+    }
+
+    private static NativeResult<ConcreteValue> javaResult(String function, ConcreteValue base, ConcreteValue... args) {
+        assertTrue(function, java.isSupported(function));
+        return java.apply(function, base, Arrays.asList(args)).getResult();
+    }
+
+    /**
+     * Checks that the two engines agree on the given call.
+     */
+    private static void same(String function, ConcreteValue base, ConcreteValue... args) {
+        Assume.assumeTrue(nashorn != null);
+        NativeResult<ConcreteValue> expected = nashorn.apply(function, base, Arrays.asList(args)).getResult();
+        NativeResult<ConcreteValue> actual = javaResult(function, base, args);
+        assertEquals(describe(function, base, args), describe(expected), describe(actual));
+    }
+
+    /**
+     * Checks the result of the Java engine on the given call.
+     */
+    private static void expect(ConcreteValue expected, String function, ConcreteValue base, ConcreteValue... args) {
+        assertEquals(describe(function, base, args), describe(NativeResult.makeValue(expected)), describe(javaResult(function, base, args)));
+    }
+
+    /**
+     * Checks that the two engines agree on the given call, including the modifications of the base and the arguments.
+     */
+    private static void sameMapping(String function, ConcreteValue base, ConcreteValue... args) {
+        Assume.assumeTrue(nashorn != null);
+        MappedNativeResult<ConcreteValue> expected = nashorn.apply(function, base, Arrays.asList(args));
+        MappedNativeResult<ConcreteValue> actual = java.apply(function, base, Arrays.asList(args));
+        assertEquals(describe(function, base, args), describe(expected), describe(actual));
+    }
+
+    private static String describe(MappedNativeResult<ConcreteValue> r) {
+        String result = describe(r.getResult());
+        if (r.getResult().kind == NativeResult.Kind.VALUE && r.getResult().getValue() instanceof ConcreteArray)
+            result += " " + new TreeMap<>(((ConcreteArray) r.getResult().getValue()).getExtraProperties().entrySet().stream()
+                    .collect(Collectors.toMap(e -> e.getKey().toString(), e -> e.getValue().toSourceCode())));
+        if (!r.getMapped().isPresent())
+            return result;
+        result += " base=" + r.getMapped().get().getBase().toSourceCode() + " args=" + r.getMapped().get().getArguments().toSourceCode();
+        return result.replace("<null|undefined>", "undefined"); // Nashorn does not distinguish undefined array elements from null
+    }
+
+    private static String describe(String function, ConcreteValue base, ConcreteValue... args) {
+        return function + ".apply(" + base.toSourceCode() + ", " + Arrays.stream(args).map(ConcreteValue::toSourceCode).collect(Collectors.toList()) + ")";
+    }
+
+    private static String describe(NativeResult<ConcreteValue> r) {
+        return r.kind == NativeResult.Kind.VALUE ? r.getValue().getClass().getSimpleName() + " " + r.getValue().toSourceCode() : r.kind.toString();
+    }
+
+    @Test
+    public void numberToString() {
+        List<Double> numbers = Arrays.asList(0d, 1d, -1d, 0.1, 0.5, 1.5, -2.25, 123.456, 1 / 3d, 2 / 3d, 100d, 1e20, 1e21, 1.5e21,
+                123456789012345680000d, 0.000001, 0.0000001, 1.23e-5, Math.PI, Double.NaN, 9007199254740993d, 255d, -255d, 4294967296d);
+        for (double d : numbers) {
+            same("Number.prototype.toString", n(d));
+            same("Number.prototype.toString", n(d), n(10));
+            if (d == Math.rint(d)) {
+                same("Number.prototype.toString", n(d), n(2));
+                same("Number.prototype.toString", n(d), n(16));
+                if (Math.abs(d) < 9007199254740992d)
+                    same("Number.prototype.toString", n(d), n(36));
+            }
+            for (int f : new int[]{0, 2, 10}) {
+                same("Number.prototype.toFixed", n(d), n(f));
+                same("Number.prototype.toExponential", n(d), n(f));
+            }
+            same("Number.prototype.toFixed", n(d), n(20));
+            same("Number.prototype.toExponential", n(d));
+            for (int p : new int[]{1, 3, 15})
+                same("Number.prototype.toPrecision", n(d), n(p));
+            same("Number.prototype.toPrecision", n(d));
+        }
+        same("Number.prototype.toString", n(1), n(1));
+        same("Number.prototype.toFixed", n(1), n(-1));
+        same("Number.prototype.toPrecision", n(1), n(0));
+        same("Number.prototype.toString", s("1"));
+    }
+
+    @Test
+    public void numberToStringSpecification() {
+        expect(s("1e-7"), "Number.prototype.toString", n(1e-7));
+        expect(s("1.2345e-10"), "Number.prototype.toString", n(1.2345e-10));
+        expect(s("5e-324"), "Number.prototype.toString", n(Double.MIN_VALUE));
+        expect(s("1.7976931348623157e+308"), "Number.prototype.toString", n(Double.MAX_VALUE));
+        expect(s("1.00"), "Number.prototype.toFixed", n(1.005), n(2)); // 1.005 is slightly below 1.005
+        expect(s("0.1000000000000000055511151"), "Number.prototype.toFixed", n(0.1), n(25)); // exact digits up to 100 are allowed
+        expect(s("1.00000000000000005551e-1"), "Number.prototype.toExponential", n(0.1), n(20)); // Nashorn gives 1.00000000000000000000e-1
+        expect(s("4.3e+0"), "Number.prototype.toExponential", n(4.35), n(1)); // Nashorn gives 4.4e+0
+        expect(s("1.3e+1"), "Number.prototype.toExponential", n(12.5), n(1)); // ties are rounded up
+    }
+
+    @Test
+    public void strings() {
+        List<String> strings = Arrays.asList("", "abc", "  a \t\n", "a,b,,c", "ßé");
+        List<ConcreteValue> numbers = Arrays.asList(u(), n(-5), n(0), n(1), n(2.7), n(10), n(Double.NaN), s("1"));
+        for (String str : strings) {
+            ConcreteValue base = s(str);
+            for (String f : Arrays.asList("toLowerCase", "toUpperCase", "trim", "trimLeft", "trimRight"))
+                same("String.prototype." + f, base);
+            for (ConcreteValue i : numbers) {
+                same("String.prototype.charAt", base, i);
+                same("String.prototype.charCodeAt", base, i);
+                same("String.prototype.indexOf", base, s("a"), i);
+                same("String.prototype.lastIndexOf", base, s("a"), i);
+                same("String.prototype.indexOf", base, s(""), i);
+                same("String.prototype.lastIndexOf", base, s(""), i);
+                same("String.prototype.split", base, s(","), i);
+                same("String.prototype.split", base, s(""), i);
+                for (ConcreteValue j : Arrays.asList(u(), n(-1), n(2))) {
+                    same("String.prototype.slice", base, i, j);
+                    same("String.prototype.substring", base, i, j);
+                    same("String.prototype.substr", base, i, j);
+                }
+            }
+            same("String.prototype.split", base);
+            same("String.prototype.split", base, s(","));
+            same("String.prototype.split", base, s("a"));
+            same("String.prototype.concat", base, s("x"), n(1.5), u());
+            same("String.prototype.replace", base, s("a"), s("[$&|$`|$'|$$|$1]"));
+            same("String.prototype.replace", base, s(""), s("-"));
+        }
+        same("String.prototype.charAt", u(), n(0));
+        same("String.fromCharCode", u());
+        same("String.fromCharCode", u(), n(65), n(66.9), n(65536 + 67), s("68"), n(-1));
+        expect(new ConcreteBoolean(true), "String.prototype.startsWith", s("abc"), s("bc"), n(1));
+        expect(new ConcreteBoolean(false), "String.prototype.startsWith", s("abc"), s("a"), n(1));
+        expect(new ConcreteBoolean(true), "String.prototype.endsWith", s("abc"), s("ab"), n(2));
+        expect(new ConcreteBoolean(true), "String.prototype.endsWith", s("abc"), s(""), n(-1));
+        expect(s("\uD83D\uDE00a"), "String.fromCodePoint", u(), n(0x1F600), s("97"));
+        assertEquals(NativeResult.makeException(), javaResult("String.fromCodePoint", u(), n(1.5)));
+    }
+
+    @Test
+    public void globals() {
+        for (String str : Arrays.asList("", "42", "  -42px", "0x1F", "-0x1f", "1e3", "3.14abc", ".5", "-.5e-2", "Infinity", "-Infinity", "abc", "12345678901234567890123", "0b11", "077", "1.", "+1e")) {
+            same("parseFloat", u(), s(str));
+            same("parseInt", u(), s(str));
+            for (int radix : new int[]{0, 1, 2, 8, 10, 16, 36, 37})
+                if (str.length() < 15 || radix == 10) // Nashorn approximates large values with radix 36
+                    same("parseInt", u(), s(str), n(radix));
+        }
+        same("parseInt", u(), n(1e21));
+        same("parseFloat", u(), u());
+        for (String str : Arrays.asList("", "abc", "a b&c=d/e?f#g", "æøå", "€", "😀", "-_.!~*'()", ";/?:@&=+$,#", "\uD800")) {
+            same("encodeURI", u(), s(str));
+            same("encodeURIComponent", u(), s(str));
+            same("escape", u(), s(str));
+        }
+        for (String str : Arrays.asList("", "abc", "%41%42", "%3B%2F%3f%23", "%C3%A6", "%E2%82%AC", "%F0%9F%98%80", "%", "%4", "%ZZ", "%C3", "%C0%80", "%ED%A0%80", "%u00E6", "%u00", "%E6")) {
+            same("decodeURI", u(), s(str));
+            same("decodeURIComponent", u(), s(str));
+            same("unescape", u(), s(str));
+        }
+    }
+
+    @Test
+    public void regExpExec() {
+        String[][] cases = {
+                {"a.c", "", "xabcx a\nc"},
+                {"^b", "m", "a\nb"},
+                {"^b", "", "a\nb"},
+                {"a$", "m", "a\rb"},
+                {"\\s+", "", "x \u00A0\uFEFF\u2028y"},
+                {"[\\S]+", "", " ab "},
+                {"\\bfoo\\B", "", "a foox"},
+                {"(a)|(b)", "", "b"},
+                {"(a)\\1{2}", "", "aaa"},
+                {"[^]", "", "\n"},
+                {"a[]", "", "a"},
+                {"[\\b]", "", "\b"},
+                {"a{,2}", "", "a{,2}"},
+                {"x{2}", "", "xxx"},
+                {"a]b}", "", "a]b}"},
+                {"\\x4\\u12g", "", "x4u12g"},
+                {"\\cJ\\c1", "", "\n\\c1"},
+                {"\\101\\08", "", "A\u00008"},
+                {"[\\101-\\103]+", "", "ABCD"},
+                {"\\q\\/", "", "q/"},
+                {"ABC", "i", "xabc"},
+                {"[a-z]+", "i", "12XyZ"},
+                {"a*?", "", "aaa"},
+                {"(?=a)a(?!b)", "", "ab aa"},
+                {"[&&a]+", "", "a&&"},
+                {"\\d+", "g", "a12b345"},
+        };
+        for (String[] c : cases) {
+            ConcreteValue regexp = r(c[0], c[1], 0);
+            ConcreteValue str = s(c[2].replace("\\n", "\n").replace("\\r", "\r").replace("\\b", "\b"));
+            sameMapping("RegExp.prototype.exec", regexp, str);
+            sameMapping("RegExp.prototype.test", regexp, str);
+        }
+        sameMapping("RegExp.prototype.exec", r("\\d+", "g", 3), s("a12b345"));
+        sameMapping("RegExp.prototype.exec", r("\\d+", "g", 8), s("a12b345"));
+        sameMapping("RegExp.prototype.exec", r("\\d+", "", 3), s("a12b345"));
+        same("RegExp.prototype.toString", r("a\\/b", "gim"));
+        // Nashorn fails to match backreferences to groups that did not participate
+        expect(new ConcreteArray(Arrays.asList(s("b"), u()), new HashMap<>()), "RegExp.prototype.exec", r("(a)?b\\1", ""), s("b"));
+        expect(r("a\\/b", "gi"), "RegExp", u(), s("a/b"), s("gi")); // Nashorn does not escape slashes
+        same("RegExp", u(), s(""));
+        same("RegExp", u(), s("a"), s("gg"));
+    }
+
+    @Test
+    public void regExpStrings() {
+        sameMapping("String.prototype.match", s("a12b345"), r("\\d+", "g", 2));
+        sameMapping("String.prototype.match", s("a12b345"), r("(\\d)(\\d)", ""));
+        sameMapping("String.prototype.match", s("abc"), r("x", "g"));
+        sameMapping("String.prototype.match", s("abc"), r("(?:)", "g"));
+        sameMapping("String.prototype.match", s("a.c"), s("."));
+        sameMapping("String.prototype.replace", s("John Smith"), r("(\\w+)\\s(\\w+)", ""), s("$2, $1 $$ $& $` $' $3 $01 $10"));
+        sameMapping("String.prototype.replace", s("aaa"), r("a", "g", 2), s("[$&]"));
+        sameMapping("String.prototype.replace", s("a(b)c"), r("[\\-\\[\\]\\/\\{\\}\\(\\)\\*\\+\\?\\.\\\\\\^\\$\\|]", "g"), s("\\$&"));
+        expect(s("-a-b-c-"), "String.prototype.replace", s("abc"), r("(?:)", "g"), s("-"));
+        expect(n(2), "String.prototype.search", s("abcabc"), r("c", "g", 4)); // Nashorn starts from lastIndex
+        sameMapping("String.prototype.search", s("abc"), u());
+        sameMapping("String.prototype.split", s("ab"), r("(?:)", ""));
+        sameMapping("String.prototype.split", s("a1b22c"), r("(\\d)+", ""));
+        sameMapping("String.prototype.split", s("a,b,,c"), r(",", ""), n(2));
+        sameMapping("String.prototype.split", s(""), r("(?:)", ""));
+        sameMapping("String.prototype.split", s(""), r("x", ""));
+        sameMapping("String.prototype.split", s("A<B>bold</B>and<CODE>coded</CODE>"), r("<(\\/)?([^<>]+)>", ""));
+    }
+
+    @Test
+    public void regExpCache() {
+        ECMAScriptRegExp re = ECMAScriptRegExp.get("a(b)", false, false);
+        assertTrue(re == ECMAScriptRegExp.get("a(b)", false, false));
+        assertTrue(re != ECMAScriptRegExp.get("a(b)", true, false));
+        assertEquals(1, re.getGroupCount());
+        assertEquals(1, ECMAScriptRegExp.getNumberOfHits());
+        assertEquals(2, ECMAScriptRegExp.getNumberOfMisses());
+        assertNull(ECMAScriptRegExp.get("(?<=a)b", false, false)); // lookbehind
+        assertNull(ECMAScriptRegExp.get("(a\\1)", false, false)); // reference to an enclosing group
+        assertNull(ECMAScriptRegExp.get("\\2(a)(b)", false, false)); // reference to a later group
+        assertNull(ECMAScriptRegExp.get("a**", false, false)); // syntax error
+        assertNull(ECMAScriptRegExp.get("(?<=a)b", false, false));
+        assertEquals(2, ECMAScriptRegExp.getNumberOfHits());
+        for (int i = 0; i < 1100; i++)
+            ECMAScriptRegExp.get("x" + i, false, false);
+        assertEquals(1000, ECMAScriptRegExp.getSize());
+        assertTrue(ECMAScriptRegExp.getNumberOfEvictions() > 0);
+    }
+
+    @Test
+    public void unsupportedWithoutFallback() {
+        assertEquals(NativeResult.Kind.NON_CONCRETE, java.apply("String.prototype.localeCompare", s("a"), Arrays.asList(s("b"))).getResult().kind);
+        assertEquals(NativeResult.Kind.NON_CONCRETE, java.eval("1 + 1").kind);
+        assertEquals(NativeResult.Kind.NON_CONCRETE, java.apply("Number.prototype.toString", n(0.5), Arrays.asList(n(2))).getResult().kind);
+    }
+
+    @Test
+    public void cacheIsBounded() {
+        CachingNativeConcreteSemantics cache = new CachingNativeConcreteSemantics(java, 2);
+        cache.apply("String.prototype.charAt", s("abc"), Arrays.asList(n(0)));
+        cache.apply("String.prototype.charAt", s("abc"), Arrays.asList(n(1)));
+        cache.apply("String.prototype.charAt", s("abc"), Arrays.asList(n(0))); // hit, n(1) becomes least recently used
+        cache.apply("String.prototype.charAt", s("abc"), Arrays.asList(n(2))); // evicts n(1)
+        cache.apply("String.prototype.charAt", s("abc"), Arrays.asList(n(0))); // hit
+        assertEquals(2, cache.getNumberOfHits());
+        assertEquals(3, cache.getNumberOfMisses());
+        assertEquals(1, cache.getNumberOfEvictions());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void cachePersistence() throws IOException {
+        Path file = Files.createTempFile("concrete-cache", ".bin");
+        try {
+            CachingNativeConcreteSemantics cache = new CachingNativeConcreteSemantics(java);
+            NativeResult<ConcreteValue> split = cache.apply("String.prototype.split", s("a,b"), Arrays.asList(s(","))).getResult();
+            NativeResult<ConcreteValue> exception = cache.apply("Number.prototype.toFixed", n(1), Arrays.asList(n(-1))).getResult();
+            cache.apply("String.prototype.localeCompare", s("a"), Arrays.asList(s("b"))); // non-concrete, not saved
+            cache.save(file);
+            CachingNativeConcreteSemantics loaded = new CachingNativeConcreteSemantics(new JavaConcreteSemantics(null) {
+                @Override
+                public MappedNativeResult<ConcreteValue> apply(String functionName, ConcreteValue base, List<ConcreteValue> arguments) {
+                    throw new AssertionError("Unexpected evaluation of " + functionName);
+                }
+            });
+            loaded.load(file);
+            assertEquals(2, loaded.getSize());
+            assertEquals(split, loaded.apply("String.prototype.split", s("a,b"), Arrays.asList(s(","))).getResult());
+            assertEquals(exception, loaded.apply("Number.prototype.toFixed", n(1), Arrays.asList(n(-1))).getResult());
+            assertEquals(2, loaded.getNumberOfHits());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void cacheSaveFailureIgnored() throws IOException {
+        Path file = Files.createTempFile("concrete-cache", ".bin");
+        try {
+            CachingNativeConcreteSemantics cache = new CachingNativeConcreteSemantics(java);
+            cache.apply("String.prototype.split", s("a,b"), Arrays.asList(s(",")));
+            cache.save(file.resolve("cache.bin")); // the parent is not a directory
+            assertEquals(1, cache.getSize());
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.jsnodes.ReadVariableNode;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Set;
+
+import static dk.brics.tajs.util.Collections.addToMapSet;
+import static dk.brics.tajs.util.Collections.newMap;
+import static org.junit.Assert.assertEquals;
+
+public class TestContextBudget {
+
+    private final String threeObjects = "var a = {v: 42}; var b = {v: 87}; var c = {v: 13};";
+
+    private final String objectSensitiveFunction = "function f(){ return this.v; } a.f = f; b.f = f; c.f = f;";
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    @Test
+    public void withinBudget() {
+        Options.get().setContextBudget(3);
+        Misc.runSource("", //
+                threeObjects, //
+                objectSensitiveFunction, //
+                "TAJS_assert(a.f() == 42);", //
+                "TAJS_assert(b.f() == 87);", //
+                "TAJS_assert(c.f() == 13);"
+        );
+    }
+
+    @Test
+    public void exceedsBudget() {
+        Options.get().setContextBudget(1);
+        Misc.runSource("", //
+                threeObjects, //
+                objectSensitiveFunction, //
+                "TAJS_assert(a.f() == 42);", // first context is kept
+                "b.f();", //
+                "TAJS_assert(c.f(), 'isMaybeSingleNum', false);" // merged with the call on b
+        );
+    }
+
+    @Test
+    public void callWithinBudgetKeepsHeapContexts() {
+        Options.get().enableDeterminacy();
+        Options.get().setContextBudget(1);
+        Map<String, Set<Context>> heapContexts = newMap();
+        Misc.runSource(new String[]{
+                "function f(v){ return arguments; }",
+                "var a1 = f('a');", // first context is kept
+                "f('b');", // merged
+                "var a2 = f('a');", // same context as the first call
+                "a1; a2;"
+        }, new DefaultAnalysisMonitoring() {
+            @Override
+            public void visitReadVariable(ReadVariableNode n, Value v, State state) {
+                v.getObjectLabels().forEach(l -> addToMapSet(heapContexts, n.getVariableName(), l.getHeapContext()));
+            }
+        });
+        assertEquals(heapContexts.get("a1"), heapContexts.get("a2"));
+    }
+}
@@ -0,0 +1,114 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.CustomContextSensitivityStrategy;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.lattice.Context;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static dk.brics.tajs.util.Collections.newSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks canonicalization, IDs and string representations of contexts, and the context statistics of the custom context sensitivity.
+ */
+public class TestContextInterning {
+
+    private static final String CUSTOM = CustomContextSensitivityStrategy.class.getSimpleName();
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static Context make(String parameter, double argument) {
+        return Context.make(null, Collections.singletonList(parameter), Collections.singletonList(Value.makeNum(argument)), Collections.singletonMap("x", Value.makeStr("v")));
+    }
+
+    @Test
+    public void equalContextsInterned() {
+        int created = Context.getNumberOfContextsCreated();
+        int reused = Context.getNumberOfContextsReused();
+        Context c1 = make("a", 1);
+        Context c2 = make("a", 1);
+        assertSame(c1, c2);
+        assertEquals(c1.getId(), c2.getId());
+        assertEquals(created + 1, Context.getNumberOfContextsCreated());
+        assertEquals(reused + 1, Context.getNumberOfContextsReused());
+    }
+
+    @Test
+    public void equalComponentsInterned() {
+        Context c1 = Context.make(null, Arrays.asList("a", "b"), Arrays.asList(Value.makeNum(1), Value.makeNum(2)), null);
+        Context c2 = Context.make(null, Arrays.asList("a", "b"), Arrays.asList(Value.makeNum(1), Value.makeNum(3)), null);
+        assertSame(c1.getParameterNames(), c2.getParameterNames());
+    }
+
+    @Test
+    public void differentContextsDistinctIds() {
+        int created = Context.getNumberOfContextsCreated();
+        Context c1 = make("a", 1);
+        Context c2 = make("a", 2);
+        Context c3 = make("b", 1);
+        Context empty = Context.makeEmpty(); // already made when resetting
+        assertEquals(created + 3, Context.getNumberOfContextsCreated());
+        Set<Integer> ids = newSet();
+        for (Context c : Arrays.asList(c1, c2, c3, empty)) {
+            assertTrue(c.getId() >= 0 && c.getId() < Context.getNumberOfContextsCreated());
+            ids.add(c.getId());
+        }
+        assertEquals(4, ids.size());
+    }
+
+    @Test
+    public void cachedString() {
+        Context c1 = make("a", 1);
+        String s = c1.toString();
+        assertSame(s, c1.toString());
+        Main.reset(); // clears the canonicalizer, so the next context is a new instance with a freshly computed string
+        Options.get().enableTest();
+        Context c2 = make("a", 1);
+        assertNotSame(c1, c2);
+        assertEquals(s, c2.toString());
+    }
+
+    private static CustomContextSensitivityStrategy run(String... src) {
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.runSource(src, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        return c.get().getAnalysis().getContextSensitivityStrategy();
+    }
+
+    @Test
+    public void strategyStatistics() {
+        String f = "TAJS_makeContextSensitive(f, 0); function f(a) { return a; }";
+        CustomContextSensitivityStrategy once = run(f, "f(1);");
+        Main.reset();
+        Options.get().enableTest();
+        CustomContextSensitivityStrategy same = run(f, "f(1);", "f(1);");
+        Main.reset();
+        Options.get().enableTest();
+        CustomContextSensitivityStrategy different = run(f, "f(1);", "f(2);");
+        assertTrue(once.getNumberOfNewContexts(CUSTOM) > 0);
+        assertEquals(once.getNumberOfNewContexts(CUSTOM), same.getNumberOfNewContexts(CUSTOM));
+        assertTrue(same.getNumberOfReusedContexts(CUSTOM) > once.getNumberOfReusedContexts(CUSTOM));
+        assertTrue(different.getNumberOfNewContexts(CUSTOM) > once.getNumberOfNewContexts(CUSTOM));
+    }
+}
@@ -0,0 +1,67 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.InitialStateBuilder;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.analysis.dom.html.HTMLDivElement;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestDOMHostObjects {
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    /**
+     * Runs the test page and returns the object labels in the store of the initial state.
+     */
+    private static Set<ObjectLabel> run() {
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.run("test-resources/src/micro/hostobjects.html", new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        State initial = c.get().getAnalysisLatticeElement().getStates(c.get().getFlowGraph().getMain().getEntry()).values().iterator().next();
+        return initial.getStore().keySet();
+    }
+
+    @Test
+    public void domObjectsNotInInitialState() {
+        Set<ObjectLabel> objlabels = run();
+        assertTrue(State.getNumberOfHostObjects() > 0);
+        assertTrue(objlabels.contains(InitialStateBuilder.GLOBAL));
+        assertTrue(objlabels.contains(InitialStateBuilder.OBJECT_PROTOTYPE));
+        assertFalse(objlabels.contains(HTMLDivElement.CONSTRUCTOR));
+        assertFalse(objlabels.contains(HTMLDivElement.PROTOTYPE));
+    }
+
+    @Test
+    public void domObjectsMaterializedOnWrite() {
+        Options.get().enableNoLazy();
+        run();
+        assertTrue(State.getNumberOfHostObjectsMaterialized() > 0);
+        assertTrue(State.getNumberOfHostObjectsMaterialized() < State.getNumberOfHostObjects());
+    }
+
+    @Test
+    public void noHostObjectsWithoutDOM() {
+        Misc.runSource("var x = 1;");
+        assertEquals(0, State.getNumberOfHostObjects());
+    }
+}
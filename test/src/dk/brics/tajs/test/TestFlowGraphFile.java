@@ -0,0 +1,144 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.js2flowgraph.FlowGraphFile;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TestFlowGraphFile {
+
+    private static final String[] PROGRAM = {
+            "function f(x) { if (x) { return x + 1; } else { try { throw x; } catch (e) { return 0; } } }",
+            "var o = { g: function() { return f(2); } };",
+            "TAJS_assertEquals(3, o.g());"
+    };
+
+    private Path file;
+
+    @Before
+    public void before() throws IOException {
+        file = Files.createTempFile("tajs-flowgraph", ".bin");
+        Files.delete(file);
+    }
+
+    @After
+    public void after() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Runs the analysis with the flow graph file and returns a description of the flow graph.
+     */
+    private String run(String[] program) {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().setFlowGraphFile(file);
+        AtomicReference<String> d = new AtomicReference<>();
+        Misc.runSource(program, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                d.set(describe(solver_interface.getFlowGraph())); // before the analysis adds code
+            }
+        });
+        return d.get();
+    }
+
+    private static String describe(FlowGraph fg) {
+        StringBuilder b = new StringBuilder();
+        b.append(fg.getNumberOfBlocks()).append(" ").append(fg.getNumberOfNodes()).append("\n");
+        for (Function f : fg.getFunctions().stream().sorted(Comparator.comparingInt(Function::getIndex)).collect(Collectors.toList())) {
+            b.append(f.getIndex()).append(" ").append(f).append(" ").append(f.getSourceLocation())
+                    .append(" entry=").append(f.getEntry().getIndex()).append(" exit=").append(f.getOrdinaryExit().getIndex()).append("\n");
+            for (BasicBlock k : f.getBlocks()) {
+                b.append("  ").append(k.getIndex())
+                        .append(" handler=").append(k.getExceptionHandler() != null ? k.getExceptionHandler().getIndex() : -1)
+                        .append(" -> ").append(k.getSuccessors().stream().map(BasicBlock::getIndex).sorted().collect(Collectors.toList())).append("\n");
+                for (AbstractNode n : k.getNodes())
+                    b.append("    ").append(n.getIndex()).append(" ").append(n).append(" ").append(n.getSourceLocation()).append("\n");
+            }
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void savedAndLoaded() {
+        String built = run(PROGRAM);
+        assertEquals(0, FlowGraphFile.getNumberOfLoads());
+        assertEquals(1, FlowGraphFile.getNumberOfSaves());
+        assertTrue(Files.exists(file));
+        String loaded = run(PROGRAM);
+        assertEquals(1, FlowGraphFile.getNumberOfLoads());
+        assertEquals(0, FlowGraphFile.getNumberOfSaves());
+        assertEquals(built, loaded);
+    }
+
+    @Test
+    public void rebuiltWhenSourceChanges() {
+        String built = run(PROGRAM);
+        String[] changed = PROGRAM.clone();
+        changed[2] = "TAJS_assertEquals(3, o.g()); var z = 1;";
+        String rebuilt = run(changed);
+        assertEquals(0, FlowGraphFile.getNumberOfLoads());
+        assertEquals(1, FlowGraphFile.getNumberOfSaves());
+        assertNotEquals(built, rebuilt);
+    }
+
+    @Test
+    public void corruptFile() throws IOException {
+        String built = run(PROGRAM);
+        byte[] data = Files.readAllBytes(file);
+        data[data.length / 2] ^= 0x55;
+        Files.write(file, data);
+        assertEquals(built, run(PROGRAM));
+        assertEquals(0, FlowGraphFile.getNumberOfLoads());
+        assertEquals(1, FlowGraphFile.getNumberOfSaves());
+    }
+
+    @Test
+    public void rejectedWithLazyTranslation() {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().setFlowGraphFile(file);
+        Options.get().enableLazyTranslation();
+        try {
+            Misc.runSource(PROGRAM);
+            fail("Expected the options to be rejected");
+        } catch (AnalysisException e) {
+            assertTrue(e.getMessage().contains("-flowgraph-file and -lazy-translation are not allowed together"));
+        }
+        assertEquals(0, FlowGraphFile.getNumberOfSaves());
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    public void writeFailureIgnored() throws IOException {
+        Files.createFile(file);
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().setFlowGraphFile(file.resolve("flowgraph.bin")); // the parent is not a directory
+        Misc.runSource(PROGRAM);
+        assertEquals(0, FlowGraphFile.getNumberOfSaves());
+    }
+}
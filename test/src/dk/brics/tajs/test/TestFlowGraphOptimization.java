@@ -0,0 +1,120 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode;
+import dk.brics.tajs.flowgraph.jsnodes.UnaryOperatorNode;
+import dk.brics.tajs.js2flowgraph.FlowGraphOptimizer;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestFlowGraphOptimization {
+
+    private static final String[] PROGRAM = {
+            "var a = 1 + 2 * 3;",
+            "var s = 'a' + 'b';",
+            "var b = !0;",
+            "var c = -(4 - 5);",
+            "function f(x) { var y = 1; y; if (x === 1 && !s) { return 0; } if (x) { return x + a; } else { return s; } }",
+            "TAJS_assertEquals(7, a);",
+            "TAJS_assertEquals('ab', s);",
+            "TAJS_assertEquals(true, b);",
+            "TAJS_assertEquals(1, c);",
+            "TAJS_assertEquals(8, f(1));"
+    };
+
+    private static int nodes;
+
+    private static int blocks;
+
+    private static FlowGraph run(boolean optimize) {
+        Main.reset();
+        Options.get().enableTest();
+        if (optimize)
+            Options.get().enableFlowgraphOptimization();
+        AtomicReference<FlowGraph> fg = new AtomicReference<>();
+        Misc.runSource(PROGRAM, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                fg.set(solver_interface.getFlowGraph());
+                nodes = fg.get().getNumberOfNodes(); // before the analysis adds code
+                blocks = fg.get().getNumberOfBlocks();
+            }
+        });
+        return fg.get();
+    }
+
+    /**
+     * Returns the nodes of the user functions.
+     */
+    private static List<AbstractNode> getUserNodes(FlowGraph fg) {
+        return fg.getFunctions().stream()
+                .filter(f -> !fg.isHostEnvironmentSource(f.getSourceLocation()))
+                .flatMap(f -> f.getBlocks().stream())
+                .flatMap(b -> b.getNodes().stream())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void smallerFlowGraph() {
+        run(false);
+        int plainNodes = nodes;
+        int plainBlocks = blocks;
+        run(true);
+        assertTrue(nodes < plainNodes);
+        assertTrue(blocks < plainBlocks);
+        assertTrue(FlowGraphOptimizer.getNumberOfNodesAfter() < FlowGraphOptimizer.getNumberOfNodesBefore());
+        assertTrue(FlowGraphOptimizer.getNumberOfBlocksAfter() < FlowGraphOptimizer.getNumberOfBlocksBefore());
+        assertTrue(FlowGraphOptimizer.getNumberOfEdgesAfter() < FlowGraphOptimizer.getNumberOfEdgesBefore());
+        assertTrue(FlowGraphOptimizer.getNumberOfRegistersAfter() <= FlowGraphOptimizer.getNumberOfRegistersBefore());
+    }
+
+    @Test
+    public void constantsFolded() {
+        List<AbstractNode> nodes = getUserNodes(run(true));
+        List<String> constants = nodes.stream().map(AbstractNode::toString).filter(s -> s.startsWith("constant[")).collect(Collectors.toList());
+        assertTrue(constants.stream().anyMatch(s -> s.startsWith("constant[7.0,")));
+        assertTrue(constants.stream().anyMatch(s -> s.startsWith("constant[\"ab\",")));
+        assertTrue(constants.stream().anyMatch(s -> s.startsWith("constant[true,")));
+        assertTrue(constants.stream().anyMatch(s -> s.startsWith("constant[1.0,")));
+        assertEquals(1, nodes.stream().filter(n -> n instanceof UnaryOperatorNode).count()); // !s
+        assertEquals(2, nodes.stream().filter(n -> n instanceof BinaryOperatorNode).count()); // x === 1 and x + a
+    }
+
+    @Test
+    public void indicesDense() {
+        FlowGraph fg = run(true);
+        int block = 0;
+        int node = 0;
+        for (Function f : fg.getFunctions())
+            for (BasicBlock b : f.getBlocks()) {
+                assertTrue(b.getIndex() < fg.getNumberOfBlocks());
+                block++;
+                for (AbstractNode n : b.getNodes()) {
+                    assertTrue(n.getIndex() < fg.getNumberOfNodes());
+                    node++;
+                }
+            }
+        assertEquals(fg.getNumberOfBlocks(), block);
+        assertEquals(fg.getNumberOfNodes(), node);
+    }
+
+    @Test
+    public void disabledByDefault() {
+        run(false);
+        assertEquals(0, FlowGraphOptimizer.getNumberOfNodesBefore());
+        assertEquals(0, FlowGraphOptimizer.getNumberOfNodesAfter());
+    }
+}
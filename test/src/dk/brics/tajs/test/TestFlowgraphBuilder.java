@@ -1,13 +1,33 @@
 package dk.brics.tajs.test;
 
 import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.JavaScriptSource;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.SourceLocation.SourceLocationMaker;
+import dk.brics.tajs.js2flowgraph.FlowGraphBuilder;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisLimitationException;
 import dk.brics.tajs.util.AnalysisResultException;
+import dk.brics.tajs.util.Loader;
+import dk.brics.tajs.util.Pair;
 import dk.brics.tajs.util.ParseError;
+import dk.brics.tajs.util.PathAndURLUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static dk.brics.tajs.util.Collections.newList;
+import static org.junit.Assert.assertEquals;
+
 @SuppressWarnings("static-method")
 public class TestFlowgraphBuilder {
 
@@ -1892,6 +1912,50 @@ public class TestFlowgraphBuilder {
         );
         Misc.checkSystemOutput();
     }
-}
 
+    @Test
+    public void flowgraphbuilder_parallelParsing() throws Exception {
+        String[] files = {
+                "test-resources/src/flowgraphbuilder/flowgraph_builder0000.js",
+                "test-resources/src/flowgraphbuilder/flowgraph_builder0001.js",
+                "test-resources/src/flowgraphbuilder/flowgraph_builder0002.js",
+                "test-resources/src/flowgraphbuilder/flowgraph_builder0003.js"
+        };
+        FlowGraphBuilder sequential = FlowGraphBuilder.makeForMain(new SourceLocation.SyntheticLocationMaker("main"));
+        for (String file : files) {
+            URL url = PathAndURLUtils.toURL(Paths.get(file));
+            sequential.transformStandAloneCode(Loader.getString(url, StandardCharsets.UTF_8), new SourceLocation.StaticLocationMaker(url));
+        }
+        String expected = describe(sequential.close());
+        Main.reset();
+        Options.get().enableTestFlowGraphBuiler();
+        FlowGraphBuilder parallel = FlowGraphBuilder.makeForMain(new SourceLocation.SyntheticLocationMaker("main"));
+        List<Pair<JavaScriptSource, SourceLocationMaker>> sources = newList();
+        for (String file : files) {
+            URL url = PathAndURLUtils.toURL(Paths.get(file));
+            sources.add(Pair.make(JavaScriptSource.makeFileCode(Loader.getString(url, StandardCharsets.UTF_8)), new SourceLocation.StaticLocationMaker(url)));
+        }
+        parallel.transformWebAppCode(sources);
+        assertEquals(expected, describe(parallel.close()));
+    }
 
+    @Test(expected = ParseError.class)
+    public void flowgraphbuilder_parallelParsingError() {
+        FlowGraphBuilder builder = FlowGraphBuilder.makeForMain(new SourceLocation.SyntheticLocationMaker("main"));
+        builder.transformWebAppCode(Arrays.asList(
+                Pair.make(JavaScriptSource.makeFileCode("var x = 1;"), new SourceLocation.SyntheticLocationMaker("a")),
+                Pair.make(JavaScriptSource.makeFileCode("var y = ;"), new SourceLocation.SyntheticLocationMaker("b"))));
+    }
+
+    private static String describe(FlowGraph fg) {
+        List<Function> functions = newList(fg.getFunctions());
+        functions.sort(Comparator.comparingInt(Function::getIndex));
+        StringBuilder b = new StringBuilder();
+        for (Function f : functions) {
+            b.append(f).append(" ").append(f.getSourceLocation()).append("\n");
+            for (BasicBlock k : f.getBlocks())
+                b.append("  ").append(k).append(" -> ").append(k.getSuccessors()).append("\n");
+        }
+        return b.toString();
+    }
+}
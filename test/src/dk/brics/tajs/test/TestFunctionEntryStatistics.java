@@ -0,0 +1,59 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the counts of how call edge flow affects function entry states (the main function counts as one changed entry state).
+ */
+public class TestFunctionEntryStatistics {
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static Solver.SolverInterface run(String... src) {
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.runSource(src, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        return c.get();
+    }
+
+    @Test
+    public void singleCall() {
+        Solver.SolverInterface c = run("function f(x){ return x; }", "f(1);");
+        assertEquals(2, c.getNumberOfChangedEntryStates());
+        assertEquals(0, c.getNumberOfUnchangedEntryStates());
+        assertEquals(0, c.getNumberOfSubsumedEdgeStates());
+    }
+
+    @Test
+    public void equalEntryStates() {
+        Solver.SolverInterface c = run("function f(x){ return x; }", "f(1);", "f(1);");
+        assertEquals(2, c.getNumberOfChangedEntryStates());
+        assertEquals(1, c.getNumberOfUnchangedEntryStates());
+        assertEquals(0, c.getNumberOfSubsumedEdgeStates());
+    }
+
+    @Test
+    public void repeatedCallEdge() {
+        Solver.SolverInterface c = run("function f(){ return 1; }", "while (Math.random()) { f(); }");
+        assertEquals(2, c.getNumberOfChangedEntryStates());
+        assertEquals(0, c.getNumberOfUnchangedEntryStates());
+        assertEquals(1, c.getNumberOfSubsumedEdgeStates());
+    }
+}
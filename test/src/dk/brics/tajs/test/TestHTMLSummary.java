@@ -0,0 +1,65 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.HTMLSummary;
+import dk.brics.tajs.flowgraph.JavaScriptSource;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.js2flowgraph.HTMLParser;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestHTMLSummary {
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private static HTMLParser parse(String... html) {
+        return new HTMLParser(String.join("\n", html), null, new SourceLocation.SyntheticLocationMaker("html"));
+    }
+
+    private static List<String> describe(HTMLSummary summary) {
+        return summary.getElements().stream()
+                .map(e -> e.getTagName() + "#" + e.getId() + "/" + e.getName())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    public void elementsSummarized() {
+        HTMLParser p = parse(
+                "<html><head><script>var x = 1;</script></head>",
+                "<body onload='x = 2;'>",
+                "<div id='a'><div><div></div></div></div>",
+                "<p>one</p><p>two</p><p id='b' name='c'>three</p>",
+                "<input name='d'>",
+                "</body></html>");
+        HTMLSummary summary = p.getSummary();
+        assertEquals(11, summary.getNumberOfElements());
+        assertEquals(Arrays.asList(
+                "html#null/null",
+                "head#null/null",
+                "script#null/null",
+                "body#null/null",
+                "div#a/null",
+                "p#null/null",
+                "p#b/c",
+                "input#null/d"), describe(summary));
+        List<JavaScriptSource.Kind> kinds = p.getJavaScript().stream().map(js -> js.getSecond().getKind()).collect(Collectors.toList());
+        assertEquals(Arrays.asList(JavaScriptSource.Kind.EMBEDDED, JavaScriptSource.Kind.EVENTHANDLER), kinds);
+    }
+
+    @Test
+    public void elementsWithSameIdKept() {
+        HTMLSummary summary = parse("<div id='x'></div><span id='x'></span><div id='x'></div>").getSummary();
+        assertEquals(Arrays.asList("div#x/null", "span#x/null", "div#x/null"), describe(summary));
+    }
+}
@@ -0,0 +1,114 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.js2flowgraph.HostEnvFunctionCache;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestHostEnvFunctionCache {
+
+    private Path dir;
+
+    @Before
+    public void before() throws IOException {
+        HostEnvFunctionCache.clear();
+        dir = Files.createTempDirectory("flowgraph-cache");
+    }
+
+    @After
+    public void after() throws IOException {
+        HostEnvFunctionCache.clear();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Runs the analysis with the polyfills loaded and returns a description of the final flow graph.
+     */
+    private static String run(Path dir) {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().enablePolyfillMDN();
+        Options.get().enablePolyfillES6Collections();
+        Options.get().enablePolyfillTypedArrays();
+        Options.get().setFlowGraphCacheDirectory(dir);
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.runSource(new String[]{
+                "var s = 'a,b'.split(',');",
+                "TAJS_assertEquals(2, s.length);"
+        }, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        return describe(c.get().getFlowGraph());
+    }
+
+    private static String describe(FlowGraph fg) {
+        StringBuilder b = new StringBuilder();
+        b.append(fg.getNumberOfBlocks()).append(" ").append(fg.getNumberOfNodes()).append("\n");
+        for (Function f : fg.getFunctions()) {
+            b.append(f).append(" ").append(f.getSourceLocation()).append("\n");
+            for (BasicBlock k : f.getBlocks())
+                b.append("  ").append(k).append(" -> ").append(k.getSuccessors()).append("\n");
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void cachedInMemory() {
+        String translated = run(null);
+        assertTrue(translated.contains("mdn-polyfills.js"));
+        assertTrue(HostEnvFunctionCache.getNumberOfMisses() > 0);
+        assertEquals(0, HostEnvFunctionCache.getNumberOfHits());
+        assertEquals(translated, run(null));
+        assertEquals(0, HostEnvFunctionCache.getNumberOfMisses());
+        assertTrue(HostEnvFunctionCache.getNumberOfHits() > 0);
+        assertEquals(0, HostEnvFunctionCache.getNumberOfSaves());
+    }
+
+    @Test
+    public void cachedOnDisk() {
+        String translated = run(dir);
+        int saves = HostEnvFunctionCache.getNumberOfSaves();
+        assertTrue(saves > 0);
+        HostEnvFunctionCache.clear(); // as in a new JVM
+        assertEquals(translated, run(dir));
+        assertEquals(saves, HostEnvFunctionCache.getNumberOfLoads());
+        assertEquals(saves, HostEnvFunctionCache.getNumberOfHits());
+        assertEquals(0, HostEnvFunctionCache.getNumberOfSaves());
+    }
+
+    @Test
+    public void corruptFile() throws IOException {
+        String translated = run(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.write(file, new byte[]{1, 2, 3});
+        }
+        HostEnvFunctionCache.clear();
+        assertEquals(translated, run(dir));
+        assertEquals(0, HostEnvFunctionCache.getNumberOfHits());
+        assertTrue(HostEnvFunctionCache.getNumberOfSaves() > 0);
+    }
+}
@@ -0,0 +1,180 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.InitialStateSnapshot;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.Obj;
+import dk.brics.tajs.lattice.State;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestInitialStateSnapshot {
+
+    private Path dir;
+
+    @Before
+    public void before() throws IOException {
+        InitialStateSnapshot.clear();
+        dir = Files.createTempDirectory("initial-state");
+    }
+
+    @After
+    public void after() throws IOException {
+        InitialStateSnapshot.clear();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Runs the analysis and returns a description of the initial state.
+     */
+    private static Set<String> run(Path dir, boolean determinacy) {
+        Main.reset();
+        Options.get().enableTest();
+        if (determinacy)
+            Options.get().enableDeterminacy();
+        Options.get().setInitialStateSnapshotDirectory(dir);
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.runSource(new String[]{"var x = Math.max(1, 2);", "TAJS_assert(x === 2);"}, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        State initial = c.get().getAnalysisLatticeElement().getStates(c.get().getFlowGraph().getEntryBlock()).values().iterator().next();
+        return describe(initial);
+    }
+
+    private static Set<String> describe(State s) {
+        Set<String> d = new TreeSet<>();
+        for (Map.Entry<ObjectLabel, Obj> me : s.getStore().entrySet()) {
+            ObjectLabel l = me.getKey();
+            Obj obj = me.getValue();
+            obj.getProperties().forEach((k, v) -> d.add(l + "." + k + ": " + v));
+            d.add(l + "[[Prototype]]: " + obj.getInternalPrototype());
+            d.add(l + "[[Value]]: " + obj.getInternalValue());
+            d.add(l + "[[DefaultNumeric]]: " + obj.getDefaultNumericProperty());
+            d.add(l + "[[DefaultOther]]: " + obj.getDefaultOtherProperty());
+            d.add(l + "[[Scope]]: " + (obj.isScopeChainUnknown() ? "?" : obj.getScopeChain()));
+        }
+        d.add("context: " + s.getExecutionContext());
+        return d;
+    }
+
+    @Test
+    public void restoredFromFile() {
+        Set<String> built = run(null, false);
+        assertTrue(built.size() > 1000);
+        assertEquals(built, run(dir, false));
+        assertEquals(1, InitialStateSnapshot.getNumberOfSaves());
+        InitialStateSnapshot.clear(); // as in a new JVM
+        assertEquals(built, run(dir, false));
+        assertEquals(1, InitialStateSnapshot.getNumberOfLoads());
+        assertEquals(1, InitialStateSnapshot.getNumberOfRestores());
+        assertEquals(0, InitialStateSnapshot.getNumberOfSaves());
+    }
+
+    @Test
+    public void restoredFromMemory() {
+        run(dir, false);
+        run(dir, false);
+        assertEquals(0, InitialStateSnapshot.getNumberOfLoads());
+        assertEquals(1, InitialStateSnapshot.getNumberOfRestores());
+    }
+
+    @Test
+    public void otherOptions() throws IOException {
+        run(dir, false);
+        run(dir, true);
+        assertEquals(0, InitialStateSnapshot.getNumberOfRestores());
+        assertEquals(1, InitialStateSnapshot.getNumberOfSaves());
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(2, files.count());
+        }
+    }
+
+    @Test
+    public void corruptFile() throws IOException {
+        run(dir, false);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.write(file, new byte[]{1, 2, 3});
+        }
+        InitialStateSnapshot.clear();
+        Set<String> rebuilt = run(dir, false);
+        assertEquals(0, InitialStateSnapshot.getNumberOfRestores());
+        assertEquals(1, InitialStateSnapshot.getNumberOfSaves());
+        assertNotEquals(0, rebuilt.size());
+    }
+
+    @Test
+    public void unwritableDirectory() throws IOException {
+        Path file = Files.createFile(dir.resolve("file"));
+        Set<String> built = run(null, false);
+        assertEquals(built, run(file.resolve("snapshots"), false));
+        assertEquals(0, InitialStateSnapshot.getNumberOfSaves());
+    }
+
+    /**
+     * Replaces the payload of each snapshot file, keeping the header with the format version and fingerprint.
+     */
+    private void replacePayload(UnaryOperator<byte[]> f) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                byte[] bytes = Files.readAllBytes(file);
+                int headerLength = 8 + 2 + (((bytes[8] & 0xff) << 8) | (bytes[9] & 0xff)) + 4; // magic, version, fingerprint, image size
+                byte[] payload = f.apply(Arrays.copyOfRange(bytes, headerLength, bytes.length));
+                byte[] replaced = Arrays.copyOf(bytes, headerLength + payload.length);
+                System.arraycopy(payload, 0, replaced, headerLength, payload.length);
+                Files.write(file, replaced);
+            }
+        }
+    }
+
+    private void assertRebuilt(Set<String> built) {
+        InitialStateSnapshot.clear();
+        assertEquals(built, run(dir, false));
+        assertEquals(0, InitialStateSnapshot.getNumberOfLoads());
+        assertEquals(0, InitialStateSnapshot.getNumberOfRestores());
+        assertEquals(1, InitialStateSnapshot.getNumberOfSaves());
+    }
+
+    @Test
+    public void truncatedPayload() throws IOException {
+        Set<String> built = run(dir, false);
+        replacePayload(payload -> Arrays.copyOf(payload, payload.length / 2));
+        assertRebuilt(built);
+    }
+
+    @Test
+    public void corruptPayload() throws IOException {
+        Set<String> built = run(dir, false);
+        replacePayload(payload -> {
+            Arrays.fill(payload, payload.length / 2, payload.length, (byte) 0xff);
+            return payload;
+        });
+        assertRebuilt(built);
+    }
+}
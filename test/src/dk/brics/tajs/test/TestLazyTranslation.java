@@ -0,0 +1,111 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestLazyTranslation {
+
+    private static final String[] PROGRAM = {
+            "function unused(x) { var y = x + 1; return y; }",
+            "function twice(x) { var r = x * 2; return r; }",
+            "var o = { get g() { return twice(3); } };",
+            "TAJS_assertEquals(6, o.g);",
+            "function outer() { function inner() { return 1; } var k = 2; return inner() + k; }",
+            "TAJS_assertEquals(3, outer());"
+    };
+
+    private static FlowGraph run(boolean lazy) {
+        Main.reset();
+        Options.get().enableTest();
+        if (lazy)
+            Options.get().enableLazyTranslation();
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.runSource(PROGRAM, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        return c.get().getFlowGraph();
+    }
+
+    /**
+     * Returns the nodes of each user function, without indices and artificial nodes.
+     */
+    private static Map<String, List<String>> getNodes(FlowGraph fg) {
+        Map<String, List<String>> res = new TreeMap<>();
+        for (Function f : fg.getFunctions()) {
+            if (fg.isHostEnvironmentSource(f.getSourceLocation()))
+                continue;
+            res.put(f + " " + f.getSourceLocation(), f.getBlocks().stream()
+                    .flatMap(b -> b.getNodes().stream())
+                    .filter(n -> !n.isArtificial())
+                    .map(n -> n + " " + n.getSourceLocation())
+                    .sorted()
+                    .collect(Collectors.toList()));
+        }
+        return res;
+    }
+
+    private static String describe(FlowGraph fg) {
+        StringBuilder b = new StringBuilder();
+        List<Function> functions = fg.getFunctions().stream().sorted(Comparator.comparingInt(Function::getIndex)).collect(Collectors.toList());
+        for (Function f : functions) {
+            b.append(f.getIndex()).append(" ").append(f).append("\n");
+            for (BasicBlock k : f.getBlocks()) {
+                b.append("  ").append(k.getIndex()).append(" -> ").append(k.getSuccessors()).append("\n");
+                for (AbstractNode n : k.getNodes())
+                    b.append("    ").append(n.getIndex()).append(" ").append(n).append("\n");
+            }
+        }
+        return b.toString();
+    }
+
+    @Test
+    public void onlyCalledFunctionsTranslated() {
+        FlowGraph eager = run(false);
+        FlowGraph lazy = run(true);
+        assertEquals(4, lazy.getNumberOfLazilyTranslatedFunctions()); // twice, the getter, outer and inner
+        assertEquals(1, lazy.getNumberOfPendingBodies()); // unused
+        assertTrue(lazy.getNumberOfNodes() < eager.getNumberOfNodes());
+        Map<String, List<String>> eagerNodes = getNodes(eager);
+        Map<String, List<String>> lazyNodes = getNodes(lazy);
+        assertEquals(eagerNodes.keySet(), lazyNodes.keySet());
+        eagerNodes.forEach((f, nodes) -> {
+            if (f.startsWith("function unused"))
+                assertTrue(lazyNodes.get(f).size() < nodes.size());
+            else
+                assertEquals(nodes, lazyNodes.get(f));
+        });
+    }
+
+    @Test
+    public void deterministic() {
+        String first = describe(run(true));
+        assertEquals(first, describe(run(true)));
+    }
+
+    @Test
+    public void disabledByDefault() {
+        FlowGraph fg = run(false);
+        assertEquals(0, fg.getNumberOfLazilyTranslatedFunctions());
+        assertEquals(0, fg.getNumberOfPendingBodies());
+    }
+}
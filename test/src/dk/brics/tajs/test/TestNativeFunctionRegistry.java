@@ -0,0 +1,51 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.NativeFunctionRegistry;
+import dk.brics.tajs.analysis.dom.DOMFunctions;
+import dk.brics.tajs.analysis.dom.DOMObjects;
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptFunctions;
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestNativeFunctionRegistry {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestNativeFunctionRegistry");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    @Test
+    public void allResolved() {
+        for (ECMAScriptObjects o : ECMAScriptObjects.values())
+            assertNotNull(o.toString(), ECMAScriptFunctions.resolve(o));
+        for (DOMObjects o : DOMObjects.values())
+            assertNotNull(o.toString(), DOMFunctions.resolve(o));
+    }
+
+    @Test
+    public void callsCounted() {
+        Misc.runSource("var a = Math.abs(-1);",
+                "var b = Math.abs(-2);",
+                "var s = String(a + b);",
+                "TAJS_assert(s === '3');");
+        int calls = NativeFunctionRegistry.getNumberOfCalls(ECMAScriptObjects.STRING); // includes the scan phase
+        assertTrue(calls > 0);
+        assertEquals(2 * calls, NativeFunctionRegistry.getNumberOfCalls(ECMAScriptObjects.MATH_ABS));
+        assertTrue(NativeFunctionRegistry.getStatistics().contains("Math.abs: calls=" + 2 * calls));
+        Main.reset();
+        assertEquals(0, NativeFunctionRegistry.getNumberOfCalls(ECMAScriptObjects.MATH_ABS));
+    }
+}
@@ -0,0 +1,123 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.BasicBlock;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.Function;
+import dk.brics.tajs.flowgraph.SourceLocation;
+import dk.brics.tajs.flowgraph.jsnodes.NopNode;
+import dk.brics.tajs.lattice.PKey;
+import dk.brics.tajs.lattice.PartitionedValue;
+import dk.brics.tajs.lattice.PartitioningQualifier;
+import dk.brics.tajs.lattice.Property;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import static dk.brics.tajs.util.Collections.newMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the shared partition maps and memoized operations of partitioned values give the same results as applying the operations to each partition value.
+ */
+public class TestPartitionedValue {
+
+    private AbstractNode n;
+
+    private PartitioningQualifier qa, qb, qc;
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+        SourceLocation loc = new SourceLocation.SyntheticLocationMaker("synthetic").makeUnspecifiedPosition();
+        Function f = new Function("foo", Collections.emptyList(), null, loc);
+        FlowGraph fg = new FlowGraph(f);
+        BasicBlock b = new BasicBlock(f);
+        n = new NopNode(loc);
+        b.addNode(n);
+        fg.addBlock(b);
+        f.complete();
+        fg.addFunction(f);
+        qa = PartitioningQualifier.make(n, Property.makeOrdinaryProperty(PKey.StringPKey.make("a")));
+        qb = PartitioningQualifier.make(n, Property.makeOrdinaryProperty(PKey.StringPKey.make("b")));
+        qc = PartitioningQualifier.make(n, Property.makeOrdinaryProperty(PKey.StringPKey.make("c")));
+    }
+
+    private PartitionedValue make(PartitioningQualifier q1, Value v1, PartitioningQualifier q2, Value v2) {
+        Map<PartitioningQualifier, Value> partitions = newMap();
+        partitions.put(q1, v1);
+        partitions.put(q2, v2);
+        return PartitionedValue.make(n, partitions);
+    }
+
+    private void assertPartitionsEqual(Value expectedSingle, List<Value> expectedPartitions, Value actual) {
+        assertEquals(expectedSingle, PartitionedValue.ignorePartitions(actual));
+        List<PartitioningQualifier> qs = Arrays.asList(qa, qb, qc);
+        for (int i = 0; i < qs.size(); i++)
+            assertEquals(expectedPartitions.get(i), PartitionedValue.getPartition(actual, n, qs.get(i)));
+    }
+
+    @Test
+    public void attributeOperationsMatchUnmemoized() {
+        Value a = Value.makeNum(1).setDontEnum();
+        Value b = Value.makeStr("x").joinAbsent();
+        PartitionedValue pv = make(qa, a, qb, b);
+        List<UnaryOperator<Value>> ops = Arrays.asList(
+                Value::setDontEnum, Value::setNotDontEnum, Value::joinNotDontEnum,
+                Value::setReadOnly, Value::setDontDelete, Value::removeAttributes,
+                Value::joinAbsent, Value::restrictToNotAbsent, Value::joinModified, Value::restrictToNotModified,
+                v -> v.setAttributes(true, false, true), v -> v.setAttributes(false, true, false));
+        for (UnaryOperator<Value> op : ops) {
+            Value first = op.apply(pv);
+            int hits = PartitionedValue.getNumberOfMemoHits();
+            Value second = op.apply(pv);
+            assertSame(first, second);
+            assertTrue(PartitionedValue.getNumberOfMemoHits() > hits);
+            assertPartitionsEqual(op.apply(PartitionedValue.ignorePartitions(pv)), Arrays.asList(op.apply(a), op.apply(b), Value.makeNone()), first);
+        }
+    }
+
+    @Test
+    public void chainedOperationsMatchUnmemoized() {
+        Value a = Value.makeNum(1);
+        Value b = Value.makeStr("x");
+        PartitionedValue pv = make(qa, a, qb, b);
+        Value v1 = pv.setDontEnum().setReadOnly().joinAbsent();
+        Value v2 = pv.setDontEnum().setReadOnly().joinAbsent();
+        assertSame(v1, v2);
+        assertPartitionsEqual(PartitionedValue.ignorePartitions(pv).setDontEnum().setReadOnly().joinAbsent(),
+                Arrays.asList(a.setDontEnum().setReadOnly().joinAbsent(), b.setDontEnum().setReadOnly().joinAbsent(), Value.makeNone()), v1);
+    }
+
+    @Test
+    public void joinMatchesUnmemoized() {
+        Value a1 = Value.makeNum(1), b1 = Value.makeStr("x");
+        Value a2 = Value.makeNum(2), c2 = Value.makeBool(true);
+        PartitionedValue pv1 = make(qa, a1, qb, b1);
+        PartitionedValue pv2 = make(qa, a2, qc, c2);
+        Value first = PartitionedValue.join(pv1, pv2, false);
+        int hits = PartitionedValue.getNumberOfMemoHits();
+        Value second = PartitionedValue.join(pv1, pv2, false);
+        assertSame(first, second);
+        assertTrue(PartitionedValue.getNumberOfMemoHits() > hits);
+        assertPartitionsEqual(PartitionedValue.ignorePartitions(pv1).join(PartitionedValue.ignorePartitions(pv2)),
+                Arrays.asList(a1.join(a2), b1, c2), first);
+    }
+
+    @Test
+    public void joinWithItself() {
+        PartitionedValue pv = make(qa, Value.makeNum(1), qb, Value.makeStr("x"));
+        assertSame(pv, PartitionedValue.join(pv, pv, false));
+    }
+}
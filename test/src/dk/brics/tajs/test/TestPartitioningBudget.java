@@ -0,0 +1,80 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.analysis.js.PartitioningBudget;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TestPartitioningBudget {
+
+    private final String copyProperty = "var obj = {a: 1, b: 2}; var name = Object.keys(obj)[0]; var foo = {}; foo[name] = obj[name];";
+
+    @Before
+    public void before() {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().enableDeterminacy();
+        Options.get().enablePropNamePartitioning();
+    }
+
+    private static PartitioningBudget run(String... src) {
+        PartitioningBudget[] budget = new PartitioningBudget[1];
+        Misc.runSource(src, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface c) {
+                budget[0] = c.getAnalysis().getPartitioningBudget();
+            }
+        });
+        return budget[0];
+    }
+
+    @Test
+    public void unlimited() {
+        PartitioningBudget budget = run(copyProperty,
+                "TAJS_assert(foo.a !== 2);",
+                "TAJS_assert(foo.b !== 1);");
+        assertTrue(budget.getStoppedNodes().isEmpty());
+    }
+
+    @Test
+    public void nodeLimit() {
+        Options.get().setPartitionLimit(2); // 'a', 'b' and other strings
+        PartitioningBudget budget = run(copyProperty,
+                "TAJS_assert(foo.a !== 2, 'isMaybeFalse');");
+        assertEquals(1, budget.getStoppedNodes().size());
+    }
+
+    @Test
+    public void stateLimit() {
+        Options.get().setPartitionStateLimit(2);
+        PartitioningBudget budget = run(copyProperty,
+                "TAJS_assert(foo.a !== 2, 'isMaybeFalse');");
+        assertTrue(budget.getStoppedNodes().isEmpty());
+    }
+
+    @Test
+    public void costAccounting() {
+        Options.get().enablePartitionCostAccounting();
+        String props = IntStream.range(0, 40).mapToObj(i -> "p" + i + ": " + i).collect(Collectors.joining(", "));
+        PartitioningBudget budget = run("var obj = {" + props + "};",
+                "var name = Object.keys(obj)[Math.random()];",
+                "var s = 0;",
+                "for (var i = 0; i < 10; i++) {",
+                "  s += obj[name];", // partitioned without benefit
+                "}",
+                "var foo = {};",
+                "foo[name] = obj[name];",
+                "TAJS_assert(foo.p1 !== 2);");
+        assertEquals(1, budget.getStoppedNodes().size());
+        assertEquals(5, budget.getStoppedNodes().iterator().next().getSourceLocation().getLineNumber());
+    }
+}
@@ -0,0 +1,78 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.PrimitiveOperationCache;
+import dk.brics.tajs.flowgraph.jsnodes.BinaryOperatorNode;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestPrimitiveOperationCache {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestPrimitiveOperationCache");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    @Test
+    public void lookupByIdentity() {
+        Value one = Value.makeNum(1);
+        Value two = Value.makeNum(2);
+        assertNull(PrimitiveOperationCache.get(BinaryOperatorNode.Op.ADD, one, two));
+        PrimitiveOperationCache.put(BinaryOperatorNode.Op.ADD, one, two, Value.makeNum(3));
+        assertSame(Value.makeNum(3), PrimitiveOperationCache.get(BinaryOperatorNode.Op.ADD, one, two));
+        assertNull(PrimitiveOperationCache.get(BinaryOperatorNode.Op.SUB, one, two));
+        assertNull(PrimitiveOperationCache.get(BinaryOperatorNode.Op.ADD, two, one));
+        assertEquals(1, PrimitiveOperationCache.getNumberOfHits());
+        assertEquals(3, PrimitiveOperationCache.getNumberOfMisses());
+        Main.reset();
+        assertEquals(0, PrimitiveOperationCache.getSize());
+    }
+
+    @Test
+    public void repeatedOperations() {
+        Misc.runSource("var s = '', n = 0;",
+                "for (var i = 0; i < 10; i++) {",
+                "  s = 'a' + 'b';",
+                "  n = -(3 * 4) + +'5';",
+                "}",
+                "TAJS_assert(s === 'ab' || s === '', 'isMaybeTrue');",
+                "TAJS_assert(n === -7 || n === 0, 'isMaybeTrue');");
+        assertTrue(PrimitiveOperationCache.getNumberOfHits() > 0);
+    }
+
+    @Test
+    public void notMemoizedWhenUnsoundnessIsReported() {
+        Options.get().getUnsoundness().setShowUnsoundnessUsage(true);
+        Misc.runSource("var n = 0;",
+                "for (var i = 0; i < 10; i++) {",
+                "  n = 3 + 4;",
+                "}",
+                "TAJS_assert(n === 7 || n === 0, 'isMaybeTrue');");
+        assertEquals(0, PrimitiveOperationCache.getNumberOfHits());
+        assertEquals(0, PrimitiveOperationCache.getNumberOfMisses());
+    }
+
+    @Test
+    public void notMemoizedWithUnsoundAddition() {
+        Options.get().getUnsoundness().setIgnoreUnlikelyUndefinedAsFirstArgumentToAddition(true);
+        Misc.runSource("var n = 0;",
+                "for (var i = 0; i < 10; i++) {",
+                "  n = 3 + 4;",
+                "}",
+                "TAJS_assert(n === 7 || n === 0, 'isMaybeTrue');");
+        assertEquals(0, PrimitiveOperationCache.getNumberOfHits());
+    }
+}
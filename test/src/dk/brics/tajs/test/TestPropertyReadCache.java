@@ -0,0 +1,154 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.PropertyReadCache;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.flowgraph.AbstractNode;
+import dk.brics.tajs.flowgraph.FlowGraph;
+import dk.brics.tajs.flowgraph.jsnodes.ReadPropertyNode;
+import dk.brics.tajs.lattice.Obj;
+import dk.brics.tajs.lattice.PKey;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestPropertyReadCache {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestPropertyReadCache");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+    }
+
+    private FlowGraph flowgraph;
+
+    private PropertyReadCache run(String... src) {
+        PropertyReadCache[] cache = new PropertyReadCache[1];
+        Misc.runSource(src, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface c) {
+                cache[0] = c.getAnalysis().getPropVarOperations().getPropertyReadCache();
+                flowgraph = c.getFlowGraph();
+            }
+        });
+        return cache[0];
+    }
+
+    /**
+     * Returns the node that reads the given property at the given line of the main program.
+     */
+    private AbstractNode getReadNode(int line, String property) {
+        List<AbstractNode> ns = flowgraph.getMain().getBlocks().stream()
+                .flatMap(b -> b.getNodes().stream())
+                .filter(n -> n instanceof ReadPropertyNode && property.equals(((ReadPropertyNode) n).getPropertyString())
+                        && n.getSourceLocation().getLineNumber() == line)
+                .collect(Collectors.toList());
+        assertEquals(1, ns.size());
+        return ns.get(0);
+    }
+
+    @Test
+    public void versionsFollowModifications() {
+        Obj o = new Obj(Obj.makeNone());
+        int v1 = o.getVersion();
+        assertEquals(v1, new Obj(o).getVersion());
+        o.setProperty(PKey.StringPKey.make("p"), Value.makeNum(1));
+        int v2 = o.getVersion();
+        assertNotEquals(v1, v2);
+        assertEquals(v2, Obj.getLatestVersion());
+        assertEquals(v2, new Obj(o).getVersion());
+    }
+
+    @Test
+    public void monomorphicReads() {
+        PropertyReadCache cache = run(
+                "var o = {p: 1, q: 'x'};",
+                "var s = '';",
+                "for (var i = 0; i < 10; i++) {",
+                "  s += o.q + o.p;",
+                "}",
+                "TAJS_assert(s === 'x1' || s === '', 'isMaybeTrue');");
+        assertTrue(cache.getNumberOfHits() > 0);
+    }
+
+    @Test
+    public void invalidatedByWrites() {
+        run("var o = {p: 1};",
+                "var a, b;",
+                "for (var i = 0; i < 2; i++) {",
+                "  if (i === 0) a = o.p; else b = o.p;",
+                "  o.p = 'x';",
+                "}",
+                "TAJS_assert(a === 1, 'isMaybeTrue');",
+                "TAJS_assert(b === 'x', 'isMaybeTrue');");
+    }
+
+    @Test
+    public void getters() {
+        run("var n = 0;",
+                "var o = {get p() { n++; return n; }};",
+                "for (var i = 0; i < 2; i++) {",
+                "  var a = o.p;",
+                "}",
+                "TAJS_assert(a === 2, 'isMaybeTrue');");
+    }
+
+    @Test
+    public void hitWhenConsultedObjectsUnchanged() {
+        PropertyReadCache cache = run(
+                "var o = {p: 1};",
+                "var other = {q: 1};",
+                "while (TAJS_make('AnyBool')) {",
+                "  var a = o.p;",
+                "  other.q = 'x';",
+                "}",
+                "TAJS_assert(a === 1, 'isMaybeTrue');");
+        AbstractNode n = getReadNode(4, "p");
+        assertEquals(1, cache.getNumberOfMisses(n));
+        assertTrue(cache.getNumberOfHits(n) > 0);
+    }
+
+    @Test
+    public void missAfterWriteToReceiver() {
+        PropertyReadCache cache = run(
+                "var o = {p: 1};",
+                "while (TAJS_make('AnyBool')) {",
+                "  var a = o.p;",
+                "  o.p = 'x';",
+                "}",
+                "TAJS_assert(a === 1, 'isMaybeTrue');",
+                "TAJS_assert(a === 'x', 'isMaybeTrue');");
+        AbstractNode n = getReadNode(3, "p");
+        assertEquals(2, cache.getNumberOfMisses(n)); // the first read and the first read after the write
+    }
+
+    @Test
+    public void missAfterWriteToPrototype() {
+        PropertyReadCache cache = run(
+                "function F() {}",
+                "F.prototype.p = 1;",
+                "var o = new F();",
+                "while (TAJS_make('AnyBool')) {",
+                "  var a = o.p;",
+                "  F.prototype.p = 'x';",
+                "}",
+                "TAJS_assert(a === 1, 'isMaybeTrue');",
+                "TAJS_assert(a === 'x', 'isMaybeTrue');");
+        AbstractNode n = getReadNode(5, "p");
+        assertEquals(2, cache.getNumberOfMisses(n)); // the first read and the first read after the write
+    }
+}
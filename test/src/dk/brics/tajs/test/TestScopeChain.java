@@ -0,0 +1,88 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.nativeobjects.ECMAScriptObjects;
+import dk.brics.tajs.lattice.ObjectLabel;
+import dk.brics.tajs.lattice.ObjectLabel.Kind;
+import dk.brics.tajs.lattice.ScopeChain;
+import dk.brics.tajs.lattice.Summarized;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static dk.brics.tajs.util.Collections.newSet;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestScopeChain {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestScopeChain");
+    }
+
+    private ObjectLabel a, b, c;
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().enableDebug();
+        a = ObjectLabel.make(ECMAScriptObjects.OBJECT, Kind.FUNCTION);
+        b = ObjectLabel.make(ECMAScriptObjects.ARRAY, Kind.FUNCTION);
+        c = ObjectLabel.make(ECMAScriptObjects.MATH, Kind.MATH);
+    }
+
+    @Test
+    public void hashConsed() {
+        ScopeChain s1 = ScopeChain.make(newSet(Arrays.asList(a, b)), ScopeChain.make(c));
+        ScopeChain s2 = ScopeChain.make(newSet(Arrays.asList(b, a)), ScopeChain.make(c));
+        assertSame(s1, s2);
+        assertSame(s1.getObject(), s2.getObject());
+        assertNotSame(s1, ScopeChain.make(newSet(Arrays.asList(a, b)), null));
+        assertTrue(ScopeChain.getNumberOfCacheHits() > 0);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void canonicalLabelSetsAreImmutable() {
+        ScopeChain.make(a).getObject().add(b);
+    }
+
+    @Test
+    public void addIsMemoized() {
+        ScopeChain s1 = ScopeChain.make(newSet(Arrays.asList(a)), ScopeChain.make(c));
+        ScopeChain s2 = ScopeChain.make(newSet(Arrays.asList(b)), ScopeChain.make(c));
+        ScopeChain j = ScopeChain.add(s1, s2);
+        assertSame(ScopeChain.make(newSet(Arrays.asList(a, b)), ScopeChain.make(c)), j);
+        int hits = ScopeChain.getNumberOfMemoHits();
+        assertSame(j, ScopeChain.add(s1, s2));
+        assertEquals(hits + 1, ScopeChain.getNumberOfMemoHits());
+        assertSame(s1, ScopeChain.add(s1, s1));
+    }
+
+    @Test
+    public void replaceObjectLabel() {
+        ScopeChain s = ScopeChain.make(newSet(Arrays.asList(a)), ScopeChain.make(b));
+        ScopeChain r = ScopeChain.replaceObjectLabel(s, b, c);
+        assertSame(ScopeChain.make(newSet(Arrays.asList(a)), ScopeChain.make(c)), r);
+        assertSame(r, ScopeChain.replaceObjectLabel(s, b, c));
+        assertSame(s, ScopeChain.replaceObjectLabel(s, c, b));
+    }
+
+    @Test
+    public void summarize() {
+        ScopeChain s = ScopeChain.make(newSet(Arrays.asList(a, b)), ScopeChain.make(c));
+        assertSame(s, ScopeChain.summarize(s, new Summarized()));
+        Summarized sum = new Summarized();
+        sum.addDefinitelySummarized(a);
+        sum.addDefinitelySummarized(c);
+        sum.removeSummarized(c, false);
+        ScopeChain expected = ScopeChain.make(newSet(Arrays.asList(a.makeSummary(), b)), ScopeChain.make(newSet(Arrays.asList(c, c.makeSummary())), null));
+        assertSame(expected, ScopeChain.summarize(s, sum));
+        assertSame(expected, ScopeChain.summarize(s, sum));
+    }
+}
@@ -1,11 +1,26 @@
 package dk.brics.tajs.test;
 
 import dk.brics.tajs.Main;
+import dk.brics.tajs.flowgraph.SourceLocation;
 import dk.brics.tajs.options.Options;
 import dk.brics.tajs.util.AnalysisException;
+import dk.brics.tajs.util.PathAndURLUtils;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.URL;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
 @SuppressWarnings("static-method")
 public class TestSourceLocations {
 
@@ -177,4 +192,44 @@ public class TestSourceLocations {
         Misc.run("test-resources/src/sourcelocations/tripleVar.js");
         Misc.checkSystemOutput();
     }
+
+    @Test
+    public void sourcelocations_interned() {
+        int files = SourceLocation.getNumberOfFiles();
+        URL url = PathAndURLUtils.normalizeFileURL(PathAndURLUtils.toURL(Paths.get("test-resources/src/sourcelocations/javascript.js")));
+        SourceLocation a = new SourceLocation.StaticLocationMaker(url).make(3, 7, 3, 9);
+        SourceLocation b = new SourceLocation.StaticLocationMaker(url).make(3, 7, 4, 1);
+        SourceLocation c = new SourceLocation.StaticLocationMaker(url).make(100000, 70000, 0, 0);
+        SourceLocation d = new SourceLocation.SyntheticLocationMaker("synthetic").make(3, 7, 0, 0);
+        assertSame(a, b); // end positions are ignored
+        assertEquals(a.getFileID(), c.getFileID());
+        assertNotEquals(a.getFileID(), d.getFileID());
+        assertEquals(3, a.getLineNumber());
+        assertEquals(7, a.getColumnNumber());
+        assertEquals(9, a.getEndColumnNumber());
+        assertEquals(100000, c.getLineNumber());
+        assertEquals(70000, c.getColumnNumber());
+        assertEquals(url, c.getLocation());
+        assertTrue(SourceLocation.Comparator.compareStatic(a, c) < 0);
+        assertTrue(SourceLocation.Comparator.compareStatic(c, a) > 0);
+        assertEquals(files + 2, SourceLocation.getNumberOfFiles());
+    }
+
+    @Test
+    public void sourcelocations_deserializedInterned() throws IOException, ClassNotFoundException {
+        SourceLocation.SourceLocationMaker maker = new SourceLocation.SyntheticLocationMaker("synthetic");
+        SourceLocation loader = maker.make(1, 2, 0, 0);
+        SourceLocation a = new SourceLocation.DynamicLocationMaker(loader).make(5, 6, 0, 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(a);
+        }
+        SourceLocation b;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            b = (SourceLocation) in.readObject();
+        }
+        assertSame(a, b);
+        assertSame(loader, b.getLoaderLocation());
+        assertEquals("TAJS-dynamic-code(synthetic:1:2):5:6", b.toString());
+    }
 }
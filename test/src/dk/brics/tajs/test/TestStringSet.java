@@ -0,0 +1,129 @@
+package dk.brics.tajs.test;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.lattice.StringSet;
+import dk.brics.tajs.lattice.Value;
+import dk.brics.tajs.options.Options;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings("static-method")
+public class TestStringSet {
+
+    public static void main(String[] args) {
+        org.junit.runner.JUnitCore.main("dk.brics.tajs.test.TestStringSet");
+    }
+
+    @Before
+    public void init() {
+        Main.reset();
+        Options.get().enableTest();
+        Options.get().enableDebug();
+    }
+
+    private static Set<String> randomStrings(Random r, int n) {
+        String[] parts = {"foo", "fo", "bar", "", "0", "12", "x$", "-", "NaN", "Infinity", "if", "ba"};
+        Set<String> s = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            StringBuilder b = new StringBuilder();
+            int k = r.nextInt(4);
+            for (int j = 0; j < k; j++)
+                b.append(parts[r.nextInt(parts.length)]);
+            s.add(b.toString());
+        }
+        return s;
+    }
+
+    @Test
+    public void sortedAndEqualToOrdinarySets() {
+        Random r = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            Set<String> expected = randomStrings(r, r.nextInt(60));
+            StringSet s = StringSet.make(expected);
+            assertEquals(expected, s);
+            assertEquals(s, expected);
+            assertEquals(expected.hashCode(), s.hashCode());
+            assertEquals(new ArrayList<>(new TreeSet<>(expected)), new ArrayList<>(s));
+            for (String x : randomStrings(r, 20))
+                assertEquals(expected.contains(x), s.contains(x));
+        }
+    }
+
+    @Test
+    public void unionIntersectionAndSubset() {
+        Random r = new Random(7);
+        for (int i = 0; i < 200; i++) {
+            Set<String> a = randomStrings(r, r.nextInt(40));
+            Set<String> b = randomStrings(r, r.nextInt(40));
+            StringSet sa = StringSet.make(a);
+            StringSet sb = StringSet.make(b);
+            Set<String> union = new HashSet<>(a);
+            union.addAll(b);
+            Set<String> intersection = new HashSet<>(a);
+            intersection.retainAll(b);
+            assertEquals(union, sa.union(sb));
+            assertEquals(StringSet.make(union), sa.union(sb));
+            assertEquals(intersection, sa.intersection(sb));
+            assertEquals(a.containsAll(b), sa.isSupersetOf(sb));
+            assertEquals(StringSet.make(b), sb.union(sa).difference(a).union(sb.intersection(sa)));
+        }
+    }
+
+    @Test
+    public void unchangedOperationsReturnSameInstance() {
+        StringSet s = StringSet.make("a", "b", "c");
+        assertSame(s, s.plus("b"));
+        assertSame(s, s.minus("d"));
+        assertSame(s, s.union(StringSet.make("a", "c")));
+        assertSame(s, s.filter(x -> true));
+        assertTrue(s.minus("b").filter(x -> false).isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        StringSet.make("a", "b").add("c");
+    }
+
+    @Test
+    public void longSharedPrefixes() {
+        List<String> ss = new ArrayList<>();
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            b.append((char) ('a' + i % 26));
+            ss.add(b.toString());
+        }
+        StringSet s = StringSet.make(ss);
+        assertEquals(new HashSet<>(ss), s);
+        assertTrue(s.contains(ss.get(57)));
+        assertFalse(s.contains(ss.get(57) + "!"));
+    }
+
+    @Test
+    public void cachedClassificationMatchesValue() {
+        Value v = Value.makeStrings(Arrays.asList("0", "12", "foo"));
+        assertTrue(v.isMaybeStrSomeUInt());
+        assertTrue(v.isMaybeStrSomeNonUInt());
+        assertFalse(v.isStrIdentifier());
+        assertTrue(v.isStrIdentifierParts());
+        Value w = Value.makeStrings(Arrays.asList("NaN", "-1.5", "a b"));
+        assertFalse(w.isMaybeStrSomeUInt());
+        assertTrue(w.isMaybeStrSomeNumeric());
+        assertTrue(w.isMaybeStrSomeNonNumeric());
+        assertTrue(w.isMaybeStrOtherNum());
+        assertTrue(w.isMaybeStrOther());
+        assertFalse(w.isMaybeStrIdentifier());
+    }
+}
@@ -1,10 +1,18 @@
 package dk.brics.tajs.test;
 
 import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.LoopUnrollingController;
+import dk.brics.tajs.analysis.Solver;
+import dk.brics.tajs.monitoring.DefaultAnalysisMonitoring;
 import dk.brics.tajs.options.Options;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 public class TestUnrolling {
 
     @Before
@@ -498,4 +506,53 @@ public class TestUnrolling {
                 "do { i++; } while (i < 5)",
                 "TAJS_assert(i === 5);");
     }
+
+    private static final String LONG = "function long() { var s = this.v; for (var i = 0; i < 100; i++) { s += i; } return s; }";
+
+    private static final String SHORT = "function short() { var s = this.v; for (var i = 0; i < 3; i++) { s += i; } return s; }";
+
+    private static final String RECEIVERS = "var a = {v: 1, long: long, short: short}, b = {v: 2, long: long, short: short}, c = {v: 3, long: long, short: short};";
+
+    private static LoopUnrollingController runAdaptive(String... src) {
+        Options.get().enableLoopUnrolling(10);
+        Options.get().enableAdaptiveLoopUnrolling();
+        AtomicReference<Solver.SolverInterface> c = new AtomicReference<>();
+        Misc.runSource(src, new DefaultAnalysisMonitoring() {
+            @Override
+            public void setSolverInterface(Solver.SolverInterface solver_interface) {
+                c.set(solver_interface);
+            }
+        });
+        return c.get().getAnalysis().getLoopUnrollingController();
+    }
+
+    @Test
+    public void adaptiveUnrolling() {
+        LoopUnrollingController controller = runAdaptive(LONG, SHORT, RECEIVERS,
+                "TAJS_assert(a.long(), 'isMaybeSingleNum', false);",
+                "TAJS_assert(b.long(), 'isMaybeNumUInt');", // no longer unrolled
+                "TAJS_assert(c.long(), 'isMaybeNumUInt');",
+                "TAJS_assert(a.short() === 4);", // still unrolled
+                "TAJS_assert(b.short() === 5);");
+        assertEquals(1, controller.getNumberOfLoopsNotUnrolled());
+        assertTrue(controller.getNumberOfSkippedUnrollings() > 0);
+    }
+
+    @Test
+    public void adaptiveUnrollingStopsLongLoop() {
+        LoopUnrollingController controller = runAdaptive(LONG, SHORT, RECEIVERS,
+                "a.long(); b.long(); c.long();");
+        assertEquals(1, controller.getNumberOfLoopsNotUnrolled());
+        assertTrue(controller.getNumberOfSkippedUnrollings() > 0);
+    }
+
+    @Test
+    public void adaptiveUnrollingKeepsShortLoop() {
+        LoopUnrollingController controller = runAdaptive(LONG, SHORT, RECEIVERS,
+                "TAJS_assert(a.short() === 4);",
+                "TAJS_assert(b.short() === 5);",
+                "TAJS_assert(c.short() === 6);");
+        assertEquals(0, controller.getNumberOfLoopsNotUnrolled());
+        assertEquals(0, controller.getNumberOfSkippedUnrollings());
+    }
 }
@@ -0,0 +1,176 @@
+package dk.brics.tajs.test.nodejs;
+
+import dk.brics.tajs.Main;
+import dk.brics.tajs.analysis.nativeobjects.NodeJSModuleResolver;
+import dk.brics.tajs.analysis.nativeobjects.NodeJSRequire;
+import dk.brics.tajs.options.Options;
+import dk.brics.tajs.util.AnalysisLimitationException;
+import dk.brics.tajs.util.PathAndURLUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class TestNodeJSModuleResolver {
+
+    private Path root;
+
+    @Before
+    public void before() throws IOException {
+        Main.reset();
+        Options.get().enableTest();
+        root = Files.createTempDirectory("tajs-resolve").toRealPath();
+    }
+
+    @After
+    public void after() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.delete(file);
+        }
+    }
+
+    private void write(String file, String content) throws IOException {
+        Path p = root.resolve(file);
+        Files.createDirectories(p.getParent());
+        Files.write(p, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path resolve(String request, String dir) {
+        return NodeJSModuleResolver.resolve(request, root.resolve(dir)).getFile();
+    }
+
+    @Test
+    public void relative() throws IOException {
+        write("src/a.js", "");
+        write("src/b.json", "{}");
+        write("src/c/index.js", "");
+        write("src/c.js/x", "");
+        assertEquals(root.resolve("src/a.js"), resolve("./a", "src"));
+        assertEquals(root.resolve("src/a.js"), resolve("./a.js", "src"));
+        assertEquals(root.resolve("src/b.json"), resolve("./b", "src"));
+        assertEquals(root.resolve("src/c/index.js"), resolve("./c", "src"));
+        assertEquals(root.resolve("src/a.js"), resolve("../a", "src/c"));
+        assertEquals(root.resolve("src/a.js"), resolve(root.resolve("src/a").toString(), "."));
+        assertNull(resolve("./d", "src"));
+    }
+
+    @Test
+    public void packageMain() throws IOException {
+        write("lib/package.json", "{\"main\": \"./dist/lib\"}");
+        write("lib/dist/lib.js", "");
+        write("other/package.json", "{\"main\": \"missing.js\"}");
+        write("other/index.js", "");
+        assertEquals(root.resolve("lib/dist/lib.js"), resolve("./lib", "."));
+        assertEquals(root.resolve("other/index.js"), resolve("./other", "."));
+    }
+
+    @Test
+    public void nodeModules() throws IOException {
+        write("node_modules/a/package.json", "{\"main\": \"main.js\"}");
+        write("node_modules/a/main.js", "");
+        write("node_modules/a/sub.js", "");
+        write("node_modules/b.js", "");
+        write("node_modules/@s/c/index.js", "");
+        write("x/node_modules/a/index.js", "");
+        write("x/y/z.js", "");
+        assertEquals(root.resolve("node_modules/a/main.js"), resolve("a", "."));
+        assertEquals(root.resolve("node_modules/a/sub.js"), resolve("a/sub", "x/y"));
+        assertEquals(root.resolve("node_modules/b.js"), resolve("b", "x/y"));
+        assertEquals(root.resolve("node_modules/@s/c/index.js"), resolve("@s/c", "x/y"));
+        assertEquals(root.resolve("x/node_modules/a/index.js"), resolve("a", "x/y"));
+        assertNull(resolve("d", "x/y"));
+    }
+
+    @Test
+    public void packageExports() throws IOException {
+        write("node_modules/e/package.json", "{\"main\": \"main.js\", \"exports\": {" +
+                "\".\": {\"import\": \"./esm.js\", \"require\": \"./cjs.js\"}," +
+                "\"./feature\": [\"no-prefix.js\", \"./feature.js\"]," +
+                "\"./lib/*\": \"./src/*.js\"," +
+                "\"./lib/private/*\": null}}");
+        write("node_modules/e/cjs.js", "");
+        write("node_modules/e/esm.js", "");
+        write("node_modules/e/main.js", "");
+        write("node_modules/e/feature.js", "");
+        write("node_modules/e/src/a/b.js", "");
+        write("node_modules/f/package.json", "{\"exports\": \"./f.js\"}");
+        write("node_modules/f/f.js", "");
+        assertEquals(root.resolve("node_modules/e/cjs.js"), resolve("e", "."));
+        assertEquals(root.resolve("node_modules/e/feature.js"), resolve("e/feature", "."));
+        assertEquals(root.resolve("node_modules/e/src/a/b.js"), resolve("e/lib/a/b", "."));
+        assertEquals(root.resolve("node_modules/f/f.js"), resolve("f", "."));
+    }
+
+    @Test(expected = AnalysisLimitationException.NodeJSRequireException.class)
+    public void packageExportsNotExported() throws IOException {
+        write("node_modules/e/package.json", "{\"exports\": {\".\": \"./e.js\", \"./lib/private/*\": null}}");
+        write("node_modules/e/e.js", "");
+        write("node_modules/e/main.js", "");
+        resolve("e/main", ".");
+    }
+
+    @Test(expected = AnalysisLimitationException.NodeJSRequireException.class)
+    public void packageExportsNull() throws IOException {
+        write("node_modules/e/package.json", "{\"exports\": {\"./lib/*\": \"./src/*.js\", \"./lib/private/*\": null}}");
+        write("node_modules/e/src/private/x.js", "");
+        resolve("e/lib/private/x", ".");
+    }
+
+    @Test(expected = AnalysisLimitationException.NodeJSRequireException.class)
+    public void coreModule() {
+        NodeJSRequire.init(PathAndURLUtils.toURL(root.resolve("main.js")));
+        NodeJSRequire.get().resolve("fs", PathAndURLUtils.toURL(root.resolve("main.js")));
+    }
+
+    @Test
+    public void persistentCache() throws IOException {
+        Path cache = root.resolve("cache");
+        Options.get().setNodeJSResolveCacheDirectory(cache);
+        write("package.json", "{}");
+        write("main.js", "");
+        write("node_modules/a/index.js", "");
+        URL main = PathAndURLUtils.toURL(root.resolve("main.js"));
+
+        NodeJSRequire.init(main);
+        assertEquals(PathAndURLUtils.toURL(root.resolve("node_modules/a/index.js")), NodeJSRequire.get().resolve("a", main));
+        assertEquals(1, NodeJSRequire.get().getNumberOfResolutions());
+        NodeJSRequire.get().save();
+
+        NodeJSRequire.reset();
+        NodeJSRequire.init(main);
+        assertEquals(PathAndURLUtils.toURL(root.resolve("node_modules/a/index.js")), NodeJSRequire.get().resolve("a", main));
+        assertEquals(0, NodeJSRequire.get().getNumberOfResolutions());
+        assertEquals(1, NodeJSRequire.get().getNumberOfCacheHits());
+
+        // a file that takes precedence invalidates the cached result
+        write("node_modules/a.js", "");
+        NodeJSRequire.reset();
+        NodeJSRequire.init(main);
+        assertEquals(PathAndURLUtils.toURL(root.resolve("node_modules/a.js")), NodeJSRequire.get().resolve("a", main));
+        assertEquals(1, NodeJSRequire.get().getNumberOfResolutions());
+        assertEquals(0, NodeJSRequire.get().getNumberOfCacheHits());
+    }
+
+    @Test
+    public void unwritableCache() throws IOException {
+        write("cache", ""); // not a directory
+        Options.get().setNodeJSResolveCacheDirectory(root.resolve("cache"));
+        write("main.js", "");
+        write("node_modules/a/index.js", "");
+        URL main = PathAndURLUtils.toURL(root.resolve("main.js"));
+        NodeJSRequire.init(main);
+        assertEquals(PathAndURLUtils.toURL(root.resolve("node_modules/a/index.js")), NodeJSRequire.get().resolve("a", main));
+        NodeJSRequire.get().save();
+    }
+}